@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.analysis
+
+/**
+ * An immutable integer interval `[lower, upper]` which serves as the abstract domain of the
+ * [de.fraunhofer.aisec.cpg.passes.IntervalAnalysisPass]. [Long.MIN_VALUE] and [Long.MAX_VALUE]
+ * represent negative and positive infinity, respectively. All arithmetic saturates at these bounds.
+ *
+ * The empty interval (bottom) is not represented by this class; the analysis uses `null` for it.
+ */
+data class AbstractInterval(val lower: Long, val upper: Long) {
+
+    val isTop: Boolean
+        get() = lower == Long.MIN_VALUE && upper == Long.MAX_VALUE
+
+    private val isUnbounded: Boolean
+        get() = lower == Long.MIN_VALUE || upper == Long.MAX_VALUE
+
+    /** The least upper bound of this and [other]. */
+    fun join(other: AbstractInterval): AbstractInterval {
+        return AbstractInterval(minOf(lower, other.lower), maxOf(upper, other.upper))
+    }
+
+    /** The greatest lower bound of this and [other] or `null`, if both intervals are disjoint. */
+    fun meet(other: AbstractInterval): AbstractInterval? {
+        val l = maxOf(lower, other.lower)
+        val u = minOf(upper, other.upper)
+        return if (l <= u) AbstractInterval(l, u) else null
+    }
+
+    /**
+     * The standard interval widening: each bound which is not stable in [next] is pushed to
+     * infinity. This guarantees termination of the fixpoint iteration at loop heads.
+     */
+    fun widen(next: AbstractInterval): AbstractInterval {
+        return AbstractInterval(
+            if (next.lower < lower) Long.MIN_VALUE else lower,
+            if (next.upper > upper) Long.MAX_VALUE else upper
+        )
+    }
+
+    operator fun plus(other: AbstractInterval): AbstractInterval {
+        return AbstractInterval(add(lower, other.lower), add(upper, other.upper))
+    }
+
+    operator fun minus(other: AbstractInterval): AbstractInterval {
+        return this + -other
+    }
+
+    operator fun unaryMinus(): AbstractInterval {
+        return AbstractInterval(negate(upper), negate(lower))
+    }
+
+    operator fun times(other: AbstractInterval): AbstractInterval {
+        val products =
+            longArrayOf(
+                multiply(lower, other.lower),
+                multiply(lower, other.upper),
+                multiply(upper, other.lower),
+                multiply(upper, other.upper)
+            )
+        return AbstractInterval(products.minOrNull()!!, products.maxOrNull()!!)
+    }
+
+    operator fun div(other: AbstractInterval): AbstractInterval {
+        // We do not want to reason about a division by zero or by infinity, so we give up here
+        if (0L in other.lower..other.upper || isUnbounded || other.isUnbounded) {
+            return TOP
+        }
+        val quotients =
+            longArrayOf(
+                lower / other.lower,
+                lower / other.upper,
+                upper / other.lower,
+                upper / other.upper
+            )
+        return AbstractInterval(quotients.minOrNull()!!, quotients.maxOrNull()!!)
+    }
+
+    operator fun rem(other: AbstractInterval): AbstractInterval {
+        if (0L in other.lower..other.upper) {
+            return TOP
+        }
+        // The magnitude of the result is always smaller than the magnitude of the divisor and the
+        // sign follows the dividend (as in C, C++ and Java)
+        val bound = maxOf(absolute(other.lower), absolute(other.upper)) - 1
+        return AbstractInterval(
+            if (lower < 0) maxOf(-bound, lower) else 0,
+            if (upper > 0) minOf(bound, upper) else 0
+        )
+    }
+
+    /** Converts this interval into a [NumberSet], so that it can be used by the existing queries. */
+    fun toNumberSet(): NumberSet {
+        val interval = Interval()
+        interval.addValue(lower)
+        interval.addValue(upper)
+        return interval
+    }
+
+    override fun toString(): String {
+        val l = if (lower == Long.MIN_VALUE) "-inf" else lower.toString()
+        val u = if (upper == Long.MAX_VALUE) "+inf" else upper.toString()
+        return "[$l, $u]"
+    }
+
+    companion object {
+        val TOP = AbstractInterval(Long.MIN_VALUE, Long.MAX_VALUE)
+
+        fun of(value: Long): AbstractInterval {
+            return AbstractInterval(value, value)
+        }
+
+        private fun add(a: Long, b: Long): Long {
+            if (a == Long.MIN_VALUE || b == Long.MIN_VALUE) {
+                return if (a == Long.MAX_VALUE || b == Long.MAX_VALUE) 0 else Long.MIN_VALUE
+            }
+            if (a == Long.MAX_VALUE || b == Long.MAX_VALUE) {
+                return Long.MAX_VALUE
+            }
+            val r = a + b
+            // Overflow, if both operands have the same sign but the result has a different one
+            return if (((a xor r) and (b xor r)) < 0) {
+                if (a < 0) Long.MIN_VALUE else Long.MAX_VALUE
+            } else {
+                r
+            }
+        }
+
+        private fun negate(a: Long): Long {
+            return when (a) {
+                Long.MIN_VALUE -> Long.MAX_VALUE
+                Long.MAX_VALUE -> Long.MIN_VALUE
+                else -> -a
+            }
+        }
+
+        private fun absolute(a: Long): Long {
+            return if (a < 0) negate(a) else a
+        }
+
+        private fun multiply(a: Long, b: Long): Long {
+            if (a == 0L || b == 0L) {
+                return 0
+            }
+            val positive = (a < 0) == (b < 0)
+            val infinite =
+                a == Long.MIN_VALUE ||
+                    a == Long.MAX_VALUE ||
+                    b == Long.MIN_VALUE ||
+                    b == Long.MAX_VALUE
+            if (infinite) {
+                return if (positive) Long.MAX_VALUE else Long.MIN_VALUE
+            }
+            val hi = Math.multiplyHigh(a, b)
+            val lo = a * b
+            // The product fits into a long, if the high part is just the sign extension of the low
+            // part
+            return if ((hi == 0L && lo >= 0) || (hi == -1L && lo < 0)) {
+                lo
+            } else if (positive) {
+                Long.MAX_VALUE
+            } else {
+                Long.MIN_VALUE
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.analysis
+
+import de.fraunhofer.aisec.cpg.TranslationResult
+import de.fraunhofer.aisec.cpg.graph.Node
+import de.fraunhofer.aisec.cpg.passes.IntervalAnalysisPass
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+
+/**
+ * This [ValueEvaluator] returns the [Interval] which has been computed for a node by the
+ * [IntervalAnalysisPass]. This is a simple lookup, so it is considerably faster than evaluating the
+ * node backwards. If no interval is known for a node, the evaluation is delegated to [fallback].
+ */
+class IntervalEvaluator(
+    private val intervals: Map<Node, AbstractInterval>,
+    private val fallback: ValueEvaluator = MultiValueEvaluator()
+) : ValueEvaluator() {
+
+    /** Uses the intervals which the [IntervalAnalysisPass] stored in [result]. */
+    constructor(
+        result: TranslationResult
+    ) : this(IntervalAnalysisPass.getIntervals(result) ?: mapOf())
+
+    override val log: Logger
+        get() = LoggerFactory.getLogger(IntervalEvaluator::class.java)
+
+    override fun evaluate(node: Any?): Any? {
+        val interval = (node as? Node)?.let { intervals[it] }
+        if (interval != null) {
+            return if (interval.lower == interval.upper) interval.lower else interval.toNumberSet()
+        }
+
+        return fallback.evaluate(node)
+    }
+}
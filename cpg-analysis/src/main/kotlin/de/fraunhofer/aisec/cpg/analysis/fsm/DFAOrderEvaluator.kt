@@ -53,6 +53,9 @@ import org.slf4j.LoggerFactory
  * To improve the results, it is useful to run [de.fraunhofer.aisec.cpg.passes.UnreachableEOGPass]
  * prior to running the analysis and set the flag [eliminateUnreachableCode] to `true`. This removes
  * results which may occur in unreachable code.
+ *
+ * If many DFAs or bases have to be checked and no execution traces are required, consider the
+ * [TypestateEngine] which evaluates all of them in a single pass over the EOG.
  */
 open class DFAOrderEvaluator(
     var consideredBases: Set<Long>,
@@ -0,0 +1,439 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.analysis.fsm
+
+import de.fraunhofer.aisec.cpg.graph.Node
+import de.fraunhofer.aisec.cpg.graph.declarations.ParamVariableDeclaration
+import de.fraunhofer.aisec.cpg.graph.edge.Properties
+import de.fraunhofer.aisec.cpg.graph.statements.expressions.CallExpression
+import de.fraunhofer.aisec.cpg.graph.statements.expressions.DeclaredReferenceExpression
+import java.util.*
+
+/**
+ * A rule which is checked by the [TypestateEngine]. The inputs have the same meaning as the ones of
+ * the [DFAOrderEvaluator].
+ */
+class TypestateRule(
+    val name: String,
+    val dfa: DFA,
+    val consideredBases: Set<Long>,
+    val nodeToRelevantMethod: Map<Node, String>,
+    val thisPositionOfNode: Map<Node, Int> = mapOf()
+)
+
+/** A violation of a [TypestateRule] which has been found by the [TypestateEngine]. */
+class TypestateViolation(
+    val rule: TypestateRule,
+    /** The call which is not allowed or the node at which the analysis terminated. */
+    val node: Node,
+    /** The base (typically a [de.fraunhofer.aisec.cpg.graph.declarations.VariableDeclaration]). */
+    val base: Node,
+    val kind: Kind,
+    /** Whether the base was passed to a function which is not covered by the rule before. */
+    val interproceduralFlow: Boolean
+) {
+    enum class Kind {
+        /** The DFA does not contain a transition for the operation on (at least) one path. */
+        MISSING_TRANSITION,
+
+        /** The DFA is not in an accepting state at the end of (at least) one path. */
+        NON_ACCEPTING_TERMINATION
+    }
+
+    override fun toString(): String {
+        return "${rule.name}: $kind for base ${base.name} at $node"
+    }
+}
+
+/**
+ * A typestate analysis which checks any number of [TypestateRule]s in a single fixpoint iteration
+ * over the EOG. In contrast to the [DFAOrderEvaluator], it does not clone DFAs on branches and does
+ * not keep string representations of paths and states. Instead,
+ * - the states of each DFA are numbered and compiled into a transition table,
+ * - each (rule, base) pair gets a dense slot index, and
+ * - the state in front of each EOG node is a [LongArray] holding one bit set of the possible DFA
+ * states per slot.
+ *
+ * Branches are joined by the union of the possible states, so the analysis reports a violation if
+ * it occurs on at least one path. A base which has not been used on a path yet does not have to
+ * terminate in an accepting state on that path. DFAs with more than [MAX_STATES] states are not
+ * supported.
+ */
+class TypestateEngine(
+    val rules: List<TypestateRule>,
+    var eliminateUnreachableCode: Boolean = true,
+    var stopOnWrongBase: Boolean = true
+) {
+    /** A relevant operation of a node for a certain slot. */
+    private class Operation(val slot: Int, val op: Int)
+
+    private val compiled = rules.map { CompiledDFA(it.dfa) }
+
+    /** The rule index of each slot. */
+    private val slotRules = mutableListOf<Int>()
+
+    /** The base of each slot. */
+    private val slotBases = mutableListOf<Node>()
+
+    /** The slots of each rule, indexed by the base. */
+    private val ruleSlots = rules.map { IdentityHashMap<Node, Int>() }
+
+    /** All slots which belong to a certain base. */
+    private val baseSlots = IdentityHashMap<Node, MutableList<Int>>()
+
+    /** The operations of all relevant nodes. */
+    private val operations = IdentityHashMap<Node, MutableList<Operation>>()
+
+    init {
+        for ((index, rule) in rules.withIndex()) {
+            // We re-use the base resolution of the existing evaluator
+            val resolver =
+                DFAOrderEvaluator(
+                    rule.consideredBases,
+                    rule.nodeToRelevantMethod,
+                    rule.thisPositionOfNode
+                )
+            for ((node, op) in rule.nodeToRelevantMethod) {
+                if (node !is CallExpression) {
+                    continue
+                }
+
+                var base = resolver.getBaseOfNode(node)
+                if (base is DeclaredReferenceExpression && base.refersTo != null) {
+                    base = base.refersTo
+                }
+                if (base == null || !rule.consideredBases.contains(base.id)) {
+                    continue
+                }
+
+                // An operation which is unknown to the DFA can never be executed
+                val operation = Operation(slotOf(index, base), compiled[index].ops[op] ?: -1)
+                operations.computeIfAbsent(node) { mutableListOf() }.add(operation)
+            }
+        }
+    }
+
+    private fun slotOf(rule: Int, base: Node): Int {
+        return ruleSlots[rule].computeIfAbsent(base) {
+            val slot = slotRules.size
+            slotRules.add(rule)
+            slotBases.add(base)
+            baseSlots.computeIfAbsent(base) { mutableListOf() }.add(slot)
+            slot
+        }
+    }
+
+    /**
+     * Evaluates all [rules] on the EOG starting at [startNodes] (e.g., the declarations of the
+     * bases or the functions containing them) and returns the violations in the order in which the
+     * nodes have been reached.
+     */
+    fun evaluate(startNodes: Collection<Node>): List<TypestateViolation> {
+        // The state in front of each node. Arrays are never modified once they are stored here.
+        val inStates = IdentityHashMap<Node, LongArray>()
+        val visitOrder = mutableListOf<Node>()
+
+        val initial = LongArray(slotRules.size) { UNTRACKED }
+        val worklist = ArrayDeque<Node>()
+        val queued = Collections.newSetFromMap(IdentityHashMap<Node, Boolean>())
+        for (start in startNodes) {
+            inStates[start] = initial
+            visitOrder += start
+            if (queued.add(start)) {
+                worklist.add(start)
+            }
+        }
+
+        while (worklist.isNotEmpty()) {
+            val node = worklist.poll()
+            queued.remove(node)
+
+            val out = transfer(node, inStates[node]!!)
+            for (next in nextNodes(node)) {
+                val old = inStates[next]
+                val joined = if (old == null) out else join(old, out)
+                if (old == null) {
+                    visitOrder += next
+                } else if (joined === old) {
+                    continue
+                }
+
+                inStates[next] = joined
+                if (queued.add(next)) {
+                    worklist.add(next)
+                }
+            }
+        }
+
+        return collectViolations(visitOrder, inStates)
+    }
+
+    /**
+     * Checks the operations of all reached nodes in the final state and checks the states of all
+     * bases at the nodes which do not have any successor.
+     */
+    private fun collectViolations(
+        nodes: List<Node>,
+        inStates: Map<Node, LongArray>
+    ): List<TypestateViolation> {
+        val violations = mutableListOf<TypestateViolation>()
+        val terminated = BitSet(slotRules.size)
+
+        for (node in nodes) {
+            val state = inStates[node]!!
+            operations[node]?.forEach { operation ->
+                val mask = state[operation.slot]
+                val dfa = compiled[slotRules[operation.slot]]
+                if (dfa.fails(effectiveStates(mask, dfa), operation.op)) {
+                    violations +=
+                        violation(
+                            operation.slot,
+                            node,
+                            TypestateViolation.Kind.MISSING_TRANSITION,
+                            mask
+                        )
+                }
+            }
+
+            if (nextNodes(node).isEmpty()) {
+                val out = transfer(node, state)
+                for (slot in out.indices) {
+                    val dfa = compiled[slotRules[slot]]
+                    val states = out[slot] and dfa.stateMask
+                    if (states and dfa.acceptingMask.inv() != 0L && !terminated[slot]) {
+                        terminated.set(slot)
+                        violations +=
+                            violation(
+                                slot,
+                                node,
+                                TypestateViolation.Kind.NON_ACCEPTING_TERMINATION,
+                                out[slot]
+                            )
+                    }
+                }
+            }
+        }
+
+        return violations
+    }
+
+    private fun violation(
+        slot: Int,
+        node: Node,
+        kind: TypestateViolation.Kind,
+        mask: Long
+    ): TypestateViolation {
+        return TypestateViolation(
+            rules[slotRules[slot]],
+            node,
+            slotBases[slot],
+            kind,
+            mask and INTERPROCEDURAL != 0L
+        )
+    }
+
+    private fun transfer(node: Node, state: LongArray): LongArray {
+        val ops = operations[node]
+        if (ops != null) {
+            val result = state.copyOf()
+            for (operation in ops) {
+                val mask = result[operation.slot]
+                val dfa = compiled[slotRules[operation.slot]]
+                val states = effectiveStates(mask, dfa)
+                val failed = dfa.fails(states, operation.op)
+                // Paths on which the evaluation has already been stopped remain stopped
+                var next = dfa.step(states, operation.op) or (mask and ERROR)
+                if (failed) {
+                    // Stop the evaluation of this base on the failing paths or keep their states
+                    next = next or (if (stopOnWrongBase) ERROR else mask and ERROR.inv())
+                }
+
+                // A base which is a parameter of the function has an unknown history. Otherwise, a
+                // successful transition means that we know the state again.
+                val flag =
+                    when {
+                        slotBases[operation.slot] is ParamVariableDeclaration -> INTERPROCEDURAL
+                        failed -> mask and INTERPROCEDURAL
+                        else -> 0L
+                    }
+                result[operation.slot] = next or flag
+            }
+            return result
+        } else if (node is CallExpression) {
+            // This call is not covered by any rule, but it might modify one of our bases
+            val bases =
+                (node.arguments + listOfNotNull(node.base))
+                    .mapNotNull { (it as? DeclaredReferenceExpression)?.refersTo }
+                    .flatMap { baseSlots[it] ?: listOf() }
+            if (bases.isEmpty()) {
+                return state
+            }
+
+            val result = state.copyOf()
+            bases.forEach { result[it] = result[it] or INTERPROCEDURAL }
+            return result
+        }
+
+        return state
+    }
+
+    private fun nextNodes(node: Node): List<Node> {
+        return if (eliminateUnreachableCode) {
+            node.nextEOGEdges
+                .filter { it.getProperty(Properties.UNREACHABLE) != true }
+                .map { it.end }
+        } else {
+            node.nextEOG
+        }
+    }
+
+    /**
+     * The states a base can be in. A base which has not been used yet is in the start state of the
+     * DFA.
+     */
+    private fun effectiveStates(mask: Long, dfa: CompiledDFA): Long {
+        var states = mask and dfa.stateMask
+        if (mask and UNTRACKED != 0L) {
+            states = states or (1L shl dfa.start)
+        }
+        return states
+    }
+
+    /** Returns [a] if [b] does not add anything to it, or the union of both otherwise. */
+    private fun join(a: LongArray, b: LongArray): LongArray {
+        for (i in a.indices) {
+            if (a[i] or b[i] != a[i]) {
+                return LongArray(a.size) { a[it] or b[it] }
+            }
+        }
+        return a
+    }
+
+    /** A [DFA] whose states are numbered and whose transitions are stored in a table. */
+    private class CompiledDFA(dfa: DFA) {
+        val ops = mutableMapOf<String, Int>()
+        val start: Int
+        val stateMask: Long
+        val acceptingMask: Long
+
+        /** The target state for each state and op, or -1 if there is no such transition. */
+        private val transitions: IntArray
+
+        init {
+            val states = dfa.states.toList()
+            if (states.size > MAX_STATES) {
+                throw FSMBuilderException(
+                    "The typestate engine only supports DFAs with up to $MAX_STATES states"
+                )
+            }
+
+            val index = states.withIndex().associate { (i, state) -> state.name to i }
+            for (state in states) {
+                for (edge in state.outgoingEdges) {
+                    if (edge.op != DFA.EPSILON) {
+                        ops.computeIfAbsent(edge.op) { ops.size }
+                    }
+                }
+            }
+
+            transitions = IntArray(states.size * ops.size) { -1 }
+            for ((i, state) in states.withIndex()) {
+                for ((op, opIndex) in ops) {
+                    var next = state.nextNodeWithLabelOp(op)?.first ?: continue
+                    // Directly follow the ε edges, just as DFA.makeTransitionWithOp does
+                    while (true) {
+                        next = next.nextNodeWithLabelOp(DFA.EPSILON)?.first ?: break
+                    }
+                    transitions[i * ops.size + opIndex] = index[next.name]!!
+                }
+            }
+
+            start = states.indexOfFirst { it.isStart }
+            if (start < 0) {
+                throw FSMBuilderException("The DFA does not have a start state")
+            }
+            stateMask = (1L shl states.size) - 1
+            acceptingMask =
+                states.withIndex().fold(0L) { mask, (i, state) ->
+                    if (state.isAcceptingState) mask or (1L shl i) else mask
+                }
+        }
+
+        /** The states reachable from [states] with [op]. */
+        fun step(states: Long, op: Int): Long {
+            if (op < 0) {
+                return 0L
+            }
+
+            var result = 0L
+            forEachState(states) { state ->
+                val next = transitions[state * ops.size + op]
+                if (next >= 0) {
+                    result = result or (1L shl next)
+                }
+            }
+            return result
+        }
+
+        /** Whether at least one of [states] does not have a transition for [op]. */
+        fun fails(states: Long, op: Int): Boolean {
+            if (op < 0) {
+                return states != 0L
+            }
+
+            var result = false
+            forEachState(states) { state ->
+                if (transitions[state * ops.size + op] < 0) {
+                    result = true
+                }
+            }
+            return result
+        }
+
+        private inline fun forEachState(states: Long, action: (Int) -> Unit) {
+            var remaining = states
+            while (remaining != 0L) {
+                val state = java.lang.Long.numberOfTrailingZeros(remaining)
+                action(state)
+                remaining = remaining and (remaining - 1)
+            }
+        }
+    }
+
+    companion object {
+        /** The maximum number of states of a [DFA], the remaining bits are used as flags. */
+        const val MAX_STATES = 61
+
+        /** The base has not been used on (at least) one path. */
+        private const val UNTRACKED = 1L shl 61
+
+        /** The evaluation of the base has been stopped on (at least) one path. */
+        private const val ERROR = 1L shl 62
+
+        /** The base might have been modified by a function which is not covered by the rule. */
+        private const val INTERPROCEDURAL = 1L shl 63
+    }
+}
@@ -0,0 +1,595 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.passes
+
+import de.fraunhofer.aisec.cpg.TranslationResult
+import de.fraunhofer.aisec.cpg.analysis.AbstractInterval
+import de.fraunhofer.aisec.cpg.graph.Node
+import de.fraunhofer.aisec.cpg.graph.allChildren
+import de.fraunhofer.aisec.cpg.graph.declarations.FunctionDeclaration
+import de.fraunhofer.aisec.cpg.graph.declarations.ValueDeclaration
+import de.fraunhofer.aisec.cpg.graph.declarations.VariableDeclaration
+import de.fraunhofer.aisec.cpg.graph.edge.Properties
+import de.fraunhofer.aisec.cpg.graph.edge.PropertyEdge
+import de.fraunhofer.aisec.cpg.graph.statements.DoStatement
+import de.fraunhofer.aisec.cpg.graph.statements.ForStatement
+import de.fraunhofer.aisec.cpg.graph.statements.IfStatement
+import de.fraunhofer.aisec.cpg.graph.statements.WhileStatement
+import de.fraunhofer.aisec.cpg.graph.statements.expressions.*
+import de.fraunhofer.aisec.cpg.graph.types.ReferenceType
+import de.fraunhofer.aisec.cpg.graph.types.Type
+import de.fraunhofer.aisec.cpg.passes.order.DependsOn
+import java.util.*
+import java.util.concurrent.CompletableFuture
+
+/**
+ * The abstract state at a certain program point. It maps all tracked variables to their interval.
+ * Tracked variables which are not contained in the map can have any value. The map is never
+ * modified after it has been created, so that unchanged states can be shared between nodes.
+ */
+private typealias IntervalState = IdentityHashMap<ValueDeclaration, AbstractInterval>
+
+/**
+ * A forward abstract interpretation along the EOG which computes the possible values of every
+ * integer variable of a function as an [AbstractInterval]. In contrast to the
+ * [de.fraunhofer.aisec.cpg.analysis.MultiValueEvaluator], which evaluates each query backwards, the
+ * intervals are computed once per function and stored in the [TranslationResult], so that
+ * [de.fraunhofer.aisec.cpg.query.min] and [de.fraunhofer.aisec.cpg.query.max] can be answered by a
+ * simple lookup using the [de.fraunhofer.aisec.cpg.analysis.IntervalEvaluator].
+ *
+ * Functions are analyzed in parallel. Loop heads are widened after [wideningDelay] visits and the
+ * result is refined by [narrowingIterations] descending iterations afterwards. Conditions of
+ * branches and loops which compare a variable with a constant range restrict the interval of that
+ * variable on the respective branch. If the fixpoint of a function is not reached within
+ * [maxIterations] node visits, no intervals are stored for this function.
+ *
+ * Only local variables and parameters of an integral type whose address is never taken and which
+ * are never bound to a reference (including reference parameters of a call) are tracked.
+ * Arithmetic is computed on [Long] values and does not model the overflow behaviour of smaller
+ * integer types.
+ */
+@DependsOn(EvaluationOrderGraphPass::class)
+class IntervalAnalysisPass(
+    var maxIterations: Int = DEFAULT_MAX_ITERATIONS,
+    var wideningDelay: Int = DEFAULT_WIDENING_DELAY,
+    var narrowingIterations: Int = DEFAULT_NARROWING_ITERATIONS
+) : Pass() {
+
+    override fun accept(t: TranslationResult) {
+        val futures =
+            t.allChildren<FunctionDeclaration>().map { function ->
+                CompletableFuture.supplyAsync { analyzeFunction(function) }
+            }
+
+        // Merge the results in a deterministic order on the calling thread
+        val intervals = IdentityHashMap<Node, AbstractInterval>()
+        for (future in futures) {
+            intervals.putAll(future.join())
+        }
+
+        t.scratch[SCRATCH_KEY] = intervals
+    }
+
+    /**
+     * Computes the fixpoint for a single [function] and returns the intervals of its nodes. The
+     * result is empty, if the function has no body or the iteration budget is exceeded.
+     */
+    internal fun analyzeFunction(function: FunctionDeclaration): Map<Node, AbstractInterval> {
+        if (function.body == null) {
+            return mapOf()
+        }
+
+        val analysis = FunctionAnalysis(function)
+        if (!analysis.solve()) {
+            log.debug(
+                "Interval analysis of {} did not finish within {} iterations",
+                function.name,
+                maxIterations
+            )
+            return mapOf()
+        }
+
+        return analysis.collectIntervals()
+    }
+
+    private inner class FunctionAnalysis(val function: FunctionDeclaration) {
+        /** All nodes reachable from the function in reverse post-order. */
+        private val nodes = mutableListOf<Node>()
+
+        /** The reverse post-order index of each node in [nodes]. */
+        private val order = IdentityHashMap<Node, Int>()
+
+        /** Nodes which are the target of an EOG back edge. */
+        private val loopHeads = Collections.newSetFromMap(IdentityHashMap<Node, Boolean>())
+
+        /** The variables tracked by this analysis. */
+        private val tracked = Collections.newSetFromMap(IdentityHashMap<ValueDeclaration, Boolean>())
+
+        /** The state after each node. A missing entry means that the node is not reached (yet). */
+        private val outStates = IdentityHashMap<Node, IntervalState>()
+
+        private val visits = IdentityHashMap<Node, Int>()
+
+        init {
+            computeOrder()
+            collectTrackedVariables()
+        }
+
+        /**
+         * Runs the worklist algorithm until a fixpoint is reached. Returns false, if the iteration
+         * budget is exceeded.
+         */
+        fun solve(): Boolean {
+            var budget = maxIterations
+
+            // Always process the node with the smallest reverse post-order index first, so that
+            // loops are stabilized before their successors are visited.
+            val worklist = TreeSet<Int>()
+            worklist.add(0)
+            while (worklist.isNotEmpty()) {
+                if (budget-- <= 0) {
+                    return false
+                }
+
+                val node = nodes[worklist.pollFirst()!!]
+                val count = (visits[node] ?: 0) + 1
+                visits[node] = count
+
+                var out = transfer(node, inState(node) ?: continue)
+                val old = outStates[node]
+                if (old != null && node in loopHeads && count > wideningDelay) {
+                    out = widen(old, out)
+                }
+                if (old != null && sameState(old, out)) {
+                    continue
+                }
+
+                outStates[node] = out
+                node.nextEOGEdges.filter(::isReachable).forEach { worklist.add(order[it.end]!!) }
+            }
+
+            // Descending iterations starting from the post-fixpoint to recover precision which
+            // was lost due to widening
+            for (i in 0 until narrowingIterations) {
+                for (node in nodes) {
+                    val inState = inState(node) ?: continue
+                    outStates[node] = transfer(node, inState)
+                }
+            }
+
+            return true
+        }
+
+        /**
+         * Evaluates all expressions and variable declarations in the state before them. Increments
+         * and decrements are evaluated in the state after them, just like their parents see them.
+         */
+        fun collectIntervals(): Map<Node, AbstractInterval> {
+            val intervals = IdentityHashMap<Node, AbstractInterval>()
+            for (node in nodes) {
+                val value =
+                    when {
+                        node is VariableDeclaration -> outStates[node]?.get(node)
+                        node is UnaryOperator && node.operatorCode in STEP_OPERATORS ->
+                            outStates[node]?.let { evaluate(node, it) }
+                        node is Expression -> inState(node)?.let { evaluate(node, it) }
+                        else -> null
+                    }
+                if (value != null && !value.isTop) {
+                    intervals[node] = value
+                }
+            }
+            return intervals
+        }
+
+        private fun computeOrder() {
+            // Iterative depth-first search which also detects the back edges of loops
+            val postOrder = mutableListOf<Node>()
+            val onStack = Collections.newSetFromMap(IdentityHashMap<Node, Boolean>())
+            val seen = Collections.newSetFromMap(IdentityHashMap<Node, Boolean>())
+            val stack = ArrayDeque<Pair<Node, Iterator<PropertyEdge<Node>>>>()
+
+            seen.add(function)
+            onStack.add(function)
+            stack.push(Pair(function, function.nextEOGEdges.filter(::isReachable).iterator()))
+            while (stack.isNotEmpty()) {
+                val (node, edges) = stack.peek()
+                if (edges.hasNext()) {
+                    val next = edges.next().end
+                    if (next in onStack) {
+                        loopHeads.add(next)
+                    } else if (seen.add(next)) {
+                        onStack.add(next)
+                        stack.push(Pair(next, next.nextEOGEdges.filter(::isReachable).iterator()))
+                    }
+                } else {
+                    stack.pop()
+                    onStack.remove(node)
+                    postOrder.add(node)
+                }
+            }
+
+            nodes.addAll(postOrder.asReversed())
+            nodes.forEachIndexed { index, node -> order[node] = index }
+        }
+
+        private fun collectTrackedVariables() {
+            val candidates = mutableListOf<ValueDeclaration>()
+            candidates.addAll(function.parameters.filter { isIntegral(it.type) })
+            candidates.addAll(
+                function.allChildren<VariableDeclaration> { isIntegral(it.type) }
+            )
+
+            // Variables whose address is taken or which are bound to a reference can be modified
+            // through an alias, so we give up on them
+            val escaped = IdentityHashMap<ValueDeclaration, Boolean>()
+            function
+                .allChildren<UnaryOperator> { it.operatorCode == "&" }
+                .forEach { markEscaped(it.input, escaped) }
+            function
+                .allChildren<VariableDeclaration> { it.type is ReferenceType }
+                .forEach { markEscaped(it.initializer, escaped) }
+            for (call in function.allChildren<CallExpression>()) {
+                for ((index, argument) in call.arguments.withIndex()) {
+                    val byReference =
+                        call.invokes.any { invoked ->
+                            invoked.parameters.getOrNull(index)?.type is ReferenceType
+                        }
+                    if (byReference) {
+                        markEscaped(argument, escaped)
+                    }
+                }
+            }
+
+            tracked.addAll(candidates.filter { it !in escaped })
+        }
+
+        private fun markEscaped(
+            expression: Expression?,
+            escaped: IdentityHashMap<ValueDeclaration, Boolean>
+        ) {
+            when (expression) {
+                is DeclaredReferenceExpression ->
+                    (expression.refersTo as? ValueDeclaration)?.let { escaped[it] = true }
+                is InitializerListExpression ->
+                    expression.initializers.forEach { markEscaped(it, escaped) }
+                else -> {}
+            }
+        }
+
+        /** Joins the states of all predecessors, taking the conditions of branches into account. */
+        private fun inState(node: Node): IntervalState? {
+            if (node === function) {
+                return IntervalState()
+            }
+
+            var result: IntervalState? = null
+            for (edge in node.prevEOGEdges) {
+                if (!isReachable(edge)) {
+                    continue
+                }
+                val prevState = outStates[edge.start] ?: continue
+                val edgeState = refine(edge, prevState) ?: continue
+                result = if (result == null) edgeState else join(result, edgeState)
+            }
+            return result
+        }
+
+        private fun transfer(node: Node, state: IntervalState): IntervalState {
+            return when {
+                node is VariableDeclaration && node in tracked -> {
+                    update(state, node, node.initializer?.let { evaluate(it, state) })
+                }
+                node is BinaryOperator && node.operatorCode in ASSIGNMENT_OPERATORS -> {
+                    val target = trackedDeclaration(node.lhs) ?: return state
+                    val rhs = evaluate(node.rhs, state)
+                    // Operators that are not modelled by arithmetic, such as <<=, yield TOP
+                    val value =
+                        when (node.operatorCode) {
+                            "=" -> rhs
+                            else ->
+                                arithmetic(
+                                    node.operatorCode.dropLast(1),
+                                    state[target] ?: AbstractInterval.TOP,
+                                    rhs
+                                )
+                        }
+                    update(state, target, value)
+                }
+                node is UnaryOperator && node.operatorCode in STEP_OPERATORS -> {
+                    val target = trackedDeclaration(node.input) ?: return state
+                    val step = AbstractInterval.of(if (node.operatorCode == "++") 1 else -1)
+                    update(state, target, state[target]?.plus(step))
+                }
+                else -> state
+            }
+        }
+
+        /** Computes the interval of [expr] in the given [state] without modifying the state. */
+        private fun evaluate(expr: Expression?, state: IntervalState): AbstractInterval {
+            return when (expr) {
+                is Literal<*> -> {
+                    when (val value = expr.value) {
+                        is Long,
+                        is Int,
+                        is Short,
+                        is Byte -> AbstractInterval.of((value as Number).toLong())
+                        is Char -> AbstractInterval.of(value.code.toLong())
+                        else -> AbstractInterval.TOP
+                    }
+                }
+                is DeclaredReferenceExpression -> {
+                    trackedDeclaration(expr)?.let { state[it] } ?: AbstractInterval.TOP
+                }
+                is BinaryOperator -> {
+                    when (expr.operatorCode) {
+                        "=" -> evaluate(expr.rhs, state)
+                        else ->
+                            arithmetic(
+                                expr.operatorCode,
+                                evaluate(expr.lhs, state),
+                                evaluate(expr.rhs, state)
+                            )
+                    }
+                }
+                is UnaryOperator -> {
+                    val input = evaluate(expr.input, state)
+                    when (expr.operatorCode) {
+                        "-" -> -input
+                        "+" -> input
+                        // The EOG visits the operator before its parent, so the state already
+                        // contains the new value and a postfix operator yields the old one
+                        "++" -> if (expr.isPostfix) input - AbstractInterval.of(1) else input
+                        "--" -> if (expr.isPostfix) input + AbstractInterval.of(1) else input
+                        else -> AbstractInterval.TOP
+                    }
+                }
+                is CastExpression -> evaluate(expr.expression, state)
+                is ConditionalExpression -> {
+                    evaluate(expr.thenExpr, state).join(evaluate(expr.elseExpr, state))
+                }
+                else -> AbstractInterval.TOP
+            }
+        }
+
+        /**
+         * Restricts the state along [edge], if it leaves a branching statement whose condition
+         * compares a tracked variable. Returns `null`, if the branch cannot be taken in [state].
+         */
+        private fun refine(edge: PropertyEdge<Node>, state: IntervalState): IntervalState? {
+            val condition =
+                when (val start = edge.start) {
+                    is IfStatement -> start.condition
+                    is WhileStatement -> start.condition
+                    is ForStatement -> start.condition
+                    is DoStatement -> start.condition
+                    else -> null
+                }
+                    as? BinaryOperator
+                    ?: return state
+
+            // The BRANCH property is only set for if statements, for loops the first edge leads
+            // into the loop body (see also UnreachableEOGPass)
+            val branch =
+                edge.getProperty(Properties.BRANCH) as? Boolean
+                    ?: when (edge.getProperty(Properties.INDEX)) {
+                        0 -> true
+                        1 -> false
+                        else -> return state
+                    }
+
+            val operator =
+                if (branch) condition.operatorCode else NEGATED_COMPARISONS[condition.operatorCode]
+            operator ?: return state
+
+            var result = state
+            trackedDeclaration(condition.lhs)?.let { lhs ->
+                val value = state[lhs] ?: AbstractInterval.TOP
+                val restricted = restrict(value, operator, evaluate(condition.rhs, state))
+                result = update(result, lhs, restricted ?: return null)
+            }
+            trackedDeclaration(condition.rhs)?.let { rhs ->
+                val value = result[rhs] ?: AbstractInterval.TOP
+                val restricted =
+                    restrict(value, MIRRORED_COMPARISONS[operator]!!, evaluate(condition.lhs, state))
+                result = update(result, rhs, restricted ?: return null)
+            }
+            return result
+        }
+
+        private fun trackedDeclaration(expr: Expression?): ValueDeclaration? {
+            val declaration = (expr as? DeclaredReferenceExpression)?.refersTo as? ValueDeclaration
+            return if (declaration in tracked) declaration else null
+        }
+    }
+
+    override fun cleanup() {
+        // nothing to do
+    }
+
+    companion object {
+        /** The key of the computed intervals in [TranslationResult.getScratch]. */
+        val SCRATCH_KEY: String = IntervalAnalysisPass::class.java.name
+
+        const val DEFAULT_MAX_ITERATIONS = 100_000
+        const val DEFAULT_WIDENING_DELAY = 2
+        const val DEFAULT_NARROWING_ITERATIONS = 2
+
+        /** All operators that write their left-hand side. */
+        private val ASSIGNMENT_OPERATORS =
+            setOf("=", "+=", "-=", "*=", "/=", "%=", "<<=", ">>=", ">>>=", "&=", "|=", "^=")
+
+        private val STEP_OPERATORS = setOf("++", "--")
+
+        private val NEGATED_COMPARISONS =
+            mapOf("<" to ">=", "<=" to ">", ">" to "<=", ">=" to "<", "==" to "!=", "!=" to "==")
+
+        private val MIRRORED_COMPARISONS =
+            mapOf("<" to ">", "<=" to ">=", ">" to "<", ">=" to "<=", "==" to "==", "!=" to "!=")
+
+        private val INTEGRAL_TYPES =
+            setOf(
+                "byte",
+                "char",
+                "short",
+                "int",
+                "long",
+                "long long",
+                "signed char",
+                "unsigned char",
+                "unsigned short",
+                "unsigned int",
+                "unsigned",
+                "unsigned long",
+                "unsigned long long",
+                "size_t",
+                "int8_t",
+                "int16_t",
+                "int32_t",
+                "int64_t",
+                "uint8_t",
+                "uint16_t",
+                "uint32_t",
+                "uint64_t"
+            )
+
+        /**
+         * Returns the intervals computed by the [IntervalAnalysisPass] for [result] or `null`, if
+         * the pass has not been executed.
+         */
+        @JvmStatic
+        fun getIntervals(result: TranslationResult): Map<Node, AbstractInterval>? {
+            @Suppress("UNCHECKED_CAST")
+            return result.scratch[SCRATCH_KEY] as? Map<Node, AbstractInterval>
+        }
+
+        private fun isIntegral(type: Type): Boolean {
+            return type.typeName in INTEGRAL_TYPES
+        }
+
+        private fun isReachable(edge: PropertyEdge<Node>): Boolean {
+            return edge.getProperty(Properties.UNREACHABLE) != true
+        }
+
+        private fun arithmetic(
+            operator: String,
+            lhs: AbstractInterval,
+            rhs: AbstractInterval
+        ): AbstractInterval {
+            return when (operator) {
+                "+" -> lhs + rhs
+                "-" -> lhs - rhs
+                "*" -> lhs * rhs
+                "/" -> lhs / rhs
+                "%" -> lhs % rhs
+                else -> AbstractInterval.TOP
+            }
+        }
+
+        /**
+         * Restricts [value] to the values `x` for which `x <operator> other` can hold. Returns
+         * `null`, if no such value exists.
+         */
+        private fun restrict(
+            value: AbstractInterval,
+            operator: String,
+            other: AbstractInterval
+        ): AbstractInterval? {
+            return when (operator) {
+                "<" ->
+                    if (other.upper == Long.MIN_VALUE) null
+                    else value.meet(AbstractInterval(Long.MIN_VALUE, other.upper - 1))
+                "<=" -> value.meet(AbstractInterval(Long.MIN_VALUE, other.upper))
+                ">" ->
+                    if (other.lower == Long.MAX_VALUE) null
+                    else value.meet(AbstractInterval(other.lower + 1, Long.MAX_VALUE))
+                ">=" -> value.meet(AbstractInterval(other.lower, Long.MAX_VALUE))
+                "==" -> value.meet(other)
+                "!=" ->
+                    when {
+                        other.lower != other.upper -> value
+                        value.lower == other.lower && value.upper == other.upper -> null
+                        value.lower == other.lower -> AbstractInterval(value.lower + 1, value.upper)
+                        value.upper == other.upper -> AbstractInterval(value.lower, value.upper - 1)
+                        else -> value
+                    }
+                else -> value
+            }
+        }
+
+        private fun update(
+            state: IntervalState,
+            declaration: ValueDeclaration,
+            value: AbstractInterval?
+        ): IntervalState {
+            val old = state[declaration]
+            if (old == value || (old == null && value?.isTop == true)) {
+                return state
+            }
+
+            val result = IntervalState(state)
+            if (value == null || value.isTop) {
+                result.remove(declaration)
+            } else {
+                result[declaration] = value
+            }
+            return result
+        }
+
+        private fun join(a: IntervalState, b: IntervalState): IntervalState {
+            if (a === b) {
+                return a
+            }
+
+            // Variables missing in one of the states can have any value
+            val result = IntervalState()
+            for ((declaration, value) in a) {
+                val other = b[declaration] ?: continue
+                val joined = value.join(other)
+                if (!joined.isTop) {
+                    result[declaration] = joined
+                }
+            }
+            return result
+        }
+
+        private fun widen(old: IntervalState, new: IntervalState): IntervalState {
+            val result = IntervalState()
+            for ((declaration, value) in old) {
+                val other = new[declaration] ?: continue
+                val widened = value.widen(other)
+                if (!widened.isTop) {
+                    result[declaration] = widened
+                }
+            }
+            return result
+        }
+
+        private fun sameState(a: IntervalState, b: IntervalState): Boolean {
+            return a === b || (a.size == b.size && a.all { (key, value) -> b[key] == value })
+        }
+    }
+}
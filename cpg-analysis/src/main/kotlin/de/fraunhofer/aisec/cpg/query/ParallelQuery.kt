@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.query
+
+import de.fraunhofer.aisec.cpg.TranslationResult
+import de.fraunhofer.aisec.cpg.graph.Component
+import de.fraunhofer.aisec.cpg.graph.Node
+import de.fraunhofer.aisec.cpg.graph.NodeIndex
+import de.fraunhofer.aisec.cpg.helpers.FlightRecorder
+import de.fraunhofer.aisec.cpg.helpers.finish
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.Executor
+import java.util.concurrent.ForkJoinPool
+
+/**
+ * Evaluates the queries [all], [allExtended], [exists] and [existsExtended] in parallel on the AST
+ * below [root].
+ *
+ * The AST is split by translation unit and each translation unit gets its own [NodeIndex], so that
+ * the candidates of a certain type are only collected once per [ParallelQuery] instead of
+ * flattening the whole AST for each query. The candidates are then evaluated in chunks of
+ * [chunkSize] nodes on the [executor]. The results are merged in the order of the candidates, so
+ * they are the same as the ones of the sequential queries (e.g. [Node.allExtended]).
+ *
+ * The indices are not updated if the graph changes. In this case, a new [ParallelQuery] has to be
+ * created.
+ */
+class ParallelQuery(
+    val root: Node,
+    val executor: Executor = ForkJoinPool.commonPool(),
+    val chunkSize: Int = 256
+) {
+    /**
+     * A part of the AST, which is either a single node above the translation units (e.g. a
+     * [Component]) or the index of a translation unit.
+     */
+    private class Segment(val node: Node? = null, val index: NodeIndex? = null) {
+        fun <T> ofType(type: Class<T>): List<T> {
+            return index?.ofType(type) ?: listOfNotNull(node).filterIsInstance(type)
+        }
+    }
+
+    /** The segments of the AST in the order of a traversal of the AST. */
+    private val segments: List<Segment> by lazy {
+        val segments = mutableListOf<Segment>()
+        when (root) {
+            is TranslationResult -> {
+                segments += Segment(root)
+                for (component in root.components) {
+                    segments += Segment(component)
+                    component.translationUnits.forEach {
+                        segments += Segment(index = NodeIndex(it))
+                    }
+                }
+            }
+            is Component -> {
+                segments += Segment(root)
+                root.translationUnits.forEach { segments += Segment(index = NodeIndex(it)) }
+            }
+            else -> segments += Segment(index = NodeIndex(root))
+        }
+
+        // Build the indices of all translation units in parallel, one task per translation unit
+        evaluate(segments.mapNotNull { it.index }, 1) { chunk -> chunk.forEach { it.nodes } }
+
+        segments
+    }
+
+    /** Returns all nodes of [type] which fulfill [sel]. */
+    fun <T> candidates(type: Class<T>, sel: ((T) -> Boolean)? = null): List<T> {
+        val nodes = segments.flatMap { it.ofType(type) }
+        return if (sel != null) nodes.filter(sel) else nodes
+    }
+
+    /** Parallel version of [Node.all]. */
+    inline fun <reified T> all(
+        noinline sel: ((T) -> Boolean)? = null,
+        noinline mustSatisfy: (T) -> Boolean
+    ): Pair<Boolean, List<Node>> {
+        return all(T::class.java, sel, mustSatisfy)
+    }
+
+    /** Parallel version of [Node.all] for nodes of [type]. */
+    fun <T> all(
+        type: Class<T>,
+        sel: ((T) -> Boolean)?,
+        mustSatisfy: (T) -> Boolean
+    ): Pair<Boolean, List<Node>> {
+        val event = FlightRecorder.begin { QueryEvent() }
+        val nodes = candidates(type, sel)
+        val failedNodes =
+            evaluate(nodes) { chunk -> chunk.filterNot(mustSatisfy) }.flatten() as List<Node>
+        event.record("all", type, nodes.size, failedNodes.isEmpty())
+
+        return Pair(failedNodes.isEmpty(), failedNodes)
+    }
+
+    /** Parallel version of [Node.allExtended]. */
+    inline fun <reified T> allExtended(
+        noinline sel: ((T) -> Boolean)? = null,
+        noinline mustSatisfy: (T) -> QueryTree<Boolean>
+    ): QueryTree<Boolean> {
+        return allExtended(T::class.java, sel, mustSatisfy)
+    }
+
+    /** Parallel version of [Node.allExtended] for nodes of [type]. */
+    fun <T> allExtended(
+        type: Class<T>,
+        sel: ((T) -> Boolean)?,
+        mustSatisfy: (T) -> QueryTree<Boolean>
+    ): QueryTree<Boolean> {
+        val event = FlightRecorder.begin { QueryEvent() }
+        val nodes = candidates(type, sel)
+        val queryChildren = evaluateExtended(nodes, mustSatisfy)
+        val tree = QueryTree(queryChildren.all { it.value }, queryChildren.toMutableList(), "all")
+        event.record("allExtended", type, nodes.size, tree.value)
+
+        return tree
+    }
+
+    /** Parallel version of [Node.exists]. */
+    inline fun <reified T : Node> exists(
+        noinline sel: ((T) -> Boolean)? = null,
+        noinline mustSatisfy: (T) -> Boolean
+    ): Pair<Boolean, List<Node>> {
+        return exists(T::class.java, sel, mustSatisfy)
+    }
+
+    /** Parallel version of [Node.exists] for nodes of [type]. */
+    fun <T : Node> exists(
+        type: Class<T>,
+        sel: ((T) -> Boolean)?,
+        mustSatisfy: (T) -> Boolean
+    ): Pair<Boolean, List<Node>> {
+        val event = FlightRecorder.begin { QueryEvent() }
+        val nodes = candidates(type, sel)
+        val queryChildren = evaluate(nodes) { chunk -> chunk.filter(mustSatisfy) }.flatten()
+        event.record("exists", type, nodes.size, queryChildren.isNotEmpty())
+
+        return Pair(queryChildren.isNotEmpty(), queryChildren)
+    }
+
+    /** Parallel version of [Node.existsExtended]. */
+    inline fun <reified T : Node> existsExtended(
+        noinline sel: ((T) -> Boolean)? = null,
+        noinline mustSatisfy: (T) -> QueryTree<Boolean>
+    ): QueryTree<Boolean> {
+        return existsExtended(T::class.java, sel, mustSatisfy)
+    }
+
+    /** Parallel version of [Node.existsExtended] for nodes of [type]. */
+    fun <T : Node> existsExtended(
+        type: Class<T>,
+        sel: ((T) -> Boolean)?,
+        mustSatisfy: (T) -> QueryTree<Boolean>
+    ): QueryTree<Boolean> {
+        val event = FlightRecorder.begin { QueryEvent() }
+        val nodes = candidates(type, sel)
+        val queryChildren = evaluateExtended(nodes, mustSatisfy)
+        val tree =
+            QueryTree(queryChildren.any { it.value }, queryChildren.toMutableList(), "exists")
+        event.record("existsExtended", type, nodes.size, tree.value)
+
+        return tree
+    }
+
+    /** Finishes the [QueryEvent] of a parallel query, if the events are enabled. */
+    private fun QueryEvent?.record(
+        operation: String,
+        type: Class<*>,
+        candidates: Int,
+        result: Boolean
+    ) {
+        finish {
+            this.operation = operation
+            nodeType = type.simpleName
+            this.candidates = candidates
+            this.result = result
+            parallel = true
+        }
+    }
+
+    private fun <T> evaluateExtended(
+        nodes: List<T>,
+        mustSatisfy: (T) -> QueryTree<Boolean>
+    ): List<QueryTree<Boolean>> {
+        // The worker threads have to use the same mode as the calling thread
+        val explain = explanationsEnabled.get()
+        return evaluate(nodes) { chunk ->
+                val run = {
+                    chunk.map { n ->
+                        val res = mustSatisfy(n)
+                        if (explain) {
+                            res.stringRepresentation = "Starting at $n: " + res.stringRepresentation
+                        }
+                        res
+                    }
+                }
+                if (explain) run() else withoutExplanations(run)
+            }
+            .flatten()
+    }
+
+    /**
+     * Applies [block] to the chunks of [size] elements of [nodes] on the [executor] and returns the
+     * results in the order of the chunks.
+     */
+    private fun <T, R> evaluate(
+        nodes: List<T>,
+        size: Int = chunkSize,
+        block: (List<T>) -> R
+    ): List<R> {
+        val futures =
+            nodes.chunked(size).map { chunk ->
+                CompletableFuture.supplyAsync({ block(chunk) }, executor)
+            }
+
+        return futures.map {
+            try {
+                it.join()
+            } catch (e: CompletionException) {
+                // Throw the exception of the query itself
+                throw e.cause ?: e
+            }
+        }
+    }
+}
@@ -35,6 +35,8 @@ import de.fraunhofer.aisec.cpg.graph.statements.expressions.Expression
 import de.fraunhofer.aisec.cpg.graph.statements.expressions.Literal
 import de.fraunhofer.aisec.cpg.graph.statements.expressions.MemberExpression
 import de.fraunhofer.aisec.cpg.graph.types.Type
+import de.fraunhofer.aisec.cpg.helpers.FlightRecorder
+import de.fraunhofer.aisec.cpg.helpers.finish
 
 /**
  * Evaluates if the conditions specified in [mustSatisfy] hold for all nodes in the graph.
@@ -49,6 +51,7 @@ inline fun <reified T> Node.allExtended(
     noinline sel: ((T) -> Boolean)? = null,
     noinline mustSatisfy: (T) -> QueryTree<Boolean>
 ): QueryTree<Boolean> {
+    val event = FlightRecorder.begin { QueryEvent() }
     val nodes = this.allChildren(sel)
 
     val queryChildren =
@@ -57,7 +60,15 @@ inline fun <reified T> Node.allExtended(
             res.stringRepresentation = "Starting at $n: " + res.stringRepresentation
             res
         }
-    return QueryTree(queryChildren.all { it.value }, queryChildren.toMutableList(), "all")
+    val tree = QueryTree(queryChildren.all { it.value }, queryChildren.toMutableList(), "all")
+    event.finish {
+        operation = "allExtended"
+        nodeType = T::class.java.simpleName
+        candidates = nodes.size
+        result = tree.value
+    }
+
+    return tree
 }
 
 /**
@@ -70,9 +81,17 @@ inline fun <reified T> Node.all(
     noinline sel: ((T) -> Boolean)? = null,
     noinline mustSatisfy: (T) -> Boolean
 ): Pair<Boolean, List<Node>> {
+    val event = FlightRecorder.begin { QueryEvent() }
     val nodes = this.allChildren(sel)
 
     val failedNodes = nodes.filterNot(mustSatisfy) as List<Node>
+    event.finish {
+        operation = "all"
+        nodeType = T::class.java.simpleName
+        candidates = nodes.size
+        result = failedNodes.isEmpty()
+    }
+
     return Pair(failedNodes.isEmpty(), failedNodes)
 }
 
@@ -87,6 +106,7 @@ inline fun <reified T : Node> Node.existsExtended(
     noinline sel: ((T) -> Boolean)? = null,
     noinline mustSatisfy: (T) -> QueryTree<Boolean>
 ): QueryTree<Boolean> {
+    val event = FlightRecorder.begin { QueryEvent() }
     val nodes = this.allChildren(sel)
 
     val queryChildren =
@@ -95,7 +115,15 @@ inline fun <reified T : Node> Node.existsExtended(
             res.stringRepresentation = "Starting at $n: " + res.stringRepresentation
             res
         }
-    return QueryTree(queryChildren.any { it.value }, queryChildren.toMutableList(), "exists")
+    val tree = QueryTree(queryChildren.any { it.value }, queryChildren.toMutableList(), "exists")
+    event.finish {
+        operation = "existsExtended"
+        nodeType = T::class.java.simpleName
+        candidates = nodes.size
+        result = tree.value
+    }
+
+    return tree
 }
 
 /**
@@ -107,12 +135,113 @@ inline fun <reified T : Node> Node.exists(
     noinline sel: ((T) -> Boolean)? = null,
     noinline mustSatisfy: (T) -> Boolean
 ): Pair<Boolean, List<Node>> {
+    val event = FlightRecorder.begin { QueryEvent() }
     val nodes = this.allChildren(sel)
 
     val queryChildren = nodes.filter(mustSatisfy) as List<Node>
+    event.finish {
+        operation = "exists"
+        nodeType = T::class.java.simpleName
+        candidates = nodes.size
+        result = queryChildren.isNotEmpty()
+    }
+
     return Pair(queryChildren.isNotEmpty(), queryChildren)
 }
 
+/**
+ * Evaluates if the conditions specified in [mustSatisfy] hold for all nodes in the graph without
+ * building the explanation of the query (see [withoutExplanations]). The evaluation stops at the
+ * first node which does not fulfill [mustSatisfy].
+ *
+ * The optional argument [sel] can be used to filter nodes for which the condition has to be
+ * fulfilled. The explanation for the violating node can be retrieved with
+ * [FastQueryResult.explain] and corresponds to the one of [allExtended].
+ */
+inline fun <reified T> Node.allFast(
+    noinline sel: ((T) -> Boolean)? = null,
+    noinline mustSatisfy: (T) -> QueryTree<Boolean>
+): FastQueryResult<T> {
+    val event = FlightRecorder.begin { QueryEvent() }
+    val nodes = this.allChildren(sel)
+
+    val fast = FastQueryResult.all(nodes, mustSatisfy)
+    event.finish {
+        operation = "allFast"
+        nodeType = T::class.java.simpleName
+        candidates = nodes.size
+        result = fast.value
+    }
+
+    return fast
+}
+
+/**
+ * Evaluates if the conditions specified in [mustSatisfy] hold for at least one node in the graph
+ * without building the explanation of the query (see [withoutExplanations]). The evaluation stops
+ * at the first node which fulfills [mustSatisfy].
+ *
+ * The optional argument [sel] can be used to filter nodes which are considered during the
+ * evaluation. The explanation for the witness can be retrieved with [FastQueryResult.explain] and
+ * corresponds to the one of [existsExtended].
+ */
+inline fun <reified T : Node> Node.existsFast(
+    noinline sel: ((T) -> Boolean)? = null,
+    noinline mustSatisfy: (T) -> QueryTree<Boolean>
+): FastQueryResult<T> {
+    val event = FlightRecorder.begin { QueryEvent() }
+    val nodes = this.allChildren(sel)
+
+    val fast = FastQueryResult.exists(nodes, mustSatisfy)
+    event.finish {
+        operation = "existsFast"
+        nodeType = T::class.java.simpleName
+        candidates = nodes.size
+        result = fast.value
+    }
+
+    return fast
+}
+
+/**
+ * The result of [allFast] or [existsFast]. It holds the [value] of the query and the [nodes] which
+ * decided it, i.e., the first node violating the condition of [allFast] or the first node
+ * fulfilling the condition of [existsFast]. The [QueryTree] explaining the result is only built
+ * when calling [explain].
+ */
+class FastQueryResult<T>(
+    val value: Boolean,
+    val nodes: List<T>,
+    private val operation: String,
+    private val mustSatisfy: (T) -> QueryTree<Boolean>
+) {
+    /**
+     * Evaluates the condition again for the [nodes] which decided the result and returns the
+     * resulting [QueryTree] with all steps of the evaluation.
+     */
+    fun explain(): QueryTree<Boolean> {
+        val queryChildren =
+            nodes.map { n ->
+                val res = mustSatisfy(n)
+                res.stringRepresentation = "Starting at $n: " + res.stringRepresentation
+                res
+            }
+        return QueryTree(value, queryChildren.toMutableList(), operation)
+    }
+
+    companion object {
+        fun <T> all(nodes: List<T>, mustSatisfy: (T) -> QueryTree<Boolean>): FastQueryResult<T> {
+            val failed = withoutExplanations { nodes.firstOrNull { !mustSatisfy(it).value } }
+            return FastQueryResult(failed == null, listOfNotNull(failed), "all", mustSatisfy)
+        }
+
+        fun <T> exists(nodes: List<T>, mustSatisfy: (T) -> QueryTree<Boolean>): FastQueryResult<T> {
+            val witness = withoutExplanations { nodes.firstOrNull { mustSatisfy(it).value } }
+            return FastQueryResult(witness != null, listOfNotNull(witness), "exists", mustSatisfy)
+        }
+    }
+}
+
 /**
  * Evaluates the size of a node. The implementation is very, very basic!
  *
@@ -120,7 +249,7 @@ inline fun <reified T : Node> Node.exists(
  */
 fun sizeof(n: Node?, eval: ValueEvaluator = SizeEvaluator()): QueryTree<Int> {
     // The cast could potentially go wrong, but if it's not an int, it's not really a size
-    return QueryTree(eval.evaluate(n) as? Int ?: -1, mutableListOf(), "sizeof($n)")
+    return explained(eval.evaluate(n) as? Int ?: -1, { mutableListOf() }) { "sizeof($n)" }
 }
 
 /**
@@ -131,10 +260,10 @@ fun sizeof(n: Node?, eval: ValueEvaluator = SizeEvaluator()): QueryTree<Int> {
 fun min(n: Node?, eval: ValueEvaluator = MultiValueEvaluator()): QueryTree<Number> {
     val evalRes = eval.evaluate(n)
     if (evalRes is Number) {
-        return QueryTree(evalRes, mutableListOf(QueryTree(n)), "min($n)")
+        return explained(evalRes, { mutableListOf(QueryTree(n)) }) { "min($n)" }
     }
     // Extend this when we have other evaluators.
-    return QueryTree((evalRes as? NumberSet)?.min() ?: -1, mutableListOf(), "min($n)")
+    return explained((evalRes as? NumberSet)?.min() ?: -1, { mutableListOf() }) { "min($n)" }
 }
 
 /**
@@ -155,7 +284,7 @@ fun min(n: List<Node>?, eval: ValueEvaluator = MultiValueEvaluator()): QueryTree
         }
         // Extend this when we have other evaluators.
     }
-    return QueryTree(result, mutableListOf(), "min($n)")
+    return explained(result, { mutableListOf() }) { "min($n)" }
 }
 
 /**
@@ -176,7 +305,7 @@ fun max(n: List<Node>?, eval: ValueEvaluator = MultiValueEvaluator()): QueryTree
         }
         // Extend this when we have other evaluators.
     }
-    return QueryTree(result, mutableListOf(), "max($n)")
+    return explained(result, { mutableListOf() }) { "max($n)" }
 }
 
 /**
@@ -187,34 +316,40 @@ fun max(n: List<Node>?, eval: ValueEvaluator = MultiValueEvaluator()): QueryTree
 fun max(n: Node?, eval: ValueEvaluator = MultiValueEvaluator()): QueryTree<Number> {
     val evalRes = eval.evaluate(n)
     if (evalRes is Number) {
-        return QueryTree(evalRes, mutableListOf(QueryTree(n)))
+        return explained(evalRes, { mutableListOf(QueryTree(n)) }) { "max($n)" }
     }
     // Extend this when we have other evaluators.
-    return QueryTree((evalRes as? NumberSet)?.max() ?: -1, mutableListOf(), "max($n)")
+    return explained((evalRes as? NumberSet)?.max() ?: -1, { mutableListOf() }) { "max($n)" }
 }
 
 /** Checks if a data flow is possible between the nodes [from] as a source and [to] as sink. */
 fun dataFlow(from: Node, to: Node): QueryTree<Boolean> {
     val evalRes = from.followNextDFGEdgesUntilHit { it == to }
-    val allPaths = evalRes.fulfilled.map { QueryTree(it) }.toMutableList()
-    allPaths.addAll(evalRes.failed.map { QueryTree(it) })
-    return QueryTree(
+    return explained(
         evalRes.fulfilled.isNotEmpty(),
-        allPaths.toMutableList(),
+        {
+            val allPaths = evalRes.fulfilled.map { QueryTree(it) }.toMutableList<QueryTree<*>>()
+            allPaths.addAll(evalRes.failed.map { QueryTree(it) })
+            allPaths
+        }
+    ) {
         "data flow from $from to $to"
-    )
+    }
 }
 
 /** Checks if a path of execution flow is possible between the nodes [from] and [to]. */
 fun executionPath(from: Node, to: Node): QueryTree<Boolean> {
     val evalRes = from.followNextEOGEdgesUntilHit { it == to }
-    val allPaths = evalRes.fulfilled.map { QueryTree(it) }.toMutableList()
-    allPaths.addAll(evalRes.failed.map { QueryTree(it) })
-    return QueryTree(
+    return explained(
         evalRes.fulfilled.isNotEmpty(),
-        allPaths.toMutableList(),
+        {
+            val allPaths = evalRes.fulfilled.map { QueryTree(it) }.toMutableList<QueryTree<*>>()
+            allPaths.addAll(evalRes.failed.map { QueryTree(it) })
+            allPaths
+        }
+    ) {
         "executionPath($from, $to)"
-    )
+    }
 }
 
 /**
@@ -223,13 +358,16 @@ fun executionPath(from: Node, to: Node): QueryTree<Boolean> {
  */
 fun executionPath(from: Node, predicate: (Node) -> Boolean): QueryTree<Boolean> {
     val evalRes = from.followNextEOGEdgesUntilHit(predicate)
-    val allPaths = evalRes.fulfilled.map { QueryTree(it) }.toMutableList()
-    allPaths.addAll(evalRes.failed.map { QueryTree(it) })
-    return QueryTree(
+    return explained(
         evalRes.fulfilled.isNotEmpty(),
-        allPaths.toMutableList(),
+        {
+            val allPaths = evalRes.fulfilled.map { QueryTree(it) }.toMutableList<QueryTree<*>>()
+            allPaths.addAll(evalRes.failed.map { QueryTree(it) })
+            allPaths
+        }
+    ) {
         "executionPath($from, $predicate)"
-    )
+    }
 }
 
 /**
@@ -238,13 +376,16 @@ fun executionPath(from: Node, predicate: (Node) -> Boolean): QueryTree<Boolean>
  */
 fun executionPathBackwards(to: Node, predicate: (Node) -> Boolean): QueryTree<Boolean> {
     val evalRes = to.followPrevEOGEdgesUntilHit(predicate)
-    val allPaths = evalRes.fulfilled.map { QueryTree(it) }.toMutableList()
-    allPaths.addAll(evalRes.failed.map { QueryTree(it) })
-    return QueryTree(
+    return explained(
         evalRes.fulfilled.isNotEmpty(),
-        allPaths.toMutableList(),
+        {
+            val allPaths = evalRes.fulfilled.map { QueryTree(it) }.toMutableList<QueryTree<*>>()
+            allPaths.addAll(evalRes.failed.map { QueryTree(it) })
+            allPaths
+        }
+    ) {
         "executionPathBackwards($to, $predicate)"
-    )
+    }
 }
 
 /** Calls [ValueEvaluator.evaluate] for this expression, thus trying to resolve a constant value. */
@@ -267,7 +408,7 @@ fun maxSizeOfType(type: Type): QueryTree<Number> {
             "double" -> Double.MAX_VALUE
             else -> Long.MAX_VALUE
         }
-    return QueryTree(maxVal, mutableListOf(QueryTree(type)), "maxSizeOfType($type)")
+    return explained(maxVal, { mutableListOf(QueryTree(type)) }) { "maxSizeOfType($type)" }
 }
 
 /**
@@ -285,7 +426,7 @@ fun minSizeOfType(type: Type): QueryTree<Number> {
             "double" -> Double.MIN_VALUE
             else -> Long.MIN_VALUE
         }
-    return QueryTree(maxVal, mutableListOf(QueryTree(type)), "minSizeOfType($type)")
+    return explained(maxVal, { mutableListOf(QueryTree(type)) }) { "minSizeOfType($type)" }
 }
 
 /** The size of this expression. It uses the default argument for `eval` of [size] */
@@ -313,7 +454,7 @@ val Expression.max: QueryTree<Number>
 /** Calls [ValueEvaluator.evaluate] for this expression, thus trying to resolve a constant value. */
 val Expression.value: QueryTree<Any?>
     get() {
-        return QueryTree(evaluate(), mutableListOf(), "$this")
+        return explained(evaluate(), { mutableListOf() }) { "$this" }
     }
 
 /**
@@ -323,7 +464,7 @@ val Expression.value: QueryTree<Any?>
 val Expression.intValue: QueryTree<Int>?
     get() {
         val evalRes = evaluate() as? Int ?: return null
-        return QueryTree(evalRes, mutableListOf(), "$this")
+        return explained(evalRes, { mutableListOf() }) { "$this" }
     }
 
 /**
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.query
+
+import jdk.jfr.Category
+import jdk.jfr.Description
+import jdk.jfr.Event
+import jdk.jfr.Label
+import jdk.jfr.Name
+
+/**
+ * A Java Flight Recorder event for the evaluation of a query such as [allExtended] or
+ * [ParallelQuery.exists]. Since queries are not bound to a translation, it is only created if
+ * [de.fraunhofer.aisec.cpg.helpers.FlightRecorder.isEnabled] is set.
+ */
+@Name("de.fraunhofer.aisec.cpg.Query")
+@Label("Query")
+@Category("CPG")
+@Description("Evaluation of a query on the graph")
+class QueryEvent : Event() {
+    @Label("Operation") @Description("The query function, e.g. all or existsExtended")
+    @JvmField
+    var operation: String? = null
+
+    @Label("Node Type") @JvmField var nodeType: String? = null
+
+    @Label("Candidates") @Description("The number of nodes the condition was evaluated on")
+    @JvmField
+    var candidates = 0
+
+    @Label("Result") @JvmField var result = false
+
+    @Label("Parallel") @JvmField var parallel = false
+}
@@ -54,6 +54,10 @@ import de.fraunhofer.aisec.cpg.analysis.compareTo
  * - **ge**: Grater than or equal (>=)
  * - **lt**: Less than (<)
  * - **le**: Less than or equal (<=)
+ *
+ * Keeping track of all steps is expensive for queries over many nodes. Therefore, the operations
+ * can be evaluated without building the explanation by using [withoutExplanations] or the fast
+ * variants of the queries (e.g. [allFast]).
  */
 open class QueryTree<T>(
     open var value: T,
@@ -78,7 +82,9 @@ open class QueryTree<T>(
     /** Checks for equality of two [QueryTree]s. */
     infix fun eq(other: QueryTree<T>): QueryTree<Boolean> {
         val result = this.value == other.value
-        return QueryTree(result, mutableListOf(this, other), "${this.value} == ${other.value}")
+        return explained(result, { mutableListOf(this, other) }) {
+            "${this.value} == ${other.value}"
+        }
     }
 
     /**
@@ -87,13 +93,17 @@ open class QueryTree<T>(
      */
     infix fun eq(other: T): QueryTree<Boolean> {
         val result = this.value == other
-        return QueryTree(result, mutableListOf(this, QueryTree(other)), "${this.value} == $value")
+        return explained(result, { mutableListOf(this, QueryTree(other)) }) {
+            "${this.value} == $value"
+        }
     }
 
     /** Checks for inequality of two [QueryTree]s. */
     infix fun ne(other: QueryTree<T>): QueryTree<Boolean> {
         val result = this.value != other.value
-        return QueryTree(result, mutableListOf(this, other), "${this.value} != ${other.value}")
+        return explained(result, { mutableListOf(this, other) }) {
+            "${this.value} != ${other.value}"
+        }
     }
 
     /**
@@ -102,31 +112,41 @@ open class QueryTree<T>(
      */
     infix fun ne(other: T): QueryTree<Boolean> {
         val result = this.value != other
-        return QueryTree(result, mutableListOf(this, QueryTree(other)), "${this.value} != $value")
+        return explained(result, { mutableListOf(this, QueryTree(other)) }) {
+            "${this.value} != $value"
+        }
     }
 
     /** Checks if the value is contained in the collection of the other [QueryTree]. */
     infix fun IN(other: QueryTree<Collection<*>>): QueryTree<Boolean> {
         val result = other.value.contains(this.value)
-        return QueryTree(result, mutableListOf(this, other), "${this.value} in ${other.value}")
+        return explained(result, { mutableListOf(this, other) }) {
+            "${this.value} in ${other.value}"
+        }
     }
 
     /** Checks if the value is contained in the collection [other]. */
     infix fun IN(other: Collection<*>): QueryTree<Boolean> {
         val result = other.contains(this.value)
-        return QueryTree(result, mutableListOf(this, QueryTree(other)), "${this.value} in $other")
+        return explained(result, { mutableListOf(this, QueryTree(other)) }) {
+            "${this.value} in $other"
+        }
     }
 
     /** Checks if the value is a member of the type of the other [QueryTree]. */
     infix fun IS(other: QueryTree<Class<*>>): QueryTree<Boolean> {
         val result = other.value.isInstance(this.value)
-        return QueryTree(result, mutableListOf(this, other), "${this.value} is ${other.value}")
+        return explained(result, { mutableListOf(this, other) }) {
+            "${this.value} is ${other.value}"
+        }
     }
 
     /** Checks if the value is a member of the type of [oter]. */
     infix fun IS(other: Class<*>): QueryTree<Boolean> {
         val result = other.isInstance(this.value)
-        return QueryTree(result, mutableListOf(this, QueryTree(other)), "${this.value} is $other")
+        return explained(result, { mutableListOf(this, QueryTree(other)) }) {
+            "${this.value} is $other"
+        }
     }
 
     override fun hashCode(): Int {
@@ -160,54 +180,79 @@ open class QueryTree<T>(
 
 /** Performs a logical and (&&) operation between the values of two [QueryTree]s. */
 infix fun QueryTree<Boolean>.and(other: QueryTree<Boolean>): QueryTree<Boolean> {
-    return QueryTree(
-        this.value && other.value,
-        mutableListOf(this, other),
-        stringRepresentation = "${this.value} && ${other.value}"
-    )
+    return explained(this.value && other.value, { mutableListOf(this, other) }) {
+        "${this.value} && ${other.value}"
+    }
+}
+
+/**
+ * Performs a logical and (&&) operation between the values of two [QueryTree]s. [other] is only
+ * evaluated if the value of this [QueryTree] is `true`.
+ */
+infix fun QueryTree<Boolean>.and(other: Lazy<QueryTree<Boolean>>): QueryTree<Boolean> {
+    if (!this.value) {
+        return explained(false, { mutableListOf(this) }) { "false && XYZ" }
+    }
+
+    val result = other.value
+    return explained(result.value, { mutableListOf(this, result) }) {
+        "${this.value} && ${result.value}"
+    }
 }
 
 /** Performs a logical or (||) operation between the values of two [QueryTree]s. */
 infix fun QueryTree<Boolean>.or(other: QueryTree<Boolean>): QueryTree<Boolean> {
-    return QueryTree(
-        this.value || other.value,
-        mutableListOf(this, other),
-        stringRepresentation = "${this.value} || ${other.value}"
-    )
+    return explained(this.value || other.value, { mutableListOf(this, other) }) {
+        "${this.value} || ${other.value}"
+    }
+}
+
+/**
+ * Performs a logical or (||) operation between the values of two [QueryTree]s. [other] is only
+ * evaluated if the value of this [QueryTree] is `false`.
+ */
+infix fun QueryTree<Boolean>.or(other: Lazy<QueryTree<Boolean>>): QueryTree<Boolean> {
+    if (this.value) {
+        return explained(true, { mutableListOf(this) }) { "true || XYZ" }
+    }
+
+    val result = other.value
+    return explained(result.value, { mutableListOf(this, result) }) {
+        "${this.value} || ${result.value}"
+    }
 }
 
 /** Performs a logical xor operation between the values of two [QueryTree]s. */
 infix fun QueryTree<Boolean>.xor(other: QueryTree<Boolean>): QueryTree<Boolean> {
-    return QueryTree(
-        this.value xor other.value,
-        mutableListOf(this, other),
-        stringRepresentation = "${this.value} xor ${other.value}"
-    )
+    return explained(this.value xor other.value, { mutableListOf(this, other) }) {
+        "${this.value} xor ${other.value}"
+    }
 }
 
 /** Evaluates a logical implication (->) operation between the values of two [QueryTree]s. */
 infix fun QueryTree<Boolean>.implies(other: QueryTree<Boolean>): QueryTree<Boolean> {
-    return QueryTree(
-        !this.value || other.value,
-        mutableListOf(this, other),
-        stringRepresentation = "${this.value} => ${other.value}"
-    )
+    return explained(!this.value || other.value, { mutableListOf(this, other) }) {
+        "${this.value} => ${other.value}"
+    }
 }
 
-/** Evaluates a logical implication (->) operation between the values of two [QueryTree]s. */
+/**
+ * Evaluates a logical implication (->) operation between the values of two [QueryTree]s. [other]
+ * is only evaluated if the value of this [QueryTree] is `true`.
+ */
 infix fun QueryTree<Boolean>.implies(other: Lazy<QueryTree<Boolean>>): QueryTree<Boolean> {
-    return QueryTree(
-        !this.value || other.value.value,
-        if (!this.value) mutableListOf(this) else mutableListOf(this, other.value),
-        stringRepresentation =
-            if (!this.value) "false => XYZ" else "${this.value} => ${other.value}"
-    )
+    if (!this.value) {
+        return explained(true, { mutableListOf(this) }) { "false => XYZ" }
+    }
+
+    val result = other.value
+    return explained(result.value, { mutableListOf(this, result) }) { "${this.value} => $result" }
 }
 
 /** Compares the numeric values of two [QueryTree]s for this being "greater than" (>) [other]. */
 infix fun <T : Number, S : Number> QueryTree<T>.gt(other: QueryTree<S>): QueryTree<Boolean> {
     val result = this.value.compareTo(other.value) > 0
-    return QueryTree(result, mutableListOf(this, other), "${this.value} > ${other.value}")
+    return explained(result, { mutableListOf(this, other) }) { "${this.value} > ${other.value}" }
 }
 
 /**
@@ -216,7 +261,7 @@ infix fun <T : Number, S : Number> QueryTree<T>.gt(other: QueryTree<S>): QueryTr
  */
 infix fun <T : Number, S : Number> QueryTree<T>.gt(other: S): QueryTree<Boolean> {
     val result = this.value.compareTo(other) > 0
-    return QueryTree(result, mutableListOf(this, QueryTree(other)), "${this.value} > $other")
+    return explained(result, { mutableListOf(this, QueryTree(other)) }) { "${this.value} > $other" }
 }
 
 /**
@@ -225,7 +270,7 @@ infix fun <T : Number, S : Number> QueryTree<T>.gt(other: S): QueryTree<Boolean>
  */
 infix fun <T : Number, S : Number> QueryTree<T>.ge(other: QueryTree<S>): QueryTree<Boolean> {
     val result = this.value.compareTo(other.value) >= 0
-    return QueryTree(result, mutableListOf(this, other), "${this.value} >= ${other.value}")
+    return explained(result, { mutableListOf(this, other) }) { "${this.value} >= ${other.value}" }
 }
 
 /**
@@ -234,13 +279,15 @@ infix fun <T : Number, S : Number> QueryTree<T>.ge(other: QueryTree<S>): QueryTr
  */
 infix fun <T : Number, S : Number> QueryTree<T>.ge(other: S): QueryTree<Boolean> {
     val result = this.value.compareTo(other) >= 0
-    return QueryTree(result, mutableListOf(this, QueryTree(other)), "${this.value} >= $other")
+    return explained(result, { mutableListOf(this, QueryTree(other)) }) {
+        "${this.value} >= $other"
+    }
 }
 
 /** Compares the numeric values of two [QueryTree]s for this being "less than" (<) [other]. */
 infix fun <T : Number, S : Number> QueryTree<T>.lt(other: QueryTree<S>): QueryTree<Boolean> {
     val result = this.value.compareTo(other.value) < 0
-    return QueryTree(result, mutableListOf(this, other), "${this.value} < ${other.value}")
+    return explained(result, { mutableListOf(this, other) }) { "${this.value} < ${other.value}" }
 }
 
 /**
@@ -249,7 +296,7 @@ infix fun <T : Number, S : Number> QueryTree<T>.lt(other: QueryTree<S>): QueryTr
  */
 infix fun <T : Number, S : Number> QueryTree<T>.lt(other: S): QueryTree<Boolean> {
     val result = this.value.compareTo(other) < 0
-    return QueryTree(result, mutableListOf(this, QueryTree(other)), "${this.value} < $other")
+    return explained(result, { mutableListOf(this, QueryTree(other)) }) { "${this.value} < $other" }
 }
 
 /**
@@ -257,7 +304,7 @@ infix fun <T : Number, S : Number> QueryTree<T>.lt(other: S): QueryTree<Boolean>
  */
 infix fun <T : Number, S : Number> QueryTree<T>.le(other: QueryTree<S>): QueryTree<Boolean> {
     val result = this.value.compareTo(other.value) <= 0
-    return QueryTree(result, mutableListOf(this, other), "${this.value} <= ${other.value}")
+    return explained(result, { mutableListOf(this, other) }) { "${this.value} <= ${other.value}" }
 }
 
 /**
@@ -266,19 +313,21 @@ infix fun <T : Number, S : Number> QueryTree<T>.le(other: QueryTree<S>): QueryTr
  */
 infix fun <T : Number, S : Number> QueryTree<T>.le(other: S): QueryTree<Boolean> {
     val result = this.value.compareTo(other) <= 0
-    return QueryTree(result, mutableListOf(this, QueryTree(other)), "${this.value} <= $other")
+    return explained(result, { mutableListOf(this, QueryTree(other)) }) {
+        "${this.value} <= $other"
+    }
 }
 
 /** Negates the value of [arg] and returns the resulting [QueryTree]. */
 fun not(arg: QueryTree<Boolean>): QueryTree<Boolean> {
     val result = !arg.value
-    return QueryTree(result, mutableListOf(arg), "! ${arg.value}")
+    return explained(result, { mutableListOf(arg) }) { "! ${arg.value}" }
 }
 
 /** Negates the value of [arg] and returns the resulting [QueryTree]. */
 fun not(arg: Boolean): QueryTree<Boolean> {
     val result = !arg
-    return QueryTree(result, mutableListOf(QueryTree(arg)), "! ${arg}")
+    return explained(result, { mutableListOf(QueryTree(arg)) }) { "! ${arg}" }
 }
 
 /**
@@ -297,4 +346,43 @@ fun <T> const(n: T): QueryTree<T> {
     return QueryTree(n, stringRepresentation = "$n")
 }
 
+/**
+ * Whether the operations on [QueryTree]s in the current thread keep track of their operands and
+ * build the [QueryTree.stringRepresentation]. This is disabled by [withoutExplanations].
+ */
+internal val explanationsEnabled: ThreadLocal<Boolean> = ThreadLocal.withInitial { true }
+
+/**
+ * Evaluates [block] in the "fast mode": All operations on [QueryTree]s only compute their value but
+ * neither keep their operands as children nor build a string representation. The resulting
+ * [QueryTree]s therefore do not explain the result. This is useful if only the value of a query
+ * over a large number of nodes is of interest. The explanation can be rebuilt by evaluating the
+ * query for the relevant nodes again outside of this method (see [FastQueryResult.explain]).
+ */
+fun <R> withoutExplanations(block: () -> R): R {
+    val previous = explanationsEnabled.get()
+    explanationsEnabled.set(false)
+    try {
+        return block()
+    } finally {
+        explanationsEnabled.set(previous)
+    }
+}
+
+/**
+ * Creates a [QueryTree] holding [value]. The [children] and the [representation] are only computed
+ * if explanations are currently enabled (see [withoutExplanations]).
+ */
+internal inline fun <T> explained(
+    value: T,
+    children: () -> MutableList<QueryTree<*>>,
+    representation: () -> String
+): QueryTree<T> {
+    return if (explanationsEnabled.get()) {
+        QueryTree(value, children(), representation())
+    } else {
+        QueryTree(value)
+    }
+}
+
 class QueryException(override val message: String) : Exception(message)
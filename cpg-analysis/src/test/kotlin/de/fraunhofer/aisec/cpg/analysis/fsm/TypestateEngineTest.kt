@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2021, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.analysis.fsm
+
+import de.fraunhofer.aisec.cpg.TestUtils
+import de.fraunhofer.aisec.cpg.frontends.java.JavaLanguage
+import de.fraunhofer.aisec.cpg.graph.Node
+import de.fraunhofer.aisec.cpg.graph.bodyOrNull
+import de.fraunhofer.aisec.cpg.graph.byNameOrNull
+import de.fraunhofer.aisec.cpg.graph.declarations.*
+import de.fraunhofer.aisec.cpg.graph.statements.CompoundStatement
+import de.fraunhofer.aisec.cpg.graph.statements.DeclarationStatement
+import de.fraunhofer.aisec.cpg.graph.statements.IfStatement
+import de.fraunhofer.aisec.cpg.graph.statements.Statement
+import de.fraunhofer.aisec.cpg.passes.EdgeCachePass
+import de.fraunhofer.aisec.cpg.passes.IdentifierPass
+import de.fraunhofer.aisec.cpg.passes.UnreachableEOGPass
+import java.nio.file.Path
+import kotlin.test.*
+import org.junit.jupiter.api.BeforeAll
+import org.junit.jupiter.api.TestInstance
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class TypestateEngineTest {
+    private lateinit var tu: TranslationUnitDeclaration
+
+    @BeforeAll
+    fun beforeAll() {
+        val topLevel = Path.of("src", "test", "resources", "analyses", "ordering")
+        tu =
+            TestUtils.analyzeAndGetFirstTU(
+                listOf(topLevel.resolve("SimpleOrder.java").toFile()),
+                topLevel,
+                true
+            ) {
+                it.registerLanguage<JavaLanguage>()
+                    .registerPass(UnreachableEOGPass())
+                    .registerPass(IdentifierPass())
+                    .registerPass(EdgeCachePass())
+            }
+    }
+
+    private fun dfa(): DFA {
+        // allowed: cm.start(), cm.finish()
+        val dfa = DFA()
+        val q1 = dfa.addState(isStart = true)
+        val q2 = dfa.addState()
+        val q3 = dfa.addState(isAcceptingState = true)
+        dfa.addEdge(q1, q2, "start()", "cm")
+        dfa.addEdge(q2, q3, "finish()", "cm")
+        return dfa
+    }
+
+    private fun function(name: String): FunctionDeclaration {
+        val function =
+            tu.byNameOrNull<RecordDeclaration>("SimpleOrder")
+                ?.byNameOrNull<FunctionDeclaration>(name)
+        assertNotNull(function)
+        return function
+    }
+
+    /** Builds a rule for the first declaration of the function [name] with the operations [ops]. */
+    private fun rule(name: String, ops: Map<Node, String>): Pair<TypestateRule, Node> {
+        val decl = function(name).bodyOrNull<DeclarationStatement>(0)
+        assertNotNull(decl)
+
+        return Pair(TypestateRule(name, dfa(), setOf(decl.declarations[0]?.id!!), ops), decl)
+    }
+
+    private fun statements(name: String) = (function(name).body as CompoundStatement).statements
+
+    private fun Statement.first() = (this as CompoundStatement).statements[0]
+
+    @Test
+    fun testMultipleRules() {
+        val ok = statements("ok")
+        val ok3 = statements("ok3")
+        val nok1 = statements("nok1")
+        val nok2 = statements("nok2")
+        val nok3 = statements("nok3")
+
+        val rules =
+            listOf(
+                rule("ok", mapOf(ok[1] to "start()", ok[2] to "finish()")),
+                rule(
+                    "ok3",
+                    mapOf(
+                        (ok3[2] as IfStatement).thenStatement.first() to "start()",
+                        (ok3[2] as IfStatement).elseStatement.first() to "start()",
+                        ok3[4] to "finish()"
+                    )
+                ),
+                rule(
+                    "nok1",
+                    mapOf(
+                        nok1[1] to "set_key()",
+                        nok1[2] to "start()",
+                        nok1[3] to "finish()",
+                        nok1[5] to "set_key()"
+                    )
+                ),
+                rule("nok2", mapOf(nok2[1] to "start()")),
+                rule(
+                    "nok3",
+                    mapOf(
+                        (nok3[1] as IfStatement).thenStatement.first() to "start()",
+                        nok3[2] to "finish()"
+                    )
+                )
+            )
+
+        val engine = TypestateEngine(rules.map { it.first })
+        val violations = engine.evaluate(rules.map { it.second })
+
+        assertTrue(violations.none { it.rule.name == "ok" || it.rule.name == "ok3" })
+
+        // The evaluation of the base stops at the first wrong call
+        val nok1Violations = violations.filter { it.rule.name == "nok1" }
+        assertEquals(1, nok1Violations.size)
+        assertEquals(TypestateViolation.Kind.MISSING_TRANSITION, nok1Violations[0].kind)
+        assertSame(nok1[1], nok1Violations[0].node)
+
+        val nok2Violations = violations.filter { it.rule.name == "nok2" }
+        assertEquals(1, nok2Violations.size)
+        assertEquals(TypestateViolation.Kind.NON_ACCEPTING_TERMINATION, nok2Violations[0].kind)
+
+        // Only one path misses the call to start()
+        val nok3Violations = violations.filter { it.rule.name == "nok3" }
+        assertEquals(1, nok3Violations.size)
+        assertEquals(TypestateViolation.Kind.MISSING_TRANSITION, nok3Violations[0].kind)
+        assertSame(nok3[2], nok3Violations[0].node)
+    }
+
+    @Test
+    fun testTooManyStates() {
+        val dfa = DFA()
+        var state = dfa.addState(isStart = true)
+        repeat(TypestateEngine.MAX_STATES) {
+            val next = dfa.addState()
+            dfa.addEdge(state, next, "op$it()", "cm")
+            state = next
+        }
+
+        assertFailsWith<FSMBuilderException> {
+            TypestateEngine(listOf(TypestateRule("large", dfa, setOf(), mapOf())))
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.passes
+
+import de.fraunhofer.aisec.cpg.TestUtils
+import de.fraunhofer.aisec.cpg.TranslationResult
+import de.fraunhofer.aisec.cpg.analysis.AbstractInterval
+import de.fraunhofer.aisec.cpg.analysis.IntervalEvaluator
+import de.fraunhofer.aisec.cpg.graph.*
+import de.fraunhofer.aisec.cpg.graph.statements.ReturnStatement
+import de.fraunhofer.aisec.cpg.graph.statements.expressions.UnaryOperator
+import de.fraunhofer.aisec.cpg.query.max
+import de.fraunhofer.aisec.cpg.query.min
+import java.nio.file.Path
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import org.junit.jupiter.api.BeforeAll
+import org.junit.jupiter.api.TestInstance
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class IntervalAnalysisPassTest {
+    private lateinit var result: TranslationResult
+
+    @BeforeAll
+    fun beforeAll() {
+        val topLevel = Path.of("src", "test", "resources", "passes", "intervals")
+        result =
+            TestUtils.analyze(listOf(topLevel.resolve("intervals.cpp").toFile()), topLevel, true) {
+                it.registerPass(IntervalAnalysisPass())
+            }
+    }
+
+    @Test
+    fun testLoop() {
+        val returnValue = result.functions["loop"]?.bodyOrNull<ReturnStatement>()?.returnValue
+        assertNotNull(returnValue)
+
+        val evaluator = IntervalEvaluator(result)
+        assertEquals(0L, min(returnValue, evaluator).value)
+        assertEquals(18L, max(returnValue, evaluator).value)
+    }
+
+    @Test
+    fun testBranch() {
+        val returnValue = result.functions["branch"]?.bodyOrNull<ReturnStatement>()?.returnValue
+        assertNotNull(returnValue)
+
+        val evaluator = IntervalEvaluator(result)
+        assertEquals(-5L, min(returnValue, evaluator).value)
+        assertEquals(15L, max(returnValue, evaluator).value)
+    }
+
+    @Test
+    fun testWidening() {
+        val returnValue =
+            result.functions["countdown"]?.bodyOrNull<ReturnStatement>()?.returnValue
+        assertNotNull(returnValue)
+
+        assertEquals(0L, IntervalEvaluator(result).evaluate(returnValue))
+    }
+
+    @Test
+    fun testReferences() {
+        val alias = result.functions["alias"]
+        assertNotNull(alias)
+
+        val intervals = IntervalAnalysisPass().analyzeFunction(alias)
+        val x = alias.variables["x"]
+        val y = alias.variables["y"]
+        val z = alias.variables["z"]
+        assertNotNull(x)
+        assertNotNull(y)
+        assertNotNull(z)
+
+        // x is modified through the reference r and y by the reference parameter of increment
+        assertNull(intervals[x])
+        assertNull(intervals[y])
+        assertEquals(AbstractInterval(1, 1), intervals[z])
+    }
+
+    @Test
+    fun testUnmodelledAssignment() {
+        val shift = result.functions["shift"]
+        assertNotNull(shift)
+
+        // x <<= 4 is not modelled, so x can have any value afterwards
+        val returnValue = shift.bodyOrNull<ReturnStatement>()?.returnValue
+        assertNotNull(returnValue)
+        assertNull(IntervalAnalysisPass().analyzeFunction(shift)[returnValue])
+    }
+
+    @Test
+    fun testIncrements() {
+        for ((name, expected) in listOf("postfix" to 0L, "prefix" to 1L)) {
+            val function = result.functions[name]
+            assertNotNull(function)
+
+            val intervals = IntervalAnalysisPass().analyzeFunction(function)
+            val step = function.allChildren<UnaryOperator>().firstOrNull()
+            val x = function.variables["x"]
+            val returnValue = function.bodyOrNull<ReturnStatement>()?.returnValue
+            assertNotNull(step)
+            assertNotNull(x)
+            assertNotNull(returnValue)
+
+            val interval = AbstractInterval(expected, expected)
+            assertEquals(interval, intervals[step], name)
+            assertEquals(interval, intervals[x], name)
+            assertEquals(interval, intervals[returnValue], name)
+        }
+    }
+
+    @Test
+    fun testIterationBudget() {
+        val countdown = result.functions["countdown"]
+        assertNotNull(countdown)
+
+        // The loop cannot be stabilized within a single iteration, so we do not get any results
+        assertEquals(0, IntervalAnalysisPass(maxIterations = 1).analyzeFunction(countdown).size)
+    }
+}
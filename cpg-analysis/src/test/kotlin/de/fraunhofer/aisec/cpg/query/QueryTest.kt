@@ -34,6 +34,9 @@ import de.fraunhofer.aisec.cpg.graph.declarations.FunctionDeclaration
 import de.fraunhofer.aisec.cpg.graph.statements.expressions.*
 import de.fraunhofer.aisec.cpg.passes.EdgeCachePass
 import java.io.File
+import java.util.concurrent.Executor
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.atomic.AtomicInteger
 import kotlin.test.assertEquals
 import kotlin.test.assertFalse
 import kotlin.test.assertTrue
@@ -122,6 +125,129 @@ class QueryTest {
         assertFalse(queryTreeResult.value)
     }
 
+    @Test
+    fun testMemcpyTooLargeQueryParallel() {
+        val config =
+            TranslationConfiguration.builder()
+                .sourceLocations(File("src/test/resources/query/vulnerable.cpp"))
+                .defaultPasses()
+                .defaultLanguages()
+                .build()
+
+        val analyzer = TranslationManager.builder().config(config).build()
+        val result = analyzer.analyze().get()
+
+        // Use tiny chunks, so that the nodes are really split up
+        val query = ParallelQuery(result, chunkSize = 2)
+
+        val sequential =
+            result.all<CallExpression>(
+                { it.name == "memcpy" },
+                { sizeof(it.arguments[0]) > sizeof(it.arguments[1]) }
+            )
+        val parallel =
+            query.all<CallExpression>(
+                { it.name == "memcpy" },
+                { sizeof(it.arguments[0]) > sizeof(it.arguments[1]) }
+            )
+        assertEquals(sequential, parallel)
+
+        val sequentialExtended =
+            result.allExtended<CallExpression>(
+                mustSatisfy = {
+                    (const("memcpy") eq it.name) implies
+                        (lazy { it.arguments[0].size gt it.arguments[1].size })
+                }
+            )
+        val parallelExtended =
+            query.allExtended<CallExpression>(
+                mustSatisfy = {
+                    (const("memcpy") eq it.name) implies
+                        (lazy { it.arguments[0].size gt it.arguments[1].size })
+                }
+            )
+        assertFalse(parallelExtended.value)
+        assertEquals(
+            sequentialExtended.children.map { it.stringRepresentation },
+            parallelExtended.children.map { it.stringRepresentation }
+        )
+
+        val exists = query.exists<CallExpression>(mustSatisfy = { it.name == "memcpy" })
+        assertTrue(exists.first)
+        assertEquals(result.calls.filter { it.name == "memcpy" }, exists.second)
+    }
+
+    @Test
+    fun testParallelIndices() {
+        val config =
+            TranslationConfiguration.builder()
+                .sourceLocations(
+                    File("src/test/resources/query/array.cpp"),
+                    File("src/test/resources/query/array2.cpp"),
+                    File("src/test/resources/query/array3.cpp")
+                )
+                .defaultPasses()
+                .defaultLanguages()
+                .build()
+
+        val analyzer = TranslationManager.builder().config(config).build()
+        val result = analyzer.analyze().get()
+
+        // Each translation unit is indexed in its own task, although they fit into one chunk
+        val tasks = AtomicInteger()
+        val executor = Executor {
+            tasks.incrementAndGet()
+            ForkJoinPool.commonPool().execute(it)
+        }
+        val query = ParallelQuery(result, executor)
+        query.candidates(CallExpression::class.java)
+        assertEquals(result.translationUnits.size, tasks.get())
+    }
+
+    @Test
+    fun testMemcpyTooLargeQueryFast() {
+        val config =
+            TranslationConfiguration.builder()
+                .sourceLocations(File("src/test/resources/query/vulnerable.cpp"))
+                .defaultPasses()
+                .defaultLanguages()
+                .build()
+
+        val analyzer = TranslationManager.builder().config(config).build()
+        val result = analyzer.analyze().get()
+
+        val queryResult =
+            result.allFast<CallExpression>(
+                mustSatisfy = {
+                    (const("memcpy") eq it.name) implies
+                        (lazy { it.arguments[0].size gt it.arguments[1].size })
+                }
+            )
+
+        assertFalse(queryResult.value)
+        // Only the first violating call is kept
+        assertEquals(1, queryResult.nodes.size)
+
+        val explanation = queryResult.explain()
+        assertFalse(explanation.value)
+        assertEquals(1, explanation.children.size)
+        assertTrue(explanation.children[0].stringRepresentation.startsWith("Starting at"))
+        assertEquals(2, explanation.children[0].children.size)
+
+        val witness =
+            result.existsFast<CallExpression>({ it.name == "memcpy" }) {
+                it.arguments[0].size le it.arguments[1].size
+            }
+        assertTrue(witness.value)
+        assertEquals(1, witness.nodes.size)
+
+        // Without explanations, the operations do not keep their operands
+        val fast = withoutExplanations { const(1) lt const(2) }
+        assertTrue(fast.value)
+        assertTrue(fast.children.isEmpty())
+        assertEquals("", fast.stringRepresentation)
+    }
+
     @Test
     fun testUseAfterFree() {
         val config =
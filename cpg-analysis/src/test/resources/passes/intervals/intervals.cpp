@@ -0,0 +1,57 @@
+int loop() {
+    int sum = 0;
+    for (int i = 0; i < 10; i++) {
+        sum = i * 2;
+    }
+    return sum;
+}
+
+int branch(int x) {
+    int y = 5;
+    if (x > 3) {
+        y = y + 10;
+    } else {
+        y = y - 10;
+    }
+    return y;
+}
+
+int countdown() {
+    int n = 100;
+    while (n > 0) {
+        n = n - 1;
+    }
+    return n;
+}
+
+void increment(int& value) {
+    value++;
+}
+
+int alias() {
+    int x = 1;
+    int& r = x;
+    r++;
+    int y = 1;
+    increment(y);
+    int z = 1;
+    return x + y + z;
+}
+
+int shift() {
+    int x = 1;
+    x <<= 4;
+    return x;
+}
+
+int postfix() {
+    int i = 0;
+    int x = i++;
+    return x;
+}
+
+int prefix() {
+    int i = 0;
+    int x = ++i;
+    return x;
+}
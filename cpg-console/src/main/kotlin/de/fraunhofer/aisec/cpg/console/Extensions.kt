@@ -33,9 +33,11 @@ import de.fraunhofer.aisec.cpg.graph.statements.CompoundStatement
 import de.fraunhofer.aisec.cpg.graph.statements.DeclarationStatement
 import de.fraunhofer.aisec.cpg.graph.statements.IfStatement
 import de.fraunhofer.aisec.cpg.graph.statements.expressions.*
+import de.fraunhofer.aisec.cpg.helpers.SourceBuffers
 import de.fraunhofer.aisec.cpg.sarif.PhysicalLocation
 import de.fraunhofer.aisec.cpg.sarif.Region
 import java.io.File
+import java.nio.file.Path
 import org.jetbrains.kotlinx.ki.shell.configuration.ReplConfigurationBase
 import org.jetbrains.kotlinx.ki.shell.plugins.SyntaxPlugin
 import org.jline.utils.AttributedString
@@ -162,7 +164,18 @@ fun Node.fancyCode(linesAhead: Int = 0, showNumbers: Boolean): String? {
     return this.code
 }
 
+/**
+ * The buffers of the files shown in the console. Files are often edited while the console is open,
+ * so a buffer is mapped again once its file has changed.
+ */
+private val sourceBuffers = SourceBuffers(checkModified = true)
+
 fun getCode(file: String, region: Region): String {
+    // use the buffer of the file, so that we do not need to read it again on every call
+    sourceBuffers.of(Path.of(file))?.slice(region)?.let {
+        return it
+    }
+
     var code = ""
 
     val lines = File(file).readLines()
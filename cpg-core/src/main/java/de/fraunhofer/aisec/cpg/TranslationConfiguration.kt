@@ -94,9 +94,22 @@ private constructor(
      * always take priority over those in the whitelist.
      */
     val includeBlocklist: List<Path>,
+    /**
+     * JARs and class directories which contain the libraries used by the analyzed code. They are
+     * used by the [de.fraunhofer.aisec.cpg.frontends.java.JavaLanguageFrontend] to resolve library
+     * types. This is currently only used by the Java frontend.
+     */
+    val classpath: List<File>,
+    /**
+     * The directory in which the index of each JAR on the [classpath] is stored between runs. If
+     * null (the default), the JARs are scanned on every run.
+     */
+    val classpathIndexDirectory: File?,
     passes: List<Pass>,
     languages: List<Language<out LanguageFrontend>>,
     codeInNodes: Boolean,
+    lazyCode: Boolean,
+    codeCacheSize: Int,
     processAnnotations: Boolean,
     disableCleanup: Boolean,
     useUnityBuild: Boolean,
@@ -105,7 +118,11 @@ private constructor(
     inferenceConfiguration: InferenceConfiguration,
     compilationDatabase: CompilationDatabase?,
     matchCommentsToNodes: Boolean,
-    addIncludesToGraph: Boolean
+    addIncludesToGraph: Boolean,
+    profileResources: Boolean,
+    flightRecorderEvents: Boolean,
+    columnarEdges: Boolean,
+    columnarEdgeFile: Path?
 ) {
     /** This list contains all languages which we want to translate. */
     val languages: List<Language<out LanguageFrontend>>
@@ -120,6 +137,19 @@ private constructor(
     /** should the code of a node be shown as parameter in the node * */
     @JvmField val codeInNodes: Boolean
 
+    /**
+     * If true (and [codeInNodes] is set), the code of a node is not copied into the node, but
+     * extracted from a memory-mapped buffer of the source file when it is accessed. The buffers are
+     * shared by the nodes of one [TranslationResult], see [TranslationResult.getSourceBuffers].
+     */
+    val lazyCode: Boolean
+
+    /**
+     * The number of lazily extracted code snippets that are cached per [TranslationResult]. If 0,
+     * the code is extracted on every access.
+     */
+    val codeCacheSize: Int
+
     /** Set to true to process annotations or annotation-like elements. */
     val processAnnotations: Boolean
 
@@ -163,6 +193,35 @@ private constructor(
     /** If true the (cpp) frontend connects a node to required includes. */
     val addIncludesToGraph: Boolean
 
+    /**
+     * If true, the benchmarks of the translation additionally measure the CPU time, allocated
+     * bytes, garbage collections and peak heap usage as well as the size of the graph before and
+     * after each pass. See [de.fraunhofer.aisec.cpg.helpers.Benchmark]. The peak heap usage is an
+     * upper bound and is measured by resetting the peak usage of the heap memory pools of the JVM.
+     */
+    val profileResources: Boolean
+
+    /**
+     * If true, the translation emits custom Java Flight Recorder events for each parsed file, each
+     * pass and each scope resolution. The events of queries and type registrations, which are not
+     * bound to a translation, are enabled with
+     * [de.fraunhofer.aisec.cpg.helpers.FlightRecorder.isEnabled] instead.
+     */
+    val flightRecorderEvents: Boolean
+
+    /**
+     * If true, the EOG and DFG edges of the graph are moved to a
+     * [de.fraunhofer.aisec.cpg.graph.edge.ColumnarEdgeStore] outside the heap once all passes have
+     * run. The edge collections of the nodes are then views on this store.
+     */
+    val columnarEdges: Boolean
+
+    /**
+     * The file which the [de.fraunhofer.aisec.cpg.graph.edge.ColumnarEdgeStore] is memory-mapped
+     * from, if [columnarEdges] is true. If null, the store uses direct memory.
+     */
+    val columnarEdgeFile: Path?
+
     @get:JsonIdentityReference(alwaysAsId = true)
     @get:JsonIdentityInfo(
         generator = ObjectIdGenerators.PropertyGenerator::class,
@@ -178,6 +237,8 @@ private constructor(
         this.languages = languages
         // Make sure to init this AFTER sourceLocations has been set
         this.codeInNodes = codeInNodes
+        this.lazyCode = lazyCode
+        this.codeCacheSize = codeCacheSize
         this.processAnnotations = processAnnotations
         this.disableCleanup = disableCleanup
         this.useUnityBuild = useUnityBuild
@@ -187,6 +248,10 @@ private constructor(
         this.compilationDatabase = compilationDatabase
         this.matchCommentsToNodes = matchCommentsToNodes
         this.addIncludesToGraph = addIncludesToGraph
+        this.profileResources = profileResources
+        this.flightRecorderEvents = flightRecorderEvents
+        this.columnarEdges = columnarEdges
+        this.columnarEdgeFile = columnarEdgeFile
     }
 
     /** Returns a list of all analyzed files. */
@@ -219,8 +284,12 @@ private constructor(
         private val includePaths = mutableListOf<Path>()
         private val includeWhitelist = mutableListOf<Path>()
         private val includeBlocklist = mutableListOf<Path>()
+        private val classpath = mutableListOf<File>()
+        private var classpathIndexDirectory: File? = null
         private val passes = mutableListOf<Pass>()
         private var codeInNodes = true
+        private var lazyCode = false
+        private var codeCacheSize = 0
         private var processAnnotations = false
         private var disableCleanup = false
         private var useUnityBuild = false
@@ -230,6 +299,10 @@ private constructor(
         private var compilationDatabase: CompilationDatabase? = null
         private var matchCommentsToNodes = false
         private var addIncludesToGraph = true
+        private var profileResources = false
+        private var flightRecorderEvents = false
+        private var columnarEdges = false
+        private var columnarEdgeFile: Path? = null
         fun symbols(symbols: Map<String, String>): Builder {
             this.symbols = symbols
             return this
@@ -368,6 +441,29 @@ private constructor(
             return this
         }
 
+        /** Adds the specified JARs or class directories to the classpath. */
+        fun classpath(vararg entries: File): Builder {
+            classpath.addAll(entries)
+            return this
+        }
+
+        /** Adds the specified JARs or class directories to the classpath. */
+        fun classpath(entries: List<File>): Builder {
+            classpath.addAll(entries)
+            return this
+        }
+
+        /**
+         * Sets the directory in which the indices of the JARs on the classpath are cached. By
+         * default, no directory is set and the JARs are scanned on every run. The directory should
+         * only be writable by the current user, e.g., a directory in the user's cache directory,
+         * since the indices read from it are trusted.
+         */
+        fun classpathIndexDirectory(directory: File?): Builder {
+            classpathIndexDirectory = directory
+            return this
+        }
+
         /** Register an additional [Pass]. */
         fun registerPass(pass: Pass): Builder {
             passes.add(pass)
@@ -508,6 +604,20 @@ private constructor(
             return this
         }
 
+        /**
+         * Specifies, whether the code of a node is extracted lazily from the source file instead of
+         * being stored in each node. This avoids storing the same code many times in nested nodes.
+         *
+         * @param b the new value
+         * @param cacheSize the number of recently accessed code snippets to cache
+         */
+        @JvmOverloads
+        fun lazyCode(b: Boolean, cacheSize: Int = 0): Builder {
+            lazyCode = b
+            codeCacheSize = cacheSize
+            return this
+        }
+
         /**
          * Specifies, whether annotations should be process or not. By default, they are not
          * processed, since they might populate the graph too much.
@@ -557,6 +667,48 @@ private constructor(
             return this
         }
 
+        /**
+         * If true, the benchmarks of the translation additionally measure the CPU time, allocated
+         * bytes, garbage collections and peak heap usage as well as the size of the graph before
+         * and after each pass. The peak heap usage is an upper bound and is measured by resetting
+         * the peak usage of the heap memory pools of the JVM.
+         *
+         * @param b the new value
+         */
+        fun profileResources(b: Boolean): Builder {
+            profileResources = b
+            return this
+        }
+
+        /**
+         * If true, the translation emits custom Java Flight Recorder events for each parsed file,
+         * each pass and each scope resolution. They are only written if a recording is running. The
+         * events of queries and type registrations are enabled with
+         * [de.fraunhofer.aisec.cpg.helpers.FlightRecorder.isEnabled] instead.
+         *
+         * @param b the new value
+         */
+        fun flightRecorderEvents(b: Boolean): Builder {
+            flightRecorderEvents = b
+            return this
+        }
+
+        /**
+         * If true, the EOG and DFG edges of the graph are moved to a
+         * [de.fraunhofer.aisec.cpg.graph.edge.ColumnarEdgeStore] outside the heap once all passes
+         * have run. Reading an edge is then slower, but the edges need much less heap.
+         *
+         * @param b the new value
+         * @param file the file which the store is memory-mapped from (and which is overwritten). If
+         * null, the store uses direct memory.
+         */
+        @JvmOverloads
+        fun columnarEdges(b: Boolean, file: Path? = null): Builder {
+            columnarEdges = b
+            columnarEdgeFile = file
+            return this
+        }
+
         fun inferenceConfiguration(configuration: InferenceConfiguration): Builder {
             inferenceConfiguration = configuration
             return this
@@ -582,9 +734,13 @@ private constructor(
                 includePaths,
                 includeWhitelist,
                 includeBlocklist,
+                classpath,
+                classpathIndexDirectory,
                 orderPasses(),
                 languages,
                 codeInNodes,
+                lazyCode,
+                codeCacheSize,
                 processAnnotations,
                 disableCleanup,
                 useUnityBuild,
@@ -593,7 +749,11 @@ private constructor(
                 inferenceConfiguration,
                 compilationDatabase,
                 matchCommentsToNodes,
-                addIncludesToGraph
+                addIncludesToGraph,
+                profileResources,
+                flightRecorderEvents,
+                columnarEdges,
+                columnarEdgeFile
             )
         }
 
@@ -25,15 +25,25 @@
  */
 package de.fraunhofer.aisec.cpg
 
+import de.fraunhofer.aisec.cpg.frontends.CompilationDatabase.WorkUnit
 import de.fraunhofer.aisec.cpg.frontends.Language
 import de.fraunhofer.aisec.cpg.frontends.LanguageFrontend
 import de.fraunhofer.aisec.cpg.frontends.SupportsParallelParsing
 import de.fraunhofer.aisec.cpg.frontends.TranslationException
 import de.fraunhofer.aisec.cpg.frontends.cpp.CXXLanguageFrontend
+import de.fraunhofer.aisec.cpg.frontends.cpp.CXXParseContext
+import de.fraunhofer.aisec.cpg.frontends.java.JavaLanguageFrontend
 import de.fraunhofer.aisec.cpg.graph.Component
 import de.fraunhofer.aisec.cpg.graph.TypeManager
+import de.fraunhofer.aisec.cpg.graph.declarations.TranslationUnitDeclaration
+import de.fraunhofer.aisec.cpg.graph.edge.ColumnarEdgeStore
 import de.fraunhofer.aisec.cpg.helpers.Benchmark
+import de.fraunhofer.aisec.cpg.helpers.FlightRecorder
+import de.fraunhofer.aisec.cpg.helpers.FrontendParseEvent
+import de.fraunhofer.aisec.cpg.helpers.PassEvent
+import de.fraunhofer.aisec.cpg.helpers.SubgraphWalker
 import de.fraunhofer.aisec.cpg.helpers.Util
+import de.fraunhofer.aisec.cpg.helpers.finish
 import de.fraunhofer.aisec.cpg.passes.Pass
 import de.fraunhofer.aisec.cpg.passes.scopes.ScopeManager
 import java.io.File
@@ -46,6 +56,7 @@ import java.util.*
 import java.util.concurrent.CompletableFuture
 import java.util.concurrent.CompletionException
 import java.util.concurrent.ExecutionException
+import java.util.concurrent.ForkJoinPool
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.stream.Collectors
 import kotlin.reflect.full.findAnnotation
@@ -72,6 +83,7 @@ private constructor(
      */
     fun analyze(): CompletableFuture<TranslationResult> {
         val result = TranslationResult(this, ScopeManager())
+        result.scopeManager.flightRecorderEvents = config.flightRecorderEvents
 
         // We wrap the analysis in a CompletableFuture, i.e. in an async task.
         return CompletableFuture.supplyAsync {
@@ -80,29 +92,63 @@ private constructor(
                     TranslationManager::class.java,
                     "Translation into full graph",
                     false,
-                    result
+                    result,
+                    true
                 )
             val executedPasses = mutableSetOf<Pass>()
             var executedFrontends = setOf<LanguageFrontend>()
 
             try {
                 // Parse Java/C/CPP files
-                var bench = Benchmark(this.javaClass, "Executing Language Frontend", false, result)
+                var bench =
+                    Benchmark(this.javaClass, "Executing Language Frontend", false, result, true)
                 executedFrontends = runFrontends(result, config)
+                result.invalidateNodeIndex()
                 bench.addMeasurement()
 
                 // Apply passes
+                var graphSize = if (config.profileResources) graphSize(result) else null
                 for (pass in config.registeredPasses) {
-                    bench = Benchmark(pass.javaClass, "Executing Pass", false, result)
-                    if (pass.runsWithCurrentFrontend(executedFrontends)) {
+                    bench = Benchmark(pass.javaClass, "Executing Pass", false, result, true)
+                    val event = FlightRecorder.begin(config.flightRecorderEvents) { PassEvent() }
+                    val executed = pass.runsWithCurrentFrontend(executedFrontends)
+                    if (executed) {
                         executedPasses.add(pass)
+                        // An index built for the measurements of the previous pass must not be
+                        // used by the shortcuts while this pass modifies the graph
+                        result.invalidateNodeIndex()
                         pass.accept(result)
+                        result.invalidateNodeIndex()
                     }
                     bench.addMeasurement()
+                    event.finish {
+                        this.pass = pass.javaClass.simpleName
+                        this.executed = executed
+                        nodes = result.nodeIndex.nodes.size
+                    }
+
+                    if (graphSize != null) {
+                        val after = graphSize(result)
+                        bench.metrics[NODES_BEFORE] = graphSize.first
+                        bench.metrics[EDGES_BEFORE] = graphSize.second
+                        bench.metrics[NODES_AFTER] = after.first
+                        bench.metrics[EDGES_AFTER] = after.second
+                        graphSize = after
+                    }
                     if (result.isCancelled) {
                         log.warn("Analysis interrupted, stopping Pass evaluation")
                     }
                 }
+
+                // Move the edges out of the heap, once the graph is complete
+                if (config.columnarEdges) {
+                    bench = Benchmark(this.javaClass, "Storing edges in columns", false, result)
+                    val store =
+                        ColumnarEdgeStore.of(result, config.columnarEdgeFile, result.nodeIds)
+                    store.attach()
+                    result.edgeStore = store
+                    bench.addMeasurement()
+                }
             } catch (ex: TranslationException) {
                 throw CompletionException(ex)
             } finally {
@@ -115,6 +161,7 @@ private constructor(
                     log.debug("Cleaning up {} Frontends", executedFrontends.size)
 
                     executedFrontends.forEach { it.cleanup() }
+                    result.clearJavaTypeSolver()
                     TypeManager.getInstance().cleanup()
                 }
             }
@@ -125,6 +172,17 @@ private constructor(
     val passes: List<Pass>
         get() = config.registeredPasses
 
+    /**
+     * Returns the number of AST nodes and the number of EOG and DFG edges of [result]. This is
+     * only used if [TranslationConfiguration.profileResources] is enabled.
+     */
+    private fun graphSize(result: TranslationResult): Pair<Long, Long> {
+        val nodes = result.nodeIndex.nodes
+        val edges = nodes.sumOf { (it.nextEOGEdges.size + it.nextDFG.size).toLong() }
+
+        return Pair(nodes.size.toLong(), edges)
+    }
+
     fun isCancelled(): Boolean {
         return isCancelled.get()
     }
@@ -251,43 +309,71 @@ private constructor(
         val usedFrontends = mutableSetOf<LanguageFrontend>()
 
         log.info("Parallel parsing started")
-        val futures = mutableListOf<CompletableFuture<Optional<LanguageFrontend>>>()
+        val futures = mutableListOf<CompletableFuture<List<Pair<File, LanguageFrontend>>>>()
         val parallelScopeManagers = mutableListOf<ScopeManager>()
 
-        val futureToFile: MutableMap<CompletableFuture<Optional<LanguageFrontend>>, File> =
-            IdentityHashMap()
-
-        for (sourceLocation in sourceLocations) {
-            val scopeManager = ScopeManager()
-            parallelScopeManagers.add(scopeManager)
+        // The position of each file, so that we can restore the original order of the translation
+        // units in the end
+        val positions = sourceLocations.withIndex().associate { it.value to it.index }
+        val translationUnitPositions = IdentityHashMap<TranslationUnitDeclaration, Int>()
+
+        // If we have a compilation database, we group the files with the same configuration into
+        // work units, which are parsed by a single thread each. Otherwise, each file is a unit of
+        // its own. The header state is shared by all units (see CXXParseContext).
+        val db = config.compilationDatabase
+        val units =
+            db?.partition(sourceLocations, ForkJoinPool.getCommonPoolParallelism())
+                ?: sourceLocations.map { WorkUnit(listOf(), mapOf(), listOf(it), it.length()) }
+
+        for (unit in units) {
+            val scopeManagers =
+                unit.files.map {
+                    ScopeManager().apply { flightRecorderEvents = config.flightRecorderEvents }
+                }
+            parallelScopeManagers.addAll(scopeManagers)
 
             val future =
                 CompletableFuture.supplyAsync {
-                    try {
-                        return@supplyAsync parse(component, scopeManager, sourceLocation)
-                    } catch (e: TranslationException) {
-                        throw RuntimeException("Error parsing $sourceLocation", e)
+                    val frontends = mutableListOf<Pair<File, LanguageFrontend>>()
+                    for ((sourceLocation, scopeManager) in unit.files.zip(scopeManagers)) {
+                        try {
+                            // Finished translation units are directly added to the component
+                            val frontend =
+                                parse(component, result, scopeManager, sourceLocation) { tu ->
+                                    synchronized(component) {
+                                        component.translationUnits.add(tu)
+                                        translationUnitPositions[tu] =
+                                            positions.getValue(sourceLocation)
+                                    }
+                                }
+                            frontend.ifPresent { frontends += Pair(sourceLocation, it) }
+                        } catch (e: TranslationException) {
+                            log.error("Error parsing $sourceLocation", e)
+                        }
                     }
+                    frontends
                 }
 
             futures.add(future)
-            futureToFile[future] = sourceLocation
         }
 
         for (future in futures) {
             try {
-                future.get().ifPresent { f: LanguageFrontend ->
-                    handleCompletion(result, usedFrontends, futureToFile[future], f)
+                future.get().forEach { (file, f) ->
+                    handleCompletion(result, usedFrontends, file, f)
                 }
             } catch (e: InterruptedException) {
-                log.error("Error parsing ${futureToFile[future]}", e)
+                log.error("Error during parallel parsing", e)
                 Thread.currentThread().interrupt()
             } catch (e: ExecutionException) {
-                log.error("Error parsing ${futureToFile[future]}", e)
+                log.error("Error during parallel parsing", e)
                 Thread.currentThread().interrupt()
             }
         }
 
+        // Make the order of the translation units independent of the scheduling
+        component.translationUnits.sortBy { translationUnitPositions[it] ?: Int.MAX_VALUE }
+
         // We want to merge everything into the final scope manager of the result
         result.scopeManager.mergeFrom(parallelScopeManagers)
 
@@ -307,7 +393,8 @@ private constructor(
         for (sourceLocation in sourceLocations) {
             log.info("Parsing {}", sourceLocation.absolutePath)
 
-            parse(component, result.scopeManager, sourceLocation).ifPresent { f: LanguageFrontend ->
+            parse(component, result, result.scopeManager, sourceLocation).ifPresent {
+                f: LanguageFrontend ->
                 handleCompletion(result, usedFrontends, sourceLocation, f)
             }
         }
@@ -334,13 +421,27 @@ private constructor(
     @Throws(TranslationException::class)
     private fun parse(
         component: Component,
+        result: TranslationResult,
         scopeManager: ScopeManager,
-        sourceLocation: File
+        sourceLocation: File,
+        onParsed: (TranslationUnitDeclaration) -> Unit = { component.translationUnits.add(it) }
     ): Optional<LanguageFrontend> {
         var frontend: LanguageFrontend? = null
+        var tu: TranslationUnitDeclaration? = null
+        val event = FlightRecorder.begin(config.flightRecorderEvents) { FrontendParseEvent() }
         try {
             frontend = getFrontend(sourceLocation, scopeManager)
 
+            // All Java frontends share the type solver of the result
+            if (frontend is JavaLanguageFrontend) {
+                frontend.typeSolver = result.javaTypeSolver
+            }
+
+            // All C/C++ frontends share the include state of the result
+            if (frontend is CXXLanguageFrontend) {
+                frontend.parseContext = CXXParseContext.of(result)
+            }
+
             if (frontend == null) {
                 log.error("Found no parser frontend for ${sourceLocation.name}")
 
@@ -351,12 +452,26 @@ private constructor(
                 }
                 return Optional.empty()
             }
-            component.translationUnits.add(frontend.parse(sourceLocation))
+            // The benchmarks of the frontend are part of the result
+            frontend.statisticsHolder = result
+            frontend.files = result.files
+            if (config.lazyCode) {
+                frontend.sourceBuffers = result.sourceBuffers
+            }
+            tu = frontend.parse(sourceLocation)
+            onParsed(tu)
         } catch (ex: TranslationException) {
             log.error("An error occurred during parsing of ${sourceLocation.name}: ${ex.message}")
             if (config.failOnError) {
                 throw ex
             }
+        } finally {
+            event.finish {
+                file = sourceLocation.path
+                this.frontend = frontend?.javaClass?.simpleName
+                nodes = SubgraphWalker.flattenAST(tu).size
+                success = tu != null
+            }
         }
         return Optional.ofNullable(frontend)
     }
@@ -407,6 +522,12 @@ private constructor(
     companion object {
         private val log = LoggerFactory.getLogger(TranslationManager::class.java)
 
+        /** The names of the metrics for the graph size before and after each pass. */
+        const val NODES_BEFORE = "nodes_before"
+        const val EDGES_BEFORE = "edges_before"
+        const val NODES_AFTER = "nodes_after"
+        const val EDGES_AFTER = "edges_after"
+
         @JvmStatic
         fun builder(): Builder {
             return Builder()
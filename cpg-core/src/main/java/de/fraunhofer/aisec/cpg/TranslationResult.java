@@ -25,18 +25,26 @@
  */
 package de.fraunhofer.aisec.cpg;
 
+import de.fraunhofer.aisec.cpg.frontends.java.JavaTypeSolverCache;
 import de.fraunhofer.aisec.cpg.graph.Component;
 import de.fraunhofer.aisec.cpg.graph.Node;
+import de.fraunhofer.aisec.cpg.graph.NodeIds;
+import de.fraunhofer.aisec.cpg.graph.NodeIndex;
 import de.fraunhofer.aisec.cpg.graph.SubGraph;
 import de.fraunhofer.aisec.cpg.graph.declarations.TranslationUnitDeclaration;
+import de.fraunhofer.aisec.cpg.graph.edge.ColumnarEdgeStore;
 import de.fraunhofer.aisec.cpg.helpers.BenchmarkResults;
+import de.fraunhofer.aisec.cpg.helpers.FileTable;
 import de.fraunhofer.aisec.cpg.helpers.MeasurementHolder;
+import de.fraunhofer.aisec.cpg.helpers.SourceBuffers;
 import de.fraunhofer.aisec.cpg.helpers.StatisticsHolder;
 import de.fraunhofer.aisec.cpg.passes.scopes.ScopeManager;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.neo4j.ogm.annotation.Transient;
 
 /**
  * The global (intermediate) result of the translation. A {@link
@@ -64,6 +72,34 @@ public class TranslationResult extends Node implements StatisticsHolder {
 
   private final Set<MeasurementHolder> benchmarks = new LinkedHashSet<>();
 
+  /** The index of all nodes in this result. It is built on demand, see {@link #getNodeIndex()}. */
+  @Transient @Nullable private volatile NodeIndex nodeIndex;
+
+  /** The dense ids of the nodes in this result, see {@link #getNodeIds()}. */
+  @Transient @Nullable private volatile NodeIds nodeIds;
+
+  /**
+   * The type solver shared by all Java frontends and passes. It is created on demand, see {@link
+   * #getJavaTypeSolver()}.
+   */
+  @Transient @Nullable private volatile JavaTypeSolverCache javaTypeSolver;
+
+  /**
+   * The buffers of the source files, from which the code of the nodes is materialized if {@link
+   * TranslationConfiguration#getLazyCode()} is set. They are created on demand, see {@link
+   * #getSourceBuffers()}.
+   */
+  @Transient @Nullable private volatile SourceBuffers sourceBuffers;
+
+  /** The files of this result, see {@link #getFiles()}. */
+  @Transient @Nullable private volatile FileTable files;
+
+  /**
+   * The store of the EOG and DFG edges, if {@link TranslationConfiguration#getColumnarEdges()} is
+   * set and all passes have run.
+   */
+  @Transient @Nullable private volatile ColumnarEdgeStore edgeStore;
+
   /**
    * The scope manager which comprises the complete translation result. In case of sequential
    * parsing, this scope manager is passed to the individual frontends one after another. In case of
@@ -168,6 +204,173 @@ public class TranslationResult extends Node implements StatisticsHolder {
     return scratch;
   }
 
+  /**
+   * Returns an index of all AST nodes of this result which allows to look up nodes by their type
+   * or name without traversing the AST. The index is built on the first call and then re-used until
+   * {@link #invalidateNodeIndex()} is called. It is a snapshot of the AST and does not reflect
+   * nodes that were added or removed after it was built.
+   *
+   * <p>As long as the index is valid (see {@link #getCurrentNodeIndex()}), the shortcuts in {@code
+   * Extensions.kt}, such as {@code allChildren}, {@code functions} or {@code callersOf}, use it
+   * instead of traversing the AST.
+   *
+   * @return the node index
+   */
+  @NotNull
+  public NodeIndex getNodeIndex() {
+    var index = nodeIndex;
+    if (index == null) {
+      synchronized (this) {
+        index = nodeIndex;
+        if (index == null) {
+          index = new NodeIndex(this);
+          nodeIndex = index;
+        }
+      }
+    }
+
+    return index;
+  }
+
+  /**
+   * Returns the node index, if it has been built by {@link #getNodeIndex()} and not been
+   * invalidated since, or null otherwise. In contrast to {@link #getNodeIndex()}, this never
+   * traverses the AST.
+   *
+   * @return the valid node index or null
+   */
+  @Nullable
+  public NodeIndex getCurrentNodeIndex() {
+    return nodeIndex;
+  }
+
+  /**
+   * Discards the current node index, so that it is re-built on the next call to {@link
+   * #getNodeIndex()}. This needs to be called if the AST is modified. The {@link
+   * TranslationManager} does this after the language frontends and before and after each pass.
+   */
+  public void invalidateNodeIndex() {
+    nodeIndex = null;
+  }
+
+  /**
+   * Returns the dense ids of the nodes of this result. On the first call, all AST nodes are
+   * numbered. Nodes that are added later, e.g. by passes, get their id when it is first requested.
+   * In contrast to the {@link #getNodeIndex()}, the ids stay valid if the AST is modified.
+   *
+   * @return the node ids
+   */
+  @NotNull
+  public NodeIds getNodeIds() {
+    var ids = nodeIds;
+    if (ids == null) {
+      synchronized (this) {
+        ids = nodeIds;
+        if (ids == null) {
+          ids = new NodeIds(this);
+          nodeIds = ids;
+        }
+      }
+    }
+
+    return ids;
+  }
+
+  /**
+   * Returns the type solver for Java, which is shared by all {@link
+   * de.fraunhofer.aisec.cpg.frontends.java.JavaLanguageFrontend}s and passes of this result. It
+   * is created on the first call.
+   *
+   * @return the Java type solver
+   */
+  @NotNull
+  public JavaTypeSolverCache getJavaTypeSolver() {
+    var solver = javaTypeSolver;
+    if (solver == null) {
+      synchronized (this) {
+        solver = javaTypeSolver;
+        if (solver == null) {
+          solver = new JavaTypeSolverCache(getConfig());
+          javaTypeSolver = solver;
+        }
+      }
+    }
+
+    return solver;
+  }
+
+  /**
+   * Clears and discards the Java type solver, if it was created. The {@link TranslationManager}
+   * does this when cleaning up after the translation.
+   */
+  public void clearJavaTypeSolver() {
+    var solver = javaTypeSolver;
+    if (solver != null) {
+      solver.clear();
+      javaTypeSolver = null;
+    }
+  }
+
+  /**
+   * Returns the buffers of the source files of this result, which are shared by all its nodes with
+   * lazily materialized code. They are created on the first call and live as long as the nodes, so
+   * that the code of this result does not depend on other translations.
+   *
+   * @return the source buffers
+   */
+  @NotNull
+  public SourceBuffers getSourceBuffers() {
+    var buffers = sourceBuffers;
+    if (buffers == null) {
+      synchronized (this) {
+        buffers = sourceBuffers;
+        if (buffers == null) {
+          buffers = new SourceBuffers(getConfig().getCodeCacheSize(), false);
+          sourceBuffers = buffers;
+        }
+      }
+    }
+
+    return buffers;
+  }
+
+  /**
+   * Returns the table of the files of this result. The frontends use it to share the artifact of
+   * each file between the locations of all nodes in this file. It is created on the first call.
+   *
+   * @return the file table
+   */
+  @NotNull
+  public FileTable getFiles() {
+    var table = files;
+    if (table == null) {
+      synchronized (this) {
+        table = files;
+        if (table == null) {
+          table = new FileTable();
+          files = table;
+        }
+      }
+    }
+
+    return table;
+  }
+
+  /**
+   * Returns the store of the EOG and DFG edges of this result. It only exists if {@link
+   * TranslationConfiguration#getColumnarEdges()} is set and all passes have run.
+   *
+   * @return the edge store or null
+   */
+  @Nullable
+  public ColumnarEdgeStore getEdgeStore() {
+    return edgeStore;
+  }
+
+  public void setEdgeStore(@Nullable ColumnarEdgeStore edgeStore) {
+    this.edgeStore = edgeStore;
+  }
+
   public Set<Node> getAdditionalNodes() {
     return additionalNodes;
   }
@@ -178,7 +381,10 @@ public class TranslationResult extends Node implements StatisticsHolder {
 
   @Override
   public void addBenchmark(@NotNull MeasurementHolder b) {
-    this.benchmarks.add(b);
+    // frontends running in parallel add their benchmarks concurrently
+    synchronized (benchmarks) {
+      this.benchmarks.add(b);
+    }
   }
 
   @NotNull
@@ -70,6 +70,63 @@ class CompilationDatabase : ArrayList<CompilationDatabase.CompilationDatabaseEnt
         return symbols[file]
     }
 
+    /**
+     * Partitions [files] into [WorkUnit]s, which can be parsed in parallel. Files with the same
+     * include paths and symbols are put into the same unit. This only affects the scheduling, i.e.,
+     * which files a thread parses one after another; the parse state itself is kept per
+     * translation result. Files which are not part of this database form one group with no include
+     * paths and symbols.
+     *
+     * To balance the load, a group is split into several units, if it is larger than the
+     * [parallelism]-th fraction of the total size (by a factor of [UNITS_PER_THREAD]). The
+     * resulting units as well as the files within a unit are ordered largest-first, so that the
+     * biggest units are started first and the small ones fill up the gaps at the end.
+     */
+    fun partition(files: Collection<File>, parallelism: Int): List<WorkUnit> {
+        val sizes = files.associateWith { it.length() }
+        val total = sizes.values.sum()
+        val maxUnitSize = maxOf(1L, total / (maxOf(1, parallelism) * UNITS_PER_THREAD))
+
+        val groups =
+            files.groupBy { file ->
+                Pair(includePaths[file] ?: listOf(), symbols[file] ?: mapOf<String, String>())
+            }
+
+        val units = mutableListOf<WorkUnit>()
+        for ((key, group) in groups) {
+            var current = mutableListOf<File>()
+            var currentSize = 0L
+
+            for (file in group.sortedByDescending { sizes[it] }) {
+                if (current.isNotEmpty() && currentSize + sizes[file]!! > maxUnitSize) {
+                    units += WorkUnit(key.first, key.second, current, currentSize)
+                    current = mutableListOf()
+                    currentSize = 0L
+                }
+
+                current += file
+                currentSize += sizes[file]!!
+            }
+
+            if (current.isNotEmpty()) {
+                units += WorkUnit(key.first, key.second, current, currentSize)
+            }
+        }
+
+        return units.sortedByDescending { it.size }
+    }
+
+    /**
+     * A group of source files that share the same [includePaths] and [symbols] and that should be
+     * parsed one after another by the same thread. [size] is the total size of the files in bytes.
+     */
+    data class WorkUnit(
+        val includePaths: List<String>,
+        val symbols: Map<String, String>,
+        val files: List<File>,
+        val size: Long
+    )
+
     /** This is the structure of how each object inside compile_commands.json looks like. */
     data class CompilationDatabaseEntry(
         val directory: String?,
@@ -89,6 +146,9 @@ class CompilationDatabase : ArrayList<CompilationDatabase.CompilationDatabaseEnt
     )
 
     companion object {
+        /** The number of [WorkUnit]s per thread that [partition] aims for. */
+        const val UNITS_PER_THREAD = 4
+
         @JvmStatic
         /** This function returns a [CompilationDatabase] from the specified file. */
         fun fromFile(file: File): CompilationDatabase {
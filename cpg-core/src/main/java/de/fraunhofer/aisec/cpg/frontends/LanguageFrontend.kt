@@ -31,6 +31,9 @@ import de.fraunhofer.aisec.cpg.graph.LanguageProvider
 import de.fraunhofer.aisec.cpg.graph.Node
 import de.fraunhofer.aisec.cpg.graph.ScopeProvider
 import de.fraunhofer.aisec.cpg.graph.declarations.TranslationUnitDeclaration
+import de.fraunhofer.aisec.cpg.helpers.FileTable
+import de.fraunhofer.aisec.cpg.helpers.SourceBuffers
+import de.fraunhofer.aisec.cpg.helpers.StatisticsHolder
 import de.fraunhofer.aisec.cpg.passes.scopes.Scope
 import de.fraunhofer.aisec.cpg.passes.scopes.ScopeManager
 import de.fraunhofer.aisec.cpg.sarif.PhysicalLocation
@@ -66,6 +69,29 @@ abstract class LanguageFrontend(
 
     var currentTU: TranslationUnitDeclaration? = null
 
+    /**
+     * The holder of the benchmarks of this frontend, such as the time needed to parse a file. The
+     * [de.fraunhofer.aisec.cpg.TranslationManager] sets this to the
+     * [de.fraunhofer.aisec.cpg.TranslationResult].
+     */
+    var statisticsHolder: StatisticsHolder? = null
+
+    /**
+     * The source buffers from which the code of the nodes is materialized, if
+     * [TranslationConfiguration.lazyCode] is set. The [de.fraunhofer.aisec.cpg.TranslationManager]
+     * sets this to the buffers of the [de.fraunhofer.aisec.cpg.TranslationResult]. Without them,
+     * the code is stored in the nodes.
+     */
+    var sourceBuffers: SourceBuffers? = null
+
+    /**
+     * The table of the files of the translation. If it is set, the locations of all nodes in the
+     * same file share the artifact of this file (see [FileTable.intern]). The
+     * [de.fraunhofer.aisec.cpg.TranslationManager] sets this to the table of the
+     * [de.fraunhofer.aisec.cpg.TranslationResult].
+     */
+    var files: FileTable? = null
+
     @Throws(TranslationException::class)
     fun parseAll(): List<TranslationUnitDeclaration> {
         val units = ArrayList<TranslationUnitDeclaration>()
@@ -99,7 +125,12 @@ abstract class LanguageFrontend(
     abstract fun <T> getLocationFromRawNode(astNode: T): PhysicalLocation?
     override fun <N, S> setCodeAndLocation(cpgNode: N, astNode: S?) {
         if (cpgNode is Node && astNode != null) {
-            if (config.codeInNodes) {
+            val location = getLocationFromRawNode<S?>(astNode)?.let { files?.intern(it) ?: it }
+            val buffers = sourceBuffers
+            if (config.codeInNodes && config.lazyCode && buffers != null && location != null) {
+                // the code is extracted from the source file on demand
+                (cpgNode as Node).sourceBuffers = buffers
+            } else if (config.codeInNodes) {
                 // only set code, if it's not already set or empty
                 val code = getCodeFromRawNode<S?>(astNode)
                 if (code != null) {
@@ -108,7 +139,7 @@ abstract class LanguageFrontend(
                     log.warn("Unexpected: No code for node {}", astNode)
                 }
             }
-            (cpgNode as Node).location = getLocationFromRawNode<S?>(astNode)
+            (cpgNode as Node).location = location
         }
     }
 
@@ -55,7 +55,6 @@ import org.eclipse.cdt.core.model.ILanguage
 import org.eclipse.cdt.core.parser.DefaultLogService
 import org.eclipse.cdt.core.parser.FileContent
 import org.eclipse.cdt.core.parser.IncludeFileContentProvider
-import org.eclipse.cdt.core.parser.ScannerInfo
 import org.eclipse.cdt.internal.core.dom.parser.ASTNode
 import org.eclipse.cdt.internal.core.dom.parser.ASTTranslationUnit
 import org.eclipse.cdt.internal.core.dom.parser.cpp.CPPASTQualifiedName
@@ -86,6 +85,14 @@ class CXXLanguageFrontend(
      */
     var dialect: AbstractCLikeLanguage? = null
 
+    /**
+     * The context shared with the other frontends of the translation, see [CXXParseContext]. The
+     * [de.fraunhofer.aisec.cpg.TranslationManager] sets this to the context of the
+     * [de.fraunhofer.aisec.cpg.TranslationResult]. If the frontend is used on its own, it has its
+     * own context.
+     */
+    internal var parseContext = CXXParseContext(config)
+
     /**
      * Implements an [IncludeFileContentProvider] which features an inclusion/exclusion list for
      * header files.
@@ -93,19 +100,28 @@ class CXXLanguageFrontend(
     private val includeFileContentProvider: IncludeFileContentProvider =
         object : InternalFileContentProvider() {
             /**
-             * Returns the content of this path, without any cache.
+             * Returns the content of this path. The content is cached in the [parseContext].
              *
              * @return the content of the path of null if it is to be excluded
              */
-            private fun getContentUncached(path: String): InternalFileContent? {
+            private fun getContentCached(path: String): InternalFileContent? {
                 if (!getInclusionExists(path)) {
                     return null
                 }
 
+                if (!parseContext.inclusionAllowed(path, ::isAllowed)) {
+                    return null
+                }
+
+                return parseContext.getContent(path)
+            }
+
+            /** Checks, whether the include file is not excluded by the block- or whitelist. */
+            private fun isAllowed(path: String): Boolean {
                 // check, if the file is on the blacklist
                 if (absoluteOrRelativePathIsInList(Path.of(path), config.includeBlocklist)) {
                     LOGGER.debug("Blacklisting include file: {}", path)
-                    return null
+                    return false
                 }
 
                 // check, if the white-list exists at all
@@ -114,11 +130,14 @@ class CXXLanguageFrontend(
                     !absoluteOrRelativePathIsInList(Path.of(path), config.includeWhitelist)
                 ) {
                     LOGGER.debug("Include file {} not on the whitelist. Ignoring.", path)
-                    return null
+                    return false
                 }
                 LOGGER.debug("Loading include file {}", path)
-                val content = FileContent.createForExternalFileLocation(path)
-                return content as? InternalFileContent
+                return true
+            }
+
+            override fun getInclusionExists(path: String): Boolean {
+                return parseContext.inclusionExists(path) { super.getInclusionExists(it) }
             }
 
             private fun hasIncludeWhitelist(): Boolean {
@@ -172,14 +191,14 @@ class CXXLanguageFrontend(
                 path: String,
                 macroDictionary: IMacroDictionary
             ): InternalFileContent? {
-                return getContentUncached(path)
+                return getContentCached(path)
             }
 
             override fun getContentForInclusion(
                 ifl: IIndexFileLocation,
                 astPath: String
             ): InternalFileContent? {
-                return getContentUncached(astPath)
+                return getContentCached(astPath)
             }
         }
 
@@ -196,24 +215,18 @@ class CXXLanguageFrontend(
     override fun parse(file: File): TranslationUnitDeclaration {
         val content = FileContent.createForExternalFileLocation(file.absolutePath)
 
-        // include paths
-        val includePaths: MutableList<String> = ArrayList()
-        if (config.topLevel != null) {
-            includePaths.add(config.topLevel.toPath().toAbsolutePath().toString())
-        }
-
-        val symbols: HashMap<String, String> = HashMap()
-        symbols.putAll(config.symbols)
-        includePaths.addAll(config.includePaths.map { it.toAbsolutePath().toString() })
-
-        config.compilationDatabase?.getIncludePaths(file)?.let { includePaths.addAll(it) }
-        config.compilationDatabase?.getSymbols(file)?.let { symbols.putAll(it) }
-
-        val scannerInfo = ScannerInfo(symbols, includePaths.toTypedArray())
+        // include paths and symbols are shared with all other files of the translation
+        val scannerInfo = parseContext.getScannerInfo(file)
         val log = DefaultLogService()
         val opts = ILanguage.OPTION_PARSE_INACTIVE_CODE // | ILanguage.OPTION_ADD_COMMENTS;
         return try {
-            var bench = Benchmark(this.javaClass, "Parsing sourcefile ${file.name}")
+            var bench =
+                Benchmark(
+                    this.javaClass,
+                    "Parsing sourcefile ${file.name}",
+                    false,
+                    statisticsHolder
+                )
 
             // Set parser language, based on file extension
             this.dialect =
@@ -239,7 +252,13 @@ class CXXLanguageFrontend(
                 length / 50
             )
             bench.stop()
-            bench = Benchmark(this.javaClass, "Transforming ${file.name} to CPG")
+            bench =
+                Benchmark(
+                    this.javaClass,
+                    "Transforming ${file.name} to CPG",
+                    false,
+                    statisticsHolder
+                )
             if (config.debugParser) {
                 explore(translationUnit, 0)
             }
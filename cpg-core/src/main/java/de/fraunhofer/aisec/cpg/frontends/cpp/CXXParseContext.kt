@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.frontends.cpp
+
+import de.fraunhofer.aisec.cpg.TranslationConfiguration
+import de.fraunhofer.aisec.cpg.TranslationResult
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+import org.eclipse.cdt.core.parser.FileContent
+import org.eclipse.cdt.core.parser.ScannerInfo
+import org.eclipse.cdt.internal.core.parser.scanner.AbstractCharArray
+import org.eclipse.cdt.internal.core.parser.scanner.InternalFileContent
+
+/**
+ * Holds the state of the [CXXLanguageFrontend] which does not depend on a single file, but only on
+ * the [TranslationConfiguration]. This includes the [ScannerInfo] for each combination of include
+ * paths and symbols of the [TranslationConfiguration.compilationDatabase], the result of the
+ * include path lookups, the decision whether an include file is on the block- or whitelist as well
+ * as the content of the include files.
+ *
+ * The [de.fraunhofer.aisec.cpg.TranslationManager] creates one context per
+ * [de.fraunhofer.aisec.cpg.TranslationResult] (see [of]) and shares it between all frontends of
+ * that translation, which may parse files in parallel. Therefore, all lookups are thread-safe. The
+ * context is released together with the result, so that a later translation never sees stale
+ * include files.
+ */
+internal class CXXParseContext(val config: TranslationConfiguration) {
+    private val scannerInfos =
+        ConcurrentHashMap<Pair<List<String>, Map<String, String>>, ScannerInfo>()
+
+    private val inclusionExists = ConcurrentHashMap<String, Boolean>()
+
+    private val inclusionAllowed = ConcurrentHashMap<String, Boolean>()
+
+    /** The content of the include files, which is only accessed while holding its lock. */
+    private val includeContents =
+        object : LinkedHashMap<String, AbstractCharArray>(16, 0.75f, true) {
+            override fun removeEldestEntry(
+                eldest: MutableMap.MutableEntry<String, AbstractCharArray>?
+            ): Boolean {
+                return size > MAX_CACHED_INCLUDES
+            }
+        }
+
+    /** The include paths of the configuration, which are used for all files. */
+    private val configIncludePaths: List<String> =
+        listOfNotNull(config.topLevel?.toPath()?.toAbsolutePath()?.toString()) +
+            config.includePaths.map { it.toAbsolutePath().toString() }
+
+    /**
+     * Returns the [ScannerInfo] for [file], which consists of the symbols and include paths of the
+     * configuration and the ones of the compilation database for this file.
+     */
+    fun getScannerInfo(file: File): ScannerInfo {
+        val includePaths = config.compilationDatabase?.getIncludePaths(file) ?: listOf()
+        val symbols = config.compilationDatabase?.getSymbols(file) ?: mapOf()
+
+        return scannerInfos.computeIfAbsent(Pair(includePaths, symbols)) {
+            ScannerInfo(
+                config.symbols + symbols,
+                (configIncludePaths + includePaths).toTypedArray()
+            )
+        }
+    }
+
+    /** Returns whether the include file at [path] exists, using [check] on the first request. */
+    fun inclusionExists(path: String, check: (String) -> Boolean): Boolean {
+        return inclusionExists.computeIfAbsent(path, check)
+    }
+
+    /**
+     * Returns whether the include file at [path] should be loaded, using [check] on the first
+     * request.
+     */
+    fun inclusionAllowed(path: String, check: (String) -> Boolean): Boolean {
+        return inclusionAllowed.computeIfAbsent(path, check)
+    }
+
+    /**
+     * Returns the content of the include file at [path]. The file is only read once, but a new
+     * [InternalFileContent] is returned on every call, since the CDT scanner modifies it.
+     */
+    fun getContent(path: String): InternalFileContent? {
+        val source =
+            synchronized(includeContents) { includeContents[path] }
+                ?: (FileContent.createForExternalFileLocation(path) as? InternalFileContent)
+                    ?.source
+                    ?.also { synchronized(includeContents) { includeContents[path] = it } }
+                    ?: return null
+
+        return InternalFileContent(path, source)
+    }
+
+    companion object {
+        /** The maximum number of include files whose content is kept per context. */
+        private const val MAX_CACHED_INCLUDES = 2048
+
+        private const val SCRATCH_KEY = "cxxParseContext"
+
+        /** Returns the context of [result], which is created on the first request. */
+        fun of(result: TranslationResult): CXXParseContext {
+            return result.scratch.computeIfAbsent(SCRATCH_KEY) {
+                CXXParseContext(result.config)
+            } as CXXParseContext
+        }
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.frontends.java
+
+import java.io.*
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import java.security.MessageDigest
+import java.util.zip.ZipFile
+import org.slf4j.LoggerFactory
+
+/**
+ * The symbols of a single class file. The names of the class itself and of its supertypes are
+ * binary names, i.e. `java.util.Map$Entry`. Methods and fields are stored with their JVM
+ * descriptors.
+ */
+class ClassSymbol(
+    val binaryName: String,
+    val superClass: String?,
+    val interfaces: List<String>,
+    val accessFlags: Int,
+    val methods: List<MemberSymbol>,
+    val fields: List<MemberSymbol>
+) {
+    /** The canonical name of this class, as it is used in source code. */
+    val canonicalName: String
+        get() = binaryName.replace('$', '.')
+
+    /** The binary names of the direct supertypes of this class. */
+    val superTypes: List<String>
+        get() = listOfNotNull(superClass) + interfaces
+}
+
+/** A method or field of a [ClassSymbol]. */
+data class MemberSymbol(val name: String, val descriptor: String, val accessFlags: Int)
+
+/**
+ * An index of all classes contained in a list of JARs and class directories (the classpath of the
+ * analyzed code). The class files are only read once to extract their supertypes and members. The
+ * index of a JAR is stored in [cacheDirectory] (if set), using the SHA-256 hash of the JAR as key,
+ * so that it can be re-used in subsequent runs as long as the JAR does not change. Class
+ * directories are always scanned.
+ *
+ * The index is used by the [ClasspathTypeSolver] to quickly decide whether a type is available on
+ * the classpath at all and where it can be found.
+ */
+class ClasspathIndex(val entries: List<File>, val cacheDirectory: File? = null) {
+    private val symbols = HashMap<String, ClassSymbol>()
+    private val locations = HashMap<String, File>()
+
+    init {
+        for (entry in entries) {
+            val classes =
+                when {
+                    entry.isDirectory -> scanDirectory(entry)
+                    entry.isFile -> loadOrScanJar(entry)
+                    else -> {
+                        log.warn("Ignoring classpath entry {}, it does not exist", entry)
+                        listOf()
+                    }
+                }
+
+            for (symbol in classes) {
+                // The first entry wins, like on a regular classpath
+                if (symbols.putIfAbsent(symbol.canonicalName, symbol) == null) {
+                    locations[symbol.canonicalName] = entry
+                }
+            }
+        }
+
+        log.info("Indexed {} classes from {} classpath entries", symbols.size, entries.size)
+    }
+
+    /** The number of indexed classes. */
+    val size: Int
+        get() = symbols.size
+
+    /** Returns the symbols of the class with the given canonical name, if it is indexed. */
+    operator fun get(canonicalName: String): ClassSymbol? {
+        return symbols[canonicalName]
+    }
+
+    operator fun contains(canonicalName: String): Boolean {
+        return canonicalName in symbols
+    }
+
+    /** Returns the JAR or class directory which contains the class with the given name. */
+    fun locationOf(canonicalName: String): File? {
+        return locations[canonicalName]
+    }
+
+    private fun scanDirectory(directory: File): List<ClassSymbol> {
+        return directory
+            .walkTopDown()
+            .filter { it.isFile && isIndexedClassFile(it.name) }
+            .mapNotNull { file -> file.inputStream().use { readClassFile(it, file.path) } }
+            .toList()
+    }
+
+    private fun loadOrScanJar(jar: File): List<ClassSymbol> {
+        val cacheFile = cacheDirectory?.let { File(it, hash(jar) + INDEX_FILE_EXTENSION) }
+        if (cacheFile != null && cacheFile.isFile) {
+            try {
+                return readIndexFile(cacheFile)
+            } catch (e: IOException) {
+                log.warn("Could not read classpath index {}, re-scanning {}", cacheFile, jar, e)
+            }
+        }
+
+        val classes = scanJar(jar)
+
+        if (cacheFile != null) {
+            try {
+                writeIndexFile(cacheFile, classes)
+            } catch (e: IOException) {
+                log.warn("Could not write classpath index {}", cacheFile, e)
+            }
+        }
+
+        return classes
+    }
+
+    private fun scanJar(jar: File): List<ClassSymbol> {
+        val classes = mutableListOf<ClassSymbol>()
+
+        ZipFile(jar).use { zip ->
+            for (entry in zip.entries()) {
+                if (entry.isDirectory || !isIndexedClassFile(entry.name)) {
+                    continue
+                }
+
+                zip.getInputStream(entry).use { input ->
+                    readClassFile(input, "$jar!${entry.name}")?.let { classes += it }
+                }
+            }
+        }
+
+        return classes
+    }
+
+    private fun readClassFile(input: InputStream, path: String): ClassSymbol? {
+        return try {
+            ClassFileReader(DataInputStream(BufferedInputStream(input))).read()
+        } catch (e: IOException) {
+            log.debug("Could not read class file {}: {}", path, e.message)
+            null
+        }
+    }
+
+    private fun isIndexedClassFile(name: String): Boolean {
+        if (!name.endsWith(".class") || name.startsWith("META-INF/")) {
+            return false
+        }
+
+        val simpleName = name.substringAfterLast('/').removeSuffix(".class")
+
+        // Skip module and package infos as well as anonymous classes, they cannot be referenced
+        // by name
+        return simpleName != "module-info" &&
+            simpleName != "package-info" &&
+            simpleName.split('$').drop(1).none { it.isEmpty() || it[0].isDigit() }
+    }
+
+    private fun readIndexFile(file: File): List<ClassSymbol> {
+        DataInputStream(BufferedInputStream(file.inputStream())).use { input ->
+            if (input.readInt() != INDEX_FILE_MAGIC || input.readInt() != INDEX_FILE_VERSION) {
+                throw IOException("Unsupported index file format")
+            }
+
+            return List(input.readInt()) {
+                val binaryName = input.readUTF()
+                val superClass = input.readUTF().ifEmpty { null }
+                val interfaces = List(input.readInt()) { input.readUTF() }
+                val accessFlags = input.readInt()
+                val methods = List(input.readInt()) { readMember(input) }
+                val fields = List(input.readInt()) { readMember(input) }
+
+                ClassSymbol(binaryName, superClass, interfaces, accessFlags, methods, fields)
+            }
+        }
+    }
+
+    private fun readMember(input: DataInputStream): MemberSymbol {
+        return MemberSymbol(input.readUTF(), input.readUTF(), input.readInt())
+    }
+
+    private fun writeIndexFile(file: File, classes: List<ClassSymbol>) {
+        file.parentFile?.mkdirs()
+
+        // Write to a temporary file first, so that concurrent runs never see a partial index
+        val tmp = File.createTempFile(file.name, ".tmp", file.parentFile)
+        DataOutputStream(BufferedOutputStream(tmp.outputStream())).use { out ->
+            out.writeInt(INDEX_FILE_MAGIC)
+            out.writeInt(INDEX_FILE_VERSION)
+            out.writeInt(classes.size)
+            for (symbol in classes) {
+                out.writeUTF(symbol.binaryName)
+                out.writeUTF(symbol.superClass ?: "")
+                out.writeInt(symbol.interfaces.size)
+                symbol.interfaces.forEach { out.writeUTF(it) }
+                out.writeInt(symbol.accessFlags)
+                out.writeInt(symbol.methods.size)
+                symbol.methods.forEach { writeMember(out, it) }
+                out.writeInt(symbol.fields.size)
+                symbol.fields.forEach { writeMember(out, it) }
+            }
+        }
+
+        if (!tmp.renameTo(file)) {
+            tmp.delete()
+        }
+    }
+
+    private fun writeMember(out: DataOutputStream, member: MemberSymbol) {
+        out.writeUTF(member.name)
+        out.writeUTF(member.descriptor)
+        out.writeInt(member.accessFlags)
+    }
+
+    /**
+     * A minimal reader for the class file format, which only extracts the information needed for
+     * a [ClassSymbol]. See chapter 4 of the Java Virtual Machine Specification.
+     */
+    private class ClassFileReader(private val input: DataInputStream) {
+        private lateinit var utf8: Array<String?>
+        private lateinit var classNameIndex: IntArray
+
+        fun read(): ClassSymbol {
+            if (input.readInt() != CLASS_FILE_MAGIC) {
+                throw IOException("Not a class file")
+            }
+            // minor and major version
+            input.skipBytes(4)
+
+            readConstantPool()
+
+            val accessFlags = input.readUnsignedShort()
+            val thisClass = className(input.readUnsignedShort())
+            val superClass = input.readUnsignedShort().let { if (it == 0) null else className(it) }
+            val interfaces =
+                List(input.readUnsignedShort()) { className(input.readUnsignedShort()) }
+            val fields = readMembers()
+            val methods = readMembers()
+
+            return ClassSymbol(
+                thisClass,
+                superClass,
+                interfaces,
+                accessFlags,
+                methods.filter { it.name != "<clinit>" },
+                fields
+            )
+        }
+
+        private fun readConstantPool() {
+            val count = input.readUnsignedShort()
+            utf8 = arrayOfNulls(count)
+            classNameIndex = IntArray(count)
+
+            var i = 1
+            while (i < count) {
+                when (val tag = input.readUnsignedByte()) {
+                    1 -> utf8[i] = input.readUTF()
+                    7 -> classNameIndex[i] = input.readUnsignedShort()
+                    8,
+                    16,
+                    19,
+                    20 -> input.skipBytes(2)
+                    15 -> input.skipBytes(3)
+                    3,
+                    4,
+                    9,
+                    10,
+                    11,
+                    12,
+                    17,
+                    18 -> input.skipBytes(4)
+                    5,
+                    6 -> {
+                        input.skipBytes(8)
+                        // long and double constants take up two entries
+                        i++
+                    }
+                    else -> throw IOException("Unknown constant pool tag $tag")
+                }
+                i++
+            }
+        }
+
+        private fun readMembers(): List<MemberSymbol> {
+            return List(input.readUnsignedShort()) {
+                val accessFlags = input.readUnsignedShort()
+                val name = utf8(input.readUnsignedShort())
+                val descriptor = utf8(input.readUnsignedShort())
+                skipAttributes()
+
+                MemberSymbol(name, descriptor, accessFlags)
+            }
+        }
+
+        private fun skipAttributes() {
+            repeat(input.readUnsignedShort()) {
+                input.skipBytes(2)
+                input.skipBytes(input.readInt())
+            }
+        }
+
+        private fun utf8(index: Int): String {
+            return utf8.getOrNull(index) ?: throw IOException("Invalid constant pool index $index")
+        }
+
+        private fun className(index: Int): String {
+            return utf8(classNameIndex.getOrElse(index) { 0 }).replace('/', '.')
+        }
+    }
+
+    companion object {
+        private const val CLASS_FILE_MAGIC = 0xCAFEBABE.toInt()
+        private const val INDEX_FILE_MAGIC = 0x43504749 // "CPGI"
+        private const val INDEX_FILE_VERSION = 1
+        private const val INDEX_FILE_EXTENSION = ".idx"
+
+        private val log = LoggerFactory.getLogger(ClasspathIndex::class.java)
+
+        /** Computes the SHA-256 hash of [file], which is read through a memory mapping. */
+        @JvmStatic
+        fun hash(file: File): String {
+            val digest = MessageDigest.getInstance("SHA-256")
+
+            FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+                val size = channel.size()
+                var position = 0L
+                while (position < size) {
+                    val length = minOf(size - position, Int.MAX_VALUE.toLong())
+                    val buffer: ByteBuffer =
+                        channel.map(FileChannel.MapMode.READ_ONLY, position, length)
+                    digest.update(buffer)
+                    position += length
+                }
+            }
+
+            return digest.digest().joinToString("") { "%02x".format(it) }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.frontends.java
+
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration
+import com.github.javaparser.symbolsolver.javassistmodel.JavassistFactory
+import com.github.javaparser.symbolsolver.model.resolution.SymbolReference
+import com.github.javaparser.symbolsolver.model.resolution.TypeSolver
+import java.io.Closeable
+import javassist.ClassPath
+import javassist.ClassPool
+import javassist.NotFoundException
+import org.slf4j.LoggerFactory
+
+/**
+ * A type solver for the types contained in the JARs and class directories of the classpath (see
+ * [de.fraunhofer.aisec.cpg.TranslationConfiguration.classpath]). Whether a type exists on the
+ * classpath is decided solely by the [ClasspathIndex], so that unknown types are rejected without
+ * touching any JAR. Only types which are actually contained in the index are loaded (lazily) by
+ * Javassist.
+ */
+class ClasspathTypeSolver(val index: ClasspathIndex) : TypeSolver, Closeable {
+    private var parent: TypeSolver? = null
+
+    private val classPool = ClassPool(false)
+
+    /** The class paths of the [classPool], which hold the handles of the JARs. */
+    private val classPaths = mutableListOf<ClassPath>()
+
+    init {
+        for (entry in index.entries) {
+            try {
+                classPaths += classPool.appendClassPath(entry.absolutePath)
+            } catch (e: NotFoundException) {
+                log.warn("Could not add {} to the class pool", entry, e)
+            }
+        }
+        classPaths += classPool.appendSystemPath()
+    }
+
+    override fun getParent(): TypeSolver? {
+        return parent
+    }
+
+    override fun setParent(parent: TypeSolver?) {
+        check(this.parent == null) { "This type solver already has a parent" }
+        require(parent !== this) { "The parent of this type solver cannot be itself" }
+
+        this.parent = parent
+    }
+
+    override fun tryToSolveType(name: String): SymbolReference<ResolvedReferenceTypeDeclaration> {
+        val symbol = index[name] ?: return unsolved()
+
+        return try {
+            val ctClass = classPool.get(symbol.binaryName)
+            SymbolReference.solved(JavassistFactory.toTypeDeclaration(ctClass, root))
+        } catch (e: NotFoundException) {
+            log.debug("Indexed type {} could not be loaded: {}", name, e.message)
+            unsolved()
+        }
+    }
+
+    /**
+     * Removes all entries from the class pool, which releases their JAR handles. Afterwards, no
+     * types can be solved anymore.
+     */
+    override fun close() {
+        synchronized(this) {
+            classPaths.forEach { classPool.removeClassPath(it) }
+            classPaths.clear()
+        }
+    }
+
+    private fun unsolved(): SymbolReference<ResolvedReferenceTypeDeclaration> {
+        return SymbolReference.unsolved(ResolvedReferenceTypeDeclaration::class.java)
+    }
+
+    companion object {
+        private val log = LoggerFactory.getLogger(ClasspathTypeSolver::class.java)
+    }
+}
@@ -41,10 +41,6 @@ import com.github.javaparser.resolution.UnsolvedSymbolException
 import com.github.javaparser.resolution.declarations.ResolvedMethodDeclaration
 import com.github.javaparser.resolution.declarations.ResolvedValueDeclaration
 import com.github.javaparser.symbolsolver.JavaSymbolSolver
-import com.github.javaparser.symbolsolver.javaparsermodel.JavaParserFacade
-import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver
-import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver
-import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver
 import de.fraunhofer.aisec.cpg.TranslationConfiguration
 import de.fraunhofer.aisec.cpg.frontends.Language
 import de.fraunhofer.aisec.cpg.frontends.LanguageFrontend
@@ -56,7 +52,6 @@ import de.fraunhofer.aisec.cpg.graph.declarations.TranslationUnitDeclaration
 import de.fraunhofer.aisec.cpg.graph.statements.expressions.Expression
 import de.fraunhofer.aisec.cpg.graph.types.UnknownType
 import de.fraunhofer.aisec.cpg.helpers.Benchmark
-import de.fraunhofer.aisec.cpg.helpers.CommonPath
 import de.fraunhofer.aisec.cpg.passes.scopes.Scope
 import de.fraunhofer.aisec.cpg.passes.scopes.ScopeManager
 import de.fraunhofer.aisec.cpg.sarif.PhysicalLocation
@@ -74,8 +69,34 @@ open class JavaLanguageFrontend(
 ) : LanguageFrontend(language, config, scopeManager) {
 
     var context: CompilationUnit? = null
-    var javaSymbolResolver: JavaSymbolSolver?
-    val nativeTypeResolver = CombinedTypeSolver()
+    var javaSymbolResolver: JavaSymbolSolver? = null
+
+    private var sharedTypeSolver: JavaTypeSolverCache? = null
+    private var ownsTypeSolver = false
+
+    /** The view of the [typeSolver] which is used by this frontend and its symbol resolver. */
+    private var typeSolverView: JavaTypeSolverCache.View? = null
+
+    /**
+     * The type solver used by this frontend. The [de.fraunhofer.aisec.cpg.TranslationManager] sets
+     * this to the type solver of the [de.fraunhofer.aisec.cpg.TranslationResult], so that it is
+     * shared between all frontends and passes. If the frontend is used on its own, it creates its
+     * own type solver on first use and clears it in [cleanup].
+     */
+    var typeSolver: JavaTypeSolverCache
+        get() {
+            return sharedTypeSolver
+                ?: JavaTypeSolverCache(config).also {
+                    sharedTypeSolver = it
+                    ownsTypeSolver = true
+                }
+        }
+        set(value) {
+            sharedTypeSolver = value
+            ownsTypeSolver = false
+            typeSolverView = null
+            javaSymbolResolver = null
+        }
 
     protected lateinit var expressionHandler: ExpressionHandler
     protected lateinit var statementHandler: StatementHandler
@@ -95,17 +116,23 @@ open class JavaLanguageFrontend(
     override fun parse(file: File): TranslationUnitDeclaration {
         // load in the file
         return try {
+            val view = typeSolverView ?: typeSolver.view().also { typeSolverView = it }
+            val symbolResolver =
+                javaSymbolResolver ?: JavaSymbolSolver(view).also { javaSymbolResolver = it }
             val parserConfiguration = ParserConfiguration()
-            parserConfiguration.setSymbolResolver(javaSymbolResolver)
+            parserConfiguration.setSymbolResolver(symbolResolver)
             val parser = JavaParser(parserConfiguration)
 
             // parse the file
-            var bench = Benchmark(this.javaClass, "Parsing source file")
+            var bench = Benchmark(this.javaClass, "Parsing source file", false, statisticsHolder)
 
             context = parse(file, parser)
             bench.addMeasurement()
-            bench = Benchmark(this.javaClass, "Transform to CPG")
-            context!!.setData(Node.SYMBOL_RESOLVER_KEY, javaSymbolResolver)
+            bench = Benchmark(this.javaClass, "Transform to CPG", false, statisticsHolder)
+            context!!.setData(Node.SYMBOL_RESOLVER_KEY, symbolResolver)
+
+            // make the types of this file known to the type solver of this frontend
+            view.seed(context!!)
 
             // starting point is always a translation declaration
             val fileDeclaration = newTranslationUnitDeclaration(file.toString(), context.toString())
@@ -410,7 +437,13 @@ open class JavaLanguageFrontend(
     }
 
     override fun cleanup() {
-        JavaParserFacade.clearInstances()
+        // A shared type solver is cleared by its owner at the end of the translation
+        if (ownsTypeSolver) {
+            sharedTypeSolver?.clear()
+            sharedTypeSolver = null
+            typeSolverView = null
+            javaSymbolResolver = null
+        }
         super.cleanup()
 
         context = null
@@ -481,24 +514,4 @@ open class JavaLanguageFrontend(
         const val THIS = "this"
         const val ANNOTATION_MEMBER_VALUE = "value"
     }
-
-    init {
-        val reflectionTypeSolver = ReflectionTypeSolver()
-        nativeTypeResolver.add(reflectionTypeSolver)
-        var root = config.topLevel
-        if (root == null && config.softwareComponents.size == 1) {
-            root =
-                CommonPath.commonPath(
-                    config.softwareComponents[config.softwareComponents.keys.first()]
-                )
-        }
-        if (root == null) {
-            log.warn("Could not determine source root for {}", config.softwareComponents)
-        } else {
-            log.info("Source file root used for type solver: {}", root)
-            val javaParserTypeSolver = JavaParserTypeSolver(root)
-            nativeTypeResolver.add(javaParserTypeSolver)
-        }
-        javaSymbolResolver = JavaSymbolSolver(nativeTypeResolver)
-    }
 }
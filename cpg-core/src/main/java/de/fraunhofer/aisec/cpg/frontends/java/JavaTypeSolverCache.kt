@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.frontends.java
+
+import com.github.javaparser.ast.CompilationUnit
+import com.github.javaparser.ast.body.TypeDeclaration
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration
+import com.github.javaparser.symbolsolver.javaparsermodel.JavaParserFacade
+import com.github.javaparser.symbolsolver.model.resolution.SymbolReference
+import com.github.javaparser.symbolsolver.model.resolution.TypeSolver
+import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver
+import de.fraunhofer.aisec.cpg.TranslationConfiguration
+import de.fraunhofer.aisec.cpg.helpers.CommonPath
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+import org.slf4j.LoggerFactory
+
+/**
+ * A type solver for Java, which is shared between all [JavaLanguageFrontend]s of one translation
+ * and the [de.fraunhofer.aisec.cpg.passes.JavaExternalTypeHierarchyResolver]. It is owned by the
+ * [de.fraunhofer.aisec.cpg.TranslationResult] (see
+ * [de.fraunhofer.aisec.cpg.TranslationResult.getJavaTypeSolver]).
+ *
+ * Types are looked up by a [ReflectionTypeSolver], a [JavaParserTypeSolver] for the source root and
+ * a [ClasspathTypeSolver] for the configured classpath, in this order. The results of the
+ * reflection and classpath solvers, both solved and unsolved, are kept in concurrent caches which
+ * are shared by all users of this solver. Each cache holds at most [maximumSize] entries. If a
+ * cache is full, its oldest entries are evicted first. Since the underlying solvers are not
+ * thread-safe, a cache miss is resolved while holding a lock on the respective solver. The
+ * declarations of these library types only refer back to this solver, which is thread-safe.
+ *
+ * Types declared in source files, however, are resolved with a [JavaParserFacade], which is not
+ * thread-safe and which JavaParser keeps per root type solver. Therefore, each frontend uses its
+ * own [view] of this solver, which has its own [JavaParserTypeSolver] and source type cache and is
+ * the root of both. The types declared in the [CompilationUnit]s which a frontend has already
+ * parsed are added to the cache of its view and to the source type cache of this solver with
+ * [View.seed], so that neither the frontend nor the passes that use this solver after the frontends
+ * (such as the [de.fraunhofer.aisec.cpg.passes.JavaExternalTypeHierarchyResolver]) need to parse
+ * these files again.
+ */
+class JavaTypeSolverCache
+@JvmOverloads
+constructor(config: TranslationConfiguration, val maximumSize: Int = DEFAULT_MAXIMUM_SIZE) :
+    TypeSolver {
+    private var parent: TypeSolver? = null
+
+    /** The root of the source files, if it could be determined. */
+    private val sourceRoot: File?
+
+    private val reflectionSolver = ReflectionTypeSolver()
+    private val reflectionCache = BoundedCache(maximumSize)
+
+    private val classpathSolver: ClasspathTypeSolver?
+    private val classpathCache = BoundedCache(maximumSize)
+
+    /** The source types of this solver itself, if it is not used through a [View]. */
+    private val sources: Sources
+
+    /** The index of the classpath, if a classpath was configured. */
+    val classpathIndex: ClasspathIndex?
+        get() = classpathSolver?.index
+
+    init {
+        var root = config.topLevel
+        if (root == null && config.softwareComponents.size == 1) {
+            root =
+                CommonPath.commonPath(
+                    config.softwareComponents[config.softwareComponents.keys.first()]
+                )
+        }
+        if (root == null) {
+            log.warn("Could not determine source root for {}", config.softwareComponents)
+        } else {
+            log.info("Source file root used for type solver: {}", root)
+        }
+        sourceRoot = root
+
+        // The declarations of library types refer to this solver, which serializes the access to
+        // the underlying solvers
+        reflectionSolver.setParent(this)
+        classpathSolver =
+            if (config.classpath.isNotEmpty()) {
+                val index = ClasspathIndex(config.classpath, config.classpathIndexDirectory)
+                ClasspathTypeSolver(index).also { it.setParent(this) }
+            } else {
+                null
+            }
+
+        sources = Sources(this, this)
+    }
+
+    override fun getParent(): TypeSolver? {
+        return parent
+    }
+
+    override fun setParent(parent: TypeSolver?) {
+        check(this.parent == null) { "This type solver already has a parent" }
+        require(parent !== this) { "The parent of this type solver cannot be itself" }
+
+        this.parent = parent
+    }
+
+    override fun tryToSolveType(name: String): SymbolReference<ResolvedReferenceTypeDeclaration> {
+        return solve(name, sources)
+    }
+
+    private fun solve(
+        name: String,
+        sources: Sources
+    ): SymbolReference<ResolvedReferenceTypeDeclaration> {
+        val ref = solveCached(name, reflectionSolver, reflectionCache)
+        if (ref.isSolved) {
+            return ref
+        }
+
+        val sourceRef = sources.tryToSolveType(name)
+        if (sourceRef.isSolved || classpathSolver == null) {
+            return sourceRef
+        }
+
+        return solveCached(name, classpathSolver, classpathCache)
+    }
+
+    /** The number of cached entries, including the source types of this solver itself. */
+    val cachedEntries: Int
+        get() = reflectionCache.size + classpathCache.size + sources.cache.size
+
+    /**
+     * The number of source types which this solver itself (not its views) had to resolve by
+     * parsing a source file, because they were not seeded by a frontend.
+     */
+    val parsedSourceTypes: Int
+        get() = sources.parsed.get()
+
+    /**
+     * Returns a lightweight type solver which shares the library types of this one, but resolves
+     * source types on its own. It is used as the root type solver of a single
+     * [JavaLanguageFrontend].
+     */
+    fun view(): View {
+        return View(this)
+    }
+
+    /**
+     * Clears the caches as well as the global [JavaParserFacade] instances and releases the JARs of
+     * the classpath. This should only be called once the translation is completely finished.
+     */
+    fun clear() {
+        reflectionCache.clear()
+        classpathCache.clear()
+        sources.cache.clear()
+        classpathSolver?.close()
+        JavaParserFacade.clearInstances()
+    }
+
+    /**
+     * A type solver which uses the library types of the shared [JavaTypeSolverCache], but has its
+     * own [JavaParserTypeSolver] and source type cache. Unless it is added to another type solver,
+     * it is its own root, so that the [JavaParserFacade] of its source types is not shared with
+     * other views.
+     */
+    class View internal constructor(private val shared: JavaTypeSolverCache) : TypeSolver {
+        private var parent: TypeSolver? = null
+
+        private val sources = Sources(this, shared)
+
+        override fun getParent(): TypeSolver? {
+            return parent
+        }
+
+        override fun setParent(parent: TypeSolver?) {
+            check(this.parent == null) { "This type solver already has a parent" }
+            require(parent !== this) { "The parent of this type solver cannot be itself" }
+
+            this.parent = parent
+        }
+
+        override fun tryToSolveType(
+            name: String
+        ): SymbolReference<ResolvedReferenceTypeDeclaration> {
+            return shared.solve(name, sources)
+        }
+
+        /** The number of cached source types of this view. */
+        val cachedEntries: Int
+            get() = sources.cache.size
+
+        /**
+         * Adds all (named) types declared in [cu] to the source type cache of this view and of the
+         * shared solver. [cu] needs to have a symbol resolver which uses this view, which is the
+         * case for all compilation units parsed by the [JavaLanguageFrontend].
+         *
+         * The declarations in the cache of the shared solver still use the [JavaParserFacade] of
+         * this view. They must therefore only be resolved through the shared solver once the
+         * frontend has finished, which is the case for all passes.
+         */
+        fun seed(cu: CompilationUnit) {
+            for (type in cu.findAll(TypeDeclaration::class.java)) {
+                val name = type.fullyQualifiedName.orElse(null) ?: continue
+                try {
+                    val ref: SymbolReference<ResolvedReferenceTypeDeclaration> =
+                        SymbolReference.solved(type.resolve())
+                    sources.cache.put(name, ref)
+                    shared.sources.cache.put(name, ref)
+                } catch (e: RuntimeException) {
+                    log.debug("Could not seed type solver cache with {}: {}", name, e.message)
+                }
+            }
+        }
+    }
+
+    /** The source types, which are resolved by a [JavaParserTypeSolver] with [owner] as parent. */
+    private class Sources(owner: TypeSolver, shared: JavaTypeSolverCache) {
+        val cache = BoundedCache(shared.maximumSize)
+
+        /** The number of types that were not cached and have been resolved by parsing a file. */
+        val parsed = AtomicInteger()
+
+        private val solver =
+            shared.sourceRoot?.let { root ->
+                JavaParserTypeSolver(root).also { it.setParent(owner) }
+            }
+
+        fun tryToSolveType(name: String): SymbolReference<ResolvedReferenceTypeDeclaration> {
+            if (solver == null) {
+                return SymbolReference.unsolved(ResolvedReferenceTypeDeclaration::class.java)
+            }
+
+            cache[name]?.let {
+                return it
+            }
+
+            val ref = solveCached(name, solver, cache)
+            if (ref.isSolved) {
+                parsed.incrementAndGet()
+            }
+
+            return ref
+        }
+    }
+
+    /**
+     * A concurrent map of type names to their resolution result, which holds at most [maximumSize]
+     * entries and evicts the oldest ones first.
+     */
+    private class BoundedCache(private val maximumSize: Int) {
+        private val entries =
+            ConcurrentHashMap<String, SymbolReference<ResolvedReferenceTypeDeclaration>>()
+        private val insertionOrder = ConcurrentLinkedQueue<String>()
+        private val count = AtomicInteger()
+
+        val size: Int
+            get() = entries.size
+
+        operator fun get(name: String): SymbolReference<ResolvedReferenceTypeDeclaration>? {
+            return entries[name]
+        }
+
+        fun put(name: String, ref: SymbolReference<ResolvedReferenceTypeDeclaration>) {
+            if (entries.put(name, ref) != null) {
+                return
+            }
+
+            insertionOrder.add(name)
+            count.incrementAndGet()
+
+            // Evict the oldest entries, if we exceed the maximum size
+            while (count.get() > maximumSize) {
+                val eldest = insertionOrder.poll() ?: break
+                if (entries.remove(eldest) != null) {
+                    count.decrementAndGet()
+                }
+            }
+        }
+
+        fun clear() {
+            entries.clear()
+            insertionOrder.clear()
+            count.set(0)
+        }
+    }
+
+    companion object {
+        const val DEFAULT_MAXIMUM_SIZE = 50_000
+
+        private val log = LoggerFactory.getLogger(JavaTypeSolverCache::class.java)
+
+        /** Looks up [name] in [cache] and resolves it with [solver] (under its lock) otherwise. */
+        private fun solveCached(
+            name: String,
+            solver: TypeSolver,
+            cache: BoundedCache
+        ): SymbolReference<ResolvedReferenceTypeDeclaration> {
+            cache[name]?.let {
+                return it
+            }
+
+            val ref = synchronized(solver) { solver.tryToSolveType(name) }
+            cache.put(name, ref)
+
+            return ref
+        }
+    }
+}
@@ -40,11 +40,15 @@ import de.fraunhofer.aisec.cpg.passes.astParent
  * Flattens the AST beginning with this node and returns all nodes of type [T]. For convenience, an
  * optional predicate function [predicate] can be supplied, which will be applied via
  * [Collection.filter]
+ *
+ * If this node is a [TranslationResult] with a valid node index (see
+ * [TranslationResult.getCurrentNodeIndex]), the nodes are looked up in the index instead.
  */
 @JvmOverloads
 inline fun <reified T> Node?.allChildren(noinline predicate: ((T) -> Boolean)? = null): List<T> {
-    val nodes = SubgraphWalker.flattenAST(this)
-    val filtered = nodes.filterIsInstance<T>()
+    val filtered =
+        (this as? TranslationResult)?.currentNodeIndex?.ofType(T::class.java)
+            ?: SubgraphWalker.flattenAST(this).filterIsInstance<T>()
 
     return if (predicate != null) {
         filtered.filter(predicate)
@@ -491,6 +495,10 @@ val Node?.refs: List<DeclaredReferenceExpression>
 
 /** Returns all [CallExpression]s in this graph which call a method with the given [name]. */
 fun TranslationResult.callsByName(name: String): List<CallExpression> {
+    currentNodeIndex?.let {
+        return it.callsByName(name)
+    }
+
     return SubgraphWalker.flattenAST(this).filter { node ->
         (node as? CallExpression)?.invokes?.any { it.name == name } == true
     } as List<CallExpression>
@@ -508,8 +516,15 @@ val FunctionDeclaration.callees: Set<FunctionDeclaration>
             .toSet()
     }
 
-/** Set of all functions calling [function] */
+/**
+ * Set of all functions calling [function]. If the node index is valid, the callers are looked up in
+ * its reverse call graph instead of computing the callees of all functions on every call.
+ */
 fun TranslationResult.callersOf(function: FunctionDeclaration): Set<FunctionDeclaration> {
+    currentNodeIndex?.let {
+        return it.callersOf(function)
+    }
+
     return this.functions.filter { function in it.callees }.toSet()
 }
 
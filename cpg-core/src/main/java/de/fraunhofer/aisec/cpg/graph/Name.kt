@@ -25,54 +25,132 @@
  */
 package de.fraunhofer.aisec.cpg.graph
 
+import java.lang.ref.ReferenceQueue
+import java.lang.ref.WeakReference
 import java.util.*
-import kotlin.reflect.KProperty
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * This class represents anything that can have a "Name". In the simplest case it only represents a
  * local name in a flat hierarchy, such as `myVariable`. However, it can also be used to represent
  * fully qualified name with a complex name hierarchy, such as `my::namespace::function`.
+ *
+ * Names are immutable and interned: creating a name with `Name(localName, parent, delimiter)`
+ * returns the same instance for the same local name, parent and delimiter, as long as the name is
+ * in use. Therefore, names are compared by identity and their hash code and fully qualified string
+ * representation are only computed once. A name with a different local name can be derived with
+ * [withLocalName].
  */
-class Name(
+class Name
+private constructor(
     /** The local name (sometimes also called simple name) without any namespace information. */
-    var localName: String,
+    val localName: String,
     /** The parent name, e.g,. the namespace this name lives in. */
-    var parent: Name? = null,
+    val parent: Name?,
     /** A potential namespace delimiter, usually either `.` or `::`. */
-    val delimiter: String = "."
+    val delimiter: String
 ) {
+    private val hash = Objects.hash(localName, parent, delimiter)
+
+    /** The cached fully qualified representation, see [toString]. */
+    @Volatile private var fqn: String? = null
+
     /**
      * Returns the string representation of this name using a fully qualified name notation with the
      * specified [delimiter].
      */
-    override fun toString() =
-        (if (parent != null) parent.toString() + delimiter else "") + localName
-
-    /** Implements kotlin propety delegation for a string getter. Returns the local name. */
-    operator fun getValue(node: Node, property: KProperty<*>) = localName
+    override fun toString(): String {
+        return fqn
+            ?: ((if (parent != null) parent.toString() + delimiter else "") + localName).also {
+                fqn = it
+            }
+    }
 
-    /**
-     * Implements kotlin property delegation for a string setter. Sets the local name to the
-     * supplied string.
-     */
-    operator fun setValue(node: Node, property: KProperty<*>, s: String) {
-        localName = s
+    /** Returns the (interned) name with the same parent and delimiter, but with [localName]. */
+    fun withLocalName(localName: String): Name {
+        return if (localName == this.localName) this else of(localName, parent, delimiter)
     }
 
     override fun equals(other: Any?): Boolean {
-        if (this === other) return true
-        if (other !is Name) return false
-
-        return localName == other.localName &&
-            parent == other.parent &&
-            delimiter == other.delimiter
+        // Names are interned, so equal names are identical
+        return this === other
     }
 
     override fun hashCode(): Int {
-        return Objects.hash(localName, parent, delimiter)
+        return hash
     }
 
+    /** The key of a name in the intern table. The parent is already interned. */
+    private data class Key(val localName: String, val parent: Name?, val delimiter: String)
+
+    /**
+     * An entry of the intern table. It does not keep the name alive, so that unused names can be
+     * removed from the table.
+     */
+    private class Entry(name: Name, val key: Key, queue: ReferenceQueue<Name>) :
+        WeakReference<Name>(name, queue)
+
     companion object {
+        private val table = ConcurrentHashMap<Key, Entry>()
+        private val queue = ReferenceQueue<Name>()
+
+        /** The number of names that are currently interned. */
+        val size: Int
+            get() {
+                expunge()
+                return table.size
+            }
+
+        /**
+         * Returns the interned name with the local name [localName] in the namespace [parent],
+         * using the namespace [delimiter]. This allows to create names with the constructor syntax
+         * `Name(...)`.
+         */
+        operator fun invoke(
+            localName: String,
+            parent: Name? = null,
+            delimiter: String = "."
+        ): Name {
+            return of(localName, parent, delimiter)
+        }
+
+        /**
+         * Returns the interned name with the local name [localName] in the namespace [parent],
+         * using the namespace [delimiter].
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun of(localName: String, parent: Name? = null, delimiter: String = "."): Name {
+            expunge()
+
+            val key = Key(localName, parent, delimiter)
+            table[key]?.get()?.let {
+                return it
+            }
+
+            var name: Name? = null
+            table.compute(key) { _, entry ->
+                name = entry?.get()
+                if (name != null) {
+                    entry
+                } else {
+                    val created = Name(localName, parent, delimiter)
+                    name = created
+                    Entry(created, key, queue)
+                }
+            }
+
+            return name!!
+        }
+
+        /** Removes the entries of names that are no longer used from the table. */
+        private fun expunge() {
+            while (true) {
+                val entry = queue.poll() as? Entry ?: return
+                table.remove(entry.key, entry)
+            }
+        }
+
         /**
          * Tries to parse the given fully qualified name using the specified [delimiter] into a
          * [Name].
@@ -82,13 +160,13 @@ class Name(
 
             var name: Name? = null
             for (part in parts) {
-                name = Name(part, name, delimiter)
+                name = of(part, name, delimiter)
             }
 
             // Actually this should not occur, but otherwise the compiler won't let us return a
             // non-null Name
             if (name == null) {
-                return Name(fqn, null, delimiter)
+                return of(fqn, null, delimiter)
             }
 
             return name
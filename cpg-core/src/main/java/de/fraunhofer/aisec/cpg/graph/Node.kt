@@ -37,6 +37,8 @@ import de.fraunhofer.aisec.cpg.graph.edge.Properties
 import de.fraunhofer.aisec.cpg.graph.edge.PropertyEdge
 import de.fraunhofer.aisec.cpg.graph.edge.PropertyEdge.Companion.unwrap
 import de.fraunhofer.aisec.cpg.helpers.LocationConverter
+import de.fraunhofer.aisec.cpg.helpers.SmallSet
+import de.fraunhofer.aisec.cpg.helpers.SourceBuffers
 import de.fraunhofer.aisec.cpg.helpers.SubgraphWalker
 import de.fraunhofer.aisec.cpg.passes.scopes.GlobalScope
 import de.fraunhofer.aisec.cpg.passes.scopes.RecordScope
@@ -58,22 +60,45 @@ import org.slf4j.LoggerFactory
 open class Node : IVisitable<Node>, Persistable, LanguageProvider, ScopeProvider {
     /**
      * This property holds the full name using our new [Name] class. In the future, we might migrate
-     * this to the [name] field. It is currently not persisted in the graph database.
+     * this to the [name] field. It is currently not persisted in the graph database. Since names
+     * are immutable, setting the [name] replaces this property.
      */
-    @Transient val fullName: Name = Name(EMPTY_NAME)
+    @Transient var fullName: Name = Name(EMPTY_NAME)
 
     /**
      * A human-readable name. It is backed by the [fullName] and is set to [Name.localName]
-     * automatically using a kotlin property delegator. We need to exclude the delegated field from
-     * graph database persistence.
+     * automatically. Setting it replaces the [fullName] with a name that has the same parent, but
+     * the new local name (see [Name.withLocalName]).
      */
-    @delegate:Transient open var name by fullName
+    open var name: String
+        get() = fullName.localName
+        set(value) {
+            fullName = fullName.withLocalName(value)
+        }
 
     /**
      * Original code snippet of this node. Most nodes will have a corresponding "code", but in cases
-     * where nodes are created artificially, it may be null.
+     * where nodes are created artificially, it may be null. If [isCodeLazy] is set, the code is not
+     * stored in the node, but extracted from the source file at [location] on access.
      */
     var code: String? = null
+        get() = field ?: location?.let { sourceBuffers?.code(it) }
+
+    /** The dense id of this node, see [NodeIds]. It is -1, if the node has not been numbered. */
+    @Transient internal var denseId = -1
+
+    /**
+     * The source buffers of the translation, if the [code] of this node is materialized on demand
+     * from its file instead of being stored in the node.
+     */
+    @Transient var sourceBuffers: SourceBuffers? = null
+
+    /**
+     * Specifies, whether the [code] of this node is materialized on demand. This requires a
+     * [location], from which the code can be extracted.
+     */
+    val isCodeLazy: Boolean
+        get() = sourceBuffers != null && location != null
 
     /**
      * The language of this node. This property is set in [Node.applyMetadata] by a
@@ -106,14 +131,17 @@ open class Node : IVisitable<Node>, Persistable, LanguageProvider, ScopeProvider
      */
     var file: String? = null
 
+    // Most nodes only have a few edges of each kind or none at all. Therefore, the following
+    // collections start without a backing array and only grow with the edges that are added.
+
     /** Incoming control flow edges. */
     @field:Relationship(value = "EOG", direction = "INCOMING")
-    var prevEOGEdges: MutableList<PropertyEdge<Node>> = ArrayList()
+    var prevEOGEdges: MutableList<PropertyEdge<Node>> = ArrayList(0)
         protected set
 
     /** outgoing control flow edges. */
     @field:Relationship(value = "EOG", direction = "OUTGOING")
-    var nextEOGEdges: MutableList<PropertyEdge<Node>> = ArrayList()
+    var nextEOGEdges: MutableList<PropertyEdge<Node>> = ArrayList(0)
         protected set
 
     /**
@@ -149,11 +177,11 @@ open class Node : IVisitable<Node>, Persistable, LanguageProvider, ScopeProvider
         }
 
     @field:Relationship(value = "DFG", direction = "INCOMING")
-    var prevDFG: MutableSet<Node> = HashSet()
+    var prevDFG: MutableSet<Node> = SmallSet()
 
-    @field:Relationship(value = "DFG") var nextDFG: MutableSet<Node> = HashSet()
+    @field:Relationship(value = "DFG") var nextDFG: MutableSet<Node> = SmallSet()
 
-    var typedefs: MutableSet<TypedefDeclaration> = HashSet()
+    var typedefs: MutableSet<TypedefDeclaration> = SmallSet()
 
     /**
      * If a node is marked as being inferred, it means that it was created artificially and does not
@@ -177,7 +205,7 @@ open class Node : IVisitable<Node>, Persistable, LanguageProvider, ScopeProvider
     var argumentIndex = 0
 
     /** List of annotations associated with that node. */
-    @field:SubGraph("AST") var annotations: MutableList<Annotation> = ArrayList()
+    @field:SubGraph("AST") var annotations: MutableList<Annotation> = ArrayList(0)
 
     fun removePrevEOGEntry(eog: Node) {
         removePrevEOGEntries(listOf(eog))
@@ -243,6 +271,23 @@ open class Node : IVisitable<Node>, Persistable, LanguageProvider, ScopeProvider
         }
     }
 
+    /**
+     * Replaces the edge collections of this node with the views of a
+     * [de.fraunhofer.aisec.cpg.graph.edge.ColumnarEdgeStore]. A null view keeps the current
+     * collection.
+     */
+    internal fun attachEdges(
+        prevEOG: MutableList<PropertyEdge<Node>>?,
+        nextEOG: MutableList<PropertyEdge<Node>>?,
+        prevDFG: MutableSet<Node>?,
+        nextDFG: MutableSet<Node>?
+    ) {
+        prevEOG?.let { prevEOGEdges = it }
+        nextEOG?.let { nextEOGEdges = it }
+        prevDFG?.let { this.prevDFG = it }
+        nextDFG?.let { this.nextDFG = it }
+    }
+
     fun addTypedef(typedef: TypedefDeclaration) {
         typedefs.add(typedef)
     }
@@ -309,9 +354,9 @@ open class Node : IVisitable<Node>, Persistable, LanguageProvider, ScopeProvider
             false
         } else
             name == other.name &&
+                location == other.location &&
                 code == other.code &&
                 comment == other.comment &&
-                location == other.location &&
                 file == other.file &&
                 isImplicit == other.isImplicit
     }
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.graph
+
+import de.fraunhofer.aisec.cpg.helpers.IdentityIntMap
+import de.fraunhofer.aisec.cpg.helpers.SubgraphWalker
+
+/**
+ * Assigns a dense id (`0 until size`) to each node, so that analyses can use arrays and bit sets
+ * indexed by these ids instead of identity hash maps. All AST nodes below (and including) [root] are
+ * numbered when the ids are created. Further nodes, e.g. nodes that are inferred by a later pass,
+ * get the next free id when they are first passed to [id].
+ *
+ * Ids are never re-assigned or re-used, so they stay valid while the graph grows. Looking up the id
+ * of a node that already has one does not need a hash lookup, since the id is also stored in the
+ * node itself. Only if a node is numbered by more than one [NodeIds], the ids of the further
+ * instances are kept in a map.
+ */
+class NodeIds(val root: Node) {
+    /** The nodes, indexed by their id. Only the first [size] entries are used. */
+    @Volatile private var nodes: Array<Node?>
+
+    /** The ids of nodes whose own id belongs to another [NodeIds]. */
+    private val foreign = IdentityIntMap<Node>()
+
+    /** The number of nodes which have an id. */
+    @Volatile
+    var size = 0
+        private set
+
+    init {
+        val ast = SubgraphWalker.flattenAST(root)
+        nodes = arrayOfNulls(ast.size.coerceAtLeast(16))
+        for (node in ast) {
+            assign(node)
+        }
+    }
+
+    /** Returns the id of [node]. If the node does not have an id yet, the next free id is assigned. */
+    fun id(node: Node): Int {
+        val id = find(node)
+        if (id >= 0) {
+            return id
+        }
+
+        synchronized(this) {
+            // Another thread might have assigned it in the meantime
+            return find(node).takeIf { it >= 0 } ?: assign(node)
+        }
+    }
+
+    /** Returns the id of [node] or -1, if it does not have an id (yet). */
+    fun find(node: Node): Int {
+        val id = node.denseId
+        val nodes = nodes
+        if (id >= 0 && id < nodes.size && nodes[id] === node) {
+            return id
+        }
+
+        if (foreign.isEmpty()) {
+            return -1
+        }
+
+        synchronized(this) {
+            return foreign[node]
+        }
+    }
+
+    /** Returns the node with the given [id]. */
+    operator fun get(id: Int): Node {
+        if (id < 0 || id >= size) {
+            throw IndexOutOfBoundsException("Index: $id, Size: $size")
+        }
+
+        return nodes[id]!!
+    }
+
+    /**
+     * Assigns ids to all AST nodes below [root] which do not have one yet, e.g. after the AST has
+     * been modified. The ids of all other nodes stay the same.
+     */
+    fun update() {
+        for (node in SubgraphWalker.flattenAST(root)) {
+            id(node)
+        }
+    }
+
+    @Synchronized
+    private fun assign(node: Node): Int {
+        val id = size
+        if (id == nodes.size) {
+            nodes = nodes.copyOf(id * 2)
+        }
+        nodes[id] = node
+
+        // Only store the id in the node, if it is not already numbered by another instance
+        if (node.denseId < 0) {
+            node.denseId = id
+        } else {
+            foreign[node] = id
+        }
+        size = id + 1
+
+        return id
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.graph
+
+import de.fraunhofer.aisec.cpg.graph.declarations.Declaration
+import de.fraunhofer.aisec.cpg.graph.declarations.FunctionDeclaration
+import de.fraunhofer.aisec.cpg.graph.statements.expressions.CallExpression
+import de.fraunhofer.aisec.cpg.helpers.SubgraphWalker
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * An index of all AST nodes below (and including) [root]. The nodes are collected with a single
+ * traversal of the AST when the index is accessed for the first time. The nodes of a certain type
+ * are filtered once and then cached, so that subsequent lookups of the same type neither traverse
+ * the AST nor filter all nodes again. The lookups return the nodes in the same order as
+ * [SubgraphWalker.flattenAST].
+ *
+ * Additionally, the index provides lookups of [Declaration]s and [CallExpression]s by name as well as
+ * a reverse call graph. They are also built on their first access.
+ *
+ * The index is not updated if the AST changes afterwards. In this case, a new index has to be
+ * created (see [de.fraunhofer.aisec.cpg.TranslationResult.invalidateNodeIndex]).
+ */
+class NodeIndex(val root: Node) {
+    /** All nodes of the AST in the order of [SubgraphWalker.flattenAST]. */
+    val nodes: List<Node> by lazy { SubgraphWalker.flattenAST(root) }
+
+    private val byType = ConcurrentHashMap<Class<*>, List<Node>>()
+
+    /** Returns all nodes which are an instance of [type]. */
+    fun <T> ofType(type: Class<T>): List<T> {
+        @Suppress("UNCHECKED_CAST")
+        return byType.computeIfAbsent(type) { nodes.filter(type::isInstance) } as List<T>
+    }
+
+    /** Returns all nodes which are an instance of [T]. */
+    inline fun <reified T> ofType(): List<T> {
+        return ofType(T::class.java)
+    }
+
+    private val declarationsByName: Map<String, List<Declaration>> by lazy {
+        ofType(Declaration::class.java).groupBy { it.name }
+    }
+
+    private val callsByName: Map<String, List<CallExpression>> by lazy {
+        val calls = mutableMapOf<String, MutableList<CallExpression>>()
+        for (call in ofType(CallExpression::class.java)) {
+            for (name in call.invokes.mapTo(mutableSetOf()) { it.name }) {
+                calls.computeIfAbsent(name) { mutableListOf() }.add(call)
+            }
+        }
+        calls
+    }
+
+    private val callers: Map<FunctionDeclaration, Set<FunctionDeclaration>> by lazy {
+        val callers = IdentityHashMap<FunctionDeclaration, MutableSet<FunctionDeclaration>>()
+        for (function in ofType(FunctionDeclaration::class.java)) {
+            for (callee in function.callees) {
+                callers.computeIfAbsent(callee) { mutableSetOf() }.add(function)
+            }
+        }
+        callers
+    }
+
+    /** Returns all [Declaration]s with the (local) name [name]. */
+    fun declarationsByName(name: String): List<Declaration> {
+        return declarationsByName[name] ?: listOf()
+    }
+
+    /** Returns all [CallExpression]s which call a function with the given [name]. */
+    fun callsByName(name: String): List<CallExpression> {
+        return callsByName[name] ?: listOf()
+    }
+
+    /** Returns all functions which call [function]. */
+    fun callersOf(function: FunctionDeclaration): Set<FunctionDeclaration> {
+        return callers[function] ?: setOf()
+    }
+}
@@ -34,6 +34,8 @@ import de.fraunhofer.aisec.cpg.graph.declarations.RecordDeclaration;
 import de.fraunhofer.aisec.cpg.graph.declarations.TemplateDeclaration;
 import de.fraunhofer.aisec.cpg.graph.declarations.TypedefDeclaration;
 import de.fraunhofer.aisec.cpg.graph.types.*;
+import de.fraunhofer.aisec.cpg.helpers.FlightRecorder;
+import de.fraunhofer.aisec.cpg.helpers.TypeRegistrationEvent;
 import de.fraunhofer.aisec.cpg.helpers.Util;
 import de.fraunhofer.aisec.cpg.passes.scopes.*;
 import java.util.*;
@@ -234,12 +236,23 @@ public class TypeManager {
   }
 
   public <T extends Type> T registerType(T t) {
+    boolean added;
     if (t.isFirstOrderType()) {
-      this.firstOrderTypes.add(t);
+      added = this.firstOrderTypes.add(t);
     } else {
-      this.secondOrderTypes.add(t);
+      added = this.secondOrderTypes.add(t);
       registerType(((SecondOrderType) t).getElementType());
     }
+
+    if (FlightRecorder.isEnabled()) {
+      TypeRegistrationEvent event = new TypeRegistrationEvent();
+      if (event.shouldCommit()) {
+        event.type = t.getName();
+        event.firstOrder = t.isFirstOrderType();
+        event.added = added;
+        event.commit();
+      }
+    }
     return t;
   }
 
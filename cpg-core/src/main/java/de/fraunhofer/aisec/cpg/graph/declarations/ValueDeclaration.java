@@ -37,6 +37,7 @@ import de.fraunhofer.aisec.cpg.graph.types.FunctionPointerType;
 import de.fraunhofer.aisec.cpg.graph.types.ReferenceType;
 import de.fraunhofer.aisec.cpg.graph.types.Type;
 import de.fraunhofer.aisec.cpg.graph.types.UnknownType;
+import de.fraunhofer.aisec.cpg.helpers.SmallSet;
 import java.util.*;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -59,7 +60,7 @@ public abstract class ValueDeclaration extends Declaration implements HasType {
   @Relationship(value = "USAGE")
   protected List<PropertyEdge<DeclaredReferenceExpression>> usageEdges = new ArrayList<>();
 
-  @Transient private final Set<TypeListener> typeListeners = new HashSet<>();
+  @Transient private final Set<TypeListener> typeListeners = new SmallSet<>();
 
   @Override
   public Type getType() {
@@ -0,0 +1,584 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.graph.edge
+
+import de.fraunhofer.aisec.cpg.graph.Node
+import de.fraunhofer.aisec.cpg.graph.NodeIds
+import de.fraunhofer.aisec.cpg.helpers.SmallSet
+import java.lang.ref.ReferenceQueue
+import java.lang.ref.WeakReference
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.IntBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.util.IdentityHashMap
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * An optional storage of the EOG and DFG edges of very large graphs, which is enabled with
+ * [de.fraunhofer.aisec.cpg.TranslationConfiguration.columnarEdges]. The nodes are numbered with
+ * [NodeIds] and their edges are stored in columnar arrays (in compressed sparse row format) outside
+ * the Java heap, either in a direct buffer or in a memory-mapped file. Instead of a [PropertyEdge]
+ * with its own property map, an EOG edge only takes a few bytes: its start and end node, its
+ * [Properties.INDEX] and a bit mask for [Properties.BRANCH] and [Properties.UNREACHABLE]. Other
+ * properties are kept on the heap.
+ *
+ * Once the store is [attach]ed, the edge collections of the nodes ([Node.prevEOGEdges],
+ * [Node.nextEOGEdges], [Node.prevDFG] and [Node.nextDFG]) are views on the columns, so that the
+ * edges on the heap can be collected. The views keep the semantics of the collections they replace:
+ * - The [PropertyEdge]s are created on access. As long as an edge is referenced, the same object is
+ *   returned by the outgoing edges of its start and the incoming edges of its end node. Changes of
+ *   its properties are written to the columns.
+ * - The first change of a collection itself, e.g. adding or removing an edge, copies it back to the
+ *   heap. Later changes of the graph are therefore not limited by the columns.
+ *
+ * Reading an edge from the columns is slower than reading it from the heap. Thus, the store is
+ * meant to be attached once the graph is complete, i.e. after all passes. A store is created with
+ * [of].
+ */
+class ColumnarEdgeStore
+private constructor(
+    private val nodes: Array<Node>,
+    private val eogSources: IntBuffer,
+    private val eogTargets: IntBuffer,
+    private val eogIndex: IntBuffer,
+    private val eogFlags: ByteBuffer,
+    private val eogOut: Adjacency,
+    private val eogIn: Adjacency,
+    private val dfgOut: Adjacency,
+    private val dfgIn: Adjacency,
+    /** The number of bytes that are used for the edges outside the heap. */
+    val sizeInBytes: Long,
+) {
+    /** The properties of EOG edges which cannot be stored in the columns, by edge. */
+    private val extra = ConcurrentHashMap<Int, EdgeProperties>()
+
+    /** The EOG edges which are currently referenced, by edge. */
+    private val edges = ConcurrentHashMap<Int, EdgeReference>()
+
+    private val collected = ReferenceQueue<PropertyEdge<Node>>()
+
+    /** The number of nodes in this store. Their ids are `0 until nodeCount`. */
+    val nodeCount: Int
+        get() = nodes.size
+
+    /** The number of EOG edges in this store. */
+    val eogEdgeCount: Int
+        get() = eogTargets.limit()
+
+    /** The number of DFG edges in this store. */
+    val dfgEdgeCount: Int
+        get() = dfgOut.size
+
+    /**
+     * Replaces the edge collections of all nodes in this store, which have at least one edge of the
+     * respective kind, with views on the columns.
+     */
+    fun attach() {
+        for ((id, node) in nodes.withIndex()) {
+            node.attachEdges(
+                if (eogIn.size(id) > 0) EdgeList(id, eogIn) else null,
+                if (eogOut.size(id) > 0) EdgeList(id, eogOut) else null,
+                if (dfgIn.size(id) > 0) NodeSet(id, dfgIn) else null,
+                if (dfgOut.size(id) > 0) NodeSet(id, dfgOut) else null
+            )
+        }
+    }
+
+    /**
+     * Returns the EOG edge at the position [edge] of the columns. While the edge is referenced, the
+     * same object is returned.
+     */
+    private fun edge(edge: Int): PropertyEdge<Node> {
+        // Forget the edges which are not referenced anymore
+        while (true) {
+            val ref = collected.poll() as? EdgeReference ?: break
+            edges.remove(ref.edge, ref)
+        }
+
+        edges[edge]?.get()?.let {
+            return it
+        }
+
+        val propertyEdge =
+            PropertyEdge(nodes[eogSources[edge]], nodes[eogTargets[edge]], StoredProperties(edge))
+        val ref = EdgeReference(propertyEdge, edge, collected)
+        while (true) {
+            // Another thread might have created the edge in the meantime
+            val existing = edges.putIfAbsent(edge, ref) ?: return propertyEdge
+            existing.get()?.let {
+                return it
+            }
+            if (edges.replace(edge, existing, ref)) {
+                return propertyEdge
+            }
+        }
+    }
+
+    /** Returns the value of [property] of the EOG edge at the position [edge] of the columns. */
+    private fun property(edge: Int, property: Properties): Any? {
+        val flags = eogFlags[edge].toInt()
+        val value =
+            when (property) {
+                Properties.INDEX -> eogIndex[edge].takeIf { it >= 0 }
+                Properties.BRANCH ->
+                    if (flags and BRANCH_SET != 0) flags and BRANCH_VALUE != 0 else null
+                Properties.UNREACHABLE ->
+                    if (flags and UNREACHABLE_SET != 0) flags and UNREACHABLE_VALUE != 0 else null
+                else -> null
+            }
+
+        return value ?: extra[edge]?.get(property)
+    }
+
+    /**
+     * Sets [property] of the EOG edge at the position [edge] of the columns to [value]. A null
+     * value removes the property. Values which do not fit into the columns are kept on the heap.
+     */
+    private fun setProperty(edge: Int, property: Properties, value: Any?) {
+        val stored =
+            when {
+                property == Properties.INDEX && value is Int && value >= 0 -> {
+                    eogIndex.put(edge, value)
+                    true
+                }
+                property == Properties.BRANCH && value is Boolean -> {
+                    setFlags(edge, BRANCH_SET, BRANCH_VALUE, value)
+                    true
+                }
+                property == Properties.UNREACHABLE && value is Boolean -> {
+                    setFlags(edge, UNREACHABLE_SET, UNREACHABLE_VALUE, value)
+                    true
+                }
+                else -> false
+            }
+
+        if (!stored) {
+            // Make sure that the property is not present in the columns as well
+            when (property) {
+                Properties.INDEX -> eogIndex.put(edge, -1)
+                Properties.BRANCH -> setFlags(edge, BRANCH_SET, BRANCH_VALUE, null)
+                Properties.UNREACHABLE -> setFlags(edge, UNREACHABLE_SET, UNREACHABLE_VALUE, null)
+                else -> {}
+            }
+        }
+
+        extra.compute(edge) { _, properties ->
+            when {
+                stored || value == null -> properties?.apply { remove(property) }
+                else -> (properties ?: EdgeProperties()).apply { put(property, value) }
+            }?.takeIf { it.isNotEmpty() }
+        }
+    }
+
+    /** Sets (or clears, if [value] is null) the flag with the bits [set] and [bit] of [edge]. */
+    private fun setFlags(edge: Int, set: Int, bit: Int, value: Boolean?) {
+        var flags = eogFlags[edge].toInt() and (set or bit).inv()
+        if (value != null) {
+            flags = flags or set or (if (value) bit else 0)
+        }
+        eogFlags.put(edge, flags.toByte())
+    }
+
+    /**
+     * The properties of the EOG edge at the position [edge] of the columns. Reading and writing a
+     * property goes to the columns. The [entries], however, are a copy.
+     */
+    private inner class StoredProperties(private val edge: Int) :
+        AbstractMutableMap<Properties, Any?>() {
+        override val entries: MutableSet<MutableMap.MutableEntry<Properties, Any?>>
+            get() {
+                val properties = EdgeProperties()
+                for (property in Properties.values()) {
+                    property(edge, property)?.let { properties[property] = it }
+                }
+
+                return properties.entries
+            }
+
+        override fun containsKey(key: Properties): Boolean {
+            return property(edge, key) != null
+        }
+
+        override fun get(key: Properties): Any? {
+            return property(edge, key)
+        }
+
+        override fun put(key: Properties, value: Any?): Any? {
+            val old = property(edge, key)
+            setProperty(edge, key, value)
+            return old
+        }
+
+        override fun remove(key: Properties): Any? {
+            return put(key, null)
+        }
+    }
+
+    /**
+     * A view on the EOG edges of the node with the given [id] in [adjacency]. The first change
+     * copies the edges to a list on the heap, which is used from then on.
+     */
+    private inner class EdgeList(private val id: Int, private val adjacency: Adjacency) :
+        AbstractMutableList<PropertyEdge<Node>>() {
+        private var detached: MutableList<PropertyEdge<Node>>? = null
+
+        override val size: Int
+            get() = detached?.size ?: adjacency.size(id)
+
+        override fun get(index: Int): PropertyEdge<Node> {
+            detached?.let {
+                return it[index]
+            }
+            if (index < 0 || index >= size) {
+                throw IndexOutOfBoundsException("Index: $index, Size: $size")
+            }
+
+            return edge(adjacency[id, index])
+        }
+
+        override fun add(index: Int, element: PropertyEdge<Node>) {
+            modCount++
+            detach().add(index, element)
+        }
+
+        override fun removeAt(index: Int): PropertyEdge<Node> {
+            modCount++
+            return detach().removeAt(index)
+        }
+
+        override fun set(index: Int, element: PropertyEdge<Node>): PropertyEdge<Node> {
+            return detach().set(index, element)
+        }
+
+        override fun clear() {
+            modCount++
+            detached = ArrayList(0)
+        }
+
+        private fun detach(): MutableList<PropertyEdge<Node>> {
+            return detached ?: ArrayList(this).also { detached = it }
+        }
+    }
+
+    /**
+     * A view on the DFG edges of the node with the given [id] in [adjacency]. The first change
+     * copies the nodes to a [SmallSet], which is used from then on.
+     */
+    private inner class NodeSet(private val id: Int, private val adjacency: Adjacency) :
+        AbstractMutableSet<Node>() {
+        private var detached: MutableSet<Node>? = null
+
+        override val size: Int
+            get() = detached?.size ?: adjacency.size(id)
+
+        override fun contains(element: Node): Boolean {
+            detached?.let {
+                return element in it
+            }
+
+            for (i in 0 until adjacency.size(id)) {
+                if (nodes[adjacency[id, i]] == element) {
+                    return true
+                }
+            }
+
+            return false
+        }
+
+        override fun add(element: Node): Boolean {
+            if (detached == null && contains(element)) {
+                return false
+            }
+
+            return detach().add(element)
+        }
+
+        override fun remove(element: Node): Boolean {
+            if (detached == null && !contains(element)) {
+                return false
+            }
+
+            return detach().remove(element)
+        }
+
+        override fun clear() {
+            detached = SmallSet()
+        }
+
+        override fun iterator(): MutableIterator<Node> {
+            detached?.let {
+                return it.iterator()
+            }
+
+            // Iterates over the columns, which do not change, even if the set is detached by
+            // removing an element with this iterator
+            return object : MutableIterator<Node> {
+                private val count = adjacency.size(id)
+                private var next = 0
+                private var last: Node? = null
+
+                override fun hasNext(): Boolean {
+                    return next < count
+                }
+
+                override fun next(): Node {
+                    if (!hasNext()) {
+                        throw NoSuchElementException()
+                    }
+
+                    return nodes[adjacency[id, next++]].also { last = it }
+                }
+
+                override fun remove() {
+                    val element = last ?: throw IllegalStateException()
+                    detach().remove(element)
+                    last = null
+                }
+            }
+        }
+
+        private fun detach(): MutableSet<Node> {
+            detached?.let {
+                return it
+            }
+
+            val set = SmallSet<Node>()
+            for (i in 0 until adjacency.size(id)) {
+                set.add(nodes[adjacency[id, i]])
+            }
+            detached = set
+
+            return set
+        }
+    }
+
+    /** A weak reference to the EOG edge at the position [edge] of the columns. */
+    private class EdgeReference(
+        referent: PropertyEdge<Node>,
+        val edge: Int,
+        queue: ReferenceQueue<PropertyEdge<Node>>
+    ) : WeakReference<PropertyEdge<Node>>(referent, queue)
+
+    /**
+     * The edges of one kind and direction. The edges of the node with id `i` are stored at the
+     * positions `offsets[i] until offsets[i + 1]` of [values], which are the positions of the EOG
+     * edges in the columns or the ids of the connected nodes of the DFG.
+     */
+    private class Adjacency(private val offsets: IntBuffer, private val values: IntBuffer) {
+        /** The number of edges. */
+        val size: Int
+            get() = values.limit()
+
+        /** Returns the number of edges of the node with the given [id]. */
+        fun size(id: Int): Int {
+            return offsets[id + 1] - offsets[id]
+        }
+
+        operator fun get(id: Int, index: Int): Int {
+            return values[offsets[id] + index]
+        }
+    }
+
+    /** Hands out consecutive, natively ordered slices of a single buffer. */
+    private class Columns(private val buffer: ByteBuffer) {
+        private var position = 0
+
+        fun ints(count: Int): IntBuffer {
+            return slice(count * Int.SIZE_BYTES).asIntBuffer()
+        }
+
+        fun bytes(count: Int): ByteBuffer {
+            return slice(count)
+        }
+
+        private fun slice(bytes: Int): ByteBuffer {
+            val view = buffer.duplicate()
+            view.position(position)
+            view.limit(position + bytes)
+            position += bytes
+
+            return view.slice().order(ByteOrder.nativeOrder())
+        }
+    }
+
+    companion object {
+        private const val BRANCH_SET = 1
+        private const val BRANCH_VALUE = 2
+        private const val UNREACHABLE_SET = 4
+        private const val UNREACHABLE_VALUE = 8
+
+        /**
+         * Creates a store of the EOG and DFG edges of all nodes of the AST below [root], as well as
+         * of all nodes that are connected to them by these edges. The nodes are numbered with
+         * [ids]. If [file] is given, the columns are stored in this file (which is overwritten) and
+         * memory-mapped, otherwise they are stored in a direct buffer.
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun of(root: Node, file: Path? = null, ids: NodeIds = NodeIds(root)): ColumnarEdgeStore {
+            // Each EOG edge is stored once, even though it is part of the outgoing edges of its
+            // start and of the incoming edges of its end node
+            val positions = IdentityHashMap<PropertyEdge<Node>, Int>()
+            val eogEdges = ArrayList<PropertyEdge<Node>>()
+            fun position(edge: PropertyEdge<Node>): Int {
+                return positions.getOrPut(edge) {
+                    eogEdges += edge
+                    ids.id(edge.start)
+                    ids.id(edge.end)
+                    eogEdges.size - 1
+                }
+            }
+
+            // Nodes outside the AST (e.g. in other components) can still be connected by edges,
+            // so we also number them. The ids grow while we iterate over them.
+            var eogOutCount = 0L
+            var eogInCount = 0L
+            var dfgOutCount = 0L
+            var dfgInCount = 0L
+            var i = 0
+            while (i < ids.size) {
+                val node = ids[i++]
+                node.nextEOGEdges.forEach { position(it) }
+                node.prevEOGEdges.forEach { position(it) }
+                node.nextDFG.forEach { ids.id(it) }
+                node.prevDFG.forEach { ids.id(it) }
+                eogOutCount += node.nextEOGEdges.size
+                eogInCount += node.prevEOGEdges.size
+                dfgOutCount += node.nextDFG.size
+                dfgInCount += node.prevDFG.size
+            }
+
+            val n = ids.size
+            val nodes = Array(n) { ids[it] }
+            val eogCount = eogEdges.size.toLong()
+
+            // The sources, targets and indices of the EOG edges and the offsets and values of all
+            // four adjacencies, plus the flags of the EOG edges
+            val ints =
+                3 * eogCount + 4 * (n + 1L) + eogOutCount + eogInCount + dfgOutCount + dfgInCount
+            val size = ints * Int.SIZE_BYTES + eogCount
+            if (size > Int.MAX_VALUE) {
+                throw IllegalArgumentException("The graph is too large for a single store")
+            }
+
+            val columns = Columns(allocate(size.toInt(), file))
+            val eogSources = columns.ints(eogEdges.size)
+            val eogTargets = columns.ints(eogEdges.size)
+            val eogIndex = columns.ints(eogEdges.size)
+            for ((edge, propertyEdge) in eogEdges.withIndex()) {
+                eogSources.put(edge, ids.id(propertyEdge.start))
+                eogTargets.put(edge, ids.id(propertyEdge.end))
+                eogIndex.put(edge, -1)
+            }
+
+            val eogOut =
+                adjacency(columns, nodes, eogOutCount) { node, add ->
+                    node.nextEOGEdges.forEach { add(positions[it]!!) }
+                }
+            val eogIn =
+                adjacency(columns, nodes, eogInCount) { node, add ->
+                    node.prevEOGEdges.forEach { add(positions[it]!!) }
+                }
+            val dfgOut =
+                adjacency(columns, nodes, dfgOutCount) { node, add ->
+                    node.nextDFG.forEach { add(ids.id(it)) }
+                }
+            val dfgIn =
+                adjacency(columns, nodes, dfgInCount) { node, add ->
+                    node.prevDFG.forEach { add(ids.id(it)) }
+                }
+
+            // The flags come last, so that all int columns are aligned
+            val eogFlags = columns.bytes(eogEdges.size)
+
+            val store =
+                ColumnarEdgeStore(
+                    nodes,
+                    eogSources,
+                    eogTargets,
+                    eogIndex,
+                    eogFlags,
+                    eogOut,
+                    eogIn,
+                    dfgOut,
+                    dfgIn,
+                    size
+                )
+            for ((edge, propertyEdge) in eogEdges.withIndex()) {
+                for (property in Properties.values()) {
+                    val value = propertyEdge.getProperty(property) ?: continue
+                    store.setProperty(edge, property, value)
+                }
+            }
+
+            return store
+        }
+
+        /**
+         * Fills the columns of an adjacency with [count] values, which [edges] adds for each of the
+         * [nodes].
+         */
+        private fun adjacency(
+            columns: Columns,
+            nodes: Array<Node>,
+            count: Long,
+            edges: (Node, (Int) -> Unit) -> Unit
+        ): Adjacency {
+            val offsets = columns.ints(nodes.size + 1)
+            val values = columns.ints(count.toInt())
+            var position = 0
+            for ((id, node) in nodes.withIndex()) {
+                offsets.put(id, position)
+                edges(node) { values.put(position++, it) }
+            }
+            offsets.put(nodes.size, position)
+
+            return Adjacency(offsets, values)
+        }
+
+        /** Allocates a zeroed buffer, either directly or memory-mapped from [file]. */
+        private fun allocate(size: Int, file: Path?): ByteBuffer {
+            if (file == null) {
+                return ByteBuffer.allocateDirect(size)
+            }
+
+            FileChannel.open(
+                    file,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE
+                )
+                .use {
+                    // The mapping stays valid after the channel is closed
+                    return it.map(FileChannel.MapMode.READ_WRITE, 0, size.toLong())
+                }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.graph.edge
+
+import de.fraunhofer.aisec.cpg.graph.Node
+import de.fraunhofer.aisec.cpg.helpers.SmallSet
+import java.util.IdentityHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+
+/**
+ * A batch of changes to the DFG and EOG edges. Instead of updating the edge collections of both
+ * nodes on every single addition or removal (e.g. with [Node.addPrevDFG]), the changes are
+ * collected and applied at once when the batch is [commit]ted. Until then, the graph is not
+ * modified, so a batch should only be used if the changed edges are not read in the meantime.
+ *
+ * Changes to the same DFG edge are deduplicated, the last change wins. Thus, clearing the flows of
+ * a node and adding the same flows again (as done by the
+ * [de.fraunhofer.aisec.cpg.passes.ControlFlowSensitiveDFGPass]) does not touch the edge at all.
+ * When the batch is applied, the edge collections of each node are grown only once.
+ *
+ * EOG edges, in contrast, are not identified by their start and end node alone, since there can be
+ * several edges between two nodes with different properties (e.g. [Properties.BRANCH]). Therefore,
+ * all added EOG edges are kept in the order they were added. The removals are applied first, but
+ * only remove the edges which were committed before or added to the batch before the removal.
+ *
+ * After the changes are applied, all [EdgeListener]s are informed about the edges that were
+ * actually added or removed, so that incremental consumers, e.g. caches or indices of edges, can
+ * update themselves.
+ */
+class EdgeBatch {
+    /** The DFG changes, true for an addition and false for a removal. */
+    private val dfg = LinkedHashMap<EdgeKey, Boolean>()
+
+    /** The EOG edges to add, in the order they were added. */
+    private val addedEOG = mutableListOf<PropertyEdge<Node>>()
+
+    /**
+     * The EOG removals. Each removal is mapped to the number of [addedEOG] at the time of the
+     * (last) removal, so that it only affects the additions before it.
+     */
+    private val removedEOG = LinkedHashMap<EdgeKey, Int>()
+
+    /** True, if there are no pending changes. */
+    val isEmpty: Boolean
+        get() = dfg.isEmpty() && addedEOG.isEmpty() && removedEOG.isEmpty()
+
+    /** Adds a DFG edge from [from] to [to], see [Node.addNextDFG]. */
+    fun addDFG(from: Node, to: Node): EdgeBatch {
+        dfg[EdgeKey(from, to)] = true
+        return this
+    }
+
+    /** Removes the DFG edge from [from] to [to], see [Node.removeNextDFG]. */
+    fun removeDFG(from: Node, to: Node): EdgeBatch {
+        dfg[EdgeKey(from, to)] = false
+        return this
+    }
+
+    /** Removes all (committed) incoming and outgoing DFG edges of [node]. */
+    fun clearDFG(node: Node): EdgeBatch {
+        node.prevDFG.forEach { removeDFG(it, node) }
+        node.nextDFG.forEach { removeDFG(node, it) }
+        return this
+    }
+
+    /** Adds the EOG [edge] to its start and its end node, see [Node.addNextEOG]. */
+    fun addEOG(edge: PropertyEdge<Node>): EdgeBatch {
+        addedEOG += edge
+        return this
+    }
+
+    /**
+     * Removes all EOG edges from [from] to [to], i.e. the committed ones and the ones that were
+     * added to this batch before.
+     */
+    fun removeEOG(from: Node, to: Node): EdgeBatch {
+        removedEOG[EdgeKey(from, to)] = addedEOG.size
+        return this
+    }
+
+    /**
+     * Applies all pending changes to the graph, informs the [EdgeListener]s and empties the batch.
+     *
+     * @return the changes that were actually applied
+     */
+    fun commit(): EdgeChanges {
+        val changes = EdgeChanges()
+        commitDFG(changes)
+        commitEOG(changes)
+
+        dfg.clear()
+        addedEOG.clear()
+        removedEOG.clear()
+
+        if (!changes.isEmpty) {
+            listeners.forEach { it.edgesChanged(changes) }
+        }
+
+        return changes
+    }
+
+    private fun commitDFG(changes: EdgeChanges) {
+        // Grow the edge sets of each node once for all of its new edges
+        val outgoing = IdentityHashMap<Node, Int>()
+        val incoming = IdentityHashMap<Node, Int>()
+        for ((key, add) in dfg) {
+            if (add) {
+                outgoing[key.from] = (outgoing[key.from] ?: 0) + 1
+                incoming[key.to] = (incoming[key.to] ?: 0) + 1
+            }
+        }
+        outgoing.forEach { (node, count) -> reserve(node.nextDFG, count) }
+        incoming.forEach { (node, count) -> reserve(node.prevDFG, count) }
+
+        for ((key, add) in dfg) {
+            val from = key.from
+            val to = key.to
+            if (add) {
+                if (from.nextDFG.add(to) or to.prevDFG.add(from)) {
+                    changes.addedDFG += key.toPair()
+                }
+            } else {
+                if (from.nextDFG.remove(to) or to.prevDFG.remove(from)) {
+                    changes.removedDFG += key.toPair()
+                }
+            }
+        }
+    }
+
+    private fun commitEOG(changes: EdgeChanges) {
+        // Removals are applied per node, so that each edge list is only filtered once
+        val removals = IdentityHashMap<Node, MutableSet<Node>>()
+        for (key in removedEOG.keys) {
+            removals.computeIfAbsent(key.from) { SmallSet() }.add(key.to)
+        }
+        for ((from, targets) in removals) {
+            from.nextEOGEdges.removeIf { edge ->
+                val remove = targets.any { it === edge.end }
+                if (remove) {
+                    edge.end.prevEOGEdges.removeIf { it.start === from }
+                    changes.removedEOG += edge
+                }
+                remove
+            }
+        }
+
+        for ((i, edge) in addedEOG.withIndex()) {
+            // Skip the edges which were removed again after they were added
+            if (i < (removedEOG[EdgeKey(edge.start, edge.end)] ?: 0)) {
+                continue
+            }
+
+            edge.start.addNextEOG(edge)
+            edge.end.addPrevEOG(edge)
+            changes.addedEOG += edge
+        }
+    }
+
+    /** Makes room for [count] further elements in [set], if it supports it. */
+    private fun reserve(set: MutableSet<Node>, count: Int) {
+        (set as? SmallSet<Node>)?.ensureCapacity(set.size + count)
+    }
+
+    /** An edge between two nodes, which are compared by identity. */
+    private class EdgeKey(val from: Node, val to: Node) {
+        override fun equals(other: Any?): Boolean {
+            return other is EdgeKey && from === other.from && to === other.to
+        }
+
+        override fun hashCode(): Int {
+            return 31 * System.identityHashCode(from) + System.identityHashCode(to)
+        }
+
+        fun toPair(): Pair<Node, Node> {
+            return Pair(from, to)
+        }
+    }
+
+    companion object {
+        private val listeners = CopyOnWriteArrayList<EdgeListener>()
+
+        /** Registers [listener] to be informed about the changes of all committed batches. */
+        @JvmStatic
+        fun addListener(listener: EdgeListener) {
+            listeners += listener
+        }
+
+        @JvmStatic
+        fun removeListener(listener: EdgeListener) {
+            listeners -= listener
+        }
+    }
+}
+
+/** The edges that were added or removed by an [EdgeBatch]. */
+class EdgeChanges {
+    val addedDFG = mutableListOf<Pair<Node, Node>>()
+    val removedDFG = mutableListOf<Pair<Node, Node>>()
+    val addedEOG = mutableListOf<PropertyEdge<Node>>()
+    val removedEOG = mutableListOf<PropertyEdge<Node>>()
+
+    val isEmpty: Boolean
+        get() =
+            addedDFG.isEmpty() && removedDFG.isEmpty() && addedEOG.isEmpty() && removedEOG.isEmpty()
+}
+
+/** Is informed about the changes of committed [EdgeBatch]es. */
+fun interface EdgeListener {
+    fun edgesChanged(changes: EdgeChanges)
+}
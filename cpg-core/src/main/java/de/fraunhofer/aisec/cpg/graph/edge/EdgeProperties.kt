@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.graph.edge
+
+/**
+ * A compact map of the [Properties] of a [PropertyEdge]. Most edges only have one or two
+ * properties (e.g. [Properties.INDEX]), so instead of the array of all properties of an
+ * [java.util.EnumMap], this map stores a bit mask of the present properties and an array that only
+ * contains their values, ordered by the ordinal of the property. An empty map does not allocate an
+ * array at all.
+ */
+class EdgeProperties() : AbstractMutableMap<Properties, Any?>() {
+    /** Bit `i` is set, if the property with the ordinal `i` is present. */
+    private var mask = 0
+
+    /** The values of the present properties, ordered by their ordinal. */
+    private var values: Array<Any?> = EMPTY
+
+    constructor(properties: Map<Properties, Any?>) : this() {
+        putAll(properties)
+    }
+
+    override val size: Int
+        get() = Integer.bitCount(mask)
+
+    override fun containsKey(key: Properties): Boolean {
+        return mask and bit(key) != 0
+    }
+
+    override fun get(key: Properties): Any? {
+        return if (containsKey(key)) values[slot(key)] else null
+    }
+
+    override fun put(key: Properties, value: Any?): Any? {
+        val slot = slot(key)
+        if (containsKey(key)) {
+            val old = values[slot]
+            values[slot] = value
+            return old
+        }
+
+        val newValues = arrayOfNulls<Any?>(values.size + 1)
+        System.arraycopy(values, 0, newValues, 0, slot)
+        System.arraycopy(values, slot, newValues, slot + 1, values.size - slot)
+        newValues[slot] = value
+
+        values = newValues
+        mask = mask or bit(key)
+        return null
+    }
+
+    override fun remove(key: Properties): Any? {
+        if (!containsKey(key)) {
+            return null
+        }
+
+        val slot = slot(key)
+        val old = values[slot]
+        if (values.size == 1) {
+            values = EMPTY
+        } else {
+            val newValues = arrayOfNulls<Any?>(values.size - 1)
+            System.arraycopy(values, 0, newValues, 0, slot)
+            System.arraycopy(values, slot + 1, newValues, slot, values.size - slot - 1)
+            values = newValues
+        }
+        mask = mask and bit(key).inv()
+
+        return old
+    }
+
+    override fun clear() {
+        mask = 0
+        values = EMPTY
+    }
+
+    override val entries: MutableSet<MutableMap.MutableEntry<Properties, Any?>>
+        get() = EntrySet()
+
+    /** The index of the value of [key] in [values]. */
+    private fun slot(key: Properties): Int {
+        return Integer.bitCount(mask and (bit(key) - 1))
+    }
+
+    private inner class EntrySet : AbstractMutableSet<MutableMap.MutableEntry<Properties, Any?>>() {
+        override val size: Int
+            get() = this@EdgeProperties.size
+
+        override fun add(element: MutableMap.MutableEntry<Properties, Any?>): Boolean {
+            throw UnsupportedOperationException()
+        }
+
+        override fun iterator(): MutableIterator<MutableMap.MutableEntry<Properties, Any?>> {
+            return object : MutableIterator<MutableMap.MutableEntry<Properties, Any?>> {
+                private var remaining = mask
+                private var last: Properties? = null
+
+                override fun hasNext(): Boolean {
+                    return remaining != 0
+                }
+
+                override fun next(): MutableMap.MutableEntry<Properties, Any?> {
+                    if (remaining == 0) {
+                        throw NoSuchElementException()
+                    }
+
+                    val key = KEYS[Integer.numberOfTrailingZeros(remaining)]
+                    remaining = remaining and (remaining - 1)
+                    last = key
+                    return Entry(key)
+                }
+
+                override fun remove() {
+                    this@EdgeProperties.remove(checkNotNull(last))
+                    last = null
+                }
+            }
+        }
+    }
+
+    /** An entry that reads and writes the value of [key] in the map. */
+    private inner class Entry(override val key: Properties) :
+        MutableMap.MutableEntry<Properties, Any?> {
+        override val value: Any?
+            get() = get(key)
+
+        override fun setValue(newValue: Any?): Any? {
+            return put(key, newValue)
+        }
+
+        override fun equals(other: Any?): Boolean {
+            return other is Map.Entry<*, *> && key == other.key && value == other.value
+        }
+
+        override fun hashCode(): Int {
+            return key.hashCode() xor (value?.hashCode() ?: 0)
+        }
+
+        override fun toString(): String {
+            return "$key=$value"
+        }
+    }
+
+    companion object {
+        private val KEYS = Properties.values()
+        private val EMPTY = arrayOf<Any?>()
+
+        private fun bit(key: Properties): Int {
+            return 1 shl key.ordinal
+        }
+    }
+}
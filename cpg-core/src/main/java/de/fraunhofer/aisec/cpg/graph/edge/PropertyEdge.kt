@@ -66,14 +66,13 @@ open class PropertyEdge<T : Node> : Persistable {
     constructor(start: Node, end: T) {
         this.start = start
         this.end = end
-        properties = EnumMap(Properties::class.java)
+        properties = EdgeProperties()
     }
 
     constructor(propertyEdge: PropertyEdge<T>) {
         start = propertyEdge.start
         end = propertyEdge.end
-        properties = EnumMap(Properties::class.java)
-        properties.putAll(propertyEdge.properties)
+        properties = EdgeProperties(propertyEdge.properties)
     }
 
     constructor(start: Node, end: T, properties: MutableMap<Properties, Any?>) {
@@ -25,7 +25,6 @@
  */
 package de.fraunhofer.aisec.cpg.graph.edge;
 
-import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Function;
@@ -76,7 +75,7 @@ public class PropertyEdgeConverter implements CompositeAttributeConverter<Map<Pr
 
   @Override
   public Map<Properties, Object> toEntityAttribute(Map<String, ?> value) {
-    Map<Properties, Object> result = new EnumMap<>(Properties.class);
+    Map<Properties, Object> result = new EdgeProperties();
 
     for (Properties prop : Properties.values()) {
       if (deserializer.containsKey(prop.name())) {
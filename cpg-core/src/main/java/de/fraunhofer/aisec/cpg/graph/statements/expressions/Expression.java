@@ -31,6 +31,7 @@ import de.fraunhofer.aisec.cpg.graph.types.FunctionPointerType;
 import de.fraunhofer.aisec.cpg.graph.types.ReferenceType;
 import de.fraunhofer.aisec.cpg.graph.types.Type;
 import de.fraunhofer.aisec.cpg.graph.types.UnknownType;
+import de.fraunhofer.aisec.cpg.helpers.SmallSet;
 import java.util.*;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -58,7 +59,7 @@ public abstract class Expression extends Statement implements HasType {
   /** The type of the value after evaluation. */
   protected Type type = UnknownType.getUnknownType();
 
-  @Transient private final Set<TypeListener> typeListeners = new HashSet<>();
+  @Transient private final Set<TypeListener> typeListeners = new SmallSet<>();
 
   private List<Type> possibleSubTypes = new ArrayList<>();
 
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.helpers
+
+import de.fraunhofer.aisec.cpg.sarif.PhysicalLocation
+import de.fraunhofer.aisec.cpg.sarif.PhysicalLocation.ArtifactLocation
+import java.net.URI
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * The table of the files of one translation, see
+ * [de.fraunhofer.aisec.cpg.TranslationResult.getFiles]. Each file gets a dense id (`0 until size`)
+ * and is represented by a single [ArtifactLocation], which is shared by the locations of all nodes
+ * in this file (see [intern]). Thus, the [URI] of a file is only kept once per translation instead
+ * of once per node.
+ *
+ * The table is thread-safe, so that it can be shared by frontends which run in parallel. Looking up
+ * a file that already has an id does not need a lock.
+ */
+class FileTable {
+    /** The entries of the files, indexed by their [URI]. */
+    private val entries = ConcurrentHashMap<URI, Entry>()
+
+    /** The entries of the files, indexed by their id. */
+    private val byId = ArrayList<Entry>()
+
+    /** The number of files in this table. */
+    val size: Int
+        get() = entries.size
+
+    /** Returns the id of the file with the given [uri]. A new file is added to this table. */
+    fun id(uri: URI): Int {
+        return entry(uri).id
+    }
+
+    /** Returns the shared artifact of the file with the given [uri], see [id]. */
+    fun artifact(uri: URI): ArtifactLocation {
+        return entry(uri).artifact
+    }
+
+    /** Returns the shared artifact of the file with the given [id]. */
+    fun artifact(id: Int): ArtifactLocation {
+        return byId(id).artifact
+    }
+
+    /** Returns the [URI] of the file with the given [id]. */
+    fun uri(id: Int): URI {
+        return byId(id).artifact.uri
+    }
+
+    /** Returns the path of the file with the given [id]. */
+    fun path(id: Int): String {
+        return byId(id).path
+    }
+
+    /**
+     * Replaces the artifact of [location] with the shared artifact of its file and returns the
+     * location. The location is modified in place, its region is kept as it is.
+     */
+    fun intern(location: PhysicalLocation): PhysicalLocation {
+        val artifact = artifact(location.artifactLocation.uri)
+        if (location.artifactLocation !== artifact) {
+            location.artifactLocation = artifact
+        }
+
+        return location
+    }
+
+    private fun entry(uri: URI): Entry {
+        entries[uri]?.let {
+            return it
+        }
+
+        synchronized(byId) {
+            // Another thread might have added it in the meantime
+            return entries.getOrPut(uri) {
+                Entry(byId.size, ArtifactLocation(uri)).also { byId += it }
+            }
+        }
+    }
+
+    private fun byId(id: Int): Entry {
+        synchronized(byId) {
+            if (id < 0 || id >= byId.size) {
+                throw IndexOutOfBoundsException("Index: $id, Size: ${byId.size}")
+            }
+
+            return byId[id]
+        }
+    }
+
+    /** A file of this table. */
+    private class Entry(val id: Int, val artifact: ArtifactLocation) {
+        val path: String = artifact.uri.path ?: artifact.uri.toString()
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.helpers
+
+import jdk.jfr.Category
+import jdk.jfr.Description
+import jdk.jfr.Event
+import jdk.jfr.Label
+import jdk.jfr.Name
+
+/**
+ * Controls the custom Java Flight Recorder events of the CPG, such as [FrontendParseEvent] and
+ * [PassEvent]. The events of a translation, i.e. of its frontends, passes and scope resolutions,
+ * are only created if [de.fraunhofer.aisec.cpg.TranslationConfiguration.flightRecorderEvents] is
+ * set in its configuration, so that concurrent translations do not influence each other. Events
+ * which are not bound to a single translation, i.e. the type registrations of the shared
+ * [de.fraunhofer.aisec.cpg.graph.TypeManager] and the evaluation of queries, are controlled by
+ * [isEnabled] instead. Otherwise, the only cost of an event is the check of the respective flag.
+ *
+ * Even if enabled, the events are only written if a recording is running, which is started
+ * externally, e.g. with `-XX:StartFlightRecording` or `jcmd <pid> JFR.start`. Fields that are
+ * expensive to compute (e.g. node counts) are only filled in this case (see [finish]).
+ */
+object FlightRecorder {
+    /**
+     * Enables the events which are not bound to a single translation. It is not changed by the
+     * translation itself.
+     */
+    @JvmStatic @Volatile var isEnabled = false
+
+    /** Creates and begins an event with [create], if the events are enabled by [isEnabled]. */
+    inline fun <T : Event> begin(create: () -> T): T? {
+        return begin(isEnabled, create)
+    }
+
+    /**
+     * Creates and begins an event with [create], if [enabled] is set, e.g. by the configuration of
+     * the translation.
+     */
+    inline fun <T : Event> begin(enabled: Boolean, create: () -> T): T? {
+        return if (enabled) create().also { it.begin() } else null
+    }
+}
+
+/**
+ * Ends this event and commits it, if it is written to a running recording. The fields of the event
+ * are set by [fill] only in this case.
+ */
+inline fun <T : Event> T?.finish(fill: T.() -> Unit) {
+    if (this == null) {
+        return
+    }
+
+    end()
+    if (shouldCommit()) {
+        fill()
+        commit()
+    }
+}
+
+@Name("de.fraunhofer.aisec.cpg.FrontendParse")
+@Label("Frontend Parse")
+@Category("CPG")
+@Description("Parsing of a single file by a language frontend")
+class FrontendParseEvent : Event() {
+    @Label("File") @JvmField var file: String? = null
+
+    @Label("Frontend") @JvmField var frontend: String? = null
+
+    @Label("Nodes") @Description("The number of AST nodes of the translation unit")
+    @JvmField
+    var nodes = 0
+
+    @Label("Success") @JvmField var success = false
+}
+
+@Name("de.fraunhofer.aisec.cpg.Pass")
+@Label("Pass")
+@Category("CPG")
+@Description("Execution of a single pass on the translation result")
+class PassEvent : Event() {
+    @Label("Pass") @JvmField var pass: String? = null
+
+    @Label("Executed") @Description("Whether the pass ran with the executed frontends")
+    @JvmField
+    var executed = false
+
+    @Label("Nodes") @Description("The number of AST nodes after the pass")
+    @JvmField
+    var nodes = 0
+}
+
+@Name("de.fraunhofer.aisec.cpg.ScopeResolution")
+@Label("Scope Resolution")
+@Category("CPG")
+@Description("Resolution of a reference or a call by the scope manager")
+class ScopeResolutionEvent : Event() {
+    @Label("Kind") @Description("The kind of resolution, i.e. reference, function or template")
+    @JvmField
+    var kind: String? = null
+
+    @Label("Name") @JvmField var name: String? = null
+
+    @Label("Scope") @JvmField var scope: String? = null
+
+    @Label("Candidates") @Description("The number of declarations matching the reference or call")
+    @JvmField
+    var candidates = 0
+
+    @Label("Resolved") @JvmField var resolved = false
+}
+
+@Name("de.fraunhofer.aisec.cpg.TypeRegistration")
+@Label("Type Registration")
+@Category("CPG")
+@Description("Registration of a type in the type manager")
+class TypeRegistrationEvent : Event() {
+    @Label("Type") @JvmField var type: String? = null
+
+    @Label("First Order") @JvmField var firstOrder = false
+
+    @Label("New") @Description("Whether the type was not registered before")
+    @JvmField
+    var added = false
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.helpers
+
+/**
+ * A map from objects to primitive int values, which uses reference-equality for its keys, similar
+ * to an [java.util.IdentityHashMap]. In contrast to `IdentityHashMap<K, Int>`, the values are not
+ * boxed. The keys and values are stored in two parallel arrays, which are used as an
+ * open-addressing hash table with linear probing.
+ *
+ * Lookups of missing keys return [defaultValue].
+ */
+class IdentityIntMap<K : Any>(val defaultValue: Int = -1, expectedSize: Int = 8) {
+    private var keys: Array<Any?> = arrayOfNulls(capacityFor(expectedSize))
+    private var values = IntArray(keys.size)
+
+    /** The number of keys in this map. */
+    var size = 0
+        private set
+
+    fun isEmpty(): Boolean {
+        return size == 0
+    }
+
+    /** Returns the value of [key] or [defaultValue], if it is not contained in the map. */
+    operator fun get(key: K): Int {
+        val slot = slotOf(key)
+        return if (slot < 0) defaultValue else values[slot]
+    }
+
+    fun containsKey(key: K): Boolean {
+        return slotOf(key) >= 0
+    }
+
+    /**
+     * Sets the value of [key] to [value] and returns the previous value or [defaultValue], if the
+     * key was not contained in the map.
+     */
+    fun put(key: K, value: Int): Int {
+        val mask = keys.size - 1
+        var slot = identityIndex(key, mask)
+        while (true) {
+            val k = keys[slot]
+            if (k == null) {
+                keys[slot] = key
+                values[slot] = value
+                if (++size * 2 > keys.size) {
+                    resize(keys.size * 2)
+                }
+                return defaultValue
+            }
+            if (k === key) {
+                val previous = values[slot]
+                values[slot] = value
+                return previous
+            }
+            slot = (slot + 1) and mask
+        }
+    }
+
+    operator fun set(key: K, value: Int) {
+        put(key, value)
+    }
+
+    /** Removes [key] and returns its value or [defaultValue], if it was not contained. */
+    fun remove(key: K): Int {
+        val slot = slotOf(key)
+        if (slot < 0) {
+            return defaultValue
+        }
+
+        val value = values[slot]
+        deleteSlot(keys, slot) { from, to -> values[to] = values[from] }
+        size--
+
+        return value
+    }
+
+    fun clear() {
+        keys.fill(null)
+        size = 0
+    }
+
+    /** Calls [action] for each key and its value. The order is unspecified. */
+    fun forEach(action: (K, Int) -> Unit) {
+        for (slot in keys.indices) {
+            @Suppress("UNCHECKED_CAST") val key = keys[slot] as K? ?: continue
+            action(key, values[slot])
+        }
+    }
+
+    private fun slotOf(key: Any): Int {
+        val mask = keys.size - 1
+        var slot = identityIndex(key, mask)
+        while (true) {
+            val k = keys[slot] ?: return -1
+            if (k === key) {
+                return slot
+            }
+            slot = (slot + 1) and mask
+        }
+    }
+
+    private fun resize(capacity: Int) {
+        val oldKeys = keys
+        val oldValues = values
+        keys = arrayOfNulls(capacity)
+        values = IntArray(capacity)
+
+        val mask = capacity - 1
+        for (i in oldKeys.indices) {
+            val key = oldKeys[i] ?: continue
+            var slot = identityIndex(key, mask)
+            while (keys[slot] != null) {
+                slot = (slot + 1) and mask
+            }
+            keys[slot] = key
+            values[slot] = oldValues[i]
+        }
+    }
+
+    internal companion object {
+        /** Returns the smallest power of two, which can hold [size] entries at a load of 1/2. */
+        fun capacityFor(size: Int): Int {
+            return Integer.highestOneBit((size.coerceAtLeast(4) * 2 - 1)) shl 1
+        }
+
+        /** Returns the preferred slot of [key] in a table with the given [mask]. */
+        fun identityIndex(key: Any, mask: Int): Int {
+            // Spread the identity hash code, since the lower bits alone are not well distributed
+            val h = System.identityHashCode(key) * -0x61c88647
+            return (h xor (h ushr 16)) and mask
+        }
+
+        /**
+         * Empties [slot] of the linear probing table [table] without leaving a tombstone: all
+         * following entries of the same probe sequence are shifted back, so that they can still be
+         * found. [move] is called for each entry that is moved, so that parallel arrays can follow.
+         */
+        inline fun deleteSlot(table: Array<Any?>, slot: Int, move: (from: Int, to: Int) -> Unit) {
+            val mask = table.size - 1
+            var hole = slot
+            var i = slot
+            while (true) {
+                i = (i + 1) and mask
+                val key = table[i] ?: break
+                val ideal = identityIndex(key, mask)
+                // The entry can be moved into the hole, if its preferred slot is not cyclically
+                // between the hole (exclusive) and its current slot (inclusive)
+                val stays =
+                    if (hole <= i) ideal in (hole + 1)..i else ideal > hole || ideal <= i
+                if (!stays) {
+                    table[hole] = key
+                    move(i, hole)
+                    hole = i
+                }
+            }
+            table[hole] = null
+        }
+    }
+}
@@ -26,14 +26,14 @@
 package de.fraunhofer.aisec.cpg.helpers
 
 import de.fraunhofer.aisec.cpg.graph.Node
+import de.fraunhofer.aisec.cpg.helpers.IdentityIntMap.Companion.capacityFor
+import de.fraunhofer.aisec.cpg.helpers.IdentityIntMap.Companion.deleteSlot
+import de.fraunhofer.aisec.cpg.helpers.IdentityIntMap.Companion.identityIndex
 import java.lang.UnsupportedOperationException
-import java.util.*
-import java.util.concurrent.atomic.AtomicInteger
 
 /**
- * This class implements the [MutableSet] interface with an underlying map and reference-equality
- * instead of object-equality. That means, objects are only considered equal, if they are the *same*
- * object. This logic is primarily implemented by the underlying [IdentityHashMap].
+ * This class implements the [MutableSet] interface with reference-equality instead of
+ * object-equality. That means, objects are only considered equal, if they are the *same* object.
  *
  * The use case of this [MutableSet] is quite simple: In order to avoid loops while traversing in
  * the CPG AST we often need to store [Node] objects in a work-list (usually a set), in order to
@@ -42,21 +42,33 @@ import java.util.concurrent.atomic.AtomicInteger
  * as [Node.hashCode] or even worse [Node.equals], if the hashcode is the same. This can potentially
  * be very resource-intensive if nodes are very similar but not the *same*, in a work-list however
  * we only want just to avoid to place the exact node twice.
+ *
+ * Since these sets are created very often, they avoid any allocation per element: the elements are
+ * stored in an open-addressing hash table with linear probing and additionally in an array in the
+ * order of their insertion. Both are linked by a parallel array of positions, so that the set can
+ * be iterated (and returned by [toSortedList]) in insertion order without sorting.
  */
-class IdentitySet<T : Any> : MutableSet<T> {
+class IdentitySet<T : Any> @JvmOverloads constructor(expectedSize: Int = 8) : MutableSet<T> {
+    /** The hash table of the elements. */
+    private var table: Array<Any?> = arrayOfNulls(capacityFor(expectedSize))
+
+    /** The position of the element in each slot of the [table] in [elements]. */
+    private var positions = IntArray(table.size)
+
     /**
-     * The backing hashmap for our set. The [IdentityHashMap] offers reference-equality for keys and
-     * values. In this case we use it to determine, if a node is already in our set or not. The
-     * value of the map is not used and is always true. A [Boolean] is used because it seems to be
-     * the smallest data type possible.
+     * The elements in the order of their insertion. Removed elements leave a gap (null), which is
+     * closed when the array needs to grow. Only the first [end] entries are used.
      */
-    private val map: IdentityHashMap<T, Int> = IdentityHashMap()
-    private val counter = AtomicInteger()
+    private var elements: Array<Any?> = arrayOfNulls(expectedSize.coerceAtLeast(4))
+    private var end = 0
+
+    private var count = 0
+
+    override val size: Int
+        get() = count
 
     override operator fun contains(element: T): Boolean {
-        // We are using the backing reference-equality based map to check, if the element is already
-        // in the set.
-        return map.containsKey(element)
+        return slotOf(element) >= 0
     }
 
     override fun equals(other: Any?): Boolean {
@@ -65,25 +77,75 @@ class IdentitySet<T : Any> : MutableSet<T> {
     }
 
     override fun add(element: T): Boolean {
-        // Since we are a Set, we only want to add elements that are not already there
-        if (!contains(element)) {
-            map[element] = counter.addAndGet(1)
-            return true
+        val mask = table.size - 1
+        var slot = identityIndex(element, mask)
+        while (true) {
+            val e = table[slot] ?: break
+            if (e === element) {
+                // Since we are a Set, we only want to add elements that are not already there
+                return false
+            }
+            slot = (slot + 1) and mask
+        }
+
+        if (end == elements.size) {
+            growElements()
+        }
+        table[slot] = element
+        positions[slot] = end
+        elements[end++] = element
+
+        if (++count * 2 > table.size) {
+            rehash(table.size * 2)
         }
 
-        return false
+        return true
     }
 
     override fun containsAll(elements: Collection<T>): Boolean {
-        return elements.all { map.containsKey(it) }
+        return elements.all { contains(it) }
     }
 
     override fun isEmpty(): Boolean {
-        return map.isEmpty()
+        return size == 0
     }
 
     override fun iterator(): MutableIterator<T> {
-        return map.keys.iterator()
+        return object : MutableIterator<T> {
+            private var next = advance(0)
+            private var last = -1
+
+            private fun advance(from: Int): Int {
+                var i = from
+                while (i < end && elements[i] == null) {
+                    i++
+                }
+                return i
+            }
+
+            override fun hasNext(): Boolean {
+                return next < end
+            }
+
+            override fun next(): T {
+                if (next >= end) {
+                    throw NoSuchElementException()
+                }
+
+                last = next
+                next = advance(next + 1)
+                @Suppress("UNCHECKED_CAST") return elements[last] as T
+            }
+
+            override fun remove() {
+                check(last >= 0)
+                @Suppress("UNCHECKED_CAST") val element = elements[last] as T?
+                check(element != null)
+                // Removing only leaves a gap in the elements, so our position stays valid
+                this@IdentitySet.remove(element)
+                last = -1
+            }
+        }
     }
 
     /**
@@ -92,7 +154,13 @@ class IdentitySet<T : Any> : MutableSet<T> {
      * according to their "closeness" to the root AST node.
      */
     fun toSortedList(): List<T> {
-        return map.entries.sortedBy { it.value }.map { it.key }
+        val list = ArrayList<T>(size)
+        for (i in 0 until end) {
+            @Suppress("UNCHECKED_CAST") val element = elements[i] as T? ?: continue
+            list += element
+        }
+
+        return list
     }
 
     override fun addAll(elements: Collection<T>): Boolean {
@@ -109,11 +177,23 @@ class IdentitySet<T : Any> : MutableSet<T> {
     }
 
     override fun clear() {
-        map.clear()
+        table.fill(null)
+        elements.fill(null, 0, end)
+        end = 0
+        count = 0
     }
 
     override fun remove(element: T): Boolean {
-        return map.remove(element) != null
+        val slot = slotOf(element)
+        if (slot < 0) {
+            return false
+        }
+
+        elements[positions[slot]] = null
+        deleteSlot(table, slot) { from, to -> positions[to] = positions[from] }
+        count--
+
+        return true
     }
 
     override fun removeAll(elements: Collection<T>): Boolean {
@@ -133,6 +213,48 @@ class IdentitySet<T : Any> : MutableSet<T> {
         throw UnsupportedOperationException()
     }
 
-    override val size: Int
-        get() = map.size
+    private fun slotOf(element: Any): Int {
+        val mask = table.size - 1
+        var slot = identityIndex(element, mask)
+        while (true) {
+            val e = table[slot] ?: return -1
+            if (e === element) {
+                return slot
+            }
+            slot = (slot + 1) and mask
+        }
+    }
+
+    /** Makes room for further elements, either by closing the gaps or by growing the array. */
+    private fun growElements() {
+        if (size < end / 2) {
+            // Close the gaps of the removed elements and update their positions in the table
+            var to = 0
+            for (from in 0 until end) {
+                val element = elements[from] ?: continue
+                elements[from] = null
+                elements[to++] = element
+            }
+            end = to
+            rehash(table.size)
+        } else {
+            elements = elements.copyOf(elements.size * 2)
+        }
+    }
+
+    private fun rehash(capacity: Int) {
+        table = arrayOfNulls(capacity)
+        positions = IntArray(capacity)
+
+        val mask = capacity - 1
+        for (i in 0 until end) {
+            val element = elements[i] ?: continue
+            var slot = identityIndex(element, mask)
+            while (table[slot] != null) {
+                slot = (slot + 1) and mask
+            }
+            table[slot] = element
+            positions[slot] = i
+        }
+    }
 }
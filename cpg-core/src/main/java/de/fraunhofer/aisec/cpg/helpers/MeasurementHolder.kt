@@ -36,7 +36,13 @@ import java.util.*
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 
-class BenchmarkResults(val entries: List<List<Any>>) {
+class BenchmarkResults
+@JvmOverloads
+constructor(
+    val entries: List<List<Any>>,
+    /** The benchmarks whose [MeasurementHolder.metrics] are exported. */
+    val benchmarks: Collection<MeasurementHolder> = listOf()
+) {
 
     val json: String
         get() {
@@ -46,6 +52,66 @@ class BenchmarkResults(val entries: List<List<Any>>) {
             return mapper.writeValueAsString(entries.associate { it[0] to it[1] })
         }
 
+    /** The numeric metrics of all [benchmarks] as a JSON array. */
+    val metricsJson: String
+        get() {
+            val mapper = jacksonObjectMapper()
+
+            return mapper.writeValueAsString(
+                benchmarks.map {
+                    mapOf("caller" to it.caller, "message" to it.message, "metrics" to it.metrics)
+                }
+            )
+        }
+
+    /**
+     * The numeric metrics of all [benchmarks] in the OpenMetrics text format. Each metric becomes a
+     * gauge named `cpg_benchmark_<metric>` with the caller and message of the benchmark as labels.
+     * Since several benchmarks can have the same caller and message, e.g., the ones of the files
+     * parsed by a frontend, the `index` label numbers them in the order of [benchmarks].
+     */
+    val openMetrics: String
+        get() {
+            val families = sortedMapOf<String, MutableList<String>>()
+            val occurrences = mutableMapOf<Pair<String, String>, Int>()
+            for (benchmark in benchmarks) {
+                val key = Pair(benchmark.caller, benchmark.message)
+                val index = occurrences[key] ?: 0
+                occurrences[key] = index + 1
+                val labels =
+                    "{caller=\"${escapeLabel(benchmark.caller)}\"," +
+                        "message=\"${escapeLabel(benchmark.message)}\",index=\"$index\"}"
+                for ((name, value) in benchmark.metrics) {
+                    families.getOrPut(name) { mutableListOf() } +=
+                        "$METRICS_PREFIX$name$labels $value"
+                }
+            }
+
+            val sb = StringBuilder()
+            for ((name, samples) in families) {
+                sb.append("# TYPE $METRICS_PREFIX$name gauge\n")
+                val unit = name.substringAfterLast('_')
+                if (unit in METRIC_UNITS) {
+                    sb.append("# UNIT $METRICS_PREFIX$name $unit\n")
+                }
+                samples.forEach { sb.append(it).append('\n') }
+            }
+            sb.append("# EOF\n")
+
+            return sb.toString()
+        }
+
+    private fun escapeLabel(value: String): String {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")
+    }
+
+    companion object {
+        const val METRICS_PREFIX = "cpg_benchmark_"
+
+        /** The units of metrics, which are the suffix of their name, e.g. `wall_time_ms`. */
+        private val METRIC_UNITS = setOf("ms", "bytes")
+    }
+
     /** Pretty-prints benchmark results for easy copying to GitHub issues. */
     fun print() {
         println("# Benchmark run ${UUID.randomUUID()}")
@@ -77,9 +143,15 @@ interface StatisticsHolder {
                 it.measurements.forEach { measurement ->
                     results += listOf(measurement.key, measurement.value)
                 }
+                it.metrics.forEach { (name, value) ->
+                    // the wall time is already part of the measurements
+                    if (name != Benchmark.WALL_TIME) {
+                        results += listOf("${it.caller}: ${it.message} ($name)", value)
+                    }
+                }
             }
 
-            return BenchmarkResults(results)
+            return BenchmarkResults(results, benchmarks)
         }
 }
 
@@ -135,18 +207,31 @@ fun relativeOrAbsolute(path: Path, topLevel: File?): Path {
     }
 }
 
-/** Measures the time between creating the object to calling its stop() method. */
+/**
+ * Measures the time between creating the object to calling its stop() method. If
+ * [TranslationConfiguration.profileResources] is enabled in the configuration of the [holder], the
+ * CPU time and allocated bytes of the current thread (or of all threads, if [allThreads] is set),
+ * the garbage collections and the peak heap usage are measured as well and stored in the [metrics].
+ */
 open class Benchmark
 @JvmOverloads
 constructor(
     c: Class<*>,
     message: String,
     debug: Boolean = false,
-    holder: StatisticsHolder? = null
+    holder: StatisticsHolder? = null,
+    /**
+     * Whether the CPU time and allocated bytes are measured for all threads instead of only the
+     * current one. This should be set for benchmarks of work which is distributed to other threads.
+     */
+    private val allThreads: Boolean = false
 ) : MeasurementHolder(c, message, debug, holder) {
 
     private val start: Instant
 
+    /** The resource usage at the start, if resources are profiled. */
+    private var resources: ResourceUsage? = null
+
     /** Stops this benchmark and adds its measurement to the its [StatisticsHolder]. */
     fun stop() {
         addMeasurement()
@@ -156,6 +241,12 @@ constructor(
     override fun addMeasurement(measurementKey: String?, measurementValue: String?): Any? {
         val duration = Duration.between(start, Instant.now()).toMillis()
         measurements["${caller}: $message"] = "$duration ms"
+        metrics[WALL_TIME] = duration
+
+        resources?.let {
+            metrics.putAll(it.stop())
+            resources = null
+        }
 
         logDebugMsg("$caller: $message done in $duration ms")
 
@@ -167,10 +258,15 @@ constructor(
 
     companion object {
         val log: Logger = LoggerFactory.getLogger(MeasurementHolder::class.java)
+
+        const val WALL_TIME = "wall_time_ms"
     }
 
     init {
         measurements["${caller}: $message"] = "No value available yet."
+        if (holder?.config?.profileResources == true) {
+            resources = ResourceUsage.start(allThreads)
+        }
         start = Instant.now()
     }
 }
@@ -194,6 +290,13 @@ constructor(
     /** Stores the values measured by the benchmark */
     var measurements: MutableMap<String, String> = mutableMapOf()
 
+    /**
+     * Stores numeric values measured by the benchmark, such as the wall time or the allocated
+     * bytes, by their metric name. They can be exported with [BenchmarkResults.metricsJson] and
+     * [BenchmarkResults.openMetrics].
+     */
+    val metrics: MutableMap<String, Long> = LinkedHashMap()
+
     /**
      * Returns a list of strings which summarize the insights gained by the benchmark. The first
      * item of the list is the key, the second one is the value.
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.helpers
+
+import java.lang.management.ManagementFactory
+import java.lang.management.MemoryType
+import java.util.*
+
+/**
+ * Captures the resource usage of the threads and the JVM at the start of a [Benchmark], so that the
+ * difference can be computed when the benchmark stops (see [stop]). This is only used if
+ * [de.fraunhofer.aisec.cpg.TranslationConfiguration.profileResources] is enabled.
+ *
+ * The CPU time and allocated bytes are either measured for the thread which started the
+ * measurement or, if [allThreads] is set, summed up over all threads of the JVM. The latter is used
+ * for benchmarks of phases which distribute their work to other threads, such as the parallel
+ * frontends and passes. Threads that terminate during such a measurement are not included.
+ *
+ * The peak heap usage is tracked with the peak usage of the heap memory pools of the JVM. Since
+ * these can only be reset globally, the peak is read and reset at the start and stop of each
+ * profiled benchmark and the value read is propagated to all benchmarks that are running at that
+ * time. Thus, nested or concurrent benchmarks do not lose the peaks of each other.
+ *
+ * Note that the reported peak is only an upper bound: the pools reach their peaks at different
+ * times, but their peaks are summed up. Furthermore, resetting the peaks is a side effect on the
+ * whole JVM, which affects everyone else who reads the peak usage of the heap memory pools (e.g. a
+ * monitoring agent) while resources are profiled.
+ */
+internal class ResourceUsage private constructor(private val allThreads: Boolean) {
+    private val threadId = Thread.currentThread().id
+    private val cpuTimes = threadCpuTimes(threadIds())
+    private val allocatedBytes = threadAllocatedBytes(threadIds())
+    private val gcCount: Long
+    private val gcTime: Long
+
+    /** The highest heap usage observed while this measurement is active. */
+    private var peakHeap = 0L
+
+    init {
+        val (count, time) = gcStatistics()
+        gcCount = count
+        gcTime = time
+    }
+
+    /**
+     * Stops this measurement and returns the resource metrics. Unless [allThreads] is set, CPU time
+     * and allocated bytes are only available, if the measurement is stopped by the thread that
+     * started it.
+     */
+    fun stop(): Map<String, Long> {
+        val metrics = mutableMapOf<String, Long>()
+
+        synchronized(active) {
+            checkpoint()
+            active.remove(this)
+            metrics[PEAK_HEAP] = peakHeap
+        }
+
+        if (allThreads || Thread.currentThread().id == threadId) {
+            val ids = threadIds()
+            if (cpuTimes != null) {
+                metrics[CPU_TIME] = difference(cpuTimes, threadCpuTimes(ids)) / 1_000_000
+            }
+            if (allocatedBytes != null) {
+                metrics[ALLOCATED_BYTES] = difference(allocatedBytes, threadAllocatedBytes(ids))
+            }
+        }
+
+        val (count, time) = gcStatistics()
+        metrics[GC_COUNT] = count - gcCount
+        metrics[GC_TIME] = time - gcTime
+
+        return metrics
+    }
+
+    /** The ids of the threads which are measured. */
+    private fun threadIds(): LongArray {
+        return if (allThreads) threadBean.allThreadIds else longArrayOf(threadId)
+    }
+
+    companion object {
+        const val CPU_TIME = "cpu_time_ms"
+        const val ALLOCATED_BYTES = "allocated_bytes"
+        const val GC_COUNT = "gc_count"
+        const val GC_TIME = "gc_time_ms"
+        const val PEAK_HEAP = "peak_heap_bytes"
+
+        private val threadBean = ManagementFactory.getThreadMXBean()
+        private val heapPools =
+            ManagementFactory.getMemoryPoolMXBeans().filter { it.type == MemoryType.HEAP }
+
+        /** All measurements that are currently running. */
+        private val active: MutableSet<ResourceUsage> =
+            Collections.newSetFromMap(IdentityHashMap())
+
+        /**
+         * Starts a new measurement. If [allThreads] is set, the CPU time and allocated bytes of all
+         * threads are measured instead of the ones of the current thread.
+         */
+        fun start(allThreads: Boolean = false): ResourceUsage {
+            val usage = ResourceUsage(allThreads)
+
+            synchronized(active) {
+                // Make sure that the running measurements do not lose their peak, before we
+                // reset it for the new one
+                checkpoint()
+                active.add(usage)
+            }
+
+            return usage
+        }
+
+        /**
+         * Reads the peak heap usage since the last checkpoint, propagates it to all active
+         * measurements and resets it. The peak is the sum of the peaks of all heap pools and thus
+         * an upper bound of the actual peak. Must be called while holding the lock on [active].
+         */
+        private fun checkpoint() {
+            val peak = heapPools.sumOf { it.peakUsage?.used ?: 0L }
+            active.forEach { it.peakHeap = maxOf(it.peakHeap, peak) }
+            heapPools.forEach { it.resetPeakUsage() }
+        }
+
+        /** Returns the CPU time of the threads with the given [ids] in ns, if supported. */
+        private fun threadCpuTimes(ids: LongArray): Map<Long, Long>? {
+            if (!threadBean.isThreadCpuTimeSupported) {
+                return null
+            }
+
+            return ids.associateWith { threadBean.getThreadCpuTime(it) }
+        }
+
+        /** Returns the bytes allocated by the threads with the given [ids], if supported. */
+        private fun threadAllocatedBytes(ids: LongArray): Map<Long, Long>? {
+            val bean = threadBean as? com.sun.management.ThreadMXBean
+            if (bean == null || !bean.isThreadAllocatedMemorySupported) {
+                return null
+            }
+
+            val bytes = bean.getThreadAllocatedBytes(ids)
+            return ids.indices.associate { ids[it] to bytes[it] }
+        }
+
+        /**
+         * Sums up the increase of the values of each thread from [before] to [after]. Threads
+         * which did not exist before count from zero. A value of -1 denotes a thread which is not
+         * alive (anymore) and is ignored.
+         */
+        private fun difference(before: Map<Long, Long>, after: Map<Long, Long>): Long {
+            var sum = 0L
+            for ((id, value) in after) {
+                if (value < 0) {
+                    continue
+                }
+                sum += maxOf(0L, value - maxOf(0L, before[id] ?: 0L))
+            }
+
+            return sum
+        }
+
+        /** Returns the total number of garbage collections and their accumulated time in ms. */
+        private fun gcStatistics(): Pair<Long, Long> {
+            var count = 0L
+            var time = 0L
+            for (gc in ManagementFactory.getGarbageCollectorMXBeans()) {
+                count += maxOf(0L, gc.collectionCount)
+                time += maxOf(0L, gc.collectionTime)
+            }
+
+            return Pair(count, time)
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.helpers
+
+/**
+ * A [MutableSet] that is optimized for the common case of very few elements, such as the DFG
+ * edges of a [de.fraunhofer.aisec.cpg.graph.Node]. Up to [SMALL_SIZE] elements are stored in a
+ * small array and are compared with [equals], only larger sets are backed by a [HashSet]. An empty
+ * set only consists of the object itself, the array is allocated when the first element is added.
+ *
+ * The elements of a small set are iterated in the order in which they were added. Like the
+ * iterators of a [HashSet], the iterators are not thread-safe, but fail fast with a
+ * [ConcurrentModificationException] if the set is modified other than through the iterator. This
+ * includes switching to the [HashSet] while a small set is iterated.
+ */
+@Suppress("UNCHECKED_CAST")
+class SmallSet<E>() : AbstractMutableSet<E>() {
+    private var elements: Array<Any?> = EMPTY
+    private var count = 0
+
+    /** The number of structural modifications, which is checked by the iterators. */
+    private var modCount = 0
+
+    /** The backing set, once this set has more than [SMALL_SIZE] elements. */
+    private var large: HashSet<E>? = null
+
+    constructor(elements: Collection<E>) : this() {
+        addAll(elements)
+    }
+
+    override val size: Int
+        get() = large?.size ?: count
+
+    override fun contains(element: E): Boolean {
+        large?.let {
+            return it.contains(element)
+        }
+
+        return indexOf(element) >= 0
+    }
+
+    override fun add(element: E): Boolean {
+        large?.let {
+            if (!it.add(element)) {
+                return false
+            }
+
+            modCount++
+            return true
+        }
+
+        if (indexOf(element) >= 0) {
+            return false
+        }
+
+        if (count == SMALL_SIZE) {
+            val set = HashSet<E>()
+            for (i in 0 until count) {
+                set.add(elements[i] as E)
+            }
+            set.add(element)
+
+            large = set
+            elements = EMPTY
+            count = 0
+            modCount++
+            return true
+        }
+
+        if (count == elements.size) {
+            elements = elements.copyOf(if (count == 0) 1 else minOf(count * 2, SMALL_SIZE))
+        }
+        elements[count++] = element
+        modCount++
+
+        return true
+    }
+
+    /**
+     * Makes room for [capacity] elements, so that adding them does not need to grow the set more
+     * than once. Larger sets directly switch to a [HashSet] of the appropriate size.
+     */
+    fun ensureCapacity(capacity: Int) {
+        if (large != null || capacity <= elements.size) {
+            return
+        }
+
+        if (capacity > SMALL_SIZE) {
+            val set = HashSet<E>(maxOf(capacity * 4 / 3 + 1, 16))
+            for (i in 0 until count) {
+                set.add(elements[i] as E)
+            }
+
+            large = set
+            elements = EMPTY
+            count = 0
+            modCount++
+        } else {
+            elements = elements.copyOf(capacity)
+        }
+    }
+
+    override fun remove(element: E): Boolean {
+        large?.let {
+            if (!it.remove(element)) {
+                return false
+            }
+
+            modCount++
+            return true
+        }
+
+        val i = indexOf(element)
+        if (i < 0) {
+            return false
+        }
+        removeAt(i)
+
+        return true
+    }
+
+    override fun clear() {
+        large = null
+        elements = EMPTY
+        count = 0
+        modCount++
+    }
+
+    override fun iterator(): MutableIterator<E> {
+        large?.let {
+            return LargeIterator(it.iterator())
+        }
+
+        return SmallIterator()
+    }
+
+    /** Iterates over the array of a small set. */
+    private inner class SmallIterator : MutableIterator<E> {
+        private var next = 0
+        private var last = -1
+        private var expectedModCount = modCount
+
+        override fun hasNext(): Boolean {
+            checkModCount(expectedModCount)
+            return next < count
+        }
+
+        override fun next(): E {
+            checkModCount(expectedModCount)
+            if (next >= count) {
+                throw NoSuchElementException()
+            }
+
+            last = next++
+            return elements[last] as E
+        }
+
+        override fun remove() {
+            check(last >= 0)
+            checkModCount(expectedModCount)
+            removeAt(last)
+            expectedModCount = modCount
+            next = last
+            last = -1
+        }
+    }
+
+    /**
+     * Iterates over the [HashSet] of a large set. It additionally detects modifications that
+     * replace the [HashSet], such as [clear].
+     */
+    private inner class LargeIterator(private val iterator: MutableIterator<E>) :
+        MutableIterator<E> {
+        private var expectedModCount = modCount
+
+        override fun hasNext(): Boolean {
+            checkModCount(expectedModCount)
+            return iterator.hasNext()
+        }
+
+        override fun next(): E {
+            checkModCount(expectedModCount)
+            return iterator.next()
+        }
+
+        override fun remove() {
+            checkModCount(expectedModCount)
+            iterator.remove()
+            expectedModCount = ++modCount
+        }
+    }
+
+    private fun checkModCount(expected: Int) {
+        if (modCount != expected) {
+            throw ConcurrentModificationException()
+        }
+    }
+
+    private fun indexOf(element: E): Int {
+        for (i in 0 until count) {
+            if (elements[i] == element) {
+                return i
+            }
+        }
+
+        return -1
+    }
+
+    private fun removeAt(i: Int) {
+        System.arraycopy(elements, i + 1, elements, i, count - i - 1)
+        elements[--count] = null
+        modCount++
+    }
+
+    companion object {
+        /** The maximum number of elements that are stored without a [HashSet]. */
+        const val SMALL_SIZE = 4
+
+        /** The array of all empty sets. It is never written to, since its size is 0. */
+        private val EMPTY = arrayOf<Any?>()
+    }
+}
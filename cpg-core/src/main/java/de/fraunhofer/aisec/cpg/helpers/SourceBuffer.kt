@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.helpers
+
+import de.fraunhofer.aisec.cpg.sarif.Region
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.Charset
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.nio.file.attribute.BasicFileAttributes
+import java.nio.file.attribute.FileTime
+import org.slf4j.LoggerFactory
+
+/**
+ * A read-only view on the contents of a source file. The file is memory-mapped once and an index of
+ * the line offsets is built, so that the code of a [Region] can be extracted without reading the
+ * file again.
+ *
+ * Buffers are shared per file by a [SourceBuffers] registry. They are used to materialize the code
+ * of a node lazily from its location (see
+ * [de.fraunhofer.aisec.cpg.TranslationConfiguration.lazyCode]).
+ */
+class SourceBuffer
+private constructor(
+    val path: Path,
+    private val bytes: ByteBuffer,
+    private val charset: Charset,
+    private val lastModified: FileTime,
+) {
+    /**
+     * The byte offset of the start of each line. The last entry points past the end of the file, so
+     * that the line n (starting at 1) spans `lineOffsets[n - 1] until lineOffsets[n]`.
+     */
+    private val lineOffsets: IntArray
+
+    init {
+        var offsets = IntArray(64)
+        var count = 1
+        val limit = bytes.limit()
+        for (i in 0 until limit) {
+            if (bytes.get(i) == '\n'.code.toByte()) {
+                if (count == offsets.size) {
+                    offsets = offsets.copyOf(count * 2)
+                }
+                offsets[count++] = i + 1
+            }
+        }
+        // Terminate the last line, unless the file ends with a line break
+        if (offsets[count - 1] != limit || count == 1) {
+            if (count == offsets.size) {
+                offsets = offsets.copyOf(count + 1)
+            }
+            offsets[count++] = limit
+        }
+        lineOffsets = offsets.copyOf(count)
+    }
+
+    /** The number of lines in this file. */
+    val lineCount: Int
+        get() = lineOffsets.size - 1
+
+    /**
+     * Returns the content of the line [line] (starting at 1) without its line terminator, or null
+     * if the line does not exist.
+     */
+    fun line(line: Int): String? {
+        if (line < 1 || line > lineCount) {
+            return null
+        }
+
+        return decode(lineOffsets[line - 1], lineEnd(line))
+    }
+
+    /**
+     * Returns true, if the file was modified or removed after it was mapped. The buffer then does
+     * not reflect the current contents of the file anymore.
+     */
+    fun isStale(): Boolean {
+        return try {
+            val attributes = Files.readAttributes(path, BasicFileAttributes::class.java)
+            attributes.lastModifiedTime() != lastModified ||
+                attributes.size() != bytes.limit().toLong()
+        } catch (e: IOException) {
+            true
+        }
+    }
+
+    /**
+     * Returns the code of the given [region]. Lines and columns start at 1, the end column is
+     * exclusive, just as in the regions produced by our frontends. Line breaks within the region
+     * are normalized to `\n`. Returns null if the region does not fit into this file.
+     */
+    fun slice(region: Region): String? {
+        val startLine = region.startLine
+        val endLine = region.endLine
+        if (startLine < 1 || endLine < startLine || endLine > lineCount) {
+            return null
+        }
+
+        // Everything before the last line, including the line breaks
+        val prefix =
+            decode(lineOffsets[startLine - 1], lineOffsets[endLine - 1]).replace("\r\n", "\n")
+        val last = decode(lineOffsets[endLine - 1], lineEnd(endLine))
+
+        val start = region.startColumn - 1
+        val end = prefix.length + region.endColumn - 1
+        if (start < 0 || start > prefix.length + last.length || end < start) {
+            return null
+        }
+
+        return (prefix + last).substring(start, end.coerceAtMost(prefix.length + last.length))
+    }
+
+    /** The end offset of the line [line], without the line terminator. */
+    private fun lineEnd(line: Int): Int {
+        var end = lineOffsets[line]
+        if (end > lineOffsets[line - 1] && bytes.get(end - 1) == '\n'.code.toByte()) {
+            end--
+        }
+        if (end > lineOffsets[line - 1] && bytes.get(end - 1) == '\r'.code.toByte()) {
+            end--
+        }
+        return end
+    }
+
+    private fun decode(from: Int, to: Int): String {
+        if (from >= to) {
+            return ""
+        }
+
+        // Work on a duplicate, so that concurrent readers do not interfere with each other
+        val view = bytes.duplicate()
+        view.limit(to)
+        view.position(from)
+
+        return charset.decode(view).toString()
+    }
+
+    companion object {
+        private val log = LoggerFactory.getLogger(SourceBuffer::class.java)
+
+        /**
+         * Maps the file at [path] into a new buffer. Returns null, if the file cannot be read. Use
+         * [SourceBuffers.of] to share the buffer of a file.
+         */
+        @JvmStatic
+        fun map(path: Path): SourceBuffer? {
+            return try {
+                FileChannel.open(path, StandardOpenOption.READ).use {
+                    // Read the time first, so that a concurrent modification makes the buffer stale
+                    val lastModified = Files.getLastModifiedTime(path)
+                    SourceBuffer(
+                        path,
+                        it.map(FileChannel.MapMode.READ_ONLY, 0, it.size()),
+                        StandardCharsets.UTF_8,
+                        lastModified
+                    )
+                }
+            } catch (e: IOException) {
+                log.debug("Could not map source file {}: {}", path, e.message)
+                null
+            } catch (e: UnsupportedOperationException) {
+                null
+            }
+        }
+    }
+}
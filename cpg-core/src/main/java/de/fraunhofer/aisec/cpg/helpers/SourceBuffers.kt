@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.helpers
+
+import de.fraunhofer.aisec.cpg.sarif.PhysicalLocation
+import de.fraunhofer.aisec.cpg.sarif.Region
+import java.lang.ref.SoftReference
+import java.net.URI
+import java.nio.file.FileSystemNotFoundException
+import java.nio.file.Path
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * A registry of the [SourceBuffer]s of the files of one translation, see
+ * [de.fraunhofer.aisec.cpg.TranslationResult.getSourceBuffers]. Each file is only mapped once and
+ * the recently materialized code is kept in a bounded cache of [cacheSize] entries.
+ *
+ * The buffers reflect the files as they were when they were first accessed. If [checkModified] is
+ * set, a file that was modified since then is mapped again and the cache is dropped, which costs an
+ * additional file system access on every lookup.
+ */
+class SourceBuffers(val cacheSize: Int = 0, private val checkModified: Boolean = false) {
+    /**
+     * The buffers of all files that were accessed so far. They are only softly reachable, so that
+     * the mapped files can be released under memory pressure.
+     */
+    private val buffers = ConcurrentHashMap<Path, SoftReference<SourceBuffer>>()
+
+    /** A least-recently-used cache of materialized code, see [cacheSize]. */
+    private val cache = LinkedHashMap<PhysicalLocation, String>(16, 0.75f, true)
+
+    /**
+     * Returns the shared buffer for the file at [path] or null, if the file cannot be read. The
+     * file is only mapped on the first access.
+     */
+    fun of(path: Path): SourceBuffer? {
+        val key = path.toAbsolutePath().normalize()
+        buffers[key]?.get()?.let {
+            if (!checkModified || !it.isStale()) {
+                return it
+            }
+
+            // The file has changed, so the cached code might be stale as well
+            synchronized(cache) { cache.clear() }
+        }
+
+        val buffer = SourceBuffer.map(key) ?: return null
+        buffers[key] = SoftReference(buffer)
+
+        return buffer
+    }
+
+    /** Returns the shared buffer for the file with the given [uri], if it is a local file. */
+    fun of(uri: URI): SourceBuffer? {
+        val path =
+            try {
+                Path.of(uri)
+            } catch (e: IllegalArgumentException) {
+                return null
+            } catch (e: FileSystemNotFoundException) {
+                return null
+            }
+
+        return of(path)
+    }
+
+    /**
+     * Returns the code at the given [location] from the shared buffer of its file, or null if the
+     * file or the region is not available.
+     */
+    fun code(location: PhysicalLocation): String? {
+        val buffer = of(location.artifactLocation.uri) ?: return null
+        if (cacheSize > 0) {
+            synchronized(cache) { cache[location]?.let { return it } }
+        }
+
+        val code = buffer.slice(location.region) ?: return null
+
+        if (cacheSize > 0) {
+            synchronized(cache) {
+                // Regions are mutable, so we store a copy of the location as key
+                cache[copy(location)] = code
+                val it = cache.entries.iterator()
+                while (cache.size > cacheSize && it.hasNext()) {
+                    it.next()
+                    it.remove()
+                }
+            }
+        }
+
+        return code
+    }
+
+    /** Releases all buffers and cached code, e.g. because the files have changed. */
+    fun clear() {
+        buffers.clear()
+        synchronized(cache) { cache.clear() }
+    }
+
+    private fun copy(location: PhysicalLocation): PhysicalLocation {
+        val region = location.region
+        return PhysicalLocation(
+            location.artifactLocation.uri,
+            Region(region.startLine, region.startColumn, region.endLine, region.endColumn)
+        )
+    }
+}
@@ -30,6 +30,7 @@ import de.fraunhofer.aisec.cpg.graph.*
 import de.fraunhofer.aisec.cpg.graph.declarations.Declaration
 import de.fraunhofer.aisec.cpg.graph.declarations.FunctionDeclaration
 import de.fraunhofer.aisec.cpg.graph.declarations.VariableDeclaration
+import de.fraunhofer.aisec.cpg.graph.edge.EdgeBatch
 import de.fraunhofer.aisec.cpg.graph.edge.Properties
 import de.fraunhofer.aisec.cpg.graph.statements.*
 import de.fraunhofer.aisec.cpg.graph.statements.expressions.BinaryOperator
@@ -66,8 +67,13 @@ open class ControlFlowSensitiveDFGPass : Pass() {
      */
     protected fun handle(node: Node) {
         if (node is FunctionDeclaration) {
-            clearFlowsOfVariableDeclarations(node)
-            handleFunction(node)
+            // The DFG edges are not read while handling the function, so we can collect all
+            // changes and apply them at once. Edges that are removed and added again are not
+            // touched at all.
+            val batch = EdgeBatch()
+            clearFlowsOfVariableDeclarations(node, batch)
+            handleFunction(node, batch)
+            batch.commit()
         }
     }
 
@@ -75,10 +81,9 @@ open class ControlFlowSensitiveDFGPass : Pass() {
      * Removes all the incoming and outgoing DFG edges for each variable declaration in the function
      * [node].
      */
-    private fun clearFlowsOfVariableDeclarations(node: FunctionDeclaration) {
+    private fun clearFlowsOfVariableDeclarations(node: FunctionDeclaration, batch: EdgeBatch) {
         for (varDecl in node.variables) {
-            varDecl.clearPrevDFG()
-            varDecl.clearNextDFG()
+            batch.clearDFG(varDecl)
         }
     }
 
@@ -92,7 +97,7 @@ open class ControlFlowSensitiveDFGPass : Pass() {
      * - Assignments with an operation e.g. of the form "variable += rhs"
      * - Read operations on a variable
      */
-    private fun handleFunction(node: FunctionDeclaration) {
+    private fun handleFunction(node: FunctionDeclaration, batch: EdgeBatch) {
         // The list of nodes that we have to consider and the last write operations to the different
         // variables.
         val worklist =
@@ -117,7 +122,7 @@ open class ControlFlowSensitiveDFGPass : Pass() {
             if (initializer != null) {
                 // A variable declaration with an initializer => The initializer flows to the
                 // declaration.
-                currentNode.addPrevDFG(initializer)
+                batch.addDFG(initializer, currentNode)
 
                 // We wrote something to this variable declaration
                 writtenDecl = currentNode
@@ -132,7 +137,7 @@ open class ControlFlowSensitiveDFGPass : Pass() {
                 writtenDecl = input.refersTo
 
                 if (writtenDecl != null) {
-                    previousWrites[writtenDecl]?.lastOrNull()?.let { input.addPrevDFG(it) }
+                    previousWrites[writtenDecl]?.lastOrNull()?.let { batch.addDFG(it, input) }
 
                     // TODO: Do we want to have a flow from the input back to the input? This can
                     //  cause problems if the DFG is not iterated through appropriately. The
@@ -148,7 +153,7 @@ open class ControlFlowSensitiveDFGPass : Pass() {
                 }
             } else if (isSimpleAssignment(currentNode)) {
                 // We write to the target => the rhs flows to the lhs
-                (currentNode as BinaryOperator).rhs?.let { currentNode.lhs.addPrevDFG(it) }
+                (currentNode as BinaryOperator).rhs?.let { batch.addDFG(it, currentNode.lhs) }
 
                 // Only the lhs is the last write statement here and the variable which is written
                 // to.
@@ -171,16 +176,16 @@ open class ControlFlowSensitiveDFGPass : Pass() {
                 if (writtenDecl != null) {
                     // Data flows from the last writes to the lhs variable to this node
                     previousWrites[writtenDecl]?.lastOrNull()?.let {
-                        currentNode.lhs.addPrevDFG(it)
+                        batch.addDFG(it, currentNode.lhs)
                     }
-                    currentNode.addPrevDFG(currentNode.lhs)
+                    batch.addDFG(currentNode.lhs, currentNode)
 
                     // Data flows from whatever is the rhs to this node
-                    currentNode.rhs?.let { currentNode.addPrevDFG(it) }
+                    currentNode.rhs?.let { batch.addDFG(it, currentNode) }
 
                     // TODO: Similar to the ++ case: Should the DFG edge go back to the reference?
                     //  If it shouldn't, remove the following statement:
-                    currentNode.lhs.addPrevDFG(currentNode)
+                    batch.addDFG(currentNode, currentNode.lhs)
 
                     // The whole current node is the place of the last update, not (only) the lhs!
                     previousWrites
@@ -192,7 +197,7 @@ open class ControlFlowSensitiveDFGPass : Pass() {
                 // We only read the variable => Get previous write which have been collected in the
                 // other steps
                 previousWrites[currentNode.refersTo]?.lastOrNull()?.let {
-                    currentNode.addPrevDFG(it)
+                    batch.addDFG(it, currentNode)
                 }
             }
 
@@ -29,6 +29,7 @@ import de.fraunhofer.aisec.cpg.TranslationResult
 import de.fraunhofer.aisec.cpg.frontends.CallableInterface
 import de.fraunhofer.aisec.cpg.frontends.ProcessedListener
 import de.fraunhofer.aisec.cpg.graph.Node
+import de.fraunhofer.aisec.cpg.graph.NodeIds
 import de.fraunhofer.aisec.cpg.graph.StatementHolder
 import de.fraunhofer.aisec.cpg.graph.TypeManager
 import de.fraunhofer.aisec.cpg.graph.declarations.*
@@ -43,6 +44,8 @@ import de.fraunhofer.aisec.cpg.helpers.Util
 import de.fraunhofer.aisec.cpg.passes.order.DependsOn
 import de.fraunhofer.aisec.cpg.passes.scopes.*
 import java.util.*
+import java.util.stream.Collectors
+import java.util.stream.IntStream
 import org.slf4j.LoggerFactory
 
 /**
@@ -73,15 +76,53 @@ import org.slf4j.LoggerFactory
 @Suppress("MemberVisibilityCanBePrivate")
 @DependsOn(CallResolver::class)
 open class EvaluationOrderGraphPass : Pass() {
+    /**
+     * The handlers of the node types. Subclasses can add or replace handlers in their constructor.
+     * Changes after the pass has started are not picked up, since the handler of each node class
+     * is only resolved once (see [handlers]).
+     */
     protected val map = mutableMapOf<Class<out Node>, CallableInterface<Node>>()
-    private var currentEOG = mutableListOf<Node>()
-    private val currentProperties = EnumMap<Properties, Any?>(Properties::class.java)
 
-    private val processedListener = ProcessedListener()
+    /**
+     * Caches the handler of each node class, i.e. the handler in [map] of the class itself or of
+     * its closest superclass. Thus, the superclass hierarchy is only walked once per class. The
+     * cache belongs to this pass instance, so that the handlers (and everything they reference) are
+     * released together with the pass.
+     */
+    private val handlers = IdentityHashMap<Class<*>, CallableInterface<Node>>()
+
+    /**
+     * The state of the EOG construction of the current function (or of the declarations outside of
+     * functions). Each function is built with a fresh state, so that no construction state is
+     * shared between the EOGs of different functions.
+     */
+    private class EOGState {
+        var currentEOG = mutableListOf<Node>()
+        val currentProperties = EnumMap<Properties, Any?>(Properties::class.java)
+
+        val processedListener = ProcessedListener()
+
+        // Some nodes will have no incoming nor outgoing edges but still need to be associated to
+        // the next EOG relevant node.
+        val intermediateNodes = mutableListOf<Node>()
+    }
 
-    // Some nodes will have no incoming nor outgoing edges but still need to be associated to the
-    // next EOG relevant node.
-    private val intermediateNodes = mutableListOf<Node>()
+    private var state = EOGState()
+
+    private var currentEOG: MutableList<Node>
+        get() = state.currentEOG
+        set(value) {
+            state.currentEOG = value
+        }
+
+    private val currentProperties
+        get() = state.currentProperties
+
+    private val processedListener
+        get() = state.processedListener
+
+    private val intermediateNodes
+        get() = state.intermediateNodes
 
     init {
         map[IncludeDeclaration::class.java] = CallableInterface { doNothing(it) }
@@ -198,49 +239,99 @@ open class EvaluationOrderGraphPass : Pass() {
     }
 
     override fun cleanup() {
-        intermediateNodes.clear()
-        currentEOG.clear()
+        state = EOGState()
     }
 
     override fun accept(result: TranslationResult) {
         scopeManager = result.scopeManager
         for (tu in result.translationUnits) {
             createEOG(tu)
-            removeUnreachableEOGEdges(tu)
             // checkEOGInvariant(tu); To insert when trying to check if the invariant holds
         }
+
+        // The EOG is intraprocedural, so the translation units can be pruned independently. Their
+        // EOG nodes are numbered with the dense ids of the result, which are shared by all units.
+        val ids = result.nodeIds
+        val tus = result.translationUnits
+        val eogNodes =
+            tus.parallelStream()
+                .map { tu ->
+                    SubgraphWalker.flattenAST(tu)
+                        .filter { it.prevEOG.isNotEmpty() || it.nextEOG.isNotEmpty() }
+                        .onEach { ids.id(it) }
+                }
+                .collect(Collectors.toList())
+        val owners = IntArray(ids.size)
+        val visited = BooleanArray(ids.size)
+        val removed =
+            IntStream.range(0, tus.size)
+                .parallel()
+                .map { removeUnreachableEOGEdges(it + 1, eogNodes[it], ids, owners, visited) }
+                .sum()
+        log.debug("Removed {} unreachable EOG edges", removed)
     }
 
     /**
      * Removes EOG edges by first building the negative set of nodes that cannot be visited and then
-     * remove there outgoing edges.In contrast to truncateLooseEdges this also removes cycles.
+     * remove there outgoing edges. In contrast to truncateLooseEdges this also removes cycles.
+     *
+     * The reachability from the functions, records, namespaces and the translation unit itself is
+     * computed on arrays indexed by the [NodeIds] of the result. Thus, this is linear in the number
+     * of EOG nodes and edges. The [eogNodes] of translation unit number [tu] are marked with [tu]
+     * in [owners], so that only the own nodes are visited. Therefore, several translation units can
+     * share the arrays and be pruned in parallel, since each only writes the entries of its nodes.
+     *
+     * @return the number of removed edges
      */
-    private fun removeUnreachableEOGEdges(tu: TranslationUnitDeclaration) {
-        val eognodes =
-            SubgraphWalker.flattenAST(tu)
-                .filter { it.prevEOG.isNotEmpty() || it.nextEOG.isNotEmpty() }
-                .toMutableList()
-        var validStarts =
-            eognodes
-                .filter { node ->
-                    node is FunctionDeclaration ||
-                        node is RecordDeclaration ||
-                        node is NamespaceDeclaration ||
-                        node is TranslationUnitDeclaration
+    private fun removeUnreachableEOGEdges(
+        tu: Int,
+        eogNodes: List<Node>,
+        ids: NodeIds,
+        owners: IntArray,
+        visited: BooleanArray
+    ): Int {
+        for (node in eogNodes) {
+            owners[ids.id(node)] = tu
+        }
+
+        val worklist = ArrayDeque<Node>()
+        for (node in eogNodes) {
+            if (
+                node is FunctionDeclaration ||
+                    node is RecordDeclaration ||
+                    node is NamespaceDeclaration ||
+                    node is TranslationUnitDeclaration
+            ) {
+                visited[ids.id(node)] = true
+                worklist.add(node)
+            }
+        }
+        while (worklist.isNotEmpty()) {
+            for (next in worklist.removeFirst().nextEOG) {
+                val id = ids.find(next)
+                if (id >= 0 && id < owners.size && owners[id] == tu && !visited[id]) {
+                    visited[id] = true
+                    worklist.add(next)
                 }
-                .toSet()
-        while (validStarts.isNotEmpty()) {
-            eognodes.removeAll(validStarts)
-            validStarts = validStarts.flatMap { it.nextEOG }.filter { it in eognodes }.toSet()
+            }
         }
-        // remaining eognodes were not visited and have to be removed from the EOG
-        for (unvisitedNode in eognodes) {
+
+        // remaining eog nodes were not visited and have to be removed from the EOG
+        var removed = 0
+        for (unvisitedNode in eogNodes) {
+            if (visited[ids.id(unvisitedNode)]) {
+                continue
+            }
+
             unvisitedNode.nextEOGEdges.forEach { next ->
                 next.end.removePrevEOGEntry(unvisitedNode)
             }
 
+            removed += unvisitedNode.nextEOGEdges.size
             unvisitedNode.nextEOGEdges.clear()
         }
+
+        return removed
     }
 
     protected fun handleTranslationUnitDeclaration(node: TranslationUnitDeclaration) {
@@ -307,8 +398,18 @@ open class EvaluationOrderGraphPass : Pass() {
     }
 
     protected fun handleFunctionDeclaration(node: FunctionDeclaration) {
-        // reset EOG
-        currentEOG.clear()
+        val outer = state
+        state = EOGState()
+        try {
+            handleFunctionBody(node)
+        } finally {
+            // reset EOG
+            state = outer
+            currentEOG.clear()
+        }
+    }
+
+    private fun handleFunctionBody(node: FunctionDeclaration) {
         var needToLeaveRecord = false
         if (
             node is MethodDeclaration &&
@@ -373,17 +474,21 @@ open class EvaluationOrderGraphPass : Pass() {
 
     private fun createEOG(node: Node) {
         intermediateNodes.add(node)
-        var toHandle: Class<*> = node.javaClass
-        var callable = map[toHandle]
-        while (callable == null) {
+        handlers.getOrPut(node.javaClass) { resolveHandler(node.javaClass) }.dispatch(node)
+    }
+
+    /** Returns the handler in [map] of [type] or of its closest superclass. */
+    private fun resolveHandler(type: Class<*>): CallableInterface<Node> {
+        var toHandle: Class<*>? = type
+        while (toHandle != null && Node::class.java.isAssignableFrom(toHandle)) {
+            map[toHandle]?.let {
+                return it
+            }
             toHandle = toHandle.superclass
-            callable = map[toHandle]
-            if (toHandle == Node::class.java || !Node::class.java.isAssignableFrom(toHandle)) break
         }
-        if (callable != null) {
-            callable.dispatch(node)
-        } else {
-            LOGGER.info("Parsing of type " + node.javaClass + " is not supported (yet)")
+
+        return CallableInterface<Node> {
+            LOGGER.info("Parsing of type " + it.javaClass + " is not supported (yet)")
         }
     }
 
@@ -27,26 +27,36 @@ package de.fraunhofer.aisec.cpg.passes
 
 import de.fraunhofer.aisec.cpg.TranslationResult
 import de.fraunhofer.aisec.cpg.graph.Node
+import de.fraunhofer.aisec.cpg.helpers.FileTable
 import de.fraunhofer.aisec.cpg.passes.order.ExecuteLast
 import de.fraunhofer.aisec.cpg.processing.IVisitor
 import de.fraunhofer.aisec.cpg.processing.strategy.Strategy
 
+/**
+ * Stores the name of the translation unit as [Node.file] in each of its nodes. Since the file is a
+ * field of the node which is persisted as is, it needs to be set for each node. All nodes share the
+ * same string, though. Furthermore, the locations of all nodes share the artifact of their file in
+ * the [TranslationResult.getFiles] table, which also covers the locations that were not set by
+ * [de.fraunhofer.aisec.cpg.frontends.LanguageFrontend.setCodeAndLocation].
+ */
 @ExecuteLast
 class FilenameMapper : Pass() {
     override fun accept(translationResult: TranslationResult) {
+        val files = translationResult.files
         for (tu in translationResult.translationUnits) {
             tu.file = tu.name
-            handle(tu, tu.name)
+            handle(tu, tu.name, files)
         }
     }
 
-    private fun handle(node: Node, file: String) {
+    private fun handle(node: Node, file: String, files: FileTable) {
         // Using a visitor to avoid loops in the AST
         node.accept(
             { Strategy.AST_FORWARD(it) },
             object : IVisitor<Node?>() {
                 override fun visit(child: Node) {
                     child.file = file
+                    child.location?.let { files.intern(it) }
                 }
             }
         )
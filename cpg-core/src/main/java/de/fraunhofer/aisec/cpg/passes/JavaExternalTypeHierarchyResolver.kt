@@ -26,15 +26,11 @@
 package de.fraunhofer.aisec.cpg.passes
 
 import com.github.javaparser.resolution.UnsolvedSymbolException
-import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver
-import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver
-import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver
 import de.fraunhofer.aisec.cpg.TranslationResult
 import de.fraunhofer.aisec.cpg.frontends.java.JavaLanguageFrontend
 import de.fraunhofer.aisec.cpg.graph.TypeManager
 import de.fraunhofer.aisec.cpg.graph.types.Type
 import de.fraunhofer.aisec.cpg.graph.types.TypeParser
-import de.fraunhofer.aisec.cpg.helpers.CommonPath
 import de.fraunhofer.aisec.cpg.passes.order.DependsOn
 import de.fraunhofer.aisec.cpg.passes.order.RequiredFrontend
 import org.slf4j.LoggerFactory
@@ -43,26 +39,9 @@ import org.slf4j.LoggerFactory
 @RequiredFrontend(JavaLanguageFrontend::class)
 class JavaExternalTypeHierarchyResolver : Pass() {
     override fun accept(translationResult: TranslationResult) {
-        val resolver = CombinedTypeSolver()
-
-        resolver.add(ReflectionTypeSolver())
-        var root = translationResult.config.topLevel
-        if (root == null && translationResult.config.softwareComponents.size == 1) {
-            root =
-                CommonPath.commonPath(
-                    translationResult.config.softwareComponents[
-                            translationResult.config.softwareComponents.keys.first()]
-                )
-        }
-        if (root == null) {
-            log.warn(
-                "Could not determine source root for {}",
-                translationResult.config.softwareComponents
-            )
-        } else {
-            log.info("Source file root used for type solver: {}", root)
-            resolver.add(JavaParserTypeSolver(root))
-        }
+        // Use the type solver of the frontends. The frontends have seeded it with the types
+        // declared in the parsed files, so only library types still need to be resolved
+        val resolver = translationResult.javaTypeSolver
 
         val tm = TypeManager.getInstance()
 
@@ -90,7 +69,7 @@ class JavaExternalTypeHierarchyResolver : Pass() {
     }
 
     override fun cleanup() {
-        // nothing to do here.
+        // nothing to do here. The type solver is cleared by the TranslationManager.
     }
 
     companion object {
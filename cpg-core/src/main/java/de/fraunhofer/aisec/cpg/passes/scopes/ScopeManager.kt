@@ -34,10 +34,15 @@ import de.fraunhofer.aisec.cpg.graph.statements.expressions.DeclaredReferenceExp
 import de.fraunhofer.aisec.cpg.graph.types.FunctionPointerType
 import de.fraunhofer.aisec.cpg.graph.types.IncompleteType
 import de.fraunhofer.aisec.cpg.graph.types.Type
+import de.fraunhofer.aisec.cpg.helpers.FlightRecorder
+import de.fraunhofer.aisec.cpg.helpers.ScopeResolutionEvent
 import de.fraunhofer.aisec.cpg.helpers.Util
+import de.fraunhofer.aisec.cpg.helpers.finish
 import de.fraunhofer.aisec.cpg.processing.IVisitor
 import de.fraunhofer.aisec.cpg.processing.strategy.Strategy
 import java.util.*
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.atomic.AtomicInteger
 import java.util.function.Consumer
 import java.util.function.Predicate
@@ -64,8 +69,12 @@ class ScopeManager : ScopeProvider {
      */
     private val scopeMap: MutableMap<Node?, Scope> = IdentityHashMap()
 
-    /** A lookup map for each scope and its associated FQN. */
-    private val fqnScopeMap: MutableMap<String, NameScope> = IdentityHashMap()
+    /**
+     * A lookup map for each scope and its associated FQN. It is keyed by the equality of the FQN
+     * (and not its identity), since names are not interned. It needs to be concurrent, because
+     * [mergeFrom] merges the maps of several scope managers in parallel.
+     */
+    private val fqnScopeMap: MutableMap<String, NameScope> = ConcurrentHashMap()
 
     /** The currently active scope. */
     var currentScope: Scope? = null
@@ -77,6 +86,13 @@ class ScopeManager : ScopeProvider {
      */
     var lang: LanguageFrontend? = null
 
+    /**
+     * Whether this scope manager emits a [ScopeResolutionEvent] for each resolution. The
+     * [de.fraunhofer.aisec.cpg.TranslationManager] sets this according to
+     * [de.fraunhofer.aisec.cpg.TranslationConfiguration.flightRecorderEvents].
+     */
+    var flightRecorderEvents = false
+
     /** True, if the scope manager is currently in a [BlockScope]. */
     val isInBlock: Boolean
         get() = this.firstScopeOrNull { it is BlockScope } != null
@@ -121,6 +137,14 @@ class ScopeManager : ScopeProvider {
      * Combines the state of several scope managers into this one. Primarily used in combination
      * with concurrent frontends.
      *
+     * Name scopes with the same FQN are merged by a pairwise reduction of the scope managers: in
+     * each round, the scope managers at the odd positions are merged into their left neighbour in
+     * parallel (see [mergeNameScopes]). Thereby, the name scope of the left-most scope manager
+     * (i.e. of this one or the first in [toMerge]) survives, as it would in a sequential merge.
+     * Afterwards, the nodes that point to a merged name scope are redirected to the surviving one
+     * with a single pass over each scope map. In total, the merge is linear in the number of
+     * scopes.
+     *
      * @param toMerge The scope managers to merge into this one
      */
     fun mergeFrom(toMerge: Collection<ScopeManager>) {
@@ -134,48 +158,41 @@ class ScopeManager : ScopeProvider {
             LOGGER.error("Scope for null node is not a GlobalScope or is null")
         } else {
             currGlobalScope.mergeFrom(globalScopes)
-            scopeMap[null] = currGlobalScope
         }
-        for (manager in toMerge) {
-            // loop through all scopes in the FQN map to check for potential duplicates we need to
-            // merge
-            for (entry in manager.fqnScopeMap.entries) {
-                val existing = fqnScopeMap[entry.key]
-                if (existing != null) {
-                    // a name scope with an identical FQN already exist. we transfer all
-                    // declarations over to it. We are NOT using [addValueDeclaration] because this
-                    // will add it to the underlying AST node as well. This was already done by the
-                    // respective sub-scope manager. We add it directly to the declarations array
-                    // instead.
-                    existing.valueDeclarations.addAll(entry.value.valueDeclarations)
-                    existing.structureDeclarations.addAll(entry.value.structureDeclarations)
-
-                    // copy over the typedefs as well just to be sure
-                    existing.typedefs.putAll(entry.value.typedefs)
-
-                    // also update the AST node of the existing scope to the "latest" we have seen
-                    existing.astNode = entry.value.astNode
-
-                    // now it gets more tricky. we also need to "redirect" the AST nodes in the sub
-                    // scope manager to our
-                    // existing NameScope (currently, they point to their own, invalid copy of the
-                    // NameScope).
-                    //
-                    // The only way to do this, is to filter for the particular
-                    // scope (the value of the map) and return the keys (the nodes)
-                    val keys =
-                        manager.scopeMap
-                            .filter { it.value.astNode == entry.value.astNode }
-                            .map { it.key }
-
-                    // now, we redirect it to the existing scope
-                    keys.forEach { manager.scopeMap[it] = existing }
-                } else {
-                    // this is the first we see for this particular FQN, so we add it to our map
-                    fqnScopeMap[entry.key] = entry.value
+
+        // Contains all scopes that were merged into another scope, and the scope they were merged
+        // into
+        val replacements = ConcurrentHashMap<Scope, Scope>()
+        if (currGlobalScope is GlobalScope) {
+            globalScopes.forEach { replacements[it] = currGlobalScope }
+        }
+
+        // Merge the name scopes pairwise, until only this scope manager is left
+        var managers = listOf(this) + toMerge
+        while (managers.size > 1) {
+            val pairs = managers.chunked(2)
+            pairs
+                .filter { it.size == 2 }
+                .map { (left, right) ->
+                    CompletableFuture.runAsync { left.mergeNameScopes(right, replacements) }
+                }
+                .forEach { it.join() }
+
+            managers = pairs.map { it.first() }
+        }
+
+        // Redirect the nodes of each scope manager to the merged scopes
+        toMerge
+            .map { manager ->
+                CompletableFuture.runAsync {
+                    manager.scopeMap.replaceAll { _, scope ->
+                        resolveReplacement(scope, replacements)
+                    }
                 }
             }
+            .forEach { it.join() }
 
+        for (manager in toMerge) {
             scopeMap.putAll(manager.scopeMap)
 
             // free the maps, just to clear up some things. this scope manager will not be used
@@ -183,6 +200,55 @@ class ScopeManager : ScopeProvider {
             manager.fqnScopeMap.clear()
             manager.scopeMap.clear()
         }
+
+        // the global scopes of the other scope managers were merged into ours
+        if (currGlobalScope is GlobalScope) {
+            scopeMap[null] = currGlobalScope
+        }
+    }
+
+    /**
+     * Merges the name scopes of [other] into the ones of this scope manager. If a name scope with
+     * the same FQN already exists in this scope manager, the declarations of the scope of [other]
+     * are transferred to it and the merged scope is recorded in [replacements]. Otherwise, the name
+     * scope of [other] is simply added to this scope manager.
+     */
+    private fun mergeNameScopes(other: ScopeManager, replacements: MutableMap<Scope, Scope>) {
+        for (entry in other.fqnScopeMap.entries) {
+            val existing = fqnScopeMap[entry.key]
+            if (existing != null) {
+                // a name scope with an identical FQN already exist. we transfer all declarations
+                // over to it. We are NOT using [addValueDeclaration] because this will add it to
+                // the underlying AST node as well. This was already done by the respective
+                // sub-scope manager. We add it directly to the declarations array instead.
+                existing.valueDeclarations.addAll(entry.value.valueDeclarations)
+                existing.structureDeclarations.addAll(entry.value.structureDeclarations)
+
+                // copy over the typedefs as well just to be sure
+                existing.typedefs.putAll(entry.value.typedefs)
+
+                // also update the AST node of the existing scope to the "latest" we have seen
+                existing.astNode = entry.value.astNode
+
+                // the AST nodes which point to the scope of the other scope manager need to be
+                // redirected to our existing scope later
+                replacements[entry.value] = existing
+            } else {
+                // this is the first we see for this particular FQN, so we add it to our map
+                fqnScopeMap[entry.key] = entry.value
+            }
+        }
+    }
+
+    /**
+     * Follows the chain of [replacements] starting at [scope] and returns the scope that [scope]
+     * was finally merged into.
+     */
+    private fun resolveReplacement(scope: Scope, replacements: Map<Scope, Scope>): Scope {
+        var resolved = scope
+        while (true) {
+            resolved = replacements[resolved] ?: return resolved
+        }
     }
 
     /**
@@ -626,10 +692,12 @@ class ScopeManager : ScopeProvider {
         ref: DeclaredReferenceExpression,
         scope: Scope? = currentScope
     ): ValueDeclaration? {
-        return resolve<ValueDeclaration>(scope) {
+        val event = FlightRecorder.begin(flightRecorderEvents) { ScopeResolutionEvent() }
+        val matches =
+            resolve<ValueDeclaration>(scope) {
                 if (it.name == ref.name) {
-                    // If the reference seems to point to a function the entire signature is checked
-                    // for equality
+                    // If the reference seems to point to a function the entire signature is
+                    // checked for equality
                     if (ref.type is FunctionPointerType && it is FunctionDeclaration) {
                         val fptrType = (ref as HasType).type as FunctionPointerType
                         // TODO(oxisto): This is the third place where function pointers are
@@ -649,7 +717,16 @@ class ScopeManager : ScopeProvider {
 
                 return@resolve false
             }
-            .firstOrNull()
+        val declaration = matches.firstOrNull()
+        event.finish {
+            kind = "reference"
+            name = ref.name
+            this.scope = scope?.scopedName
+            candidates = matches.size
+            resolved = declaration != null
+        }
+
+        return declaration
     }
 
     /**
@@ -692,7 +769,20 @@ class ScopeManager : ScopeProvider {
                 }
         }
 
-        return resolve(s) { it.name == call.name && it.hasSignature(call.signature) }
+        val event = FlightRecorder.begin(flightRecorderEvents) { ScopeResolutionEvent() }
+        val functions =
+            resolve<FunctionDeclaration>(s) {
+                it.name == call.name && it.hasSignature(call.signature)
+            }
+        event.finish {
+            kind = "function"
+            name = call.name
+            this.scope = s?.scopedName
+            candidates = functions.size
+            resolved = functions.isNotEmpty()
+        }
+
+        return functions
     }
 
     fun resolveFunctionStopScopeTraversalOnDefinition(
@@ -30,7 +30,12 @@ import java.util.Objects;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-/** A SARIF compatible location referring to a location, i.e. file and region within the file. */
+/**
+ * A SARIF compatible location referring to a location, i.e. file and region within the file.
+ *
+ * <p>The {@link ArtifactLocation} of a file can be shared between all locations in this file, see
+ * {@link de.fraunhofer.aisec.cpg.helpers.FileTable#intern(PhysicalLocation)}.
+ */
 public class PhysicalLocation {
 
   @NotNull
@@ -78,7 +83,7 @@ public class PhysicalLocation {
     }
   }
 
-  @NotNull private final ArtifactLocation artifactLocation;
+  @NotNull private ArtifactLocation artifactLocation;
 
   @NotNull private Region region;
 
@@ -101,6 +106,10 @@ public class PhysicalLocation {
     return this.artifactLocation;
   }
 
+  public void setArtifactLocation(@NotNull ArtifactLocation artifactLocation) {
+    this.artifactLocation = artifactLocation;
+  }
+
   @Override
   public String toString() {
     return artifactLocation + "(" + region + ")";
@@ -29,6 +29,7 @@ import de.fraunhofer.aisec.cpg.TestUtils.analyzeAndGetFirstTU
 import de.fraunhofer.aisec.cpg.frontends.TestLanguageFrontend
 import de.fraunhofer.aisec.cpg.frontends.cpp.CPPLanguage
 import de.fraunhofer.aisec.cpg.frontends.cpp.CXXLanguageFrontend
+import de.fraunhofer.aisec.cpg.graph.Name
 import de.fraunhofer.aisec.cpg.graph.Node
 import de.fraunhofer.aisec.cpg.graph.declarations.TranslationUnitDeclaration
 import de.fraunhofer.aisec.cpg.graph.declarations.VariableDeclaration
@@ -38,13 +39,18 @@ import de.fraunhofer.aisec.cpg.graph.statements.expressions.InitializerListExpre
 import de.fraunhofer.aisec.cpg.graph.types.ObjectType
 import de.fraunhofer.aisec.cpg.graph.types.Type
 import de.fraunhofer.aisec.cpg.helpers.Benchmark
+import de.fraunhofer.aisec.cpg.helpers.IdentitySet
 import de.fraunhofer.aisec.cpg.helpers.SubgraphWalker
 import java.time.Duration
 import java.time.temporal.ChronoUnit
+import java.util.IdentityHashMap
 import kotlin.io.path.writeText
 import kotlin.test.Test
+import kotlin.test.assertEquals
 import kotlin.test.assertNotNull
+import kotlin.test.assertTrue
 import org.junit.jupiter.api.assertTimeout
+import org.slf4j.LoggerFactory
 
 class PerformanceRegressionTest {
     /**
@@ -121,9 +127,122 @@ class PerformanceRegressionTest {
         }
     }
 
+    /**
+     * Translates a large C++ file with many repeated names and measures the memory used by the
+     * graph and the time needed to group all nodes by their [Node.fullName]. Since names are
+     * interned, nodes with the same name share one [Name] instance with a cached hash code.
+     */
+    @Test
+    fun testNameInterning() {
+        val code = StringBuilder()
+        for (i in 0 until 2000) {
+            code.append("namespace ns$i {\n")
+            code.append("int f(int a, int b) { int c = a + b; return f(c, a); }\n")
+            code.append("}\n")
+        }
+
+        val tmp = kotlin.io.path.createTempFile("names", ".cpp")
+        tmp.writeText(code)
+
+        val runtime = Runtime.getRuntime()
+        System.gc()
+        val before = runtime.totalMemory() - runtime.freeMemory()
+
+        val tu =
+            analyzeAndGetFirstTU(listOf(tmp.toFile()), tmp.parent, true) {
+                it.useParallelFrontends(false)
+            }
+        val nodes = SubgraphWalker.flattenAST(tu)
+
+        System.gc()
+        val after = runtime.totalMemory() - runtime.freeMemory()
+        log.info(
+            "{} nodes with {} distinct names use about {} MB of heap ({} bytes per node, {} names interned)",
+            nodes.size,
+            nodes.map { it.fullName }.toSet().size,
+            (after - before) / 1024 / 1024,
+            (after - before) / nodes.size,
+            Name.size
+        )
+
+        // nodes with the same local name share their name
+        val names = nodes.filter { it.name == "c" }.map { it.fullName }
+        assertTrue(names.size > 2000)
+        assertTrue(names.all { it === names[0] })
+
+        assertTimeout(Duration.of(1, ChronoUnit.SECONDS)) {
+            val b = Benchmark(PerformanceRegressionTest::class.java, "Grouping nodes by name")
+            for (i in 0 until 10) {
+                nodes.groupBy { it.fullName }
+            }
+            b.addMeasurement()
+        }
+    }
+
+    /**
+     * Compares our [IdentitySet] with the previous implementation based on an [IdentityHashMap]
+     * with a boxed insertion counter, for the typical usage in [SubgraphWalker.flattenAST]: adding
+     * many elements once and retrieving them in insertion order.
+     */
+    @Test
+    fun testIdentitySet() {
+        val elements = List(100000) { Any() }
+
+        fun identityHashMap(): List<Any> {
+            val map = IdentityHashMap<Any, Int>()
+            var counter = 0
+            for (element in elements) {
+                if (!map.containsKey(element)) {
+                    map[element] = ++counter
+                }
+            }
+            return map.entries.sortedBy { it.value }.map { it.key }
+        }
+
+        fun identitySet(): List<Any> {
+            val set = IdentitySet<Any>()
+            for (element in elements) {
+                set.add(element)
+            }
+            return set.toSortedList()
+        }
+
+        // warm up both implementations
+        for (i in 0 until 5) {
+            identityHashMap()
+            identitySet()
+        }
+
+        var start = System.nanoTime()
+        for (i in 0 until 20) {
+            identityHashMap()
+        }
+        val baseline = System.nanoTime() - start
+
+        assertTimeout(Duration.of(1, ChronoUnit.SECONDS)) {
+            start = System.nanoTime()
+            for (i in 0 until 20) {
+                identitySet()
+            }
+        }
+        val current = System.nanoTime() - start
+
+        log.info(
+            "Adding and sorting {} elements 20 times: IdentityHashMap {} ms, IdentitySet {} ms",
+            elements.size,
+            baseline / 1000000,
+            current / 1000000
+        )
+        assertEquals(identityHashMap(), identitySet())
+    }
+
     fun doNothing(node: Node) {
         for (child in SubgraphWalker.getAstChildren(node)) {
             doNothing(child)
         }
     }
+
+    companion object {
+        private val log = LoggerFactory.getLogger(PerformanceRegressionTest::class.java)
+    }
 }
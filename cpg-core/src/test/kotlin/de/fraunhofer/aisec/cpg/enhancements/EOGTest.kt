@@ -40,6 +40,7 @@ import de.fraunhofer.aisec.cpg.graph.statements.*
 import de.fraunhofer.aisec.cpg.graph.statements.expressions.BinaryOperator
 import de.fraunhofer.aisec.cpg.graph.statements.expressions.CallExpression
 import de.fraunhofer.aisec.cpg.graph.statements.expressions.DeclaredReferenceExpression
+import de.fraunhofer.aisec.cpg.graph.statements.expressions.Literal
 import de.fraunhofer.aisec.cpg.helpers.SubgraphWalker
 import de.fraunhofer.aisec.cpg.helpers.Util
 import de.fraunhofer.aisec.cpg.helpers.Util.Connect
@@ -779,6 +780,46 @@ internal class EOGTest : BaseTest() {
         assertTrue(Util.eogConnect(Connect.NODE, Util.Edge.EXITS, dostat, prints[2]))
     }
 
+    @Test
+    @Throws(Exception::class)
+    fun testUnreachableEOGEdges() {
+        val nodes = translateToNodes("src/test/resources/cfg/unreachable.cpp")
+
+        val ret = nodes.filterIsInstance<ReturnStatement>().firstOrNull()
+        assertNotNull(ret)
+        assertTrue(ret.prevEOG.isNotEmpty())
+
+        // the assignment after the return statement is not reachable and its edges are removed
+        val assign = nodes.filterIsInstance<BinaryOperator>().firstOrNull { it.operatorCode == "=" }
+        assertNotNull(assign)
+        assertTrue(assign.prevEOG.isEmpty())
+        assertTrue(assign.nextEOG.isEmpty())
+        assertTrue(assign.lhs.nextEOG.isEmpty())
+        assertTrue(assign.rhs.nextEOG.isEmpty())
+        assertTrue(assign.rhs.prevEOG.isEmpty())
+    }
+
+    @Test
+    @Throws(Exception::class)
+    fun testGoto() {
+        val file = File("src/test/resources/cfg/goto.cpp")
+        val tu = analyzeAndGetFirstTU(listOf(file), file.parentFile.toPath(), true)
+
+        // the goto in main jumps to itself
+        val main = tu.functions["main", UNIQUE]
+        val mainGoto = main.allChildren<GotoStatement>().firstOrNull()
+        assertNotNull(mainGoto)
+        assertEquals(listOf<Node>(mainGoto), mainGoto.nextEOG)
+
+        // both gotos in func jump to the label in func and not to the one in main
+        val func = tu.functions["func", UNIQUE]
+        val funcGotos = func.allChildren<GotoStatement>()
+        assertEquals(2, funcGotos.size)
+        val target = funcGotos[0].nextEOG.singleOrNull()
+        assertIs<Literal<*>>(target)
+        assertEquals(listOf<Node>(target), funcGotos[1].nextEOG)
+    }
+
     @Test
     @Throws(Exception::class)
     @Ignore
@@ -26,6 +26,7 @@
 package de.fraunhofer.aisec.cpg.frontends.cpp
 
 import de.fraunhofer.aisec.cpg.TestUtils
+import de.fraunhofer.aisec.cpg.frontends.CompilationDatabase
 import de.fraunhofer.aisec.cpg.graph.byNameOrNull
 import de.fraunhofer.aisec.cpg.graph.declarations.FunctionDeclaration
 import de.fraunhofer.aisec.cpg.graph.statements.ReturnStatement
@@ -35,6 +36,7 @@ import java.io.File
 import kotlin.test.Test
 import kotlin.test.assertEquals
 import kotlin.test.assertNotNull
+import kotlin.test.assertTrue
 
 class CXXCompilationDatabaseTest {
     @Test
@@ -134,6 +136,33 @@ class CXXCompilationDatabaseTest {
         }
     }
 
+    @Test
+    fun testCompilationDatabaseParallel() {
+        val cc = File("src/test/resources/cxxCompilationDatabase/compile_commands_multi_tus.json")
+        val db = CompilationDatabase.fromFile(cc)
+
+        // both files have different include paths and symbols, so they end up in different units
+        val units = db.partition(db.sourceFiles, 4)
+        assertEquals(2, units.size)
+        assertTrue(units.all { it.files.size == 1 })
+        assertTrue(units[0].size >= units[1].size)
+
+        val result =
+            TestUtils.analyzeWithCompilationDatabase(cc, true) { it.useParallelFrontends(true) }
+        val tus = result.translationUnits
+        assertEquals(2, tus.size)
+
+        for (tu in tus) {
+            val value = mapOf("main_tu_1.c" to 1, "main_tu_2.c" to 2)[File(tu.name).name]
+            val mainFunc = tu.byNameOrNull<FunctionDeclaration>("main")
+            assertNotNull(mainFunc)
+
+            val s0 = mainFunc.getBodyStatementAs(0, Literal::class.java)
+            assertNotNull(s0)
+            assertEquals(value, s0.value)
+        }
+    }
+
     @Test
     fun testCompilationDatabaseArch() {
         val cc = File("src/test/resources/cxxCompilationDatabase/compile_commands_arch.json")
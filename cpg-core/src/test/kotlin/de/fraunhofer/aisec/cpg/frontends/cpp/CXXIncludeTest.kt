@@ -29,10 +29,13 @@ import de.fraunhofer.aisec.cpg.BaseTest
 import de.fraunhofer.aisec.cpg.TestUtils.analyzeAndGetFirstTU
 import de.fraunhofer.aisec.cpg.TestUtils.analyzeWithBuilder
 import de.fraunhofer.aisec.cpg.TranslationConfiguration
+import de.fraunhofer.aisec.cpg.TranslationManager
 import de.fraunhofer.aisec.cpg.graph.declarations.*
 import de.fraunhofer.aisec.cpg.graph.get
 import de.fraunhofer.aisec.cpg.graph.statements.ReturnStatement
 import de.fraunhofer.aisec.cpg.graph.statements.expressions.DeclaredReferenceExpression
+import de.fraunhofer.aisec.cpg.helpers.SubgraphWalker
+import de.fraunhofer.aisec.cpg.passes.scopes.ScopeManager
 import de.fraunhofer.aisec.cpg.sarif.Region
 import java.io.File
 import kotlin.test.*
@@ -94,6 +97,11 @@ internal class CXXIncludeTest : BaseTest() {
         val location = decl.location
         assertNotNull(location)
         assertEquals(Region(16, 3, 16, 15), location.region)
+
+        // all nodes, including the ones in includes and the ones without a location, belong to
+        // the file of the translation unit
+        assertEquals(tu.name, decl.file)
+        assertTrue(SubgraphWalker.flattenAST(tu).all { it.file == tu.name })
     }
 
     @Test
@@ -256,4 +264,45 @@ internal class CXXIncludeTest : BaseTest() {
             translationUnitDeclarations[0].getDeclarationAs(0, RecordDeclaration::class.java)
         assertNull(recordDeclaration)
     }
+
+    @Test
+    @Throws(Exception::class)
+    fun testParseContext() {
+        val file = File("src/test/resources/include.cpp")
+        val config =
+            TranslationConfiguration.builder()
+                .sourceLocations(file)
+                .topLevel(file.parentFile)
+                .defaultLanguages()
+                .build()
+
+        val context = CXXParseContext(config)
+
+        // without a compilation database, all files share the same scanner info
+        assertSame(
+            context.getScannerInfo(file),
+            context.getScannerInfo(File("src/test/resources/symbols.cpp"))
+        )
+
+        // the header is only read once, but every inclusion gets its own file content
+        val header = File("src/test/resources/include.h").absolutePath
+        val first = context.getContent(header)
+        val second = context.getContent(header)
+        assertNotNull(first)
+        assertNotNull(second)
+        assertNotSame(first, second)
+        assertSame(first.source, second.source)
+
+        // parsing with the frontend uses the context that it was given
+        val frontend = CXXLanguageFrontend(CPPLanguage(), config, ScopeManager())
+        frontend.parseContext = context
+        val tu = frontend.parse(file)
+        assertEquals(6, tu.declarations.size)
+        assertSame(context, frontend.parseContext)
+
+        // each translation has its own context, which is shared by all of its frontends
+        val result = TranslationManager.builder().config(config).build().analyze().get()
+        assertSame(CXXParseContext.of(result), CXXParseContext.of(result))
+        assertNotSame(context, CXXParseContext.of(result))
+    }
 }
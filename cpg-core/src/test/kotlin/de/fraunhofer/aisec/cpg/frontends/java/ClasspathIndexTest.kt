@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.frontends.java
+
+import de.fraunhofer.aisec.cpg.BaseTest
+import de.fraunhofer.aisec.cpg.TranslationConfiguration
+import java.io.File
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+import kotlin.io.path.createTempDirectory
+import kotlin.test.*
+
+internal class ClasspathIndexTest : BaseTest() {
+    private fun createJar(dir: File, vararg classes: Class<*>): File {
+        val jar = File(dir, "test.jar")
+        JarOutputStream(jar.outputStream()).use { out ->
+            for (clazz in classes) {
+                val path = clazz.name.replace('.', '/') + ".class"
+                out.putNextEntry(JarEntry(path))
+                clazz.getResourceAsStream("/$path")!!.use { it.copyTo(out) }
+                out.closeEntry()
+            }
+        }
+
+        return jar
+    }
+
+    @Test
+    fun testIndexAndCache() {
+        val dir = createTempDirectory("classpath").toFile()
+        val cacheDir = File(dir, "cache")
+        val jar = createJar(dir, MemberSymbol::class.java, ClassSymbol::class.java)
+
+        val index = ClasspathIndex(listOf(jar), cacheDir)
+        assertEquals(2, index.size)
+        assertEquals(jar, index.locationOf(MemberSymbol::class.java.name))
+
+        val symbol = index[MemberSymbol::class.java.name]
+        assertNotNull(symbol)
+        assertEquals("java.lang.Object", symbol.superClass)
+        assertTrue(symbol.methods.any { it.name == "component1" })
+        assertTrue(symbol.fields.any { it.name == "descriptor" })
+
+        // The index of the JAR is stored under its hash
+        val cacheFile = File(cacheDir, ClasspathIndex.hash(jar) + ".idx")
+        assertTrue(cacheFile.isFile)
+
+        // A second index is read from the cache
+        val cached = ClasspathIndex(listOf(jar), cacheDir)
+        val cachedSymbol = cached[MemberSymbol::class.java.name]
+        assertNotNull(cachedSymbol)
+        assertEquals(symbol.methods, cachedSymbol.methods)
+        assertEquals(symbol.fields, cachedSymbol.fields)
+
+        dir.deleteRecursively()
+    }
+
+    @Test
+    fun testTypeSolver() {
+        val dir = createTempDirectory("classpath").toFile()
+        val jar = createJar(dir, MemberSymbol::class.java)
+
+        val config =
+            TranslationConfiguration.builder().classpath(jar).classpathIndexDirectory(null).build()
+        val solver = JavaTypeSolverCache(config)
+        assertEquals(1, solver.classpathIndex?.size)
+
+        val ref = solver.tryToSolveType(MemberSymbol::class.java.name)
+        assertTrue(ref.isSolved)
+        assertTrue(ref.correspondingDeclaration.declaredMethods.any { it.name == "component1" })
+
+        // Types which are not part of the index are not solved
+        assertFalse(solver.tryToSolveType(ClassSymbol::class.java.name).isSolved)
+
+        // The JARs are released once the solver is cleared
+        solver.clear()
+        assertFalse(solver.tryToSolveType(MemberSymbol::class.java.name).isSolved)
+
+        // The index is only cached on disk, if a directory is explicitly configured
+        assertNull(TranslationConfiguration.builder().build().classpathIndexDirectory)
+
+        dir.deleteRecursively()
+    }
+}
@@ -26,6 +26,7 @@
 package de.fraunhofer.aisec.cpg.frontends.java
 
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration
+import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver
 import de.fraunhofer.aisec.cpg.BaseTest
 import de.fraunhofer.aisec.cpg.TestUtils
 import de.fraunhofer.aisec.cpg.TestUtils.analyzeAndGetFirstTU
@@ -678,5 +679,98 @@ internal class JavaLanguageFrontendTest : BaseTest() {
         }
     }
 
+    @Test
+    @Throws(Exception::class)
+    fun testSharedTypeSolver() {
+        val topLevel = Paths.get("src/test/resources/compiling/hierarchy")
+        val files =
+            listOf("Super.java", "Sub.java", "Interface.java", "Implementor2.java").map {
+                topLevel.resolve(it).toFile()
+            }
+        val config =
+            TranslationConfiguration.builder()
+                .sourceLocations(*files.toTypedArray())
+                .topLevel(topLevel.toFile())
+                .defaultPasses()
+                .defaultLanguages()
+                .disableCleanup()
+                .failOnError(true)
+                .build()
+        val result = builder().config(config).build().analyze().get()
+
+        // The library types which the frontends looked up are already known to the shared solver
+        val solver = result.javaTypeSolver
+        assertTrue(solver.cachedEntries > 0)
+
+        val sub = solver.tryToSolveType("Sub")
+        assertTrue(sub.isSolved)
+        assertEquals(
+            setOf("Super"),
+            sub.correspondingDeclaration.getAncestors(true).map { it.qualifiedName }.toSet()
+        )
+
+        // The external type hierarchy resolver used the same solver
+        val subType = TypeManager.getInstance().firstOrderTypes.first { it.name == "Sub" }
+        assertTrue(subType.superTypes.any { it.name == "Super" })
+
+        // Neither the pass nor our lookup had to parse a source file again, since the frontends
+        // seeded the shared solver with their types
+        assertEquals(0, solver.parsedSourceTypes)
+
+        // Whereas an unseeded solver needs to parse the file
+        val unseeded = JavaTypeSolverCache(config)
+        assertTrue(unseeded.tryToSolveType("Sub").isSolved)
+        assertEquals(1, unseeded.parsedSourceTypes)
+        unseeded.clear()
+
+        result.clearJavaTypeSolver()
+    }
+
+    @Test
+    fun testTypeSolverViews() {
+        val topLevel = Paths.get("src/test/resources/compiling/hierarchy")
+        val config = TranslationConfiguration.builder().topLevel(topLevel.toFile()).build()
+        val solver = JavaTypeSolverCache(config)
+
+        val view1 = solver.view()
+        val view2 = solver.view()
+        assertSame(view1, view1.root)
+
+        // Source types are resolved by each view on its own, library types are shared
+        val sub1 = view1.tryToSolveType("Sub")
+        val sub2 = view2.tryToSolveType("Sub")
+        assertTrue(sub1.isSolved)
+        assertTrue(sub2.isSolved)
+        assertNotSame(sub1.correspondingDeclaration, sub2.correspondingDeclaration)
+        assertEquals(1, view1.cachedEntries)
+        assertSame(
+            view1.tryToSolveType("java.lang.String").correspondingDeclaration,
+            view2.tryToSolveType("java.lang.String").correspondingDeclaration
+        )
+
+        // A view can be added to another type solver
+        val view3 = solver.view()
+        val combined = CombinedTypeSolver(view3)
+        assertSame(combined, view3.parent)
+        assertSame(combined, view3.root)
+
+        solver.clear()
+    }
+
+    @Test
+    fun testTypeSolverCacheIsBounded() {
+        val config = TranslationConfiguration.builder().build()
+        val solver = JavaTypeSolverCache(config, 2)
+
+        assertTrue(solver.tryToSolveType("java.lang.String").isSolved)
+        assertTrue(solver.tryToSolveType("java.lang.Integer").isSolved)
+        assertTrue(solver.tryToSolveType("java.lang.Long").isSolved)
+        assertFalse(solver.tryToSolveType("does.not.Exist").isSolved)
+        assertEquals(2, solver.cachedEntries)
+
+        solver.clear()
+        assertEquals(0, solver.cachedEntries)
+    }
+
     private fun createTypeFrom(typename: String) = TypeParser.createFrom(typename, JavaLanguage())
 }
@@ -53,6 +53,37 @@ internal class NameTest {
         assertNotEquals(b, c)
     }
 
+    @Test
+    fun testInterning() {
+        val a = Name("string", Name("std", null, "::"), "::")
+        val b = Name.parse("std::string", "::")
+        assertSame(a, b)
+        assertSame(a.parent, Name("std", null, "::"))
+
+        // the delimiter is part of the name
+        assertNotSame(a, Name.parse("std.string"))
+
+        val renamed = a.withLocalName("vector")
+        assertSame(Name("vector", a.parent, "::"), renamed)
+        assertSame(a, renamed.withLocalName("string"))
+        assertEquals("std::vector", renamed.toString())
+    }
+
+    @Test
+    fun testNodeName() {
+        val node = Node()
+        node.fullName = Name.parse("my.namespace.function")
+
+        node.name = "other"
+        assertEquals("other", node.name)
+        assertEquals("my.namespace.other", node.fullName.toString())
+
+        // nodes with the same name share the same instance
+        val other = Node()
+        other.fullName = Name.parse("my.namespace.other")
+        assertSame(node.fullName, other.fullName)
+    }
+
     @Test
     fun testParse() {
         val fqn = "std::string"
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.graph
+
+import de.fraunhofer.aisec.cpg.TestUtils
+import de.fraunhofer.aisec.cpg.graph.declarations.TranslationUnitDeclaration
+import de.fraunhofer.aisec.cpg.helpers.SubgraphWalker
+import java.io.File
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertSame
+
+class NodeIdsTest {
+    @Test
+    fun testDenseIds() {
+        val file = File("src/test/resources/components/foreachstmt.cpp")
+        val result = TestUtils.analyze(listOf(file), file.parentFile.toPath(), true)
+
+        val ids = result.nodeIds
+        assertSame(ids, result.nodeIds)
+
+        // all AST nodes are numbered in the order of the AST
+        val nodes = SubgraphWalker.flattenAST(result)
+        assertEquals(nodes.size, ids.size)
+        for ((i, node) in nodes.withIndex()) {
+            assertEquals(i, ids.find(node))
+            assertSame(node, ids[i])
+        }
+
+        // new nodes get the next free id and existing ids do not change
+        val inferred = Node()
+        assertEquals(-1, ids.find(inferred))
+        assertEquals(nodes.size, ids.id(inferred))
+        assertEquals(nodes.size, ids.id(inferred))
+        assertEquals(nodes.size + 1, ids.size)
+
+        // a second instance numbers the nodes independently
+        val tu = result.translationUnits.first()
+        val other = NodeIds(tu)
+        assertEquals(0, other.find(tu))
+        assertSame(tu, other[0])
+        assertEquals(nodes.indexOfFirst { it === tu }, ids.find(tu))
+
+        val added = TranslationUnitDeclaration()
+        result.components.first().translationUnits.add(added)
+        ids.update()
+        assertEquals(nodes.size + 1, ids.find(added))
+        assertEquals(nodes.size + 2, ids.size)
+    }
+}
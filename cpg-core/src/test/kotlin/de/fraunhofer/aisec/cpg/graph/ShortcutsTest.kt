@@ -27,6 +27,7 @@ package de.fraunhofer.aisec.cpg.graph
 
 import de.fraunhofer.aisec.cpg.TranslationConfiguration
 import de.fraunhofer.aisec.cpg.TranslationManager
+import de.fraunhofer.aisec.cpg.graph.declarations.Declaration
 import de.fraunhofer.aisec.cpg.graph.declarations.FunctionDeclaration
 import de.fraunhofer.aisec.cpg.graph.declarations.MethodDeclaration
 import de.fraunhofer.aisec.cpg.graph.declarations.RecordDeclaration
@@ -46,7 +47,11 @@ import de.fraunhofer.aisec.cpg.passes.EdgeCachePass
 import java.io.File
 import kotlin.test.Test
 import kotlin.test.assertEquals
+import kotlin.test.assertFalse
 import kotlin.test.assertNotNull
+import kotlin.test.assertNotSame
+import kotlin.test.assertNull
+import kotlin.test.assertSame
 import kotlin.test.assertTrue
 
 class ShortcutsTest {
@@ -215,6 +220,63 @@ class ShortcutsTest {
         assertTrue(actual.containsAll(expected))
     }
 
+    @Test
+    fun testNodeIndex() {
+        val config =
+            TranslationConfiguration.builder()
+                .sourceLocations(File("src/test/resources/ShortcutClass.java"))
+                .defaultPasses()
+                .defaultLanguages()
+                .build()
+
+        val analyzer = TranslationManager.builder().config(config).build()
+        val result = analyzer.analyze().get()
+
+        // The index is only built on request
+        assertNull(result.currentNodeIndex)
+        val calls = result.calls
+
+        val index = result.nodeIndex
+        assertSame(index, result.nodeIndex)
+        assertSame(index, result.currentNodeIndex)
+        assertEquals(calls, index.ofType<CallExpression>())
+
+        // The shortcuts now use the index instead of traversing the AST
+        assertSame(index.ofType<CallExpression>(), result.calls)
+
+        val classDecl =
+            result.translationUnits.firstOrNull()?.declarations?.firstOrNull() as RecordDeclaration
+        val main = classDecl.byNameOrNull<MethodDeclaration>("main")
+        assertNotNull(main)
+        assertEquals(listOf<Declaration>(main), index.declarationsByName("main"))
+        assertEquals(
+            calls.filter { call -> call.invokes.any { it.name == "print" } },
+            result.callsByName("print")
+        )
+        for (function in result.functions) {
+            assertEquals(
+                result.functions.filter { function in it.callees }.toSet(),
+                result.callersOf(function)
+            )
+        }
+
+        // A new method is only found after the index has been invalidated
+        val newMethod = MethodDeclaration()
+        newMethod.name = "newMethod"
+        classDecl.addMethod(newMethod)
+        assertFalse(newMethod in result.methods)
+        assertTrue(index.declarationsByName("newMethod").isEmpty())
+
+        result.invalidateNodeIndex()
+        assertNull(result.currentNodeIndex)
+        assertTrue(newMethod in result.methods)
+        assertNotSame(index, result.nodeIndex)
+        assertEquals(
+            listOf<Declaration>(newMethod),
+            result.nodeIndex.declarationsByName("newMethod")
+        )
+    }
+
     @Test
     fun testControls() {
         val config =
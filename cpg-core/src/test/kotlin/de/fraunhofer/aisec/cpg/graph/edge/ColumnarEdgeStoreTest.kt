@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.graph.edge
+
+import de.fraunhofer.aisec.cpg.TestUtils
+import de.fraunhofer.aisec.cpg.TranslationResult
+import de.fraunhofer.aisec.cpg.graph.Node
+import de.fraunhofer.aisec.cpg.helpers.SubgraphWalker
+import java.io.File
+import java.nio.file.Files
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNotNull
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class ColumnarEdgeStoreTest {
+    private val file = File("src/test/resources/cfg/if.cpp")
+
+    private fun analyze(columnar: Boolean = false): TranslationResult {
+        return TestUtils.analyze(listOf(file), file.parentFile.toPath(), true) {
+            it.columnarEdges(columnar)
+        }
+    }
+
+    @Test
+    fun testDirect() {
+        val result = analyze()
+        val before = snapshot(result)
+        val store = ColumnarEdgeStore.of(result)
+        store.attach()
+
+        assertTrue(store.eogEdgeCount > 0)
+        assertTrue(store.dfgEdgeCount > 0)
+        assertTrue(store.sizeInBytes > 0)
+        assertEquals(before, snapshot(result))
+    }
+
+    @Test
+    fun testMapped() {
+        val result = analyze()
+        val before = snapshot(result)
+        val path = Files.createTempFile("cpg", ".edges")
+        try {
+            val store = ColumnarEdgeStore.of(result, path)
+            store.attach()
+
+            assertEquals(store.sizeInBytes, Files.size(path))
+            assertEquals(before, snapshot(result))
+        } finally {
+            Files.deleteIfExists(path)
+        }
+    }
+
+    @Test
+    fun testConfiguration() {
+        val result = analyze(true)
+
+        val store = result.edgeStore
+        assertNotNull(store)
+        assertTrue(SubgraphWalker.flattenAST(result).any { it.nextEOGEdges.isNotEmpty() })
+    }
+
+    @Test
+    fun testWriteThrough() {
+        val result = analyze()
+        ColumnarEdgeStore.of(result).attach()
+
+        val node = SubgraphWalker.flattenAST(result).first { it.nextEOGEdges.isNotEmpty() }
+        val edge = node.nextEOGEdges[0]
+
+        // The outgoing edges of the start and the incoming edges of the end share the edge
+        assertSame(edge, edge.end.prevEOGEdges.first { it.start === node })
+
+        edge.addProperty(Properties.UNREACHABLE, true)
+        assertEquals(true, node.nextEOGEdges[0].getProperty(Properties.UNREACHABLE))
+        edge.addProperty(Properties.UNREACHABLE, false)
+        assertEquals(false, edge.getProperty(Properties.UNREACHABLE))
+
+        // Properties that do not fit into the columns are kept as well
+        edge.addProperty(Properties.NAME, "name")
+        assertEquals("name", edge.getProperty(Properties.NAME))
+        edge.addProperty(Properties.INDEX, 3)
+        assertEquals(3, edge.getProperty(Properties.INDEX))
+    }
+
+    @Test
+    fun testModification() {
+        val result = analyze()
+        ColumnarEdgeStore.of(result).attach()
+
+        val node = SubgraphWalker.flattenAST(result).first { it.nextEOGEdges.isNotEmpty() }
+        val next = node.nextEOG[0]
+        val count = node.nextEOGEdges.size
+
+        // Removing an edge only changes the collections of this node
+        node.nextEOGEdges.removeAt(0)
+        assertEquals(count - 1, node.nextEOGEdges.size)
+        node.addNextEOG(PropertyEdge(node, next))
+        assertEquals(count, node.nextEOGEdges.size)
+        assertSame(next, node.nextEOG.last())
+
+        val dfg = SubgraphWalker.flattenAST(result).first { it.nextDFG.isNotEmpty() }
+        val target = dfg.nextDFG.first()
+        dfg.removeNextDFG(target)
+        assertFalse(target in dfg.nextDFG)
+        assertFalse(dfg in target.prevDFG)
+        dfg.addNextDFG(target)
+        assertTrue(target in dfg.nextDFG)
+        assertTrue(dfg in target.prevDFG)
+    }
+
+    /** Returns the EOG and DFG edges of all nodes, identified by their position in the AST. */
+    private fun snapshot(result: TranslationResult): List<List<Any?>> {
+        val nodes = SubgraphWalker.flattenAST(result)
+        val position = { node: Node -> nodes.indexOfFirst { it === node } }
+
+        return nodes.map { node ->
+            listOf(
+                node.nextEOGEdges.map { Pair(position(it.end), properties(it)) },
+                node.prevEOGEdges.map { Pair(position(it.start), properties(it)) },
+                node.nextDFG.map(position),
+                node.prevDFG.map(position)
+            )
+        }
+    }
+
+    private fun properties(edge: PropertyEdge<Node>): Map<Properties, Any?> {
+        return Properties.values().associateWith { edge.getProperty(it) }
+    }
+}
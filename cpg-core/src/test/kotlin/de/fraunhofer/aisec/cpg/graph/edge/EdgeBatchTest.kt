@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.graph.edge
+
+import de.fraunhofer.aisec.cpg.graph.Node
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class EdgeBatchTest {
+    @Test
+    fun testDFG() {
+        val a = Node()
+        val b = Node()
+        val c = Node()
+        a.addNextDFG(b)
+
+        val events = mutableListOf<EdgeChanges>()
+        val listener = EdgeListener { events += it }
+        EdgeBatch.addListener(listener)
+        try {
+            val batch = EdgeBatch()
+            batch.clearDFG(b).addDFG(a, b).addDFG(b, c).addDFG(b, c)
+
+            // nothing is applied before the commit
+            assertEquals(setOf(b), a.nextDFG)
+            assertTrue(b.nextDFG.isEmpty())
+
+            val changes = batch.commit()
+            assertTrue(batch.isEmpty)
+
+            // a -> b was removed and added again, so only b -> c was actually added
+            assertEquals(listOf(Pair(b, c)), changes.addedDFG)
+            assertTrue(changes.removedDFG.isEmpty())
+            assertEquals(setOf(b), a.nextDFG)
+            assertEquals(setOf(a), b.prevDFG)
+            assertEquals(setOf(c), b.nextDFG)
+            assertEquals(setOf(b), c.prevDFG)
+
+            EdgeBatch().removeDFG(a, b).removeDFG(a, c).commit()
+            assertTrue(a.nextDFG.isEmpty())
+            assertTrue(b.prevDFG.isEmpty())
+
+            // empty changes are not reported
+            EdgeBatch().commit()
+            assertEquals(2, events.size)
+            assertSame(changes, events[0])
+            assertEquals(listOf(Pair(a, b)), events[1].removedDFG)
+        } finally {
+            EdgeBatch.removeListener(listener)
+        }
+    }
+
+    @Test
+    fun testManyDFG() {
+        val node = Node()
+        val others = List(100) { Node() }
+
+        val batch = EdgeBatch()
+        others.forEach { batch.addDFG(it, node) }
+        assertEquals(others.size, batch.commit().addedDFG.size)
+
+        assertEquals(others.toSet(), node.prevDFG)
+        assertTrue(others.all { it.nextDFG == setOf(node) })
+    }
+
+    @Test
+    fun testEOG() {
+        val a = Node()
+        val b = Node()
+        val c = Node()
+        val ab = PropertyEdge(a, b)
+        a.addNextEOG(ab)
+        b.addPrevEOG(ab)
+
+        val bc = PropertyEdge(b, c)
+        bc.addProperty(Properties.BRANCH, true)
+        val changes = EdgeBatch().removeEOG(a, b).addEOG(bc).commit()
+
+        assertEquals(listOf(ab), changes.removedEOG)
+        assertEquals(listOf(bc), changes.addedEOG)
+        assertTrue(a.nextEOG.isEmpty())
+        assertEquals(listOf<Node>(c), b.nextEOG)
+        assertTrue(b.prevEOG.isEmpty())
+        assertEquals(listOf<Node>(b), c.prevEOG)
+        assertEquals(true, c.prevEOGEdges[0].getProperty(Properties.BRANCH))
+    }
+
+    @Test
+    fun testParallelEOG() {
+        val a = Node()
+        val b = Node()
+
+        // Two edges between the same nodes, which only differ in their properties
+        val yes = PropertyEdge(a, b)
+        yes.addProperty(Properties.BRANCH, true)
+        val no = PropertyEdge(a, b)
+        no.addProperty(Properties.BRANCH, false)
+        val changes = EdgeBatch().addEOG(yes).addEOG(no).commit()
+
+        assertEquals(listOf(yes, no), changes.addedEOG)
+        assertEquals(listOf(yes, no), a.nextEOGEdges)
+        assertEquals(listOf(yes, no), b.prevEOGEdges)
+        assertEquals(listOf(true, false), a.nextEOGEdges.map { it.getProperty(Properties.BRANCH) })
+    }
+
+    @Test
+    fun testRemoveAndAddEOG() {
+        val a = Node()
+        val b = Node()
+        val old = PropertyEdge(a, b)
+        a.addNextEOG(old)
+        b.addPrevEOG(old)
+
+        // The removal only affects the committed edge, not the one added afterwards
+        val new = PropertyEdge(a, b)
+        new.addProperty(Properties.BRANCH, true)
+        var changes = EdgeBatch().removeEOG(a, b).addEOG(new).commit()
+
+        assertEquals(listOf(old), changes.removedEOG)
+        assertEquals(listOf(new), changes.addedEOG)
+        assertEquals(listOf(new), a.nextEOGEdges)
+        assertEquals(listOf(new), b.prevEOGEdges)
+
+        // Whereas an edge that is removed after it was added is not added at all
+        changes = EdgeBatch().addEOG(PropertyEdge(a, b)).removeEOG(a, b).commit()
+
+        assertEquals(listOf(new), changes.removedEOG)
+        assertTrue(changes.addedEOG.isEmpty())
+        assertTrue(a.nextEOGEdges.isEmpty())
+        assertTrue(b.prevEOGEdges.isEmpty())
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.graph.edge
+
+import de.fraunhofer.aisec.cpg.graph.Node
+import java.util.*
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class EdgePropertiesTest {
+    @Test
+    fun testPutAndGet() {
+        val properties = EdgeProperties()
+        assertTrue(properties.isEmpty())
+        assertNull(properties[Properties.INDEX])
+
+        assertNull(properties.put(Properties.UNREACHABLE, false))
+        assertNull(properties.put(Properties.INDEX, 1))
+        assertNull(properties.put(Properties.NAME, null))
+        assertEquals(1, properties.put(Properties.INDEX, 2))
+
+        assertEquals(3, properties.size)
+        assertEquals(2, properties[Properties.INDEX])
+        assertEquals(false, properties[Properties.UNREACHABLE])
+        assertTrue(properties.containsKey(Properties.NAME))
+        assertFalse(properties.containsKey(Properties.BRANCH))
+
+        // the properties are ordered like in an EnumMap and are equal to it
+        val enumMap = EnumMap<Properties, Any?>(Properties::class.java)
+        enumMap[Properties.INDEX] = 2
+        enumMap[Properties.NAME] = null
+        enumMap[Properties.UNREACHABLE] = false
+        assertEquals(enumMap.keys.toList(), properties.keys.toList())
+        assertEquals<Map<Properties, Any?>>(enumMap, properties)
+        assertEquals(enumMap.hashCode(), properties.hashCode())
+    }
+
+    @Test
+    fun testRemove() {
+        val properties = EdgeProperties(mapOf(Properties.INDEX to 0, Properties.BRANCH to true))
+        assertEquals(0, properties.remove(Properties.INDEX))
+        assertNull(properties.remove(Properties.INDEX))
+        assertEquals(mapOf<Properties, Any?>(Properties.BRANCH to true), properties)
+
+        properties.entries.removeIf { it.key == Properties.BRANCH }
+        assertTrue(properties.isEmpty())
+    }
+
+    @Test
+    fun testPropertyEdge() {
+        val edge = PropertyEdge(Node(), Node())
+        edge.addProperty(Properties.INDEX, 3)
+        edge.addProperties(mapOf(Properties.BRANCH to false))
+
+        val copy = PropertyEdge(edge)
+        assertEquals(3, copy.getProperty(Properties.INDEX))
+        assertEquals(false, copy.getProperty(Properties.BRANCH))
+        assertNull(copy.getProperty(Properties.NAME))
+        assertTrue(edge.propertyEquals(copy))
+    }
+}
@@ -26,12 +26,18 @@
 package de.fraunhofer.aisec.cpg.helpers
 
 import de.fraunhofer.aisec.cpg.TestUtils
+import de.fraunhofer.aisec.cpg.TranslationConfiguration
+import de.fraunhofer.aisec.cpg.TranslationManager
+import de.fraunhofer.aisec.cpg.passes.EvaluationOrderGraphPass
 import java.io.File
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicBoolean
 import kotlin.io.path.Path
 import kotlin.test.Test
 import kotlin.test.assertContains
 import kotlin.test.assertEquals
 import kotlin.test.assertNotNull
+import kotlin.test.assertTrue
 
 class BenchmarkTest {
 
@@ -83,4 +89,99 @@ class BenchmarkTest {
         assertNotNull(tr)
         tr.benchmarkResults.print()
     }
+
+    @Test
+    fun testProfileResources() {
+        val file = File("src/test/resources/components/foreachstmt.cpp")
+        val tr =
+            TestUtils.analyze(listOf(file), file.parentFile.toPath(), true) {
+                it.profileResources(true)
+            }
+
+        val passes = tr.benchmarks.filter { it.message == "Executing Pass" }
+        assertTrue(passes.isNotEmpty())
+        for (pass in passes) {
+            assertNotNull(pass.metrics[Benchmark.WALL_TIME])
+            assertNotNull(pass.metrics[ResourceUsage.GC_COUNT])
+            assertNotNull(pass.metrics[ResourceUsage.PEAK_HEAP])
+            assertNotNull(pass.metrics[TranslationManager.NODES_BEFORE])
+            assertNotNull(pass.metrics[TranslationManager.EDGES_AFTER])
+        }
+
+        // the EOG pass adds edges to the graph
+        val eog = passes.first { it.caller == EvaluationOrderGraphPass::class.java.simpleName }
+        assertTrue(
+            eog.metrics[TranslationManager.EDGES_AFTER]!! >
+                eog.metrics[TranslationManager.EDGES_BEFORE]!!
+        )
+
+        val res = tr.benchmarkResults
+        assertContains(res.metricsJson, "\"${ResourceUsage.PEAK_HEAP}\"")
+
+        val openMetrics = res.openMetrics
+        assertContains(openMetrics, "# TYPE cpg_benchmark_wall_time_ms gauge")
+        assertContains(openMetrics, "# UNIT cpg_benchmark_wall_time_ms ms")
+        assertContains(openMetrics, "cpg_benchmark_nodes_after{caller=\"EvaluationOrderGraphPass\"")
+        assertTrue(openMetrics.endsWith("# EOF\n"))
+
+        // every series is only contained once
+        val series =
+            openMetrics.lines().filter { !it.startsWith("#") && it.isNotEmpty() }.map {
+                it.substringBeforeLast(' ')
+            }
+        assertEquals(series.size, series.toSet().size)
+
+        // the benchmarks of the frontend are part of the result as well
+        assertTrue(tr.benchmarks.any { it.caller == "CXXLanguageFrontend" })
+    }
+
+    @Test
+    fun testProfileAllThreads() {
+        val translationConfig = TranslationConfiguration.builder().profileResources(true).build()
+        val holder =
+            object : StatisticsHolder {
+                override val translatedFiles = listOf<String>()
+                override val benchmarks = mutableSetOf<MeasurementHolder>()
+                override val config = translationConfig
+
+                override fun addBenchmark(b: MeasurementHolder) {
+                    benchmarks += b
+                }
+            }
+
+        val bench = Benchmark(BenchmarkTest::class.java, "Parallel work", false, holder, true)
+
+        // keep another thread busy until the benchmark is stopped
+        val started = CountDownLatch(1)
+        val done = AtomicBoolean(false)
+        val worker = Thread {
+            var sum = 0L
+            while (!done.get()) {
+                sum += List(1000) { it.toLong() }.sum()
+                started.countDown()
+            }
+            assertTrue(sum > 0)
+        }
+        worker.start()
+        started.await()
+        bench.addMeasurement()
+        done.set(true)
+        worker.join()
+
+        // the allocations of the worker are included, although the benchmark runs on this thread
+        val allocated = bench.metrics[ResourceUsage.ALLOCATED_BYTES]
+        if (allocated != null) {
+            assertTrue(allocated > 0)
+        }
+        assertTrue(bench in holder.benchmarks)
+    }
+
+    @Test
+    fun testNoProfiling() {
+        val file = File("src/test/resources/components/foreachstmt.cpp")
+        val tr = TestUtils.analyze(listOf(file), file.parentFile.toPath(), true)
+
+        // without profiling, only the wall time is measured
+        tr.benchmarks.forEach { b -> assertTrue(b.metrics.keys.all { it == Benchmark.WALL_TIME }) }
+    }
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.helpers
+
+import de.fraunhofer.aisec.cpg.TestUtils
+import de.fraunhofer.aisec.cpg.sarif.PhysicalLocation
+import de.fraunhofer.aisec.cpg.sarif.Region
+import java.io.File
+import java.net.URI
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNotSame
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class FileTableTest {
+    @Test
+    fun testIds() {
+        val table = FileTable()
+        val a = URI.create("file:///src/a.cpp")
+        val b = URI.create("file:///src/b.cpp")
+
+        assertEquals(0, table.id(a))
+        assertEquals(1, table.id(b))
+        assertEquals(0, table.id(URI.create("file:///src/a.cpp")))
+        assertEquals(2, table.size)
+
+        assertEquals(a, table.uri(0))
+        assertEquals("/src/b.cpp", table.path(1))
+        assertSame(table.artifact(a), table.artifact(0))
+        assertFailsWith<IndexOutOfBoundsException> { table.artifact(2) }
+    }
+
+    @Test
+    fun testIntern() {
+        val table = FileTable()
+        val first = PhysicalLocation(URI.create("file:///src/a.cpp"), Region(1, 1, 1, 5))
+        val second = PhysicalLocation(URI.create("file:///src/a.cpp"), Region(2, 1, 2, 5))
+        assertNotSame(first.artifactLocation, second.artifactLocation)
+
+        val region = second.region
+        assertSame(first, table.intern(first))
+        assertSame(second, table.intern(second))
+        assertSame(first.artifactLocation, second.artifactLocation)
+
+        // the region is kept by reference, so changes to it are not lost
+        assertSame(region, second.region)
+        region.endColumn = 7
+        assertEquals(Region(2, 1, 2, 7), second.region)
+    }
+
+    @Test
+    fun testResult() {
+        val file = File("src/test/resources/components/foreachstmt.cpp")
+        val result = TestUtils.analyze(listOf(file), file.parentFile.toPath(), true)
+
+        // the locations of all nodes share the artifact of their file in the table of the result
+        val locations =
+            SubgraphWalker.flattenAST(result.translationUnits.first()).mapNotNull { it.location }
+        assertTrue(locations.isNotEmpty())
+        assertTrue(
+            locations.all { it.artifactLocation === result.files.artifact(it.artifactLocation.uri) }
+        )
+    }
+}
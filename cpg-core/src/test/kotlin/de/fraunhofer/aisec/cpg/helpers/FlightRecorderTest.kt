@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.helpers
+
+import de.fraunhofer.aisec.cpg.TestUtils
+import de.fraunhofer.aisec.cpg.passes.EvaluationOrderGraphPass
+import java.io.File
+import java.nio.file.Files
+import jdk.jfr.Recording
+import jdk.jfr.consumer.RecordedEvent
+import jdk.jfr.consumer.RecordingFile
+import kotlin.test.AfterTest
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class FlightRecorderTest {
+
+    @AfterTest
+    fun tearDown() {
+        FlightRecorder.isEnabled = false
+    }
+
+    @Test
+    fun testEvents() {
+        val file = File("src/test/resources/components/foreachstmt.cpp")
+        val events = record {
+            TestUtils.analyze(listOf(file), file.parentFile.toPath(), true) {
+                it.flightRecorderEvents(true)
+            }
+        }
+
+        val parses = events.filter { it.eventType.name == "de.fraunhofer.aisec.cpg.FrontendParse" }
+        assertEquals(1, parses.size)
+        assertTrue(parses[0].getString("file").endsWith("foreachstmt.cpp"))
+        assertEquals("CXXLanguageFrontend", parses[0].getString("frontend"))
+        assertTrue(parses[0].getBoolean("success"))
+        assertTrue(parses[0].getInt("nodes") > 0)
+
+        val passes = events.filter { it.eventType.name == "de.fraunhofer.aisec.cpg.Pass" }
+        val eog =
+            passes.first {
+                it.getString("pass") == EvaluationOrderGraphPass::class.java.simpleName
+            }
+        assertTrue(eog.getBoolean("executed"))
+
+        val resolutions =
+            events.filter { it.eventType.name == "de.fraunhofer.aisec.cpg.ScopeResolution" }
+        assertTrue(resolutions.any { it.getBoolean("resolved") })
+
+        // the type registrations are not bound to the translation and are not enabled globally
+        assertFalse(FlightRecorder.isEnabled)
+        assertTrue(events.none { it.eventType.name == "de.fraunhofer.aisec.cpg.TypeRegistration" })
+    }
+
+    @Test
+    fun testGlobalEvents() {
+        FlightRecorder.isEnabled = true
+
+        val file = File("src/test/resources/components/foreachstmt.cpp")
+        val events = record {
+            TestUtils.analyze(listOf(file), file.parentFile.toPath(), true)
+        }
+
+        // the translation does not change the global flag and only emits the global events
+        assertTrue(FlightRecorder.isEnabled)
+        assertTrue(events.any { it.eventType.name == "de.fraunhofer.aisec.cpg.TypeRegistration" })
+        assertTrue(events.none { it.eventType.name == "de.fraunhofer.aisec.cpg.FrontendParse" })
+        assertTrue(events.none { it.eventType.name == "de.fraunhofer.aisec.cpg.Pass" })
+    }
+
+    @Test
+    fun testDisabled() {
+        val file = File("src/test/resources/components/foreachstmt.cpp")
+        val events = record {
+            TestUtils.analyze(listOf(file), file.parentFile.toPath(), true)
+        }
+
+        assertFalse(FlightRecorder.isEnabled)
+        assertTrue(events.none { it.eventType.name.startsWith("de.fraunhofer.aisec.cpg.") })
+    }
+
+    /** Runs [block] while a flight recording of the CPG events is active. */
+    private fun record(block: () -> Unit): List<RecordedEvent> {
+        val path = Files.createTempFile("cpg", ".jfr")
+        try {
+            Recording().use { recording ->
+                recording.enable(FrontendParseEvent::class.java)
+                recording.enable(PassEvent::class.java)
+                recording.enable(ScopeResolutionEvent::class.java)
+                recording.enable(TypeRegistrationEvent::class.java)
+                recording.start()
+                block()
+                recording.stop()
+                recording.dump(path)
+            }
+
+            return RecordingFile.readAllEvents(path)
+        } finally {
+            Files.deleteIfExists(path)
+        }
+    }
+}
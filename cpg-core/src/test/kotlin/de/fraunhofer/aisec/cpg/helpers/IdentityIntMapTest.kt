@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.helpers
+
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class IdentityIntMapTest {
+    @Test
+    fun testPutAndGet() {
+        val map = IdentityIntMap<String>()
+        assertTrue(map.isEmpty())
+
+        // equal, but not the same strings
+        val a = String("key".toCharArray())
+        val b = String("key".toCharArray())
+
+        assertEquals(-1, map.put(a, 1))
+        assertEquals(1, map.put(a, 2))
+        map[b] = 3
+
+        assertEquals(2, map.size)
+        assertEquals(2, map[a])
+        assertEquals(3, map[b])
+        assertEquals(-1, map["other"])
+        assertFalse(map.containsKey("other"))
+
+        assertEquals(2, map.remove(a))
+        assertEquals(-1, map.remove(a))
+        assertEquals(-1, map[a])
+        assertEquals(3, map[b])
+
+        map.clear()
+        assertTrue(map.isEmpty())
+        assertEquals(0, IdentityIntMap<String>(defaultValue = 0)[a])
+    }
+
+    @Test
+    fun testGrowAndRemove() {
+        val keys = List(10000) { Any() }
+        val map = IdentityIntMap<Any>()
+        keys.forEachIndexed { i, key -> map[key] = i }
+        assertEquals(keys.size, map.size)
+
+        // removing shifts back the following entries, which must still be found
+        for (i in keys.indices step 3) {
+            assertEquals(i, map.remove(keys[i]))
+        }
+        for ((i, key) in keys.withIndex()) {
+            assertEquals(if (i % 3 == 0) -1 else i, map[key])
+        }
+
+        var sum = 0L
+        map.forEach { key, value ->
+            assertEquals(keys[value], key)
+            sum += value
+        }
+        assertEquals(keys.indices.filter { it % 3 != 0 }.sumOf { it.toLong() }, sum)
+    }
+}
@@ -125,4 +125,31 @@ class IdentitySetTest {
 
         assertEquals(listOf(1, 2, 3, 4, 5, 6), set.toSortedList())
     }
+
+    @Test
+    fun testInsertionOrder() {
+        val elements = List(1000) { Any() }
+        val set = IdentitySet<Any>()
+        set.addAll(elements)
+
+        // remove three out of four elements, including via the iterator
+        set.removeAll(elements.filterIndexed { i, _ -> i % 4 < 2 })
+        val it = set.iterator()
+        while (it.hasNext()) {
+            if (elements.indexOf(it.next()) % 4 == 2) {
+                it.remove()
+            }
+        }
+
+        // adding further elements closes the gaps, but keeps the order
+        val more = List(1000) { Any() }
+        set.addAll(more)
+
+        val expected = elements.filterIndexed { i, _ -> i % 4 == 3 } + more
+        assertEquals(expected.size, set.size)
+        assertEquals(expected, set.toSortedList())
+        assertEquals(expected, set.toList())
+        assertTrue(expected.all { it in set })
+        assertFalse(elements[0] in set)
+    }
 }
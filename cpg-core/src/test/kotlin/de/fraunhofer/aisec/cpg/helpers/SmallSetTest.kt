@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.helpers
+
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class SmallSetTest {
+    @Test
+    fun testSmallAndLarge() {
+        val set = SmallSet<Int>()
+        assertTrue(set.isEmpty())
+
+        for (i in 0 until SmallSet.SMALL_SIZE) {
+            assertTrue(set.add(i))
+            assertFalse(set.add(i))
+        }
+        assertEquals(SmallSet.SMALL_SIZE, set.size)
+        assertEquals((0 until SmallSet.SMALL_SIZE).toList(), set.toList())
+
+        // one more element switches to a hash set
+        assertTrue(set.add(100))
+        assertFalse(set.add(100))
+        assertEquals(SmallSet.SMALL_SIZE + 1, set.size)
+        assertTrue(0 in set)
+        assertTrue(100 in set)
+        assertFalse(101 in set)
+
+        assertEquals((0 until SmallSet.SMALL_SIZE).toSet() + 100, set)
+
+        set.clear()
+        assertTrue(set.isEmpty())
+        assertTrue(set.add(1))
+        assertEquals(setOf(1), set)
+    }
+
+    @Test
+    fun testRemove() {
+        val set = SmallSet(listOf(1, 2, 3))
+        assertTrue(set.remove(2))
+        assertFalse(set.remove(2))
+        assertEquals(listOf(1, 3), set.toList())
+
+        val iterator = set.iterator()
+        assertEquals(1, iterator.next())
+        iterator.remove()
+        assertEquals(3, iterator.next())
+        assertFalse(iterator.hasNext())
+        assertEquals(setOf(3), set)
+
+        set.removeAll { it == 3 }
+        assertTrue(set.isEmpty())
+    }
+
+    @Test
+    fun testEnsureCapacity() {
+        val set = SmallSet(listOf(1, 2))
+        set.ensureCapacity(3)
+        assertTrue(set.add(3))
+        assertEquals(listOf(1, 2, 3), set.toList())
+
+        set.ensureCapacity(100)
+        for (i in 4..100) {
+            assertTrue(set.add(i))
+        }
+        assertEquals((1..100).toSet(), set)
+        assertFalse(set.add(1))
+    }
+
+    @Test
+    fun testConcurrentModification() {
+        val small = SmallSet(listOf(1, 2))
+        assertFailsWith<ConcurrentModificationException> {
+            for (i in small) {
+                small.add(i + 10)
+            }
+        }
+
+        // growing to a hash set must not silently end the iteration
+        val growing = SmallSet((0 until SmallSet.SMALL_SIZE).toList())
+        val iterator = growing.iterator()
+        iterator.next()
+        growing.add(100)
+        assertFailsWith<ConcurrentModificationException> { iterator.hasNext() }
+
+        val large = SmallSet((0..10).toList())
+        assertFailsWith<ConcurrentModificationException> {
+            for (i in large) {
+                large.remove(i)
+            }
+        }
+
+        // clearing replaces the hash set, which its own iterator does not notice
+        val cleared = large.iterator()
+        cleared.next()
+        large.clear()
+        assertFailsWith<ConcurrentModificationException> { cleared.next() }
+
+        // removing through the iterator is allowed
+        val set = SmallSet((0..10).toList())
+        set.iterator().let {
+            while (it.hasNext()) {
+                if (it.next() % 2 == 0) {
+                    it.remove()
+                }
+            }
+        }
+        assertEquals(setOf(1, 3, 5, 7, 9), set)
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2022, Fraunhofer AISEC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *                    $$$$$$\  $$$$$$$\   $$$$$$\
+ *                   $$  __$$\ $$  __$$\ $$  __$$\
+ *                   $$ /  \__|$$ |  $$ |$$ /  \__|
+ *                   $$ |      $$$$$$$  |$$ |$$$$\
+ *                   $$ |      $$  ____/ $$ |\_$$ |
+ *                   $$ |  $$\ $$ |      $$ |  $$ |
+ *                   \$$$$$   |$$ |      \$$$$$   |
+ *                    \______/ \__|       \______/
+ *
+ */
+package de.fraunhofer.aisec.cpg.helpers
+
+import de.fraunhofer.aisec.cpg.TestUtils
+import de.fraunhofer.aisec.cpg.TranslationConfiguration
+import de.fraunhofer.aisec.cpg.frontends.LanguageFrontend
+import de.fraunhofer.aisec.cpg.frontends.cpp.CPPLanguage
+import de.fraunhofer.aisec.cpg.graph.Node
+import de.fraunhofer.aisec.cpg.graph.declarations.TranslationUnitDeclaration
+import de.fraunhofer.aisec.cpg.graph.functions
+import de.fraunhofer.aisec.cpg.passes.scopes.ScopeManager
+import de.fraunhofer.aisec.cpg.sarif.PhysicalLocation
+import de.fraunhofer.aisec.cpg.sarif.Region
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.attribute.FileTime
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNotNull
+import kotlin.test.assertNotSame
+import kotlin.test.assertNull
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class SourceBufferTest {
+
+    @Test
+    fun testSlice() {
+        val path = Files.createTempFile("cpg", ".c")
+        try {
+            Files.writeString(path, "int a;\r\nint main() {\n  return a;\n}")
+
+            val buffers = SourceBuffers(1)
+            val buffer = buffers.of(path)
+            assertNotNull(buffer)
+            assertSame(buffer, buffers.of(path.toUri()))
+            assertEquals(4, buffer.lineCount)
+            assertEquals("int a;", buffer.line(1))
+            assertEquals("}", buffer.line(4))
+            assertNull(buffer.line(5))
+
+            assertEquals("a", buffer.slice(Region(1, 5, 1, 6)))
+            assertEquals("return a;", buffer.slice(Region(3, 3, 3, 12)))
+            assertEquals("main() {\n  return a;\n}", buffer.slice(Region(2, 5, 4, 2)))
+            // line breaks are normalized, just like the code of our frontends
+            assertEquals("a;\nint", buffer.slice(Region(1, 5, 2, 4)))
+            assertNull(buffer.slice(Region(3, 1, 5, 1)))
+            assertNull(buffer.slice(Region()))
+
+            val location = PhysicalLocation(path.toUri(), Region(1, 1, 1, 4))
+            assertEquals("int", buffers.code(location))
+            assertEquals("int", buffers.code(location))
+        } finally {
+            Files.deleteIfExists(path)
+        }
+    }
+
+    @Test
+    fun testModified() {
+        val path = Files.createTempFile("cpg", ".c")
+        try {
+            Files.writeString(path, "int a;")
+            Files.setLastModifiedTime(path, FileTime.fromMillis(0))
+
+            val snapshot = SourceBuffers(1)
+            val checked = SourceBuffers(1, true)
+            val location = PhysicalLocation(path.toUri(), Region(1, 5, 1, 6))
+            val buffer = checked.of(path)
+            assertNotNull(buffer)
+            assertEquals("a", snapshot.code(location))
+            assertEquals("a", checked.code(location))
+            assertFalse(buffer.isStale())
+
+            Files.writeString(path, "long b;")
+            assertTrue(buffer.isStale())
+
+            // only the buffers that check for modifications see the new contents
+            assertEquals("a", snapshot.code(location))
+            assertNotSame(buffer, checked.of(path))
+            assertEquals("g", checked.code(location))
+        } finally {
+            Files.deleteIfExists(path)
+        }
+    }
+
+    @Test
+    fun testLazyCode() {
+        val file = File("src/test/resources/components/foreachstmt.cpp")
+        val eager = TestUtils.analyze(listOf(file), file.parentFile.toPath(), true)
+        val lazy =
+            TestUtils.analyze(listOf(file), file.parentFile.toPath(), true) {
+                it.lazyCode(true, 16)
+            }
+
+        val eagerMain = eager.functions.firstOrNull { it.name == "main" }
+        val lazyMain = lazy.functions.firstOrNull { it.name == "main" }
+        assertNotNull(eagerMain)
+        assertNotNull(lazyMain)
+        assertTrue(lazyMain.isCodeLazy)
+        assertSame(lazy.sourceBuffers, lazyMain.sourceBuffers)
+
+        val eagerNodes = SubgraphWalker.flattenAST(eagerMain)
+        val lazyNodes = SubgraphWalker.flattenAST(lazyMain)
+        assertEquals(eagerNodes.size, lazyNodes.size)
+
+        for ((e, l) in eagerNodes.zip(lazyNodes)) {
+            if (e.location != null) {
+                assertEquals(e.code, l.code)
+            }
+        }
+    }
+
+    @Test
+    fun testLazyCodeWithoutLocation() {
+        val config = TranslationConfiguration.builder().lazyCode(true).build()
+
+        // A frontend which cannot provide locations, such as the LLVM frontend
+        val frontend =
+            object : LanguageFrontend(CPPLanguage(), config, ScopeManager()) {
+                override fun parse(file: File): TranslationUnitDeclaration {
+                    throw UnsupportedOperationException()
+                }
+
+                override fun <T> getCodeFromRawNode(astNode: T): String {
+                    return astNode.toString()
+                }
+
+                override fun <T> getLocationFromRawNode(astNode: T): PhysicalLocation? {
+                    return null
+                }
+
+                override fun <S, T> setComment(s: S, ctx: T) {}
+            }
+        frontend.sourceBuffers = SourceBuffers(1)
+
+        // The code cannot be extracted from the file later, so it is stored in the node
+        val node = Node()
+        frontend.setCodeAndLocation(node, "int a;")
+        assertFalse(node.isCodeLazy)
+        assertNull(node.sourceBuffers)
+        assertEquals("int a;", node.code)
+    }
+}
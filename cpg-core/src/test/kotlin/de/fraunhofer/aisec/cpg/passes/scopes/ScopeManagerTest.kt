@@ -35,7 +35,9 @@ import de.fraunhofer.aisec.cpg.frontends.java.JavaLanguage
 import de.fraunhofer.aisec.cpg.frontends.java.JavaLanguageFrontend
 import de.fraunhofer.aisec.cpg.graph.*
 import de.fraunhofer.aisec.cpg.graph.declarations.ConstructorDeclaration
+import de.fraunhofer.aisec.cpg.graph.declarations.FunctionDeclaration
 import de.fraunhofer.aisec.cpg.graph.declarations.MethodDeclaration
+import de.fraunhofer.aisec.cpg.graph.declarations.NamespaceDeclaration
 import java.io.File
 import kotlin.test.*
 
@@ -148,6 +150,51 @@ internal class ScopeManagerTest : BaseTest() {
         assertEquals(func1, func)
     }
 
+    @Test
+    fun testMergeMany() {
+        val config = TranslationConfiguration.builder().build()
+        val managers = mutableListOf<ScopeManager>()
+        val namespaces = mutableListOf<NamespaceDeclaration>()
+        val functions = mutableListOf<FunctionDeclaration>()
+
+        // five files, which all contribute a function to the namespace A
+        for (i in 0 until 5) {
+            val s = ScopeManager()
+            val frontend = CXXLanguageFrontend(CPPLanguage(), config, s)
+            s.resetToGlobal(frontend.newTranslationUnitDeclaration("f$i.cpp", null))
+
+            val namespace = frontend.newNamespaceDeclaration("A", null)
+            s.enterScope(namespace)
+            val func = frontend.newFunctionDeclaration("func$i", null)
+            s.addDeclaration(func)
+            s.leaveScope(namespace)
+
+            managers += s
+            namespaces += namespace
+            functions += func
+        }
+
+        val firstScope = managers[0].lookupScope("A")
+        assertNotNull(firstScope)
+
+        val final = ScopeManager()
+        CXXLanguageFrontend(CPPLanguage(), config, final)
+        final.mergeFrom(managers)
+
+        // the name scope of the first file survives and contains all functions in order
+        val scopeA = final.lookupScope("A")
+        assertNotNull(scopeA)
+        assertSame(firstScope, scopeA)
+        assertEquals(functions, scopeA.valueDeclarations.filterIsInstance<FunctionDeclaration>())
+        assertEquals(1, final.filterScopes { it.scopedName == "A" }.size)
+
+        // all namespace declarations point to the merged scope
+        namespaces.forEach { assertSame(scopeA, final.lookupScope(it)) }
+
+        // and the scope map of the global scope still points to the merged global scope
+        assertEquals(1, final.filterScopes { it is GlobalScope }.size)
+    }
+
     @Test
     fun testScopeFQN() {
         val s = ScopeManager()
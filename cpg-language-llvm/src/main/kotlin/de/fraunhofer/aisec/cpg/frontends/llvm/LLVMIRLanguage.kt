@@ -32,7 +32,7 @@ import kotlin.reflect.KClass
 
 /** The LLVM IR language. */
 class LLVMIRLanguage : Language<LLVMIRLanguageFrontend>() {
-    override val fileExtensions = listOf("ll")
+    override val fileExtensions = listOf("ll", "bc")
     override val namespaceDelimiter = "::"
     override val frontend: KClass<out LLVMIRLanguageFrontend> = LLVMIRLanguageFrontend::class
     override val primitiveTypes: Set<String>
@@ -28,16 +28,18 @@ package de.fraunhofer.aisec.cpg.frontends.llvm
 import de.fraunhofer.aisec.cpg.TranslationConfiguration
 import de.fraunhofer.aisec.cpg.frontends.Language
 import de.fraunhofer.aisec.cpg.frontends.LanguageFrontend
+import de.fraunhofer.aisec.cpg.frontends.SupportsParallelParsing
 import de.fraunhofer.aisec.cpg.frontends.TranslationException
 import de.fraunhofer.aisec.cpg.graph.declarations.Declaration
+import de.fraunhofer.aisec.cpg.graph.declarations.FunctionDeclaration
 import de.fraunhofer.aisec.cpg.graph.declarations.RecordDeclaration
 import de.fraunhofer.aisec.cpg.graph.declarations.TranslationUnitDeclaration
 import de.fraunhofer.aisec.cpg.graph.parseType
+import de.fraunhofer.aisec.cpg.graph.statements.LabelStatement
 import de.fraunhofer.aisec.cpg.graph.statements.expressions.DeclaredReferenceExpression
 import de.fraunhofer.aisec.cpg.graph.statements.expressions.Expression
 import de.fraunhofer.aisec.cpg.graph.types.*
 import de.fraunhofer.aisec.cpg.helpers.Benchmark
-import de.fraunhofer.aisec.cpg.helpers.SubgraphWalker
 import de.fraunhofer.aisec.cpg.passes.CompressLLVMPass
 import de.fraunhofer.aisec.cpg.passes.VariableUsageResolver
 import de.fraunhofer.aisec.cpg.passes.order.RegisterExtraPass
@@ -49,7 +51,13 @@ import org.bytedeco.javacpp.BytePointer
 import org.bytedeco.llvm.LLVM.*
 import org.bytedeco.llvm.global.LLVM.*
 
+/**
+ * The language frontend for LLVM IR (`.ll`) and bitcode (`.bc`) files. Each module is parsed in its
+ * own [LLVMContextRef] and all caches only live as long as the module is parsed, so that multiple
+ * modules can be parsed in parallel.
+ */
 @RegisterExtraPass(CompressLLVMPass::class)
+@SupportsParallelParsing
 class LLVMIRLanguageFrontend(
     language: Language<LLVMIRLanguageFrontend>,
     config: TranslationConfiguration,
@@ -59,11 +67,38 @@ class LLVMIRLanguageFrontend(
     val statementHandler = StatementHandler(this)
     val declarationHandler = DeclarationHandler(this)
     val expressionHandler = ExpressionHandler(this)
-    val typeCache = mutableMapOf<String, Type>()
+    /**
+     * The state which is only valid while a single module is parsed. It is kept per thread and
+     * reset for each module, so that the LLVM context and the caches are never shared between
+     * modules which are parsed in parallel.
+     */
+    private class ModuleState {
+        var ctx: LLVMContextRef? = null
+        val typeCache = mutableMapOf<String, Type>()
+        val phiList = mutableListOf<LLVMValueRef>()
+        val labelStatements = mutableMapOf<Long, MutableMap<Long, LabelStatement>>()
+        val bindingsCache = mutableMapOf<String, Declaration>()
+    }
+
+    private val moduleState = ThreadLocal.withInitial { ModuleState() }
 
-    val phiList = mutableListOf<LLVMValueRef>()
+    /** The LLVM context of the module which is currently parsed by this thread. */
+    val ctx: LLVMContextRef?
+        get() = moduleState.get().ctx
 
-    var ctx: LLVMContextRef? = null
+    val typeCache: MutableMap<String, Type>
+        get() = moduleState.get().typeCache
+
+    val phiList: MutableList<LLVMValueRef>
+        get() = moduleState.get().phiList
+
+    /**
+     * The [LabelStatement]s of the basic blocks of the current module. They are indexed by the
+     * address of the function and the address of the basic block, so that the incoming blocks of a
+     * phi instruction can be looked up without traversing the AST.
+     */
+    val labelStatements: MutableMap<Long, MutableMap<Long, LabelStatement>>
+        get() = moduleState.get().labelStatements
 
     /**
      * This contains a cache binding between an LLVMValueRef (representing a variable) and its
@@ -72,16 +107,18 @@ class LLVMIRLanguageFrontend(
      * turn is needed because of the local/global system we cannot rely on the
      * [VariableUsageResolver].
      */
-    var bindingsCache = mutableMapOf<String, Declaration>()
+    val bindingsCache: MutableMap<String, Declaration>
+        get() = moduleState.get().bindingsCache
 
     companion object {
-        @JvmField var LLVM_EXTENSIONS: List<String> = listOf(".ll")
+        @JvmField var LLVM_EXTENSIONS: List<String> = listOf(".ll", ".bc")
     }
 
     override fun parse(file: File): TranslationUnitDeclaration {
-        var bench = Benchmark(this.javaClass, "Parsing sourcefile")
-        // clear the bindings cache, because it is just valid within one module
-        bindingsCache.clear()
+        var bench = Benchmark(this.javaClass, "Parsing sourcefile", false, statisticsHolder)
+        // start with a fresh state, because the caches are just valid within one module
+        val state = ModuleState()
+        moduleState.set(state)
 
         // these will be filled by our create and parse functions later and will be passed as
         // pointer
@@ -89,73 +126,81 @@ class LLVMIRLanguageFrontend(
         val buf = LLVMMemoryBufferRef()
 
         // create a new LLVM context
-        ctx = LLVMContextCreate()
-
-        // allocate a buffer for a possible error message
-        val errorMessage = ByteBuffer.allocate(10000)
-
-        var result =
-            LLVMCreateMemoryBufferWithContentsOfFile(
-                BytePointer(file.toPath().toString()),
-                buf,
-                errorMessage
-            )
-        if (result != 0) {
-            // something went wrong
-            val errorMsg = String(errorMessage.array())
-            LLVMContextDispose(ctx)
-            throw TranslationException("Could not create memory buffer: $errorMsg")
-        }
+        val ctx = LLVMContextCreate()
+        state.ctx = ctx
+
+        // The context and the module state need to be released even if the translation fails,
+        // because this thread is re-used for further modules
+        try {
+            // allocate a buffer for a possible error message
+            val errorMessage = ByteBuffer.allocate(10000)
+
+            var result =
+                LLVMCreateMemoryBufferWithContentsOfFile(
+                    BytePointer(file.toPath().toString()),
+                    buf,
+                    errorMessage
+                )
+            if (result != 0) {
+                // something went wrong
+                val errorMsg = String(errorMessage.array())
+                throw TranslationException("Could not create memory buffer: $errorMsg")
+            }
 
-        result = LLVMParseIRInContext(ctx, buf, mod, errorMessage)
-        if (result != 0) {
-            // something went wrong
-            val errorMsg = String(errorMessage.array())
-            LLVMContextDispose(ctx)
-            throw TranslationException("Could not parse IR: $errorMsg")
-        }
-        bench.addMeasurement()
-        bench = Benchmark(this.javaClass, "Transform to CPG")
+            // This handles textual IR as well as bitcode. We cannot use the lazy bitcode loading of
+            // LLVM here, because the C API does not allow to materialize the functions afterwards
+            // and we need the bodies of all functions anyway.
+            result = LLVMParseIRInContext(ctx, buf, mod, errorMessage)
+            if (result != 0) {
+                // something went wrong
+                val errorMsg = String(errorMessage.array())
+                throw TranslationException("Could not parse IR: $errorMsg")
+            }
+            bench.addMeasurement()
+            bench = Benchmark(this.javaClass, "Transform to CPG", false, statisticsHolder)
 
-        val tu = TranslationUnitDeclaration()
-        tu.language = language
+            val tu = TranslationUnitDeclaration()
+            tu.language = language
 
-        // we need to set our translation unit as the global scope
-        scopeManager.resetToGlobal(tu)
+            // we need to set our translation unit as the global scope
+            scopeManager.resetToGlobal(tu)
 
-        // loop through globals
-        var global = LLVMGetFirstGlobal(mod)
-        while (global != null) {
-            // try to parse the variable (declaration)
-            val declaration = declarationHandler.handle(global)
+            // loop through globals
+            var global = LLVMGetFirstGlobal(mod)
+            while (global != null) {
+                // try to parse the variable (declaration)
+                val declaration = declarationHandler.handle(global)
 
-            scopeManager.addDeclaration(declaration)
+                scopeManager.addDeclaration(declaration)
 
-            global = LLVMGetNextGlobal(global)
-        }
+                global = LLVMGetNextGlobal(global)
+            }
 
-        // loop through functions
-        var func = LLVMGetFirstFunction(mod)
-        while (func != null) {
-            // try to parse the function (declaration)
-            val declaration = declarationHandler.handle(func)
+            // loop through functions
+            var func = LLVMGetFirstFunction(mod)
+            while (func != null) {
+                // try to parse the function (declaration)
+                val declaration = declarationHandler.handle(func)
 
-            scopeManager.addDeclaration(declaration)
+                scopeManager.addDeclaration(declaration)
 
-            func = LLVMGetNextFunction(func)
-        }
+                func = LLVMGetNextFunction(func)
+            }
 
-        var counter = 0
-        val flatAST = SubgraphWalker.flattenAST(tu)
-        for (phiInstr in phiList) {
-            statementHandler.handlePhi(phiInstr, tu, flatAST)
-            counter++
-        }
+            // Index the functions by name, so that the phi instructions can find their function
+            val functionsByName =
+                tu.declarations.filterIsInstance<FunctionDeclaration>().groupBy { it.name }
+            for (phiInstr in phiList) {
+                statementHandler.handlePhi(phiInstr, functionsByName)
+            }
 
-        LLVMContextDispose(ctx)
-        bench.addMeasurement()
+            bench.addMeasurement()
 
-        return tu
+            return tu
+        } finally {
+            LLVMContextDispose(ctx)
+            moduleState.remove()
+        }
     }
 
     /** Returns a pair of the name and symbol name of [valueRef]. */
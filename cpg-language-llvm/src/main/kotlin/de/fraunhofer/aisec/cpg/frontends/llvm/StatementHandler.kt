@@ -29,14 +29,12 @@ import de.fraunhofer.aisec.cpg.frontends.Handler
 import de.fraunhofer.aisec.cpg.frontends.TranslationException
 import de.fraunhofer.aisec.cpg.graph.*
 import de.fraunhofer.aisec.cpg.graph.declarations.FunctionDeclaration
-import de.fraunhofer.aisec.cpg.graph.declarations.TranslationUnitDeclaration
 import de.fraunhofer.aisec.cpg.graph.declarations.VariableDeclaration
 import de.fraunhofer.aisec.cpg.graph.statements.*
 import de.fraunhofer.aisec.cpg.graph.statements.expressions.*
 import de.fraunhofer.aisec.cpg.graph.types.ObjectType
 import de.fraunhofer.aisec.cpg.graph.types.PointerType
 import de.fraunhofer.aisec.cpg.graph.types.UnknownType
-import de.fraunhofer.aisec.cpg.helpers.SubgraphWalker
 import de.fraunhofer.aisec.cpg.helpers.annotations.FunctionReplacement
 import java.util.function.BiConsumer
 import org.bytedeco.javacpp.Pointer
@@ -1359,8 +1357,15 @@ class StatementHandler(lang: LLVMIRLanguageFrontend) :
      * Handles the [`phi`](https://llvm.org/docs/LangRef.html#phi-instruction) instruction. It
      * therefore adds dummy statements to the end of basic blocks where a certain variable is
      * declared and initialized. The original phi instruction is not added to the CPG.
+     *
+     * The basic blocks are looked up in [LLVMIRLanguageFrontend.labelStatements] and the function
+     * containing the phi instruction in [functionsByName], so this must only be called after all
+     * functions of the module have been handled.
      */
-    fun handlePhi(instr: LLVMValueRef, tu: TranslationUnitDeclaration, flatAST: MutableList<Node>) {
+    fun handlePhi(
+        instr: LLVMValueRef,
+        functionsByName: Map<String, List<FunctionDeclaration>>
+    ) {
         val labelMap = mutableMapOf<LabelStatement, Expression>()
         val numOps = LLVMGetNumOperands(instr)
         var i = 0
@@ -1368,9 +1373,10 @@ class StatementHandler(lang: LLVMIRLanguageFrontend) :
         while (i < numOps) {
             val valI = frontend.getOperandValueAtIndex(instr, i)
             val incomingBB = LLVMGetIncomingBlock(instr, i)
+            val parent = LLVMGetBasicBlockParent(incomingBB)
             if (bbsFunction == null) {
-                bbsFunction = LLVMGetBasicBlockParent(incomingBB)
-            } else if (bbsFunction.address() != LLVMGetBasicBlockParent(incomingBB).address()) {
+                bbsFunction = parent
+            } else if (bbsFunction.address() != parent.address()) {
                 log.error(
                     "The basic blocks of the phi instructions are in different functions. Can't handle this!"
                 )
@@ -1379,10 +1385,10 @@ class StatementHandler(lang: LLVMIRLanguageFrontend) :
                 )
             }
 
-            val labelName = getBasicBlockName(incomingBB)
-            val labelI = flatAST.firstOrNull { s -> s is LabelStatement && s.label == labelName }
+            val labelI = frontend.labelStatements[parent.address()]?.get(incomingBB.address())
             i++
             if (labelI == null) {
+                val labelName = getBasicBlockName(incomingBB)
                 log.error("Expecting to find a label with name $labelName for Phi statement.")
             }
             labelMap[labelI as LabelStatement] = valI
@@ -1392,7 +1398,6 @@ class StatementHandler(lang: LLVMIRLanguageFrontend) :
             val key = labelMap.keys.elementAt(0)
             val basicBlock = key.subStatement as? CompoundStatement
             val decl = declarationOrNot(labelMap[key]!!, instr)
-            flatAST.addAll(SubgraphWalker.flattenAST(decl))
             val mutableStatements = basicBlock?.statements?.toMutableList()
             mutableStatements?.add(basicBlock.statements.size - 1, decl)
             if (mutableStatements != null) {
@@ -1403,11 +1408,7 @@ class StatementHandler(lang: LLVMIRLanguageFrontend) :
         // We have multiple pairs, so we insert a declaration at the beginning of the function and
         // make an assignment in each BB.
         val functionName = LLVMGetValueName(bbsFunction).string
-        val functions =
-            tu.declarations.filter { d ->
-                (d as? FunctionDeclaration)?.name != null &&
-                    (d as? FunctionDeclaration)?.name.equals(functionName)
-            }
+        val functions = functionsByName[functionName] ?: listOf()
         if (functions.size != 1) {
             log.error(
                 "${functions.size} functions match the name of the one where the phi instruction is inserted. Can't handle this case."
@@ -1415,13 +1416,12 @@ class StatementHandler(lang: LLVMIRLanguageFrontend) :
             throw TranslationException("Wrong number of functions for phi statement.")
         }
         // Create the dummy declaration at the beginning of the function body
-        val firstBB = (functions[0] as FunctionDeclaration).body as CompoundStatement
+        val firstBB = functions[0].body as CompoundStatement
         val varName = instr.name
         val type = frontend.typeOf(instr)
         val code = frontend.getCodeFromRawNode(instr)
         val declaration = newVariableDeclaration(varName, type, code, false, frontend.language)
         declaration.updateType(type)
-        flatAST.add(declaration)
         // add the declaration to the current scope
         frontend.scopeManager.addDeclaration(declaration)
         // add it to our bindings cache
@@ -1442,7 +1442,6 @@ class StatementHandler(lang: LLVMIRLanguageFrontend) :
             assignment.lhs.unregisterTypeListener(assignment)
             assignment.unregisterTypeListener(assignment.lhs as DeclaredReferenceExpression)
             (assignment.lhs as DeclaredReferenceExpression).refersTo = declaration
-            flatAST.add(assignment)
 
             val basicBlock = l.subStatement as? CompoundStatement
             val mutableStatements = basicBlock?.statements?.toMutableList()
@@ -1516,6 +1515,13 @@ class StatementHandler(lang: LLVMIRLanguageFrontend) :
             labelStatement.label = labelName
             labelStatement.subStatement = compound
 
+            // Remember the label of this block, so that phi instructions can find it
+            val labels =
+                frontend.labelStatements.computeIfAbsent(LLVMGetBasicBlockParent(bb).address()) {
+                    mutableMapOf()
+                }
+            labels[bb.address()] = labelStatement
+
             return labelStatement
         }
         return compound
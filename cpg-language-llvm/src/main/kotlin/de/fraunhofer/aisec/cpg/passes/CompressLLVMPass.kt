@@ -33,6 +33,7 @@ import de.fraunhofer.aisec.cpg.graph.newVariableDeclaration
 import de.fraunhofer.aisec.cpg.graph.statements.*
 import de.fraunhofer.aisec.cpg.graph.statements.expressions.UnaryOperator
 import de.fraunhofer.aisec.cpg.graph.types.UnknownType
+import de.fraunhofer.aisec.cpg.helpers.IdentitySet
 import de.fraunhofer.aisec.cpg.helpers.SubgraphWalker
 import de.fraunhofer.aisec.cpg.passes.order.ExecuteFirst
 import de.fraunhofer.aisec.cpg.passes.order.RequiredFrontend
@@ -41,18 +42,41 @@ import java.util.*
 @ExecuteFirst
 @RequiredFrontend(LLVMIRLanguageFrontend::class)
 class CompressLLVMPass : Pass() {
+    /**
+     * The basic block (i.e. the sub-statement of a [LabelStatement]) which contains each node in
+     * the original AST. Nodes outside of all basic blocks, such as the function bodies, are
+     * missing. Inlining does not change this relation, since a block keeps all of its nodes.
+     */
+    private val blocks = IdentityHashMap<Node, Statement>()
+
+    /**
+     * A union-find forest of the basic blocks: the parent of a block is a block into which it has
+     * been inlined. The root of a block is therefore the outermost block that contains it.
+     */
+    private val inlinedInto = IdentityHashMap<Statement, Statement>()
+
     override fun accept(t: TranslationResult) {
         val flatAST = SubgraphWalker.flattenAST(t)
-        // Get all goto statements
+        computeBlocks(t, flatAST)
+
+        // Count the GotoStatements jumping to each LabelStatement
         val allGotos = flatAST.filterIsInstance<GotoStatement>()
+        val references = IdentityHashMap<LabelStatement, Int>()
+        for (goto in allGotos) {
+            goto.targetLabel?.let { references[it] = (references[it] ?: 0) + 1 }
+        }
+
         // Get all LabelStatements which are only referenced from a single GotoStatement
-        val singleEntryLabels =
-            flatAST.filterIsInstance<LabelStatement>().filter { l ->
-                allGotos.filter { g -> g.targetLabel == l }.size == 1
-            }
+        val singleEntryLabels = IdentitySet<LabelStatement>()
+        flatAST.filterIsInstance<LabelStatement>().filterTo(singleEntryLabels) { l ->
+            references[l] == 1
+        }
 
         // Get all GotoStatements which have to be replaced in the AST
-        val gotosToReplace = allGotos.filter { g -> g.targetLabel in singleEntryLabels }
+        val gotosToReplace = IdentitySet<Node>()
+        allGotos.filterTo(gotosToReplace) { g ->
+            g.targetLabel?.let { it in singleEntryLabels } == true
+        }
 
         // Enforce the order: First IfStatements, then SwitchStatements, then the rest. This
         // prevents to treat the final goto in the case or default statement as a normal
@@ -68,28 +92,24 @@ class CompressLLVMPass : Pass() {
                 // Replace the then-statement with the basic block it jumps to iff we found that
                 // its
                 // goto statement is the only one jumping to the target
+                val thenStatement = node.thenStatement
                 if (
-                    node.thenStatement in gotosToReplace &&
-                        node !in
-                            SubgraphWalker.flattenAST(
-                                (node.thenStatement as GotoStatement).targetLabel.subStatement
-                            )
+                    thenStatement != null &&
+                        thenStatement in gotosToReplace &&
+                        canInline(thenStatement, node)
                 ) {
-                    node.thenStatement =
-                        (node.thenStatement as GotoStatement).targetLabel.subStatement
+                    node.thenStatement = inline(thenStatement, node)
                 }
                 // Replace the else-statement with the basic block it jumps to iff we found that
                 // its
                 // goto statement is the only one jumping to the target
+                val elseStatement = node.elseStatement
                 if (
-                    node.elseStatement in gotosToReplace &&
-                        node !in
-                            SubgraphWalker.flattenAST(
-                                (node.elseStatement as GotoStatement).targetLabel.subStatement
-                            )
+                    elseStatement != null &&
+                        elseStatement in gotosToReplace &&
+                        canInline(elseStatement, node)
                 ) {
-                    node.elseStatement =
-                        (node.elseStatement as GotoStatement).targetLabel.subStatement
+                    node.elseStatement = inline(elseStatement, node)
                 }
             } else if (node is SwitchStatement) {
                 // Iterate over all statements in a body of the switch/case and replace a goto
@@ -99,16 +119,12 @@ class CompressLLVMPass : Pass() {
                 for (i in 0 until newStatements.size) {
                     if (
                         newStatements[i] in gotosToReplace &&
-                            newStatements[i] !in
-                                SubgraphWalker.flattenAST(
-                                    (newStatements[i] as GotoStatement).targetLabel.subStatement
-                                )
+                            canInline(newStatements[i], caseBodyStatements)
                     ) {
-                        newStatements[i] =
-                            (newStatements[i] as GotoStatement).targetLabel.subStatement
+                        newStatements[i] = inline(newStatements[i], caseBodyStatements)
                     }
                 }
-                (node.statement as CompoundStatement).statements = newStatements
+                caseBodyStatements.statements = newStatements
             } else if (
                 node is TryStatement &&
                     node.catchClauses.size == 1 &&
@@ -154,21 +170,85 @@ class CompressLLVMPass : Pass() {
                 // Get the last statement in a CompoundStatement and replace a goto statement
                 // iff it is the only one jumping to the target
                 val goto = node.statements.lastOrNull()
-                if (
-                    goto != null &&
-                        goto in gotosToReplace &&
-                        node !in
-                            SubgraphWalker.flattenAST(
-                                (goto as GotoStatement).targetLabel.subStatement
-                            )
-                ) {
-                    val subStatement = goto.targetLabel.subStatement
+                if (goto != null && goto in gotosToReplace && canInline(goto, node)) {
+                    val subStatement = inline(goto, node)
                     val newStatements = node.statements.dropLast(1).toMutableList()
                     newStatements.addAll((subStatement as CompoundStatement).statements)
                     node.statements = newStatements
                 }
             }
         }
+
+        blocks.clear()
+        inlinedInto.clear()
+    }
+
+    /**
+     * Computes the basic block of each node of the AST below [root]. The [flatAST] is used to find
+     * the basic blocks, the AST is then traversed once from the top.
+     */
+    private fun computeBlocks(root: Node, flatAST: List<Node>) {
+        val labelBlocks = IdentitySet<Node>()
+        flatAST.filterIsInstance<LabelStatement>().mapNotNullTo(labelBlocks) { it.subStatement }
+
+        val visited = IdentitySet<Node>()
+        val worklist = ArrayDeque<Pair<Node, Statement?>>()
+        worklist.add(Pair(root, null))
+        while (worklist.isNotEmpty()) {
+            val (node, enclosing) = worklist.removeLast()
+            if (!visited.add(node)) {
+                continue
+            }
+
+            val block =
+                if (node in labelBlocks) {
+                    // A block nested in another one is treated as if it had been inlined
+                    enclosing?.let { inlinedInto[node as Statement] = it }
+                    node as Statement
+                } else {
+                    enclosing
+                }
+            block?.let { blocks[node] = it }
+            SubgraphWalker.getAstChildren(node).forEach { worklist.add(Pair(it, block)) }
+        }
+    }
+
+    /** Returns the outermost basic block into which [block] has been inlined (or itself). */
+    private fun root(block: Statement): Statement {
+        var root = block
+        while (true) {
+            root = inlinedInto[root] ?: break
+        }
+
+        // Path compression, so that later lookups are (almost) constant
+        var current = block
+        while (current !== root) {
+            val next = inlinedInto[current]!!
+            inlinedInto[current] = root
+            current = next
+        }
+
+        return root
+    }
+
+    /**
+     * Checks if the basic block targeted by [goto] can be inlined into [parent], i.e., if [parent]
+     * is not part of the AST of the basic block. Otherwise, inlining would introduce a cycle in the
+     * AST. Since blocks are only ever inlined into other blocks, this is the case iff the block of
+     * [parent] has been inlined (possibly transitively) into the targeted block.
+     */
+    private fun canInline(goto: Statement, parent: Node): Boolean {
+        val block = (goto as GotoStatement).targetLabel.subStatement ?: return true
+        val parentBlock = blocks[parent] ?: return true
+
+        return root(parentBlock) !== block
+    }
+
+    /** Returns the basic block targeted by [goto] and records that it is inlined into [parent]. */
+    private fun inline(goto: Statement, parent: Node): Statement {
+        val block = (goto as GotoStatement).targetLabel.subStatement
+        blocks[parent]?.let { inlinedInto[block] = root(it) }
+        return block
     }
 
     /**
@@ -27,19 +27,30 @@ package de.fraunhofer.aisec.cpg.frontends.llvm
 
 import de.fraunhofer.aisec.cpg.TestUtils
 import de.fraunhofer.aisec.cpg.TranslationConfiguration
+import de.fraunhofer.aisec.cpg.frontends.TranslationException
+import de.fraunhofer.aisec.cpg.graph.Node
+import de.fraunhofer.aisec.cpg.graph.allChildren
 import de.fraunhofer.aisec.cpg.graph.bodyOrNull
 import de.fraunhofer.aisec.cpg.graph.byNameOrNull
 import de.fraunhofer.aisec.cpg.graph.declarations.FunctionDeclaration
 import de.fraunhofer.aisec.cpg.graph.declarations.RecordDeclaration
 import de.fraunhofer.aisec.cpg.graph.declarations.VariableDeclaration
+import de.fraunhofer.aisec.cpg.graph.get
 import de.fraunhofer.aisec.cpg.graph.statements.*
 import de.fraunhofer.aisec.cpg.graph.statements.expressions.*
 import de.fraunhofer.aisec.cpg.graph.types.ObjectType
 import de.fraunhofer.aisec.cpg.graph.types.TypeParser
+import de.fraunhofer.aisec.cpg.graph.variables
 import de.fraunhofer.aisec.cpg.passes.scopes.ScopeManager
+import java.nio.ByteBuffer
+import java.nio.file.Files
 import java.nio.file.Path
 import kotlin.test.*
 import kotlin.test.Test
+import org.bytedeco.javacpp.BytePointer
+import org.bytedeco.llvm.LLVM.LLVMMemoryBufferRef
+import org.bytedeco.llvm.LLVM.LLVMModuleRef
+import org.bytedeco.llvm.global.LLVM.*
 
 class LLVMIRLanguageFrontendTest {
     @Test
@@ -55,6 +66,68 @@ class LLVMIRLanguageFrontendTest {
         frontend.parse(topLevel.resolve("main.ll").toFile())
     }
 
+    @Test
+    fun testBitcode() {
+        val topLevel = Path.of("src", "test", "resources", "llvm")
+
+        // Assemble main.ll into a bitcode file, so that we do not need to check in binary files
+        val bitcode = Files.createTempFile("main", ".bc").toFile()
+        bitcode.deleteOnExit()
+
+        val ctx = LLVMContextCreate()
+        try {
+            val buf = LLVMMemoryBufferRef()
+            val mod = LLVMModuleRef()
+            val errorMessage = ByteBuffer.allocate(10000)
+            assertEquals(
+                0,
+                LLVMCreateMemoryBufferWithContentsOfFile(
+                    BytePointer(topLevel.resolve("main.ll").toString()),
+                    buf,
+                    errorMessage
+                )
+            )
+            assertEquals(0, LLVMParseIRInContext(ctx, buf, mod, errorMessage))
+            assertEquals(0, LLVMWriteBitcodeToFile(mod, bitcode.path))
+        } finally {
+            LLVMContextDispose(ctx)
+        }
+
+        val tu =
+            TestUtils.analyzeAndGetFirstTU(listOf(bitcode), bitcode.parentFile.toPath(), true) {
+                it.registerLanguage<LLVMIRLanguage>()
+            }
+
+        val main = tu.byNameOrNull<FunctionDeclaration>("main")
+        assertNotNull(main)
+        assertEquals("i32", main.type.name)
+
+        val puts = tu.byNameOrNull<FunctionDeclaration>("puts")
+        assertNotNull(puts)
+        assertNull(puts.body)
+    }
+
+    @Test
+    fun testInvalidModule() {
+        val topLevel = Path.of("src", "test", "resources", "llvm")
+
+        val frontend =
+            LLVMIRLanguageFrontend(
+                LLVMIRLanguage(),
+                TranslationConfiguration.builder().build(),
+                ScopeManager()
+            )
+        assertFailsWith<TranslationException> {
+            frontend.parse(topLevel.resolve("invalid.ll").toFile())
+        }
+
+        // The module state of this thread is released, even though the translation failed
+        assertNull(frontend.ctx)
+        assertTrue(frontend.phiList.isEmpty())
+
+        frontend.parse(topLevel.resolve("main.ll").toFile())
+    }
+
     @Test
     fun testVectorPoison() {
         val topLevel = Path.of("src", "test", "resources", "llvm")
@@ -705,6 +778,29 @@ class LLVMIRLanguageFrontendTest {
         assertNotNull(main)
     }
 
+    @Test
+    fun testParallelParsing() {
+        val topLevel = Path.of("src", "test", "resources", "llvm")
+        val result =
+            TestUtils.analyze(
+                listOf(
+                    topLevel.resolve("phi.ll").toFile(),
+                    topLevel.resolve("loopPhi.ll").toFile(),
+                    topLevel.resolve("struct.ll").toFile()
+                ),
+                topLevel,
+                true
+            ) { it.registerLanguage<LLVMIRLanguage>().useParallelFrontends(true) }
+
+        // Each module is parsed with its own state, so the phi instructions of one module must
+        // not end up in another one
+        assertEquals(3, result.translationUnits.size)
+        val loopPhi =
+            result.translationUnits.mapNotNull { it.byNameOrNull<FunctionDeclaration>("loopPhi") }
+        assertEquals(1, loopPhi.size)
+        assertNotNull(loopPhi[0].body)
+    }
+
     @Test
     fun testPhi() {
         val topLevel = Path.of("src", "test", "resources", "llvm")
@@ -760,6 +856,85 @@ class LLVMIRLanguageFrontendTest {
         )
     }
 
+    @Test
+    fun testPhiWithSameLabels() {
+        val topLevel = Path.of("src", "test", "resources", "llvm")
+        val tu =
+            TestUtils.analyzeAndGetFirstTU(
+                listOf(topLevel.resolve("phi_labels.ll").toFile()),
+                topLevel,
+                true
+            ) { it.registerLanguage<LLVMIRLanguage>() }
+
+        for ((name, incoming) in listOf("first" to setOf("a", "b"), "second" to setOf("c", "d"))) {
+            val function = tu.byNameOrNull<FunctionDeclaration>(name)
+            assertNotNull(function)
+            val y = function.variables["y"]
+            assertNotNull(y)
+
+            // The phi is lowered to one assignment in each predecessor block of this function
+            val assignments =
+                function.allChildren<BinaryOperator> {
+                    it.operatorCode == "=" &&
+                        (it.lhs as? DeclaredReferenceExpression)?.refersTo === y
+                }
+            assertEquals(2, assignments.size, name)
+            assertEquals(
+                incoming,
+                assignments
+                    .map { ((it.rhs as DeclaredReferenceExpression).refersTo as Node).name }
+                    .toSet(),
+                name
+            )
+        }
+    }
+
+    @Test
+    fun testDeepGotoChain() {
+        // Every block compares %x and either returns or branches to the next block, so that
+        // CompressLLVMPass has to nest all blocks into each other
+        val depth = 200
+        val ir = StringBuilder("define i32 @chain(i32 %x) {\n")
+        for (i in 0 until depth) {
+            if (i > 0) {
+                ir.append("next$i:\n")
+            }
+            ir.append("  %c$i = icmp eq i32 %x, $i\n")
+            ir.append("  br i1 %c$i, label %then$i, label %next${i + 1}\n")
+            ir.append("then$i:\n  ret i32 $i\n")
+        }
+        ir.append("next$depth:\n  ret i32 -1\n}\n")
+
+        val file = Files.createTempFile("chain", ".ll").toFile()
+        file.deleteOnExit()
+        file.writeText(ir.toString())
+
+        val tu =
+            TestUtils.analyzeAndGetFirstTU(listOf(file), file.parentFile.toPath(), true) {
+                it.registerLanguage<LLVMIRLanguage>()
+            }
+
+        val chain = tu.byNameOrNull<FunctionDeclaration>("chain")
+        assertNotNull(chain)
+
+        // All branches have a single predecessor, so all blocks are inlined into the ifs
+        assertTrue(chain.allChildren<GotoStatement>().isEmpty())
+        assertEquals(depth, chain.allChildren<IfStatement>().size)
+        assertEquals(depth + 1, chain.allChildren<ReturnStatement>().size)
+
+        // Each if statement is nested in the else branch of the previous one
+        var ifStatement: IfStatement? =
+            (chain.body as CompoundStatement).statements.filterIsInstance<IfStatement>().first()
+        var nesting = 0
+        while (ifStatement != null) {
+            nesting++
+            ifStatement =
+                (ifStatement.elseStatement as? CompoundStatement)?.statements?.lastOrNull()
+                    as? IfStatement
+        }
+        assertEquals(depth, nesting)
+    }
+
     @Test
     fun testVectorOperations() {
         val topLevel = Path.of("src", "test", "resources", "llvm")
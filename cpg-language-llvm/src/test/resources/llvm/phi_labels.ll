@@ -0,0 +1,39 @@
+declare i32 @rand() nounwind
+
+; Both functions use the same labels, so the phi instructions must only look at the blocks of
+; their own function.
+define i32 @first() {
+  %x = call i32 @rand()
+  %cond = icmp eq i32 %x, 10
+  br i1 %cond, label %IfEqual, label %IfUnequal
+
+IfEqual:
+  %a = mul i32 %x, 2
+  br label %continue
+
+IfUnequal:
+  %b = add i32 %x, 3
+  br label %continue
+
+continue:
+  %y = phi i32 [ %a, %IfEqual ], [ %b, %IfUnequal ]
+  ret i32 %y
+}
+
+define i32 @second() {
+  %x = call i32 @rand()
+  %cond = icmp eq i32 %x, 20
+  br i1 %cond, label %IfEqual, label %IfUnequal
+
+IfEqual:
+  %c = mul i32 %x, 4
+  br label %continue
+
+IfUnequal:
+  %d = add i32 %x, 5
+  br label %continue
+
+continue:
+  %y = phi i32 [ %c, %IfEqual ], [ %d, %IfUnequal ]
+  ret i32 %y
+}